@@ -0,0 +1,89 @@
+package com.ctk.sdk;
+
+/**
+ * Sends raw command APDUs to a card and returns the response data followed by SW1 SW2.
+ */
+public interface ApduChannel {
+    /**
+     * @param apdu    CLA INS P1 P2 [Lc data] [Le]
+     * @param apduLen number of bytes of {@code apdu} to send
+     * @param resp    receives the response data followed by SW1 SW2
+     * @return number of bytes written to {@code resp}, or a negative device error
+     */
+    int transmit(byte[] apdu, int apduLen, byte[] resp);
+
+    /**
+     * Contactless card through {@link PosApiHelper#PiccApduCmd}.
+     */
+    class Picc implements ApduChannel {
+        private final PosApiHelper posApiHelper;
+        private final byte[] outLen = new byte[2];
+
+        public Picc(PosApiHelper posApiHelper) {
+            this.posApiHelper = posApiHelper;
+        }
+
+        @Override
+        public int transmit(byte[] apdu, int apduLen, byte[] resp) {
+            int ret = posApiHelper.PiccApduCmd(apdu, apduLen, resp, outLen);
+            if (ret != 0) {
+                return ret < 0 ? ret : -ret;
+            }
+            return Math.min(ByteUtil.getUShortLE(outLen, 0), resp.length);
+        }
+    }
+
+    /**
+     * Contact card or PSAM slot through {@link PosApiHelper#IccCommand}.
+     */
+    class Icc implements ApduChannel {
+        private final PosApiHelper posApiHelper;
+        private final byte slot;
+
+        public Icc(PosApiHelper posApiHelper, byte slot) {
+            this.posApiHelper = posApiHelper;
+            this.slot = slot;
+        }
+
+        @Override
+        public int transmit(byte[] apdu, int apduLen, byte[] resp) {
+            ApduSend send = ApduSend.obtain();
+            ApduResp apduResp = ApduResp.obtain();
+            try {
+                setCommand(send, apdu, apduLen);
+                int ret = posApiHelper.IccCommand(slot, send, apduResp);
+                if (ret != 0) {
+                    return ret < 0 ? ret : -ret;
+                }
+                int len = Math.min(apduResp.getLenOut(), resp.length - 2);
+                System.arraycopy(apduResp.getBytes(), 2, resp, 0, len);
+                resp[len] = apduResp.getSWA();
+                resp[len + 1] = apduResp.getSWB();
+                return len + 2;
+            } finally {
+                apduResp.recycle();
+                send.recycle();
+            }
+        }
+
+        static void setCommand(ApduSend send, byte[] apdu, int apduLen) {
+            if (apduLen < 4) {
+                throw new IllegalArgumentException("APDU shorter than 4 bytes");
+            }
+            int lc = 0;
+            int le = 0;
+            if (apduLen == 5) {
+                le = apdu[4] == 0 ? 256 : apdu[4] & 0xff;
+            } else if (apduLen > 5) {
+                lc = apdu[4] & 0xff;
+                if (apduLen == 6 + lc) {
+                    // IccCommand: "If both LC and LE exist, you should set LC = X; LE = 0x01"
+                    le = 1;
+                } else if (apduLen != 5 + lc) {
+                    throw new IllegalArgumentException("APDU length " + apduLen + " does not match Lc " + lc);
+                }
+            }
+            send.set(apdu[0], apdu[1], apdu[2], apdu[3], apdu, 5, lc, le);
+        }
+    }
+}
@@ -1,43 +1,154 @@
-package android.src.main.java.com.ctk.sdk;
+package com.ctk.sdk;
 
+import java.nio.ByteBuffer;
 
+/**
+ * Response frame for {@link PosApiHelper#IccCommand} and {@link PosApiHelper#PiccCommand}.
+ *
+ * Layout: LenOut (2 bytes, little endian), DataOut[512], SWA, SWB. Pass
+ * {@link #getBytes()} to the device call and read the result in place; only the LenOut
+ * bytes of DataOut are ever looked at. Use {@link #obtain()} and {@link #recycle()} to
+ * share instances between exchanges.
+ *
+ * Instances are not thread safe.
+ */
 public class ApduResp {
-    public short LenOut = 0;
-    public byte[] DataOut = new byte[512];
-    public byte SWA = 0;
-    public byte SWB = 0;
+    public static final int FRAME_SIZE = 516;
+    public static final int MAX_DATA = 512;
 
-    public ApduResp() {
+    private static final int DATA_OFFSET = 2;
+    private static final int SWA_OFFSET = 514;
+    private static final int SWB_OFFSET = 515;
+    private static final int MAX_POOL_SIZE = 8;
+
+    private static final Object sPoolSync = new Object();
+    private static ApduResp sPool;
+    private static int sPoolSize = 0;
+
+    private final byte[] frame = new byte[FRAME_SIZE];
+    private final ByteBuffer data = ByteBuffer.wrap(frame, DATA_OFFSET, MAX_DATA).slice();
+    private ApduResp next;
 
+    public ApduResp() {
     }
 
     public ApduResp(short LenOut, byte[] DataOut, byte SWA, byte SWB) {
-        this.LenOut = LenOut;
-        this.DataOut = DataOut;
-        this.SWA = SWA;
-        this.SWB = SWB;
+        int len = Math.min(LenOut & 0xffff, Math.min(DataOut.length, MAX_DATA));
+        ByteUtil.putShortLE(frame, 0, len);
+        System.arraycopy(DataOut, 0, frame, DATA_OFFSET, len);
+        frame[SWA_OFFSET] = SWA;
+        frame[SWB_OFFSET] = SWB;
     }
 
     public ApduResp(byte[] resp) {
-        this.LenOut = (short) ((int) (resp[1] & 0xff) * 256 + (int) (resp[0] & 0xff));
-        System.arraycopy(resp, 2, DataOut, 0, 512);
-        this.SWA = resp[514];
-        this.SWB = resp[515];
+        readFrom(resp, 0);
+    }
+
+    /**
+     * Returns an instance from the pool, or a new one if the pool is empty.
+     */
+    public static ApduResp obtain() {
+        synchronized (sPoolSync) {
+            if (sPool != null) {
+                ApduResp resp = sPool;
+                sPool = resp.next;
+                resp.next = null;
+                sPoolSize--;
+                return resp;
+            }
+        }
+        return new ApduResp();
+    }
+
+    /**
+     * Clears the received data and returns the frame to the pool. The instance must
+     * not be used afterwards.
+     */
+    public void recycle() {
+        clear();
+        synchronized (sPoolSync) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                next = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
+
+    /**
+     * Copies a response frame produced elsewhere, reading only its LenOut data bytes.
+     */
+    public ApduResp readFrom(byte[] resp, int offset) {
+        int len = Math.min(ByteUtil.getUShortLE(resp, offset), MAX_DATA);
+        clear();
+        ByteUtil.putShortLE(frame, 0, len);
+        System.arraycopy(resp, offset + DATA_OFFSET, frame, DATA_OFFSET, len);
+        frame[SWA_OFFSET] = resp[offset + SWA_OFFSET];
+        frame[SWB_OFFSET] = resp[offset + SWB_OFFSET];
+        return this;
+    }
+
+    public void clear() {
+        int len = getLenOut();
+        for (int i = 0; i < DATA_OFFSET + len; i++) {
+            frame[i] = 0;
+        }
+        frame[SWA_OFFSET] = 0;
+        frame[SWB_OFFSET] = 0;
+    }
+
+    /**
+     * The whole 516 byte frame, not a copy; filled in by the device call.
+     */
+    public byte[] getBytes() {
+        return frame;
     }
 
     public short getLenOut() {
-        return LenOut;
+        return (short) Math.min(ByteUtil.getUShortLE(frame, 0), MAX_DATA);
+    }
+
+    /**
+     * View of the LenOut received bytes.
+     */
+    public ByteBuffer data() {
+        data.clear();
+        data.limit(getLenOut());
+        return data;
+    }
+
+    /**
+     * Copies the LenOut received bytes into {@code dst}.
+     *
+     * @return number of bytes copied
+     */
+    public int copyDataOut(byte[] dst, int offset) {
+        int len = getLenOut();
+        System.arraycopy(frame, DATA_OFFSET, dst, offset, len);
+        return len;
     }
 
+    /**
+     * A new array holding the LenOut received bytes.
+     */
     public byte[] getDataOut() {
-        return DataOut;
+        byte[] out = new byte[getLenOut()];
+        copyDataOut(out, 0);
+        return out;
     }
 
     public byte getSWA() {
-        return SWA;
+        return frame[SWA_OFFSET];
     }
 
     public byte getSWB() {
-        return SWB;
+        return frame[SWB_OFFSET];
+    }
+
+    /**
+     * SWA and SWB as one value, e.g. 0x9000.
+     */
+    public int getSW() {
+        return ((frame[SWA_OFFSET] & 0xff) << 8) | (frame[SWB_OFFSET] & 0xff);
     }
 }
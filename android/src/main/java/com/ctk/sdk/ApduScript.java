@@ -0,0 +1,345 @@
+package com.ctk.sdk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A sequence of command APDUs run in one go against an {@link ApduChannel}.
+ *
+ * Each step is a hex APDU template that may reference variables saved by earlier
+ * steps: {@code {name}} inserts the bytes of a variable and {@code {#name}} its
+ * length as one byte, e.g. {@code "80A80000{#pdol}{pdol}00"}; a step fails when
+ * that length exceeds 255. A step lists the status words it expects
+ * ({@code "9000"}, {@code "61XX"}, X matching any nibble) and where to go when the
+ * response matches or not: {@code "next"}, {@code "stop"} or the label of another
+ * step. Labels must be unique. A step can save its response data,
+ * or the value of one tag found in it, as a variable for later steps.
+ *
+ * Scripts are built once and can be run any number of times.
+ */
+public class ApduScript {
+    public static final String NEXT = "next";
+    public static final String STOP = "stop";
+
+    /**
+     * Upper bound on executed steps so that a branch loop cannot run forever.
+     */
+    public static final int MAX_EXECUTED_STEPS = 256;
+
+    private static final int MAX_APDU = 9 + 4096;
+
+    private final List<Step> steps;
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    public ApduScript(List<Step> steps) {
+        this.steps = new ArrayList<>(steps);
+        for (int i = 0; i < this.steps.size(); i++) {
+            String label = this.steps.get(i).label;
+            if (label != null && labels.put(label, i) != null) {
+                throw new IllegalArgumentException("Duplicate step label " + label);
+            }
+        }
+        for (Step step : this.steps) {
+            checkTarget(step.onMatch);
+            checkTarget(step.onMismatch);
+        }
+    }
+
+    /**
+     * Builds a script from platform channel arguments: one map per step with keys
+     * apdu, label, expect (list of SW patterns), save, saveTag, onMatch and onMismatch.
+     */
+    @SuppressWarnings("unchecked")
+    public static ApduScript fromMaps(List<Map<String, Object>> maps) {
+        List<Step> steps = new ArrayList<>(maps.size());
+        for (Map<String, Object> map : maps) {
+            Step step = new Step((String) map.get("apdu"));
+            step.label((String) map.get("label"));
+            Object expect = map.get("expect");
+            if (expect instanceof List) {
+                step.expect(((List<String>) expect).toArray(new String[0]));
+            }
+            String saveTag = (String) map.get("saveTag");
+            if (map.get("save") != null) {
+                step.save((String) map.get("save"), saveTag == null ? 0 : Integer.parseInt(saveTag, 16));
+            }
+            if (map.get("onMatch") != null) {
+                step.onMatch((String) map.get("onMatch"));
+            }
+            if (map.get("onMismatch") != null) {
+                step.onMismatch((String) map.get("onMismatch"));
+            }
+            steps.add(step);
+        }
+        return new ApduScript(steps);
+    }
+
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * Runs the script. Commands go through an {@link ApduTransceiver}, so 61xx and 6Cxx
+     * are resolved before a step's status word is checked and extended length commands
+     * are chained. The caller is responsible for holding whatever lock the channel needs
+     * for the whole run.
+     *
+     * @param variables initial variables, may be null; not modified
+     * @return a map with completed (Boolean), failedStep (index or -1), error (String or
+     * null), responses (one map per executed step: step, label, data, sw1, sw2, matched)
+     * and variables (name to byte[])
+     */
+    public Map<String, Object> run(ApduChannel channel, Map<String, byte[]> variables) {
+        Map<String, byte[]> vars = new HashMap<>();
+        if (variables != null) {
+            vars.putAll(variables);
+        }
+        ApduTransceiver transceiver = channel instanceof ApduTransceiver
+                ? (ApduTransceiver) channel : new ApduTransceiver(channel);
+        byte[] apdu = new byte[MAX_APDU];
+        TlvIndex index = new TlvIndex();
+        List<Map<String, Object>> responses = new ArrayList<>();
+
+        String error = null;
+        int failedStep = -1;
+        int pc = 0;
+        int executed = 0;
+        while (pc < steps.size()) {
+            if (++executed > MAX_EXECUTED_STEPS) {
+                error = "More than " + MAX_EXECUTED_STEPS + " steps executed";
+                failedStep = pc;
+                break;
+            }
+            Step step = steps.get(pc);
+            int respLen;
+            try {
+                int apduLen = step.build(vars, apdu);
+                respLen = transceiver.transceive(apdu, 0, apduLen);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+                failedStep = pc;
+                break;
+            }
+            byte[] resp = transceiver.response();
+            if (respLen < 0) {
+                error = "Device error " + respLen;
+                failedStep = pc;
+                break;
+            }
+            if (respLen < 2) {
+                error = "Response without status word";
+                failedStep = pc;
+                break;
+            }
+            int dataLen = respLen - 2;
+            int sw = ((resp[dataLen] & 0xff) << 8) | (resp[dataLen + 1] & 0xff);
+            boolean matched = step.matches(sw);
+            if (matched && step.save != null) {
+                byte[] value = step.extract(resp, dataLen, index);
+                if (value == null) {
+                    matched = false;
+                } else {
+                    vars.put(step.save, value);
+                }
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("step", pc);
+            response.put("label", step.label);
+            response.put("data", slice(resp, 0, dataLen));
+            response.put("sw1", resp[dataLen] & 0xff);
+            response.put("sw2", resp[dataLen + 1] & 0xff);
+            response.put("matched", matched);
+            responses.add(response);
+
+            String target = matched ? step.onMatch : step.onMismatch;
+            if (NEXT.equals(target)) {
+                pc++;
+            } else if (STOP.equals(target)) {
+                if (!matched) {
+                    error = String.format("Unexpected status word %04X", sw);
+                    failedStep = pc;
+                }
+                break;
+            } else {
+                pc = labels.get(target);
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("completed", error == null);
+        result.put("failedStep", failedStep);
+        result.put("error", error);
+        result.put("responses", responses);
+        result.put("variables", vars);
+        return result;
+    }
+
+    private void checkTarget(String target) {
+        if (!NEXT.equals(target) && !STOP.equals(target) && !labels.containsKey(target)) {
+            throw new IllegalArgumentException("Unknown step label " + target);
+        }
+    }
+
+    private static byte[] slice(byte[] buf, int offset, int len) {
+        byte[] out = new byte[len];
+        System.arraycopy(buf, offset, out, 0, len);
+        return out;
+    }
+
+    public static class Step {
+        private final List<Object> parts = new ArrayList<>();
+        private String label;
+        private int[] expectValues = {0x9000};
+        private int[] expectMasks = {0xffff};
+        private String save;
+        private int saveTag;
+        private String onMatch = NEXT;
+        private String onMismatch = STOP;
+
+        /**
+         * @param apdu hex APDU template, spaces allowed, with {@code {name}} and
+         *             {@code {#name}} placeholders
+         */
+        public Step(String apdu) {
+            if (apdu == null) {
+                throw new IllegalArgumentException("Step without apdu");
+            }
+            int pos = 0;
+            while (pos < apdu.length()) {
+                int open = apdu.indexOf('{', pos);
+                int end = open < 0 ? apdu.length() : open;
+                if (end > pos) {
+                    String hex = apdu.substring(pos, end);
+                    byte[] literal = new byte[hex.length() / 2];
+                    int n = ByteUtil.decodeHex(hex, 0, hex.length(), literal, 0);
+                    parts.add(n == literal.length ? literal : slice(literal, 0, n));
+                }
+                if (open < 0) {
+                    break;
+                }
+                int close = apdu.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed placeholder in " + apdu);
+                }
+                parts.add(apdu.substring(open + 1, close));
+                pos = close + 1;
+            }
+        }
+
+        public Step label(String label) {
+            this.label = label;
+            return this;
+        }
+
+        /**
+         * Status words accepted as a match, four hex digits each with X as wildcard.
+         */
+        public Step expect(String... patterns) {
+            expectValues = new int[patterns.length];
+            expectMasks = new int[patterns.length];
+            for (int i = 0; i < patterns.length; i++) {
+                String p = patterns[i];
+                if (p.length() != 4) {
+                    throw new IllegalArgumentException("Invalid status word pattern " + p);
+                }
+                for (int j = 0; j < 4; j++) {
+                    char c = p.charAt(j);
+                    int shift = 12 - j * 4;
+                    if (c == 'X' || c == 'x') {
+                        continue;
+                    }
+                    int v = Character.digit(c, 16);
+                    if (v < 0) {
+                        throw new IllegalArgumentException("Invalid status word pattern " + p);
+                    }
+                    expectValues[i] |= v << shift;
+                    expectMasks[i] |= 0xf << shift;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Saves the response data, or the value of {@code tag} in it when tag is not 0,
+         * as variable {@code name}. A missing tag counts as a mismatch.
+         */
+        public Step save(String name, int tag) {
+            this.save = name;
+            this.saveTag = tag;
+            return this;
+        }
+
+        public Step onMatch(String target) {
+            this.onMatch = target;
+            return this;
+        }
+
+        public Step onMismatch(String target) {
+            this.onMismatch = target;
+            return this;
+        }
+
+        boolean matches(int sw) {
+            for (int i = 0; i < expectValues.length; i++) {
+                if ((sw & expectMasks[i]) == expectValues[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int build(Map<String, byte[]> vars, byte[] apdu) {
+            int len = 0;
+            for (Object part : parts) {
+                byte[] bytes;
+                if (part instanceof byte[]) {
+                    bytes = (byte[]) part;
+                } else {
+                    String name = (String) part;
+                    boolean lengthOf = name.startsWith("#");
+                    byte[] value = vars.get(lengthOf ? name.substring(1) : name);
+                    if (value == null) {
+                        throw new IllegalArgumentException("Undefined variable " + name);
+                    }
+                    if (lengthOf) {
+                        if (value.length > 0xFF) {
+                            throw new IllegalArgumentException("Variable " + name.substring(1)
+                                    + " is longer than 255 bytes");
+                        }
+                        if (len >= apdu.length) {
+                            throw new IllegalArgumentException("APDU too long");
+                        }
+                        apdu[len++] = (byte) value.length;
+                        continue;
+                    }
+                    bytes = value;
+                }
+                if (len + bytes.length > apdu.length) {
+                    throw new IllegalArgumentException("APDU too long");
+                }
+                System.arraycopy(bytes, 0, apdu, len, bytes.length);
+                len += bytes.length;
+            }
+            return len;
+        }
+
+        byte[] extract(byte[] resp, int dataLen, TlvIndex index) {
+            if (saveTag == 0) {
+                return slice(resp, 0, dataLen);
+            }
+            try {
+                index.build(resp, 0, dataLen);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            int entry = index.find(saveTag);
+            if (entry < 0) {
+                return null;
+            }
+            return slice(resp, index.valueOffset(entry), index.valueLength(entry));
+        }
+    }
+}
@@ -1,29 +1,144 @@
-package android.src.main.java.com.ctk.sdk;
+package com.ctk.sdk;
 
+import java.nio.ByteBuffer;
+
+/**
+ * Command frame for {@link PosApiHelper#IccCommand} and {@link PosApiHelper#PiccCommand}.
+ *
+ * Layout: Command[4] (CLA INS P1 P2), Lc (2 bytes, big endian), DataIn[512], Le (2 bytes,
+ * big endian). The frame is held in one array that {@link #getBytes()} returns as is, so
+ * an instance can be refilled with {@link #set} and sent any number of times. Use
+ * {@link #obtain()} and {@link #recycle()} to share instances between exchanges.
+ *
+ * Instances are not thread safe.
+ */
 public class ApduSend {
-    public byte[] Command = null;
-    public short  Lc;
-    public byte[] DataIn = null;
-    public short  Le;
-
-    public ApduSend(byte[] Command, short  Lc, byte[] DataIn, short  Le){
-        this.Command = new byte[Command.length];
-        this.DataIn = new byte[DataIn.length];
-        this.Command = Command;
-        this.Lc = Lc;
-        this.DataIn = DataIn;
-        this.Le = Le;
-    }
-
-    public byte[] getBytes(){
-
-        byte[] buf = new byte[520];
-        System.arraycopy(Command, 0, buf, 0, Command.length);
-        buf[4] = (byte) (Lc / 256);
-        buf[5] = (byte) (Lc % 256);
-        System.arraycopy(DataIn, 0, buf, 6, DataIn.length);
-        buf[518] = (byte) (Le / 256);
-        buf[519] = (byte) (Le % 256);
-        return buf;
+    public static final int FRAME_SIZE = 520;
+    public static final int MAX_DATA = 512;
+
+    private static final int LC_OFFSET = 4;
+    private static final int DATA_OFFSET = 6;
+    private static final int LE_OFFSET = 518;
+    private static final int MAX_POOL_SIZE = 8;
+
+    private static final Object sPoolSync = new Object();
+    private static ApduSend sPool;
+    private static int sPoolSize = 0;
+
+    private final byte[] frame = new byte[FRAME_SIZE];
+    private final ByteBuffer header = ByteBuffer.wrap(frame, 0, 4).slice();
+    private final ByteBuffer data = ByteBuffer.wrap(frame, DATA_OFFSET, MAX_DATA).slice();
+    private int lc;
+    private ApduSend next;
+
+    public ApduSend() {
+    }
+
+    public ApduSend(byte[] Command, short Lc, byte[] DataIn, short Le) {
+        set(Command, DataIn, 0, Lc, Le);
+    }
+
+    /**
+     * Returns a cleared instance from the pool, or a new one if the pool is empty.
+     */
+    public static ApduSend obtain() {
+        synchronized (sPoolSync) {
+            if (sPool != null) {
+                ApduSend send = sPool;
+                sPool = send.next;
+                send.next = null;
+                sPoolSize--;
+                return send;
+            }
+        }
+        return new ApduSend();
+    }
+
+    /**
+     * Clears the frame and returns it to the pool. The instance must not be used
+     * afterwards.
+     */
+    public void recycle() {
+        clear();
+        synchronized (sPoolSync) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                next = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
+
+    public ApduSend set(byte[] command, byte[] dataIn, int offset, int lc, int le) {
+        return set(command[0], command[1], command[2], command[3], dataIn, offset, lc, le);
+    }
+
+    /**
+     * Fills the frame. Data left over from a longer previous command is zeroed.
+     *
+     * @param dataIn Lc bytes of command data from {@code offset}, may be null when Lc is 0
+     */
+    public ApduSend set(byte cla, byte ins, byte p1, byte p2, byte[] dataIn, int offset, int lc, int le) {
+        if (lc < 0 || lc > MAX_DATA) {
+            throw new IllegalArgumentException("Lc " + lc + " out of range");
+        }
+        frame[0] = cla;
+        frame[1] = ins;
+        frame[2] = p1;
+        frame[3] = p2;
+        ByteUtil.putShortBE(frame, LC_OFFSET, lc);
+        if (lc > 0) {
+            System.arraycopy(dataIn, offset, frame, DATA_OFFSET, lc);
+        }
+        if (this.lc > lc) {
+            fill(DATA_OFFSET + lc, DATA_OFFSET + this.lc);
+        }
+        this.lc = lc;
+        ByteUtil.putShortBE(frame, LE_OFFSET, le);
+        return this;
+    }
+
+    public void clear() {
+        fill(0, DATA_OFFSET + lc);
+        fill(LE_OFFSET, FRAME_SIZE);
+        lc = 0;
+    }
+
+    /**
+     * The whole 520 byte frame, not a copy.
+     */
+    public byte[] getBytes() {
+        return frame;
+    }
+
+    /**
+     * View of CLA INS P1 P2.
+     */
+    public ByteBuffer header() {
+        header.clear();
+        return header;
+    }
+
+    /**
+     * View of the Lc command data bytes.
+     */
+    public ByteBuffer data() {
+        data.clear();
+        data.limit(lc);
+        return data;
+    }
+
+    public int getLc() {
+        return lc;
+    }
+
+    public int getLe() {
+        return ByteUtil.getUShortBE(frame, LE_OFFSET);
+    }
+
+    private void fill(int from, int to) {
+        for (int i = from; i < to; i++) {
+            frame[i] = 0;
+        }
     }
 }
@@ -0,0 +1,209 @@
+package com.ctk.sdk;
+
+/**
+ * Exchanges APDUs over an {@link ApduChannel}, handling the chaining the caller would
+ * otherwise have to do one round trip at a time:
+ * <ul>
+ * <li>command data longer than one short APDU (given as extended length, or through
+ * {@link #transceive(byte, byte, byte, byte, byte[], int, int, int)}) is sent as a
+ * chain of commands with CLA bit 0x10 set on all but the last;</li>
+ * <li>61xx is followed by GET RESPONSE until the card has returned everything;</li>
+ * <li>6Cxx resends the command once with the Le given by the card.</li>
+ * </ul>
+ * The complete response data followed by the final SW1 SW2 is collected in a buffer
+ * that grows as needed and is reused across calls. Not thread safe; the caller holds
+ * the service lock for the exchange.
+ */
+public class ApduTransceiver implements ApduChannel {
+    public static final int ERR_NO_STATUS_WORD = -9001;
+    public static final int ERR_TOO_MANY_RESPONSES = -9002;
+    public static final int ERR_BUFFER_TOO_SMALL = -9003;
+
+    /**
+     * Upper bound on GET RESPONSE rounds for one command.
+     */
+    public static final int MAX_RESPONSE_ROUNDS = 256;
+
+    private static final int SHORT_MAX_DATA = 255;
+
+    private final ApduChannel channel;
+    private final byte[] cmd = new byte[5 + SHORT_MAX_DATA + 1];
+    private final byte[] chunk = new byte[1024];
+    private byte[] response = new byte[512];
+    private int chunkSize = SHORT_MAX_DATA;
+
+    public ApduTransceiver(ApduChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Data bytes per chained command, at most 255. Some cards accept less.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1 || chunkSize > SHORT_MAX_DATA) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize + " out of range");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Buffer holding the result of the last exchange: data then SW1 SW2.
+     */
+    public byte[] response() {
+        return response;
+    }
+
+    /**
+     * Sends a short or extended length command APDU.
+     *
+     * @return number of bytes in {@link #response()}, or a negative device error
+     * @throws IllegalArgumentException if the APDU length does not match its Lc
+     */
+    public int transceive(byte[] apdu, int offset, int length) {
+        if (length < 4) {
+            throw new IllegalArgumentException("APDU shorter than 4 bytes");
+        }
+        byte cla = apdu[offset];
+        byte ins = apdu[offset + 1];
+        byte p1 = apdu[offset + 2];
+        byte p2 = apdu[offset + 3];
+        if (length == 4) {
+            return transceive(cla, ins, p1, p2, apdu, offset, 0, -1);
+        }
+        int b4 = apdu[offset + 4] & 0xff;
+        if (length == 5) {
+            return transceive(cla, ins, p1, p2, apdu, offset, 0, b4 == 0 ? 256 : b4);
+        }
+        if (b4 != 0) {
+            if (length == 5 + b4) {
+                return transceive(cla, ins, p1, p2, apdu, offset + 5, b4, -1);
+            }
+            if (length == 6 + b4) {
+                int le = apdu[offset + length - 1] & 0xff;
+                return transceive(cla, ins, p1, p2, apdu, offset + 5, b4, le == 0 ? 256 : le);
+            }
+        } else if (length >= 7) {
+            int ext = ByteUtil.getUShortBE(apdu, offset + 5);
+            if (length == 7) {
+                return transceive(cla, ins, p1, p2, apdu, offset, 0, ext == 0 ? 65536 : ext);
+            }
+            if (length == 7 + ext) {
+                return transceive(cla, ins, p1, p2, apdu, offset + 7, ext, -1);
+            }
+            if (length == 9 + ext) {
+                int le = ByteUtil.getUShortBE(apdu, offset + length - 2);
+                return transceive(cla, ins, p1, p2, apdu, offset + 7, ext, le == 0 ? 65536 : le);
+            }
+        }
+        throw new IllegalArgumentException("APDU length " + length + " does not match its Lc");
+    }
+
+    /**
+     * Sends a command with any amount of data, chaining it if needed.
+     *
+     * @param le expected response length, -1 for none; values above 256 are requested
+     *           as 256 and the rest collected with GET RESPONSE
+     * @return number of bytes in {@link #response()}, or a negative device error
+     */
+    public int transceive(byte cla, byte ins, byte p1, byte p2, byte[] data, int offset, int length, int le) {
+        int sent = 0;
+        do {
+            int n = Math.min(length - sent, chunkSize);
+            boolean last = sent + n == length;
+            int cmdLen = 0;
+            cmd[cmdLen++] = last ? cla : (byte) (cla | 0x10);
+            cmd[cmdLen++] = ins;
+            cmd[cmdLen++] = p1;
+            cmd[cmdLen++] = p2;
+            if (n > 0) {
+                cmd[cmdLen++] = (byte) n;
+                System.arraycopy(data, offset + sent, cmd, cmdLen, n);
+                cmdLen += n;
+            }
+            sent += n;
+            if (!last) {
+                int ret = exchange(cmdLen, false);
+                if (ret < 0 || !isSuccess(ret)) {
+                    return ret;
+                }
+                continue;
+            }
+            if (le >= 0) {
+                cmd[cmdLen++] = (byte) (le >= 256 ? 0 : le);
+            }
+            return exchange(cmdLen, le >= 0);
+        } while (true);
+    }
+
+    @Override
+    public int transmit(byte[] apdu, int apduLen, byte[] resp) {
+        int len = transceive(apdu, 0, apduLen);
+        if (len < 0) {
+            return len;
+        }
+        if (len > resp.length) {
+            return ERR_BUFFER_TOO_SMALL;
+        }
+        System.arraycopy(response, 0, resp, 0, len);
+        return len;
+    }
+
+    private boolean isSuccess(int len) {
+        return response[len - 2] == (byte) 0x90 && response[len - 1] == 0;
+    }
+
+    /**
+     * Sends {@code cmd} and follows 61xx / 6Cxx until a final status word.
+     */
+    private int exchange(int cmdLen, boolean hasLe) {
+        int total = 0;
+        boolean leCorrected = false;
+        for (int round = 0; round < MAX_RESPONSE_ROUNDS; round++) {
+            int n = channel.transmit(cmd, cmdLen, chunk);
+            if (n < 0) {
+                return n;
+            }
+            if (n < 2) {
+                return ERR_NO_STATUS_WORD;
+            }
+            byte sw1 = chunk[n - 2];
+            byte sw2 = chunk[n - 1];
+            if (sw1 == 0x6C && !leCorrected) {
+                if (!hasLe) {
+                    cmdLen++;
+                    hasLe = true;
+                }
+                cmd[cmdLen - 1] = sw2;
+                leCorrected = true;
+                continue;
+            }
+            ensure(total + n);
+            System.arraycopy(chunk, 0, response, total, n - 2);
+            total += n - 2;
+            if (sw1 != 0x61) {
+                response[total++] = sw1;
+                response[total++] = sw2;
+                return total;
+            }
+            // GET RESPONSE on the same logical channel: bits 1-2 for channels 0-3,
+            // 0x40 and bits 1-4 for the further interindustry channels 4-19
+            cmd[0] = (byte) ((cmd[0] & 0x40) == 0 ? cmd[0] & 0x03 : cmd[0] & 0x4F);
+            cmd[1] = (byte) 0xC0;
+            cmd[2] = 0;
+            cmd[3] = 0;
+            cmd[4] = sw2;
+            cmdLen = 5;
+            hasLe = true;
+            leCorrected = false;
+        }
+        return ERR_TOO_MANY_RESPONSES;
+    }
+
+    private void ensure(int capacity) {
+        if (capacity > response.length) {
+            byte[] grown = new byte[Math.max(response.length * 2, capacity)];
+            System.arraycopy(response, 0, grown, 0, response.length);
+            response = grown;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ctk.sdk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer / single-consumer byte ring.
+ *
+ * One thread calls {@link #write}, one other thread calls {@link #get},
+ * {@link #read} and {@link #skip}; {@link #available} may be called from either.
+ * Positions only grow, so full and empty are told apart without a spare slot.
+ */
+public class ByteRingBuffer {
+    private final byte[] buf;
+    private final int mask;
+    // next position to read, written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // next position to write, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public ByteRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buf = new byte[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return buf.length;
+    }
+
+    public int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Producer side. Copies as much of {@code src} as fits.
+     *
+     * @return bytes written, 0 when the ring is full
+     */
+    public int write(byte[] src, int off, int len) {
+        long t = tail.get();
+        int free = buf.length - (int) (t - head.get());
+        int n = Math.min(len, free);
+        if (n <= 0) {
+            return 0;
+        }
+        int pos = (int) t & mask;
+        int first = Math.min(n, buf.length - pos);
+        System.arraycopy(src, off, buf, pos, first);
+        System.arraycopy(src, off + first, buf, 0, n - first);
+        // publishes the bytes above to the consumer
+        tail.lazySet(t + n);
+        return n;
+    }
+
+    /**
+     * Consumer side. Byte {@code index} past the read position, without consuming it.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= available()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", available " + available());
+        }
+        return buf[(int) (head.get() + index) & mask] & 0xff;
+    }
+
+    /**
+     * Consumer side. Moves up to {@code len} bytes into {@code dst}.
+     *
+     * @return bytes read
+     */
+    public int read(byte[] dst, int off, int len) {
+        long h = head.get();
+        int n = Math.min(len, (int) (tail.get() - h));
+        if (n <= 0) {
+            return 0;
+        }
+        int pos = (int) h & mask;
+        int first = Math.min(n, buf.length - pos);
+        System.arraycopy(buf, pos, dst, off, first);
+        System.arraycopy(buf, 0, dst, off + first, n - first);
+        head.lazySet(h + n);
+        return n;
+    }
+
+    /**
+     * Consumer side. Drops {@code n} bytes.
+     */
+    public void skip(int n) {
+        if (n < 0 || n > available()) {
+            throw new IndexOutOfBoundsException("Skip " + n + ", available " + available());
+        }
+        head.lazySet(head.get() + n);
+    }
+}
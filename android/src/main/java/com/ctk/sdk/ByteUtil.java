@@ -2,11 +2,8 @@ package com.ctk.sdk;
 
 import android.annotation.SuppressLint;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 @SuppressLint("UseValueOf")
 public class ByteUtil {
@@ -24,39 +21,22 @@ public class ByteUtil {
     }
 
     public static byte[] iToBytes(int n) {
-        byte[] byteArray = null;
-        try {
-            ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-            DataOutputStream dataOut = new DataOutputStream(byteOut);
-            dataOut.writeInt(n);
-            byteArray = byteOut.toByteArray();
-//			for (byte b : byteArray) {
-//				Log.e("liuhao", "byte b :" + b);
-//			}
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        byte[] byteArray = new byte[4];
+        putIntBE(byteArray, 0, n);
         return byteArray;
     }
 
     /**
-     * 字节数组转换成整数 关键技术：ByteArrayInputStream和DataInputStream
+     * 字节数组前4字节按大端转换成整数
      *
      * @param byteArray 需要转换的字节数组
      * @return
      */
     public static int bytesToInt(byte[] byteArray) {
-        int n = 0;
-        try {
-            ByteArrayInputStream byteInput = new ByteArrayInputStream(byteArray);
-            DataInputStream dataInput = new DataInputStream(byteInput);
-            n = dataInput.readInt();
-//			Log.e("liuhao", "整数为： " + n);
-        } catch (IOException e) {
-// TODO Auto-generated catch block
-            e.printStackTrace();
+        if (byteArray.length < 4) {
+            return 0;
         }
-        return n;
+        return getIntBE(byteArray, 0);
     }
 
 
@@ -104,14 +84,18 @@ public class ByteUtil {
     }
 
     public static String bytearrayToHexString(byte[] b, int leng) {
-        StringBuffer strbuf = new StringBuffer();
-
+        if (leng <= 0) {
+            return "";
+        }
+        char[] out = new char[leng * 3];
+        int p = 0;
         for (int i = 0; i < leng; i++) {
-            strbuf.append("0123456789ABCDEF".charAt(((byte) ((b[i] & 0xf0) >> 4))));
-            strbuf.append("0123456789ABCDEF".charAt((byte) (b[i] & 0x0f)));
-            strbuf.append(" ");
+            int idx = (b[i] & 0xff) << 1;
+            out[p++] = HEX_PAIRS_UPPER[idx];
+            out[p++] = HEX_PAIRS_UPPER[idx + 1];
+            out[p++] = ' ';
         }
-        return strbuf.toString();
+        return new String(out);
     }
 
     public static byte[] stringToBytes(String s) {
@@ -140,11 +124,7 @@ public class ByteUtil {
 
     //瀛楄妭杞负瀛楃涓?
     public static String byteToHexString(byte b) {
-
-        StringBuffer sbBuffer = new StringBuffer();
-        sbBuffer.append("0123456789ABCDEF".charAt((int) ((b >> 4) & 0x0F)));
-        sbBuffer.append("0123456789ABCDEF".charAt((int) (b & 0x0F)));
-        return sbBuffer.toString();
+        return new String(HEX_PAIRS_UPPER, (b & 0xff) << 1, 2);
     }
 
     public static void IntToBytes(byte[] b, int x, int offset) {
@@ -415,9 +395,7 @@ public class ByteUtil {
     public static void encodeOutputBytes(byte[] b, short sLen) {
         if (b.length >= sLen + 2) {
             System.arraycopy(b, 0, b, 2, sLen);
-            byte[] byShort = new byte[2];
-            ShortToBytes(byShort, sLen, 0);
-            System.arraycopy(byShort, 0, b, 0, byShort.length);
+            putShortLE(b, 0, sLen);
         }
     }
 
@@ -425,26 +403,379 @@ public class ByteUtil {
      * 锟斤拷byte[]锟斤拷锟斤拷锟斤拷锟斤拷锟叫凤拷锟斤拷锟斤拷(锟斤拷实锟斤拷锟斤拷锟捷筹拷锟斤拷锟皆凤拷锟斤拷值锟斤拷式锟斤拷锟斤拷)
      */
     public static short decodeOutputBytes(byte[] b) {
-        byte[] byShort = new byte[2];
-        System.arraycopy(b, 0, byShort, 0, byShort.length);
-        short sLen = BytesToShort(byShort, 0);
+        short sLen = getShortLE(b, 0);
 
         System.arraycopy(b, 2, b, 0, sLen);
 
         return sLen;
     }
 
+    /*
+     * In-place primitive codecs. They read and write at an offset of the caller's array
+     * and never allocate; callers holding a ByteBuffer view can use its absolute
+     * getShort/getInt/getLong and the ByteBuffer overloads below for BCD and
+     * length-prefixed fields.
+     */
+
+    public static void putShortBE(byte[] b, int offset, int x) {
+        b[offset] = (byte) (x >> 8);
+        b[offset + 1] = (byte) x;
+    }
+
+    public static void putShortLE(byte[] b, int offset, int x) {
+        b[offset] = (byte) x;
+        b[offset + 1] = (byte) (x >> 8);
+    }
+
+    public static short getShortBE(byte[] b, int offset) {
+        return (short) ((b[offset] << 8) | (b[offset + 1] & 0xff));
+    }
+
+    public static short getShortLE(byte[] b, int offset) {
+        return (short) ((b[offset + 1] << 8) | (b[offset] & 0xff));
+    }
+
+    public static int getUShortBE(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 8) | (b[offset + 1] & 0xff);
+    }
+
+    public static int getUShortLE(byte[] b, int offset) {
+        return ((b[offset + 1] & 0xff) << 8) | (b[offset] & 0xff);
+    }
+
+    public static void putIntBE(byte[] b, int offset, int x) {
+        b[offset] = (byte) (x >> 24);
+        b[offset + 1] = (byte) (x >> 16);
+        b[offset + 2] = (byte) (x >> 8);
+        b[offset + 3] = (byte) x;
+    }
+
+    public static void putIntLE(byte[] b, int offset, int x) {
+        b[offset] = (byte) x;
+        b[offset + 1] = (byte) (x >> 8);
+        b[offset + 2] = (byte) (x >> 16);
+        b[offset + 3] = (byte) (x >> 24);
+    }
+
+    public static int getIntBE(byte[] b, int offset) {
+        return (b[offset] << 24)
+                | ((b[offset + 1] & 0xff) << 16)
+                | ((b[offset + 2] & 0xff) << 8)
+                | (b[offset + 3] & 0xff);
+    }
+
+    public static int getIntLE(byte[] b, int offset) {
+        return (b[offset + 3] << 24)
+                | ((b[offset + 2] & 0xff) << 16)
+                | ((b[offset + 1] & 0xff) << 8)
+                | (b[offset] & 0xff);
+    }
+
+    public static void putLongBE(byte[] b, int offset, long x) {
+        putIntBE(b, offset, (int) (x >> 32));
+        putIntBE(b, offset + 4, (int) x);
+    }
+
+    public static void putLongLE(byte[] b, int offset, long x) {
+        putIntLE(b, offset, (int) x);
+        putIntLE(b, offset + 4, (int) (x >> 32));
+    }
+
+    public static long getLongBE(byte[] b, int offset) {
+        return ((long) getIntBE(b, offset) << 32) | (getIntBE(b, offset + 4) & 0xffffffffL);
+    }
+
+    public static long getLongLE(byte[] b, int offset) {
+        return ((long) getIntLE(b, offset + 4) << 32) | (getIntLE(b, offset) & 0xffffffffL);
+    }
+
+    /**
+     * Writes {@code value} as packed BCD into {@code len} bytes, right aligned and zero
+     * padded, as used by EMV amounts (e.g. 9F02 is 6 bytes, 12 digits).
+     *
+     * @throws IllegalArgumentException if the value is negative or needs more than
+     *                                  {@code len * 2} digits
+     */
+    public static void putBcd(byte[] b, int offset, int len, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative BCD value " + value);
+        }
+        long rest = value;
+        for (int i = offset + len - 1; i >= offset; i--) {
+            int lo = (int) (rest % 10);
+            rest /= 10;
+            int hi = (int) (rest % 10);
+            rest /= 10;
+            b[i] = (byte) ((hi << 4) | lo);
+        }
+        if (rest != 0) {
+            throw new IllegalArgumentException(value + " does not fit in " + len + " BCD bytes");
+        }
+    }
+
+    /**
+     * Reads {@code len} bytes of packed BCD, at most 9 bytes (18 digits).
+     *
+     * @throws IllegalArgumentException on a nibble above 9
+     */
+    public static long getBcd(byte[] b, int offset, int len) {
+        long value = 0;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            int hi = (b[i] >> 4) & 0x0f;
+            int lo = b[i] & 0x0f;
+            if (hi > 9 || lo > 9) {
+                throw new IllegalArgumentException("Invalid BCD byte at " + i);
+            }
+            value = value * 100 + hi * 10 + lo;
+        }
+        return value;
+    }
+
+    /**
+     * {@link #putBcd(byte[], int, int, long)} at an absolute index of a buffer view.
+     */
+    public static void putBcd(ByteBuffer buf, int index, int len, long value) {
+        if (buf.hasArray()) {
+            putBcd(buf.array(), buf.arrayOffset() + index, len, value);
+            return;
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative BCD value " + value);
+        }
+        long rest = value;
+        for (int i = index + len - 1; i >= index; i--) {
+            int lo = (int) (rest % 10);
+            rest /= 10;
+            int hi = (int) (rest % 10);
+            rest /= 10;
+            buf.put(i, (byte) ((hi << 4) | lo));
+        }
+        if (rest != 0) {
+            throw new IllegalArgumentException(value + " does not fit in " + len + " BCD bytes");
+        }
+    }
+
+    /**
+     * {@link #getBcd(byte[], int, int)} at an absolute index of a buffer view.
+     */
+    public static long getBcd(ByteBuffer buf, int index, int len) {
+        if (buf.hasArray()) {
+            return getBcd(buf.array(), buf.arrayOffset() + index, len);
+        }
+        long value = 0;
+        for (int i = index, end = index + len; i < end; i++) {
+            byte v = buf.get(i);
+            int hi = (v >> 4) & 0x0f;
+            int lo = v & 0x0f;
+            if (hi > 9 || lo > 9) {
+                throw new IllegalArgumentException("Invalid BCD byte at " + i);
+            }
+            value = value * 100 + hi * 10 + lo;
+        }
+        return value;
+    }
+
+    /**
+     * Writes a 2 byte little-endian length followed by {@code len} bytes of {@code src},
+     * the layout of {@link #encodeOutputBytes}. {@code src} may be {@code b} itself.
+     *
+     * @return number of bytes written
+     */
+    public static int putLengthPrefixed(byte[] b, int offset, byte[] src, int srcOff, int len) {
+        System.arraycopy(src, srcOff, b, offset + 2, len);
+        putShortLE(b, offset, len);
+        return len + 2;
+    }
+
+    /**
+     * Length of a field written by {@link #putLengthPrefixed}; the data starts at
+     * {@code offset + 2}.
+     */
+    public static int getLengthPrefix(byte[] b, int offset) {
+        return getUShortLE(b, offset);
+    }
+
+    /**
+     * {@link #putLengthPrefixed} at the position of a buffer view, honouring its byte
+     * order for the length. Advances the position.
+     */
+    public static void putLengthPrefixed(ByteBuffer buf, byte[] src, int srcOff, int len) {
+        buf.putShort((short) len);
+        buf.put(src, srcOff, len);
+    }
+
+    /**
+     * Reads a length prefix at the position of a buffer view and returns it, leaving the
+     * position at the start of the data.
+     */
+    public static int getLengthPrefix(ByteBuffer buf) {
+        return buf.getShort() & 0xffff;
+    }
+
     public static String hexStr2Str(String hexStr) {
-        String str = "0123456789ABCDEF";
-        char[] hexs = hexStr.toCharArray();
         byte[] bytes = new byte[hexStr.length() / 2];
-        int n;
+        decodeHex(hexStr, 0, bytes.length * 2, bytes, 0);
+        return new String(bytes);
+    }
 
-        for (int i = 0; i < bytes.length; i++) {
-            n = str.indexOf(hexs[2 * i]) * 16;
-            n += str.indexOf(hexs[2 * i + 1]);
-            bytes[i] = (byte) (n & 0xff);
+    /**
+     * Hex digits for every byte value, two chars per value at index {@code (b & 0xff) << 1}.
+     */
+    private static final char[] HEX_PAIRS_UPPER = hexPairs("0123456789ABCDEF");
+    private static final char[] HEX_PAIRS_LOWER = hexPairs("0123456789abcdef");
+
+    /**
+     * Nibble value of every ASCII char, -1 for chars that are not hex digits.
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
         }
-        return new String(bytes);
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    /**
+     * Pass as separator to encode without one.
+     */
+    public static final char NO_SEPARATOR = 0;
+
+    private static char[] hexPairs(String digits) {
+        char[] pairs = new char[512];
+        for (int i = 0; i < 256; i++) {
+            pairs[i << 1] = digits.charAt(i >>> 4);
+            pairs[(i << 1) + 1] = digits.charAt(i & 0x0f);
+        }
+        return pairs;
+    }
+
+    /**
+     * Number of chars {@link #encodeHex} writes for {@code len} bytes.
+     */
+    public static int hexLength(int len, char separator) {
+        if (len <= 0) {
+            return 0;
+        }
+        return separator == NO_SEPARATOR ? len * 2 : len * 3 - 1;
+    }
+
+    /**
+     * Encodes {@code len} bytes of {@code src} into {@code dst} starting at {@code dstOff}.
+     * The separator, if any, is written between bytes, not after the last one.
+     *
+     * @return number of chars written
+     */
+    public static int encodeHex(byte[] src, int srcOff, int len, char[] dst, int dstOff,
+                                char separator, boolean upperCase) {
+        char[] pairs = upperCase ? HEX_PAIRS_UPPER : HEX_PAIRS_LOWER;
+        int p = dstOff;
+        for (int i = 0; i < len; i++) {
+            if (separator != NO_SEPARATOR && i > 0) {
+                dst[p++] = separator;
+            }
+            int idx = (src[srcOff + i] & 0xff) << 1;
+            dst[p++] = pairs[idx];
+            dst[p++] = pairs[idx + 1];
+        }
+        return p - dstOff;
+    }
+
+    /**
+     * Appends {@code len} bytes of {@code src} to {@code dst} as hex.
+     *
+     * @return {@code dst}
+     */
+    public static StringBuilder encodeHex(byte[] src, int srcOff, int len, StringBuilder dst,
+                                          char separator, boolean upperCase) {
+        char[] pairs = upperCase ? HEX_PAIRS_UPPER : HEX_PAIRS_LOWER;
+        dst.ensureCapacity(dst.length() + hexLength(len, separator));
+        for (int i = 0; i < len; i++) {
+            if (separator != NO_SEPARATOR && i > 0) {
+                dst.append(separator);
+            }
+            int idx = (src[srcOff + i] & 0xff) << 1;
+            dst.append(pairs[idx]).append(pairs[idx + 1]);
+        }
+        return dst;
+    }
+
+    /**
+     * Upper case hex of {@code len} bytes of {@code src}, without separators.
+     */
+    public static String toHexString(byte[] src, int srcOff, int len) {
+        char[] out = new char[hexLength(len, NO_SEPARATOR)];
+        encodeHex(src, srcOff, len, out, 0, NO_SEPARATOR, true);
+        return new String(out);
+    }
+
+    /**
+     * Decodes {@code srcLen} chars of hex from {@code src} into {@code dst} starting at
+     * {@code dstOff}. Digits may be upper or lower case; spaces, ':' and '-' are skipped
+     * between bytes.
+     *
+     * @return number of bytes written
+     * @throws IllegalArgumentException on a non hex char, a separator inside a byte or an
+     *                                  odd number of digits
+     */
+    public static int decodeHex(CharSequence src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        int p = dstOff;
+        int hi = -1;
+        for (int i = srcOff, end = srcOff + srcLen; i < end; i++) {
+            char c = src.charAt(i);
+            int v = c < 128 ? HEX_VALUES[c] : -1;
+            if (v < 0) {
+                if (hi < 0 && isHexSeparator(c)) {
+                    continue;
+                }
+                throw new IllegalArgumentException("Invalid hex char '" + c + "' at " + i);
+            }
+            if (hi < 0) {
+                hi = v;
+            } else {
+                dst[p++] = (byte) ((hi << 4) | v);
+                hi = -1;
+            }
+        }
+        if (hi >= 0) {
+            throw new IllegalArgumentException("Odd number of hex digits");
+        }
+        return p - dstOff;
+    }
+
+    /**
+     * {@link #decodeHex(CharSequence, int, int, byte[], int)} over a char array.
+     */
+    public static int decodeHex(char[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+        int p = dstOff;
+        int hi = -1;
+        for (int i = srcOff, end = srcOff + srcLen; i < end; i++) {
+            char c = src[i];
+            int v = c < 128 ? HEX_VALUES[c] : -1;
+            if (v < 0) {
+                if (hi < 0 && isHexSeparator(c)) {
+                    continue;
+                }
+                throw new IllegalArgumentException("Invalid hex char '" + c + "' at " + i);
+            }
+            if (hi < 0) {
+                hi = v;
+            } else {
+                dst[p++] = (byte) ((hi << 4) | v);
+                hi = -1;
+            }
+        }
+        if (hi >= 0) {
+            throw new IllegalArgumentException("Odd number of hex digits");
+        }
+        return p - dstOff;
+    }
+
+    private static boolean isHexSeparator(char c) {
+        return c == ' ' || c == ':' || c == '-';
     }
 }
@@ -1,16 +1,35 @@
 package com.ctk.sdk;
 
-
-//
-// Source code recreated from a .class file by IntelliJ IDEA
-// (powered by FernFlower decompiler)
-//
-
-
-
-import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging that costs a level check and a few field writes on the calling thread.
+ *
+ * A record (level, tag, message or format and up to three arguments, time) goes into a
+ * preallocated ring; a daemon thread formats it and writes it to logcat and, if set,
+ * to a file. {@code {}} in a format is replaced by the next argument, so use the
+ * overloads with arguments instead of concatenating: nothing is formatted when the
+ * level is off, and what is formatted is formatted off the hot path. Arguments are
+ * formatted later, so pass values that do not change afterwards. When the ring is
+ * full records are dropped and counted rather than block the caller.
+ *
+ * The caller's file, line and method are only added when {@link #setCallerInfo} is
+ * on, since finding them walks the stack.
+ *
+ * Thread safe.
+ */
 public class DebugLogUtil {
     public static final int VERBOSE = 1;
     public static final int DEBUG = 2;
@@ -18,7 +37,52 @@ public class DebugLogUtil {
     public static final int WARN = 4;
     public static final int ERROR = 5;
     public static final int NOTHING = 6;
-    public static int LEVEL = 1;
+    public static volatile int LEVEL = 1;
+
+    public static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final String TAG = "DebugLogUtil";
+    private static final int[] PRIORITIES = {0, Log.VERBOSE, Log.DEBUG, Log.INFO, Log.WARN, Log.ERROR};
+    private static final String LEVEL_CHARS = " VDIWE";
+
+    /**
+     * Receives formatted records on the drain thread.
+     */
+    interface Sink {
+        void write(int level, String tag, String message);
+    }
+
+    private static final class Record {
+        int level;
+        String tag;
+        String format;
+        int argCount;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+        long time;
+        StackTraceElement caller;
+    }
+
+    private static final Record[] ring = new Record[CAPACITY];
+    // sequence stored in a slot once its record is complete
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong head = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Record();
+            published.set(i, -1);
+        }
+    }
+
+    private static volatile boolean callerInfo;
+    private static volatile Sink sink = DebugLogUtil::logcat;
+    private static volatile File logFile;
+    private static volatile Thread drainer;
+    private static volatile boolean drainerParked;
 
     public DebugLogUtil() {
     }
@@ -27,68 +91,311 @@ public class DebugLogUtil {
         LEVEL = Level;
     }
 
+    public static boolean isLoggable(int level) {
+        return LEVEL <= level;
+    }
+
+    /**
+     * Prefix each record with the caller's file, line and method; off by default.
+     */
+    public static void setCallerInfo(boolean enabled) {
+        callerInfo = enabled;
+    }
+
+    /**
+     * Also append records to {@code file}, null to stop.
+     */
+    public static void setLogFile(File file) {
+        logFile = file;
+    }
+
+    /**
+     * Records dropped because the ring was full.
+     */
+    public static long getDropped() {
+        return dropped.get();
+    }
+
     public static void v(String TAG, String msg) {
-        if (LEVEL <= 1 && !TextUtils.isEmpty(msg)) {
-            MyLog(1, TAG, msg);
+        if (LEVEL <= 1 && msg != null && !msg.isEmpty()) {
+            MyLog(1, TAG, msg, 0, null, null, null);
         }
+    }
 
+    public static void v(String TAG, String format, Object arg) {
+        if (LEVEL <= 1) {
+            MyLog(1, TAG, format, 1, arg, null, null);
+        }
+    }
+
+    public static void v(String TAG, String format, Object arg1, Object arg2) {
+        if (LEVEL <= 1) {
+            MyLog(1, TAG, format, 2, arg1, arg2, null);
+        }
     }
 
     public static void d(String TAG, String msg) {
-        if (LEVEL <= 2 && !TextUtils.isEmpty(msg)) {
-            MyLog(2, TAG, msg);
+        if (LEVEL <= 2 && msg != null && !msg.isEmpty()) {
+            MyLog(2, TAG, msg, 0, null, null, null);
         }
+    }
 
+    public static void d(String TAG, String format, Object arg) {
+        if (LEVEL <= 2) {
+            MyLog(2, TAG, format, 1, arg, null, null);
+        }
+    }
+
+    public static void d(String TAG, String format, Object arg1, Object arg2) {
+        if (LEVEL <= 2) {
+            MyLog(2, TAG, format, 2, arg1, arg2, null);
+        }
+    }
+
+    public static void d(String TAG, String format, Object arg1, Object arg2, Object arg3) {
+        if (LEVEL <= 2) {
+            MyLog(2, TAG, format, 3, arg1, arg2, arg3);
+        }
     }
 
     public static void i(String TAG, String msg) {
-        if (LEVEL <= 3 && !TextUtils.isEmpty(msg)) {
-            MyLog(3, TAG, msg);
+        if (LEVEL <= 3 && msg != null && !msg.isEmpty()) {
+            MyLog(3, TAG, msg, 0, null, null, null);
+        }
+    }
+
+    public static void i(String TAG, String format, Object arg) {
+        if (LEVEL <= 3) {
+            MyLog(3, TAG, format, 1, arg, null, null);
         }
+    }
 
+    public static void i(String TAG, String format, Object arg1, Object arg2) {
+        if (LEVEL <= 3) {
+            MyLog(3, TAG, format, 2, arg1, arg2, null);
+        }
     }
 
     public static void w(String TAG, String msg) {
-        if (LEVEL <= 4 && !TextUtils.isEmpty(msg)) {
-            MyLog(4, TAG, msg);
+        if (LEVEL <= 4 && msg != null && !msg.isEmpty()) {
+            MyLog(4, TAG, msg, 0, null, null, null);
         }
+    }
 
+    public static void w(String TAG, String format, Object arg) {
+        if (LEVEL <= 4) {
+            MyLog(4, TAG, format, 1, arg, null, null);
+        }
     }
 
     public static void e(String TAG, String msg) {
-        if (LEVEL <= 5 && !TextUtils.isEmpty(msg)) {
-            MyLog(5, TAG, msg);
-        }
-
-    }
-
-    private static void MyLog(int type, String TAG, String msg) {
-        StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-        int index = 4;
-        String className = stackTrace[index].getFileName();
-        String methodName = stackTrace[index].getMethodName();
-        int lineNumber = stackTrace[index].getLineNumber();
-        methodName = methodName.substring(0, 1).toUpperCase() + methodName.substring(1);
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("[ (").append(className).append(":").append(lineNumber).append(")#").append(methodName).append(" ] ");
-        stringBuilder.append(msg);
-        String logStr = stringBuilder.toString();
-        switch(type) {
-            case 1:
-                Log.v(TAG, logStr);
-                break;
-            case 2:
-                Log.d(TAG, logStr);
-                break;
-            case 3:
-                Log.i(TAG, logStr);
-                break;
-            case 4:
-                Log.w(TAG, logStr);
-                break;
-            case 5:
-                Log.e(TAG, logStr);
+        if (LEVEL <= 5 && msg != null && !msg.isEmpty()) {
+            MyLog(5, TAG, msg, 0, null, null, null);
         }
+    }
+
+    public static void e(String TAG, String format, Object arg) {
+        if (LEVEL <= 5) {
+            MyLog(5, TAG, format, 1, arg, null, null);
+        }
+    }
+
+    /**
+     * Waits until every record logged so far has been written.
+     *
+     * @return false if that did not happen within {@code timeoutMs}
+     */
+    public static boolean flush(long timeoutMs) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + timeoutMs * 1000000;
+        while (head.get() < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            wakeDrainer();
+            LockSupport.parkNanos(100000);
+        }
+        return true;
+    }
+
+    private static void MyLog(int type, String TAG, String format, int argCount, Object arg1, Object arg2,
+                              Object arg3) {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head.get() >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        Record r = ring[(int) (seq & MASK)];
+        r.level = type;
+        r.tag = TAG;
+        r.format = format;
+        r.argCount = argCount;
+        r.arg1 = arg1;
+        r.arg2 = arg2;
+        r.arg3 = arg3;
+        r.time = System.currentTimeMillis();
+        // MyLog <- v/d/i/w/e <- caller
+        r.caller = callerInfo ? new Throwable().getStackTrace()[2] : null;
+        // a full fence, so the drainerParked read below is not reordered before it
+        published.set((int) (seq & MASK), seq);
+        if (drainer == null) {
+            startDrainer();
+        } else if (drainerParked) {
+            wakeDrainer();
+        }
+    }
+
+    private static synchronized void startDrainer() {
+        if (drainer == null) {
+            Thread t = new Thread(DebugLogUtil::drain, TAG);
+            t.setDaemon(true);
+            drainer = t;
+            t.start();
+        }
+    }
+
+    private static void wakeDrainer() {
+        Thread t = drainer;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private static void drain() {
+        StringBuilder sb = new StringBuilder(256);
+        Writer out = null;
+        File openFile = null;
+        SimpleDateFormat time = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        long reportedDropped = 0;
+        while (true) {
+            long seq = head.get();
+            int slot = (int) (seq & MASK);
+            if (published.get(slot) != seq) {
+                // empty, or the producer of this slot is still filling it
+                if (out != null) {
+                    try {
+                        out.flush();
+                    } catch (Throwable t) {
+                        // tried again on the next flush
+                    }
+                }
+                drainerParked = true;
+                if (published.get(slot) != seq) {
+                    LockSupport.parkNanos(50000000);
+                }
+                drainerParked = false;
+                continue;
+            }
+            Record r = ring[slot];
+            try {
+                sb.setLength(0);
+                if (r.caller != null) {
+                    sb.append("[ (").append(r.caller.getFileName()).append(':').append(r.caller.getLineNumber())
+                            .append(")#").append(r.caller.getMethodName()).append(" ] ");
+                }
+                format(sb, r);
+                String message = sb.toString();
+                int level = r.level;
+                String tag = r.tag;
+                long when = r.time;
+                clear(r);
+
+                sink.write(level, tag, message);
+                File file = logFile;
+                if (file != openFile) {
+                    out = closeQuietly(out);
+                    openFile = file;
+                    if (file != null) {
+                        try {
+                            out = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+                        } catch (IOException e) {
+                            Log.e(TAG, "Failed to open " + file, e);
+                        }
+                    }
+                }
+                if (out != null) {
+                    try {
+                        out.write(time.format(new Date(when)));
+                        out.write(' ');
+                        out.write(LEVEL_CHARS.charAt(level));
+                        out.write('/');
+                        out.write(String.valueOf(tag));
+                        out.write(": ");
+                        out.write(message);
+                        out.write('\n');
+                    } catch (IOException e) {
+                        out = closeQuietly(out);
+                        Log.e(TAG, "Failed to write log file", e);
+                    }
+                }
+            } catch (Throwable t) {
+                // a throwing toString, sink or logcat loses this record, not the drainer
+                clear(r);
+            }
+            // frees the slot; after the write so that flush covers it
+            head.lazySet(seq + 1);
+            long d = dropped.get();
+            if (d != reportedDropped && published.get((int) ((seq + 1) & MASK)) != seq + 1) {
+                // caught up; say how much was lost
+                long lost = d - reportedDropped;
+                reportedDropped = d;
+                try {
+                    sink.write(WARN, TAG, lost + " log records dropped");
+                } catch (Throwable t) {
+                    // the drainer keeps going without the report
+                }
+            }
+        }
+    }
+
+    private static void format(StringBuilder sb, Record r) {
+        String format = String.valueOf(r.format);
+        if (r.argCount == 0) {
+            sb.append(format);
+            return;
+        }
+        int arg = 0;
+        int start = 0;
+        int i;
+        while (arg < r.argCount && (i = format.indexOf("{}", start)) >= 0) {
+            sb.append(format, start, i).append(arg == 0 ? r.arg1 : arg == 1 ? r.arg2 : r.arg3);
+            start = i + 2;
+            arg++;
+        }
+        sb.append(format, start, format.length());
+    }
+
+    private static void clear(Record r) {
+        r.tag = null;
+        r.format = null;
+        r.arg1 = null;
+        r.arg2 = null;
+        r.arg3 = null;
+        r.caller = null;
+    }
+
+    private static Writer closeQuietly(Writer out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // nothing left to do with it
+            }
+        }
+        return null;
+    }
+
+    private static void logcat(int level, String tag, String message) {
+        Log.println(PRIORITIES[level], tag, message);
+    }
 
+    /**
+     * Replaces logcat as the destination, for tests.
+     */
+    static void setSink(Sink s) {
+        sink = s != null ? s : DebugLogUtil::logcat;
     }
 }
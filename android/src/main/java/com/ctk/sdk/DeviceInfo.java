@@ -0,0 +1,322 @@
+package com.ctk.sdk;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Identity of the terminal (OS and MCU firmware versions, device id, serial number,
+ * chip id), read once and then served from memory.
+ *
+ * The snapshot is kept in a JSON file so that a cold start can answer before the
+ * service is bound; the file is ignored when it was written under another
+ * {@code buildFingerprint}, so an OS update applied outside the app is noticed.
+ * Call {@link #invalidate} after a firmware update; the next {@link #get} reads the
+ * device again. Fields the device failed to return are left out of the result, and
+ * such an incomplete result is neither kept nor written: the next {@link #get} reads
+ * only the missing fields again.
+ *
+ * Thread safe.
+ */
+public class DeviceInfo {
+    private static final String TAG = "DeviceInfo";
+
+    public static final int VERSION_SIZE = 10;
+    public static final int SN_SIZE = 16;
+    public static final int CHIP_ID_SIZE = 16;
+
+    private static final String[] BYTE_FIELDS = {"firmwareVersion", "serialNumber", "chipId"};
+    private static final String[] DEVICE_FIELDS = {"osVersion", "deviceId", "apiVersion",
+            "firmwareVersion", "serialNumber", "chipId"};
+
+    /**
+     * Device calls read into the snapshot.
+     */
+    public interface Source {
+        String osVersion();
+
+        String deviceId();
+
+        String apiVersion();
+
+        int firmwareVersion(byte[] buf);
+
+        int serialNumber(byte[] buf);
+
+        int chipId(byte[] buf, int len);
+    }
+
+    public static Source source(final PosApiHelper posApiHelper) {
+        return new Source() {
+            @Override
+            public String osVersion() {
+                return posApiHelper.getOSVersion();
+            }
+
+            @Override
+            public String deviceId() {
+                return posApiHelper.getDeviceId();
+            }
+
+            @Override
+            public String apiVersion() {
+                return posApiHelper.SysApiVerson();
+            }
+
+            @Override
+            public int firmwareVersion(byte[] buf) {
+                return posApiHelper.SysGetVersion(buf);
+            }
+
+            @Override
+            public int serialNumber(byte[] buf) {
+                return posApiHelper.SysReadSN(buf);
+            }
+
+            @Override
+            public int chipId(byte[] buf, int len) {
+                return posApiHelper.SysReadChipID(buf, len);
+            }
+        };
+    }
+
+    private final Source source;
+    private final File file;
+    private final String buildFingerprint;
+    private volatile Map<String, Object> snapshot;
+    // what an incomplete collect did read, the base for the next one
+    private volatile Map<String, Object> partial;
+    // bumped by invalidate; a collect started before is not kept
+    private int generation;
+    // guards generation and the file, held only briefly so invalidate never waits for a collect
+    private final Object fileLock = new Object();
+
+    /**
+     * @param file             where the snapshot is kept, null for memory only
+     * @param buildFingerprint identifies the installed OS build, e.g. {@code Build.FINGERPRINT}
+     */
+    public DeviceInfo(Source source, File file, String buildFingerprint) {
+        this.source = source;
+        this.file = file;
+        this.buildFingerprint = buildFingerprint;
+    }
+
+    /**
+     * The complete snapshot if one is loaded, without touching the device or the disk.
+     */
+    public Map<String, Object> peek() {
+        return snapshot;
+    }
+
+    /**
+     * The snapshot, from memory, the file or the device in that order.
+     */
+    public Map<String, Object> get() {
+        Map<String, Object> s = snapshot;
+        if (s != null) {
+            return s;
+        }
+        synchronized (this) {
+            s = snapshot;
+            if (s != null) {
+                return s;
+            }
+            int gen = generation();
+            Map<String, Object> base = partial;
+            if (base == null) {
+                base = read();
+                if (base != null && isComplete(base)) {
+                    publish(base, gen, false);
+                    return base;
+                }
+            }
+            s = collect(base);
+            publish(s, gen, true);
+            return s;
+        }
+    }
+
+    /**
+     * Reads the device again and replaces the snapshot if every field was read.
+     */
+    public synchronized Map<String, Object> refresh() {
+        int gen = generation();
+        Map<String, Object> s = collect(null);
+        publish(s, gen, true);
+        return s;
+    }
+
+    /**
+     * Drops the snapshot from memory and disk. Does not wait for a collect in
+     * progress; its result is returned to its caller but not kept.
+     */
+    public void invalidate() {
+        synchronized (fileLock) {
+            generation++;
+            snapshot = null;
+            partial = null;
+            if (file != null && file.exists() && !file.delete()) {
+                Log.e(TAG, "Failed to delete " + file.getAbsolutePath());
+            }
+        }
+    }
+
+    private int generation() {
+        synchronized (fileLock) {
+            return generation;
+        }
+    }
+
+    /**
+     * Keeps and, if {@code persist}, writes a complete snapshot; keeps an incomplete
+     * one only as the base of the next collect.
+     */
+    private void publish(Map<String, Object> s, int gen, boolean persist) {
+        synchronized (fileLock) {
+            if (gen != generation) {
+                return;
+            }
+            if (!isComplete(s)) {
+                partial = s;
+                return;
+            }
+            if (persist) {
+                write(s);
+            }
+            partial = null;
+            snapshot = s;
+        }
+    }
+
+    private static boolean isComplete(Map<String, Object> s) {
+        for (String key : DEVICE_FIELDS) {
+            if (!s.containsKey(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the fields missing from {@code base}, or all of them.
+     */
+    private Map<String, Object> collect(Map<String, Object> base) {
+        Map<String, Object> s = base == null ? new HashMap<String, Object>() : new HashMap<>(base);
+        if (!s.containsKey("osVersion")) {
+            putIfPresent(s, "osVersion", source.osVersion());
+        }
+        if (!s.containsKey("deviceId")) {
+            putIfPresent(s, "deviceId", source.deviceId());
+        }
+        if (!s.containsKey("apiVersion")) {
+            putIfPresent(s, "apiVersion", source.apiVersion());
+        }
+        byte[] version = new byte[VERSION_SIZE];
+        if (!s.containsKey("firmwareVersion") && source.firmwareVersion(version) == 0) {
+            s.put("firmwareVersion", version);
+        }
+        byte[] sn = new byte[SN_SIZE];
+        if (!s.containsKey("serialNumber") && source.serialNumber(sn) == 0) {
+            s.put("serialNumber", sn);
+        }
+        byte[] chipId = new byte[CHIP_ID_SIZE];
+        if (!s.containsKey("chipId") && source.chipId(chipId, CHIP_ID_SIZE) == 0) {
+            s.put("chipId", chipId);
+        }
+        s.remove("buildFingerprint");
+        putIfPresent(s, "buildFingerprint", buildFingerprint);
+        s.put("collectedAt", System.currentTimeMillis());
+        return Collections.unmodifiableMap(s);
+    }
+
+    private static void putIfPresent(Map<String, Object> s, String key, String value) {
+        if (value != null) {
+            s.put(key, value);
+        }
+    }
+
+    private Map<String, Object> read() {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        try {
+            byte[] data = new byte[(int) file.length()];
+            FileInputStream fis = new FileInputStream(file);
+            try {
+                int off = 0;
+                while (off < data.length) {
+                    int n = fis.read(data, off, data.length - off);
+                    if (n < 0) {
+                        throw new IOException("Truncated " + file.getAbsolutePath());
+                    }
+                    off += n;
+                }
+            } finally {
+                fis.close();
+            }
+            JSONObject json = new JSONObject(new String(data, "UTF-8"));
+            if (buildFingerprint != null && !buildFingerprint.equals(json.optString("buildFingerprint", null))) {
+                return null;
+            }
+            Map<String, Object> s = new HashMap<>();
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                s.put(key, json.get(key));
+            }
+            for (String key : BYTE_FIELDS) {
+                if (s.containsKey(key)) {
+                    String hex = json.getString(key);
+                    byte[] bytes = new byte[hex.length() / 2];
+                    ByteUtil.decodeHex(hex, 0, hex.length(), bytes, 0);
+                    s.put(key, bytes);
+                }
+            }
+            s.put("collectedAt", json.getLong("collectedAt"));
+            return Collections.unmodifiableMap(s);
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            Log.e(TAG, "Ignoring unreadable " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaced atomically, like {@link PosMetrics#writeSnapshot}.
+     */
+    private void write(Map<String, Object> s) {
+        if (file == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject();
+            for (Map.Entry<String, Object> entry : s.entrySet()) {
+                Object value = entry.getValue();
+                json.put(entry.getKey(), value instanceof byte[]
+                        ? ByteUtil.toHexString((byte[]) value, 0, ((byte[]) value).length) : value);
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            FileOutputStream fos = new FileOutputStream(tmp);
+            try {
+                fos.write(json.toString().getBytes("UTF-8"));
+                fos.getFD().sync();
+            } finally {
+                fos.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Failed to replace " + file.getAbsolutePath());
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to write device info", e);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.ctk.sdk;
+
+import android.util.Log;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Random bytes at memory speed, seeded from the secure processor's {@link PosApiHelper#SysGetRand}.
+ *
+ * Output comes from an HMAC_DRBG with SHA-256 (NIST SP 800-90A) kept in memory. It is
+ * instantiated from 48 hardware bytes on first use and reseeded with another 48 once
+ * {@code reseedIntervalBytes} have been generated or {@code reseedIntervalMs} has passed.
+ * Reseed material is fetched ahead of time by a daemon thread, so {@link #nextBytes}
+ * never waits for a binder call after the first one. If the hardware stops answering
+ * the current state keeps serving until {@link #MAX_BYTES_WITHOUT_RESEED}, then
+ * {@link #nextBytes} fails rather than stretch one seed indefinitely.
+ *
+ * Thread safe.
+ */
+public class EntropyPool {
+    private static final String TAG = "EntropyPool";
+
+    public static final int RAND_SIZE = 16;
+    public static final int SEED_SIZE = 48;
+    public static final long MAX_BYTES_WITHOUT_RESEED = 1L << 30;
+    public static final String ALGORITHM = "HmacDRBG-SHA256";
+
+    private static final int OUT_LEN = 32;
+    private static final int MAX_REQUEST = 1 << 16;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    /**
+     * Hardware random source.
+     */
+    public interface Source {
+        /**
+         * Fills {@code rnd} with {@link #RAND_SIZE} random bytes.
+         *
+         * @return 0 on success
+         */
+        int read(byte[] rnd);
+    }
+
+    public static Source source(final PosApiHelper posApiHelper) {
+        return posApiHelper::SysGetRand;
+    }
+
+    private static EntropyPool instance;
+
+    /**
+     * Pool over the terminal's random number generator, shared by the whole app.
+     */
+    public static synchronized EntropyPool getInstance() {
+        if (instance == null) {
+            instance = new EntropyPool(source(PosApiHelper.getInstance()));
+        }
+        return instance;
+    }
+
+    private final Source source;
+    private final Mac hmac;
+    private final byte[] key = new byte[OUT_LEN];
+    private final byte[] v = new byte[OUT_LEN];
+    private final byte[] block = new byte[OUT_LEN];
+    private final byte[] separator = new byte[1];
+    private boolean seeded;
+    private long generatedSinceReseed;
+    private long lastReseed;
+
+    private volatile long reseedIntervalBytes = 1 << 20;
+    private volatile long reseedIntervalMs = 60000;
+
+    // guarded by refillLock
+    private final Object refillLock = new Object();
+    private final byte[] nextSeed = new byte[SEED_SIZE];
+    private boolean nextSeedReady;
+    private boolean refillRequested;
+    private Thread refiller;
+
+    public EntropyPool(Source source) {
+        this.source = source;
+        try {
+            hmac = Mac.getInstance("HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * Instantiated from fixed entropy and nonce and never reseeded, for known-answer
+     * tests against the SP 800-90A vectors.
+     */
+    EntropyPool(byte[] entropy, byte[] nonce) {
+        this(rnd -> -1);
+        reseedIntervalBytes = MAX_BYTES_WITHOUT_RESEED;
+        reseedIntervalMs = Long.MAX_VALUE;
+        instantiate(entropy, nonce);
+    }
+
+    public EntropyPool setReseedInterval(long bytes, long ms) {
+        if (bytes <= 0 || bytes > MAX_BYTES_WITHOUT_RESEED || ms <= 0) {
+            throw new IllegalArgumentException("Invalid reseed interval");
+        }
+        reseedIntervalBytes = bytes;
+        reseedIntervalMs = ms;
+        return this;
+    }
+
+    public byte[] nextBytes(int length) {
+        byte[] out = new byte[length];
+        nextBytes(out);
+        return out;
+    }
+
+    /**
+     * @throws IllegalStateException if the hardware cannot provide a seed
+     */
+    public synchronized void nextBytes(byte[] out) {
+        if (!seeded) {
+            byte[] seed = readHardware(SEED_SIZE);
+            byte[] nonce = new byte[16];
+            ByteUtil.putLongBE(nonce, 0, System.nanoTime());
+            ByteUtil.putLongBE(nonce, 8, System.currentTimeMillis());
+            instantiate(seed, nonce);
+            Arrays.fill(seed, (byte) 0);
+            synchronized (refillLock) {
+                // have the next seed ready before it is due
+                requestRefill();
+            }
+        }
+        reseedIfDue();
+        for (int off = 0; off < out.length; off += MAX_REQUEST) {
+            generate(out, off, Math.min(MAX_REQUEST, out.length - off));
+        }
+    }
+
+    /**
+     * Mixes caller supplied material into the state; it never replaces hardware entropy.
+     */
+    public synchronized void addSeedMaterial(byte[] material) {
+        if (!seeded) {
+            nextBytes(new byte[0]);
+        }
+        update(material);
+    }
+
+    /**
+     * Bytes straight from the hardware, one binder call per 16 bytes.
+     *
+     * @throws IllegalStateException if the hardware fails
+     */
+    public byte[] generateSeed(int length) {
+        return readHardware(length);
+    }
+
+    /**
+     * A {@link SecureRandom} backed by this pool; {@code setSeed} adds seed material.
+     */
+    public SecureRandom secureRandom() {
+        return new SecureRandom(new Spi(this), HardwareProvider.INSTANCE) {
+        };
+    }
+
+    /**
+     * Stops the refill thread; it is started again when needed.
+     */
+    public void close() {
+        Thread t;
+        synchronized (refillLock) {
+            t = refiller;
+            refiller = null;
+            refillLock.notifyAll();
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private void reseedIfDue() {
+        long now = System.currentTimeMillis();
+        boolean due = generatedSinceReseed >= reseedIntervalBytes || now - lastReseed >= reseedIntervalMs;
+        if (!due) {
+            return;
+        }
+        synchronized (refillLock) {
+            if (nextSeedReady) {
+                update(nextSeed);
+                Arrays.fill(nextSeed, (byte) 0);
+                nextSeedReady = false;
+                generatedSinceReseed = 0;
+                lastReseed = now;
+            }
+            requestRefill();
+        }
+        if (generatedSinceReseed >= MAX_BYTES_WITHOUT_RESEED) {
+            throw new IllegalStateException("Hardware entropy unavailable, refusing to generate");
+        }
+    }
+
+    // holds refillLock
+    private void requestRefill() {
+        if (nextSeedReady) {
+            return;
+        }
+        refillRequested = true;
+        if (refiller == null) {
+            refiller = new Thread(this::refill, TAG);
+            refiller.setDaemon(true);
+            refiller.start();
+        }
+        refillLock.notifyAll();
+    }
+
+    private void refill() {
+        byte[] rnd = new byte[RAND_SIZE];
+        try {
+            while (true) {
+                synchronized (refillLock) {
+                    while (!refillRequested && refiller == Thread.currentThread()) {
+                        refillLock.wait();
+                    }
+                    if (refiller != Thread.currentThread()) {
+                        return;
+                    }
+                    refillRequested = false;
+                }
+                byte[] seed = new byte[SEED_SIZE];
+                int off = 0;
+                while (off < SEED_SIZE) {
+                    int ret = source.read(rnd);
+                    if (ret != 0) {
+                        Log.e(TAG, "SysGetRand failed: " + ret);
+                        Thread.sleep(RETRY_DELAY_MS);
+                        continue;
+                    }
+                    int n = Math.min(RAND_SIZE, SEED_SIZE - off);
+                    System.arraycopy(rnd, 0, seed, off, n);
+                    off += n;
+                }
+                Arrays.fill(rnd, (byte) 0);
+                synchronized (refillLock) {
+                    System.arraycopy(seed, 0, nextSeed, 0, SEED_SIZE);
+                    nextSeedReady = true;
+                }
+                Arrays.fill(seed, (byte) 0);
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private byte[] readHardware(int length) {
+        byte[] out = new byte[length];
+        byte[] rnd = new byte[RAND_SIZE];
+        for (int off = 0; off < length; off += RAND_SIZE) {
+            int ret = source.read(rnd);
+            if (ret != 0) {
+                throw new IllegalStateException("SysGetRand failed: " + ret);
+            }
+            System.arraycopy(rnd, 0, out, off, Math.min(RAND_SIZE, length - off));
+        }
+        Arrays.fill(rnd, (byte) 0);
+        return out;
+    }
+
+    private void instantiate(byte[] entropy, byte[] nonce) {
+        Arrays.fill(key, (byte) 0);
+        Arrays.fill(v, (byte) 1);
+        byte[] material = new byte[entropy.length + nonce.length];
+        System.arraycopy(entropy, 0, material, 0, entropy.length);
+        System.arraycopy(nonce, 0, material, entropy.length, nonce.length);
+        update(material);
+        Arrays.fill(material, (byte) 0);
+        seeded = true;
+        generatedSinceReseed = 0;
+        lastReseed = System.currentTimeMillis();
+    }
+
+    /**
+     * HMAC_DRBG_Update: K = HMAC(K, V || 0x00 || data), V = HMAC(K, V), and again
+     * with 0x01 when there is data.
+     */
+    private void update(byte[] data) {
+        for (int round = 0; round < (data == null || data.length == 0 ? 1 : 2); round++) {
+            initKey();
+            hmac.update(v);
+            separator[0] = (byte) round;
+            hmac.update(separator);
+            if (data != null) {
+                hmac.update(data);
+            }
+            finish(key);
+            initKey();
+            hmac.update(v);
+            finish(v);
+        }
+    }
+
+    private void generate(byte[] out, int off, int len) {
+        initKey();
+        for (int done = 0; done < len; done += OUT_LEN) {
+            hmac.update(v);
+            finish(v);
+            System.arraycopy(v, 0, out, off + done, Math.min(OUT_LEN, len - done));
+        }
+        update(null);
+        generatedSinceReseed += len;
+    }
+
+    private void initKey() {
+        try {
+            hmac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void finish(byte[] target) {
+        try {
+            hmac.doFinal(block, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        System.arraycopy(block, 0, target, 0, OUT_LEN);
+    }
+
+    /**
+     * {@link SecureRandomSpi} over an {@link EntropyPool}.
+     */
+    public static class Spi extends SecureRandomSpi {
+        private static final long serialVersionUID = 1L;
+
+        private final transient EntropyPool pool;
+
+        /**
+         * Over the shared pool, for lookup through {@link HardwareProvider}.
+         */
+        public Spi() {
+            this(getInstance());
+        }
+
+        public Spi(EntropyPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        protected void engineSetSeed(byte[] seed) {
+            pool.addSeedMaterial(seed);
+        }
+
+        @Override
+        protected void engineNextBytes(byte[] bytes) {
+            pool.nextBytes(bytes);
+        }
+
+        @Override
+        protected byte[] engineGenerateSeed(int numBytes) {
+            return pool.generateSeed(numBytes);
+        }
+    }
+
+    /**
+     * Provides {@link #ALGORITHM} as a SecureRandom; register it with
+     * {@code Security.addProvider} to use {@code SecureRandom.getInstance(ALGORITHM)}.
+     */
+    public static final class HardwareProvider extends Provider {
+        private static final long serialVersionUID = 1L;
+
+        public static final HardwareProvider INSTANCE = new HardwareProvider();
+
+        // the constructor taking a String version is not available at our minSdk
+        @SuppressWarnings("deprecation")
+        private HardwareProvider() {
+            super("CtkHardware", 1.0, "Secure processor seeded HMAC_DRBG");
+            put("SecureRandom." + ALGORITHM, Spi.class.getName());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.ctk.sdk;
+
+import android.util.Log;
+
+/**
+ * Plays beep patterns on a thread of its own, so a handler can answer before the
+ * buzzer has finished.
+ *
+ * A pattern is a number of beeps with a pause between them. Requests for a pattern
+ * that is already waiting, or that started less than {@code coalesceMs} ago, are
+ * dropped, so a burst of reads produces one beep. At most {@link #MAX_PENDING}
+ * patterns wait; further requests are dropped rather than queue seconds of noise.
+ *
+ * Thread safe.
+ */
+public class FeedbackQueue {
+    private static final String TAG = "FeedbackQueue";
+
+    public static final int SUCCESS = 0;
+    public static final int WARNING = 1;
+    public static final int ERROR = 2;
+
+    public static final int MAX_PENDING = 4;
+
+    // beeps and the pause between them in ms, indexed by pattern
+    private static final int[][] PATTERNS = {{1, 0}, {2, 120}, {3, 80}};
+    private static final String[] NAMES = {"success", "warning", "error"};
+
+    /**
+     * The buzzer.
+     */
+    public interface Device {
+        /**
+         * Sounds one beep; may block for its duration.
+         *
+         * @return 0 on success
+         */
+        int beep();
+    }
+
+    public static Device device(final PosApiHelper posApiHelper) {
+        return posApiHelper::SysBeep;
+    }
+
+    /**
+     * @return the pattern called {@code name} ("success", "warning" or "error"), -1 if none is
+     */
+    public static int patternOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private final Device device;
+    private volatile boolean enabled = true;
+    private volatile long coalesceMs = 300;
+
+    // guarded by this
+    private final int[] pending = new int[MAX_PENDING];
+    private int head;
+    private int count;
+    private final long[] lastStarted = new long[PATTERNS.length];
+    private Thread worker;
+    private long played;
+    private long coalesced;
+
+    public FeedbackQueue(Device device) {
+        this.device = device;
+        for (int i = 0; i < lastStarted.length; i++) {
+            lastStarted[i] = Long.MIN_VALUE / 2;
+        }
+    }
+
+    /**
+     * @param enabled    false to drop every request
+     * @param coalesceMs requests for a pattern started less than this ago are dropped
+     */
+    public void configure(boolean enabled, long coalesceMs) {
+        if (coalesceMs < 0) {
+            throw new IllegalArgumentException("coalesceMs must be 0 or more");
+        }
+        this.enabled = enabled;
+        this.coalesceMs = coalesceMs;
+    }
+
+    /**
+     * Queues {@code pattern} and returns at once.
+     *
+     * @return false if it was dropped
+     */
+    public synchronized boolean play(int pattern) {
+        if (pattern < 0 || pattern >= PATTERNS.length) {
+            throw new IllegalArgumentException("Unknown feedback pattern " + pattern);
+        }
+        if (!enabled) {
+            return false;
+        }
+        if (count == MAX_PENDING || isPending(pattern)
+                || now() - lastStarted[pattern] < coalesceMs) {
+            coalesced++;
+            return false;
+        }
+        pending[(head + count) % MAX_PENDING] = pattern;
+        count++;
+        if (worker == null) {
+            worker = new Thread(this::work, TAG);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Patterns played and requests dropped since creation.
+     */
+    public synchronized long[] counts() {
+        return new long[]{played, coalesced};
+    }
+
+    /**
+     * Drops what is waiting and stops the thread once the current pattern is done;
+     * it is started again when needed.
+     */
+    public synchronized void close() {
+        count = 0;
+        worker = null;
+        notifyAll();
+    }
+
+    private boolean isPending(int pattern) {
+        for (int i = 0; i < count; i++) {
+            if (pending[(head + i) % MAX_PENDING] == pattern) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                int pattern;
+                synchronized (this) {
+                    while (count == 0 && worker == Thread.currentThread()) {
+                        wait();
+                    }
+                    if (worker != Thread.currentThread()) {
+                        return;
+                    }
+                    pattern = pending[head];
+                    head = (head + 1) % MAX_PENDING;
+                    count--;
+                    lastStarted[pattern] = now();
+                    played++;
+                }
+                int[] p = PATTERNS[pattern];
+                for (int i = 0; i < p[0]; i++) {
+                    if (i > 0) {
+                        Thread.sleep(p[1]);
+                    }
+                    int ret = device.beep();
+                    if (ret != 0) {
+                        Log.w(TAG, "SysBeep failed: " + ret);
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ctk.sdk;
+
+/**
+ * One frame decoded by a {@link FiscalFrameCodec}.
+ */
+public class FiscalFrame {
+    public enum Type {
+        /**
+         * A response (or, on the module side, a request) with its payload.
+         */
+        DATA,
+        ACK,
+        /**
+         * The frame with this sequence number was rejected and should be sent again.
+         */
+        NAK,
+        /**
+         * The module is still working; outstanding requests get more time.
+         */
+        BUSY
+    }
+
+    public final Type type;
+    /**
+     * Sequence number, -1 when the frame has none.
+     */
+    public final int seq;
+    public final byte[] payload;
+
+    public FiscalFrame(Type type, int seq, byte[] payload) {
+        this.type = type;
+        this.seq = seq;
+        this.payload = payload;
+    }
+}
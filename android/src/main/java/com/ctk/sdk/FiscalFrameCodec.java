@@ -0,0 +1,122 @@
+package com.ctk.sdk;
+
+/**
+ * Framing of the fiscal module protocol, plugged into {@link FiscalTransport}.
+ *
+ * {@link #decode} is called on the transport's dispatcher thread only.
+ */
+public interface FiscalFrameCodec {
+    /**
+     * Frame carrying a request with its sequence number.
+     *
+     * @throws IllegalArgumentException if the payload does not fit in a frame
+     */
+    byte[] encode(int seq, byte[] payload);
+
+    /**
+     * Acknowledgement the host sends for a response, or null if the protocol has none.
+     */
+    byte[] ack(int seq);
+
+    /**
+     * Takes the next frame off {@code in}. Bytes that cannot start a frame are
+     * skipped; an incomplete frame is left in place.
+     *
+     * @return the frame, or null until a whole frame is available
+     */
+    FiscalFrame decode(ByteRingBuffer in);
+
+    /**
+     * STX | LEN (2, big endian, counts SEQ and DATA) | SEQ | DATA | ETX | LRC, with
+     * LRC the XOR of LEN through ETX. Single byte control frames: ACK (06) SEQ,
+     * NAK (15) SEQ and SYN (16) while the module is busy.
+     */
+    class StxEtx implements FiscalFrameCodec {
+        public static final int STX = 0x02;
+        public static final int ETX = 0x03;
+        public static final int ACK = 0x06;
+        public static final int NAK = 0x15;
+        public static final int SYN = 0x16;
+        public static final int MAX_DATA = 4096;
+
+        @Override
+        public byte[] encode(int seq, byte[] payload) {
+            if (payload.length > MAX_DATA) {
+                throw new IllegalArgumentException("Payload of " + payload.length + " bytes exceeds " + MAX_DATA);
+            }
+            int len = payload.length + 1;
+            byte[] frame = new byte[len + 5];
+            frame[0] = STX;
+            ByteUtil.putShortBE(frame, 1, (short) len);
+            frame[3] = (byte) seq;
+            System.arraycopy(payload, 0, frame, 4, payload.length);
+            frame[frame.length - 2] = ETX;
+            frame[frame.length - 1] = lrc(frame, 1, frame.length - 1);
+            return frame;
+        }
+
+        @Override
+        public byte[] ack(int seq) {
+            return new byte[]{ACK, (byte) seq};
+        }
+
+        @Override
+        public FiscalFrame decode(ByteRingBuffer in) {
+            while (in.available() > 0) {
+                int b = in.get(0);
+                if (b == SYN) {
+                    in.skip(1);
+                    return new FiscalFrame(FiscalFrame.Type.BUSY, -1, null);
+                }
+                if (b == ACK || b == NAK) {
+                    if (in.available() < 2) {
+                        return null;
+                    }
+                    int seq = in.get(1);
+                    in.skip(2);
+                    return new FiscalFrame(b == ACK ? FiscalFrame.Type.ACK : FiscalFrame.Type.NAK, seq, null);
+                }
+                if (b != STX) {
+                    in.skip(1);
+                    continue;
+                }
+                if (in.available() < 3) {
+                    return null;
+                }
+                int len = (in.get(1) << 8) | in.get(2);
+                if (len < 1 || len > MAX_DATA + 1) {
+                    // not a real STX, resynchronise on the next one
+                    in.skip(1);
+                    continue;
+                }
+                int total = len + 5;
+                if (in.available() < total) {
+                    return null;
+                }
+                int check = 0;
+                for (int i = 1; i < total - 1; i++) {
+                    check ^= in.get(i);
+                }
+                if (in.get(total - 2) != ETX || (check & 0xff) != in.get(total - 1)) {
+                    in.skip(1);
+                    continue;
+                }
+                int seq = in.get(3);
+                byte[] data = new byte[len - 1];
+                in.skip(4);
+                in.read(data, 0, data.length);
+                in.skip(2);
+                return new FiscalFrame(FiscalFrame.Type.DATA, seq, data);
+            }
+            return null;
+        }
+
+        private static byte lrc(byte[] b, int from, int to) {
+            int check = 0;
+            for (int i = from; i < to; i++) {
+                check ^= b[i] & 0xff;
+            }
+            return (byte) check;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ctk.sdk;
+
+/**
+ * Serial link to the fiscal module, as used by {@link FiscalTransport}.
+ *
+ * Reads and writes may be called from different threads at the same time.
+ */
+public interface FiscalPort {
+    /**
+     * Returned by {@link #read} when nothing arrived within the timeout.
+     */
+    int ERR_TIMEOUT = -4;
+
+    int open();
+
+    int write(byte[] data);
+
+    /**
+     * Waits up to {@code timeoutMs} for data.
+     *
+     * @return bytes read into {@code buffer}, {@link #ERR_TIMEOUT} when none arrived,
+     * another negative code on error
+     */
+    int read(byte[] buffer, int length, int timeoutMs);
+
+    int close();
+
+    /**
+     * The fiscal UART of the terminal.
+     */
+    class Device implements FiscalPort {
+        private final PosApiHelper posApiHelper;
+        private final int baudrate;
+        private final int size;
+        private final int stop;
+        private final char parity;
+        private final char cflow;
+
+        /**
+         * @param parity 'N', 'O' or 'E'
+         * @param cflow  'N' for none, 'H' for hardware flow control
+         */
+        public Device(PosApiHelper posApiHelper, int baudrate, int size, int stop, char parity, char cflow) {
+            this.posApiHelper = posApiHelper;
+            this.baudrate = baudrate;
+            this.size = size;
+            this.stop = stop;
+            this.parity = parity;
+            this.cflow = cflow;
+        }
+
+        @Override
+        public int open() {
+            return posApiHelper.fiscalOpen(baudrate, size, stop, parity, cflow);
+        }
+
+        @Override
+        public int write(byte[] data) {
+            return posApiHelper.fiscalWrite(data);
+        }
+
+        /**
+         * fiscalRead returns 0 only once it has filled the whole buffer and a negative
+         * code otherwise, never a byte count, so a shorter frame or a lone ACK would be
+         * lost in a larger read. It is therefore asked for one byte at a time.
+         */
+        @Override
+        public int read(byte[] buffer, int length, int timeoutMs) {
+            if (length < 1) {
+                return 0;
+            }
+            int ret = posApiHelper.fiscalRead(buffer, 1, timeoutMs);
+            return ret == 0 ? 1 : ret;
+        }
+
+        @Override
+        public int close() {
+            return posApiHelper.fiscalClose();
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.ctk.sdk;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Request/response transport to the fiscal module.
+ *
+ * Three daemon threads share the port:
+ * <ul>
+ * <li>the reader polls {@link FiscalPort#read} with a short timeout and copies
+ * whatever arrived into a lock-free {@link ByteRingBuffer};</li>
+ * <li>the dispatcher decodes frames off the ring with the {@link FiscalFrameCodec}
+ * and completes the {@link Response} of the request with the same sequence number;</li>
+ * <li>the writer sends queued requests without waiting for earlier responses, up to
+ * {@code window} outstanding, plus acknowledgements and retransmissions.</li>
+ * </ul>
+ * A request that is NAKed, or not even acknowledged before the response timeout,
+ * is sent again up to {@code maxRetries} times. One that the module has acknowledged is
+ * never sent twice, so a fiscal command cannot be executed twice; it fails with a
+ * {@link TimeoutException} instead. The fiscal calls do not take the service lock
+ * (see {@link PosServiceInterceptor}), so none of this holds up printing or card I/O.
+ * The threads do not log; what went wrong is counted in {@link #counts}.
+ */
+public class FiscalTransport {
+    private static final String TAG = "FiscalTransport";
+
+    public static final int RING_SIZE = 8192;
+    public static final int READ_CHUNK = 256;
+
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_PARK_NS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long ERROR_PARK_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Called once, on the thread that completed the response.
+     */
+    public interface Callback {
+        /**
+         * @param error null on success; a {@link TimeoutException}, an
+         *              {@link IOException} or a {@link CancellationException} otherwise
+         */
+        void onComplete(byte[] response, Throwable error);
+    }
+
+    /**
+     * Pending response to one {@link #send}.
+     */
+    public static class Response implements Future<byte[]> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] value;
+        private volatile Throwable error;
+        private Callback callback;
+        // takes a cancelled request out of the transport's window
+        volatile Runnable onCancel;
+
+        boolean complete(byte[] value, Throwable error) {
+            Callback cb;
+            synchronized (this) {
+                if (done.getCount() == 0) {
+                    return false;
+                }
+                this.value = value;
+                this.error = error;
+                done.countDown();
+                cb = callback;
+            }
+            if (cb != null) {
+                cb.onComplete(value, error);
+            }
+            return true;
+        }
+
+        /**
+         * Calls {@code callback} on completion, or right away if already complete.
+         */
+        public void setCallback(Callback callback) {
+            synchronized (this) {
+                if (done.getCount() != 0) {
+                    this.callback = callback;
+                    return;
+                }
+            }
+            callback.onComplete(value, error);
+        }
+
+        /**
+         * Stops waiting. A request already sent may still be executed by the module.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!complete(null, new CancellationException("Cancelled"))) {
+                return false;
+            }
+            Runnable r = onCancel;
+            if (r != null) {
+                r.run();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return error instanceof CancellationException;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public byte[] get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+
+        @Override
+        public byte[] get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException("No response after " + unit.toMillis(timeout) + " ms");
+            }
+            return report();
+        }
+
+        private byte[] report() throws ExecutionException {
+            Throwable t = error;
+            if (t instanceof CancellationException) {
+                throw (CancellationException) t;
+            }
+            if (t != null) {
+                throw new ExecutionException(t);
+            }
+            return value;
+        }
+    }
+
+    private static class Pending {
+        final byte[] payload;
+        final Response response = new Response();
+        // set by the writer before the first transmission
+        volatile int seq;
+        byte[] frame;
+        volatile int attempts;
+        volatile boolean acked;
+        volatile long deadline = Long.MAX_VALUE;
+
+        Pending(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+
+    private final FiscalPort port;
+    private final FiscalFrameCodec codec;
+    private final ByteRingBuffer ring = new ByteRingBuffer(RING_SIZE);
+    private final byte[] readBuffer = new byte[READ_CHUNK];
+
+    private final ConcurrentLinkedQueue<Pending> requests = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Pending> resends = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<byte[]> acks = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Integer, Pending> inFlight = new ConcurrentHashMap<>();
+    // writer thread only
+    private int lastSeq;
+    private final AtomicLong retransmissions = new AtomicLong();
+    private final AtomicLong unmatchedResponses = new AtomicLong();
+    private final AtomicLong portErrors = new AtomicLong();
+    private final AtomicLong dispatchErrors = new AtomicLong();
+
+    private volatile int window = 4;
+    private volatile int maxRetries = 2;
+    private volatile long responseTimeoutMs = 2000;
+    private volatile int readTimeoutMs = 20;
+
+    private volatile Thread reader;
+    private volatile Thread dispatcher;
+    private volatile Thread writer;
+    private volatile boolean running;
+
+    public FiscalTransport(FiscalPort port, FiscalFrameCodec codec) {
+        this.port = port;
+        this.codec = codec;
+    }
+
+    /**
+     * @param window maximum number of requests sent but not yet answered
+     */
+    public FiscalTransport setWindow(int window) {
+        if (window < 1 || window > 127) {
+            throw new IllegalArgumentException("Invalid window " + window);
+        }
+        this.window = window;
+        return this;
+    }
+
+    public FiscalTransport setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Invalid retry count " + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Time allowed for a response after sending, an ACK or a busy frame.
+     */
+    public FiscalTransport setResponseTimeoutMs(long responseTimeoutMs) {
+        if (responseTimeoutMs <= 0) {
+            throw new IllegalArgumentException("Invalid response timeout " + responseTimeoutMs);
+        }
+        this.responseTimeoutMs = responseTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Timeout of each {@link FiscalPort#read} poll; bounds how long close waits for the reader.
+     */
+    public FiscalTransport setReadTimeoutMs(int readTimeoutMs) {
+        if (readTimeoutMs <= 0) {
+            throw new IllegalArgumentException("Invalid read timeout " + readTimeoutMs);
+        }
+        this.readTimeoutMs = readTimeoutMs;
+        return this;
+    }
+
+    public synchronized boolean isOpen() {
+        return running;
+    }
+
+    /**
+     * Number of requests sent and still waiting for a response.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return {retransmissions, responses matching no request, failed port reads
+     * and writes, exceptions thrown while dispatching} since creation
+     */
+    public long[] counts() {
+        return new long[]{retransmissions.get(), unmatchedResponses.get(), portErrors.get(), dispatchErrors.get()};
+    }
+
+    /**
+     * Opens the port and starts the transport threads.
+     *
+     * @return 0, or the error of {@link FiscalPort#open}
+     */
+    public synchronized int open() {
+        if (running) {
+            return 0;
+        }
+        int ret = port.open();
+        if (ret != 0) {
+            return ret;
+        }
+        running = true;
+        dispatcher = thread(this::dispatch, "dispatcher");
+        reader = thread(this::read, "reader");
+        writer = thread(this::write, "writer");
+        return 0;
+    }
+
+    private static Thread thread(Runnable body, String name) {
+        Thread t = new Thread(body, TAG + "-" + name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /**
+     * Queues {@code payload} for sending. Never blocks.
+     */
+    public Response send(byte[] payload) {
+        final Pending p = new Pending(payload);
+        p.response.onCancel = () -> {
+            if (inFlight.remove(p.seq, p)) {
+                LockSupport.unpark(writer);
+            }
+        };
+        if (!running) {
+            p.response.complete(null, new IOException("Fiscal transport is closed"));
+            return p.response;
+        }
+        requests.offer(p);
+        if (!running) {
+            // lost a race with close()
+            failQueued(new IOException("Fiscal transport is closed"));
+        }
+        LockSupport.unpark(writer);
+        return p.response;
+    }
+
+    /**
+     * Stops the threads, fails whatever is still pending and closes the port.
+     *
+     * @return the result of {@link FiscalPort#close}, 0 if not open
+     */
+    public int close() {
+        Thread[] threads;
+        synchronized (this) {
+            if (!running) {
+                return 0;
+            }
+            running = false;
+            threads = new Thread[]{reader, dispatcher, writer};
+            reader = dispatcher = writer = null;
+        }
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        failQueued(new IOException("Fiscal transport closed"));
+        return port.close();
+    }
+
+    private void failQueued(Throwable error) {
+        Pending p;
+        while ((p = requests.poll()) != null) {
+            p.response.complete(null, error);
+        }
+        resends.clear();
+        for (Pending q : inFlight.values()) {
+            fail(q, error);
+        }
+    }
+
+    private void fail(Pending p, Throwable error) {
+        if (inFlight.remove(p.seq, p)) {
+            p.response.complete(null, error);
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void read() {
+        byte[] buf = readBuffer;
+        while (running) {
+            int n = port.read(buf, buf.length, readTimeoutMs);
+            if (n > 0) {
+                int off = 0;
+                while (off < n && running) {
+                    int w = ring.write(buf, off, n - off);
+                    off += w;
+                    LockSupport.unpark(dispatcher);
+                    if (w == 0) {
+                        // the dispatcher is behind; the UART buffers meanwhile
+                        LockSupport.parkNanos(FULL_PARK_NS);
+                    }
+                }
+            } else if (n != FiscalPort.ERR_TIMEOUT && n != 0) {
+                portErrors.incrementAndGet();
+                LockSupport.parkNanos(ERROR_PARK_NS);
+            }
+        }
+    }
+
+    private void dispatch() {
+        while (running) {
+            FiscalFrame frame;
+            try {
+                while ((frame = codec.decode(ring)) != null) {
+                    handle(frame);
+                }
+                checkDeadlines(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                // a faulty codec or callback must not stop the dispatcher
+                dispatchErrors.incrementAndGet();
+            }
+            // the reader unparks us as soon as there is data
+            LockSupport.parkNanos(IDLE_PARK_NS);
+        }
+    }
+
+    private void handle(FiscalFrame frame) {
+        Pending p;
+        switch (frame.type) {
+            case DATA:
+                byte[] ack = codec.ack(frame.seq);
+                if (ack != null) {
+                    acks.offer(ack);
+                    LockSupport.unpark(writer);
+                }
+                p = inFlight.remove(frame.seq);
+                if (p == null) {
+                    unmatchedResponses.incrementAndGet();
+                    return;
+                }
+                p.response.complete(frame.payload, null);
+                LockSupport.unpark(writer);
+                break;
+            case ACK:
+                p = inFlight.get(frame.seq);
+                if (p != null) {
+                    p.acked = true;
+                    p.deadline = System.currentTimeMillis() + responseTimeoutMs;
+                }
+                break;
+            case NAK:
+                p = inFlight.get(frame.seq);
+                if (p != null) {
+                    retry(p, "rejected");
+                }
+                break;
+            case BUSY:
+                long deadline = System.currentTimeMillis() + responseTimeoutMs;
+                for (Pending q : inFlight.values()) {
+                    if (q.deadline != Long.MAX_VALUE) {
+                        q.deadline = deadline;
+                    }
+                }
+                break;
+        }
+    }
+
+    private void checkDeadlines(long now) {
+        for (Pending p : inFlight.values()) {
+            if (p.deadline > now) {
+                continue;
+            }
+            if (p.acked) {
+                fail(p, new TimeoutException("No response to request " + p.seq));
+            } else {
+                retry(p, "not acknowledged");
+            }
+        }
+    }
+
+    private void retry(Pending p, String reason) {
+        if (p.attempts > maxRetries) {
+            fail(p, p.acked ? new TimeoutException("No response to request " + p.seq)
+                    : new IOException("Request " + p.seq + " " + reason + " after " + p.attempts + " attempts"));
+            return;
+        }
+        retransmissions.incrementAndGet();
+        p.acked = false;
+        p.deadline = Long.MAX_VALUE;
+        resends.offer(p);
+        LockSupport.unpark(writer);
+    }
+
+    private void write() {
+        while (running) {
+            byte[] ack;
+            while ((ack = acks.poll()) != null) {
+                if (port.write(ack) < 0) {
+                    portErrors.incrementAndGet();
+                }
+            }
+            Pending p;
+            while ((p = resends.poll()) != null) {
+                if (inFlight.get(p.seq) == p) {
+                    transmit(p);
+                }
+            }
+            if (inFlight.size() < window && (p = requests.poll()) != null) {
+                if (p.response.isDone()) {
+                    // cancelled before it was sent
+                    continue;
+                }
+                p.seq = nextSeq();
+                try {
+                    p.frame = codec.encode(p.seq, p.payload);
+                } catch (IllegalArgumentException e) {
+                    p.response.complete(null, e);
+                    continue;
+                }
+                inFlight.put(p.seq, p);
+                if (p.response.isDone()) {
+                    // cancelled before onCancel could see it in flight
+                    inFlight.remove(p.seq, p);
+                    continue;
+                }
+                transmit(p);
+                continue;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NS);
+        }
+    }
+
+    private void transmit(Pending p) {
+        p.attempts++;
+        p.deadline = System.currentTimeMillis() + responseTimeoutMs;
+        int ret = port.write(p.frame);
+        if (ret < 0) {
+            fail(p, new IOException("fiscalWrite failed: " + ret));
+        }
+    }
+
+    /**
+     * Next sequence number in 1..255 that is not in flight.
+     */
+    private int nextSeq() {
+        do {
+            lastSeq = lastSeq % 255 + 1;
+        } while (inFlight.containsKey(lastSeq));
+        return lastSeq;
+    }
+}
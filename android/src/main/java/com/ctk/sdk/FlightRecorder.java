@@ -0,0 +1,361 @@
+package com.ctk.sdk;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Last {@code capacity} device operations in a memory-mapped ring file.
+ *
+ * {@link PosServiceInterceptor} records every binder call: time, API, a digest of
+ * the arguments, return code and duration. A record is a claimed sequence number and
+ * a few absolute writes into the mapping, no lock and no system call; the kernel
+ * writes the pages back, so the history survives the process being killed. Reopening
+ * the file continues after the newest record.
+ *
+ * Polls that found nothing, such as an McrCheck without a swipe, would otherwise fill
+ * the ring within minutes. {@link #recordIdlePoll} folds a run of them into one record
+ * flagged {@link #FLAG_FOLDED}. That record keeps the seq of the first poll, the time
+ * and duration of the last, and the number of polls in place of the argument digest.
+ * Any other record of the same API ends the run.
+ *
+ * File layout, big endian: a {@link #HEADER_SIZE} byte header (magic "CTKFR001",
+ * record size, capacity, names length), the API names as UTF-8 lines padded to
+ * {@link #NAMES_SIZE} bytes, then {@code capacity} records of {@link #RECORD_SIZE}
+ * bytes: seq (long, -1 while being written), time ms (long), API id (short, line in
+ * the names), flags (short), return code (int), duration us (int), argument digest
+ * (int). The file is recreated when its layout or API names differ.
+ *
+ * The digest covers primitive arguments and the lengths of arrays, never array
+ * contents, so key and PIN data cannot be recovered from it. Records read while
+ * being written are skipped; reads are best effort.
+ */
+public class FlightRecorder {
+    public static final int HEADER_SIZE = 64;
+    public static final int NAMES_SIZE = 16384;
+    public static final int RECORD_SIZE = 32;
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    /**
+     * The call threw a RemoteException.
+     */
+    public static final int FLAG_REMOTE_ERROR = 1;
+    /**
+     * The call did not return an int; the return code is 0.
+     */
+    public static final int FLAG_NOT_INT = 2;
+    /**
+     * Idle polls folded into one record; argsDigest holds how many.
+     */
+    public static final int FLAG_FOLDED = 4;
+
+    private static final byte[] MAGIC = {'C', 'T', 'K', 'F', 'R', '0', '0', '1'};
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static volatile FlightRecorder current;
+    // starts of the current recorder not yet matched by a stop
+    private static int users;
+
+    /**
+     * Opens {@code file} for the POS service calls and starts recording them, or
+     * returns the recorder already running. Each start is matched by a
+     * {@link #stop} with the recorder it returned.
+     */
+    public static synchronized FlightRecorder start(File file) throws IOException {
+        if (current == null) {
+            current = new FlightRecorder(file, DEFAULT_CAPACITY, PosServiceInterceptor.apiNames());
+            users = 0;
+        }
+        users++;
+        return current;
+    }
+
+    /**
+     * Ends one start of {@code recorder}; the last one stops recording and writes the
+     * pages back. A recorder that is no longer current was stopped already, so a late
+     * stop never closes one started since.
+     */
+    public static synchronized void stop(FlightRecorder recorder) {
+        if (recorder == null || recorder != current || --users > 0) {
+            return;
+        }
+        current.close();
+        current = null;
+    }
+
+    /**
+     * The recorder started by {@link #start}, null if none is.
+     */
+    public static FlightRecorder current() {
+        return current;
+    }
+
+    private final int capacity;
+    private final List<String> apiNames;
+    private final MappedByteBuffer map;
+    private final AtomicLong nextSeq = new AtomicLong();
+    // per API id, seq of the record the next idle poll is folded into, -1 for none
+    private final AtomicLongArray foldSeq;
+
+    public FlightRecorder(File file, int capacity, List<String> apiNames) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.apiNames = Collections.unmodifiableList(new ArrayList<>(apiNames));
+        foldSeq = new AtomicLongArray(apiNames.size());
+        for (int i = 0; i < foldSeq.length(); i++) {
+            foldSeq.set(i, -1);
+        }
+        byte[] names = encodeNames(apiNames);
+        long size = HEADER_SIZE + NAMES_SIZE + (long) capacity * RECORD_SIZE;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            boolean reuse = raf.length() == size;
+            if (!reuse) {
+                raf.setLength(0);
+                raf.setLength(size);
+            }
+            map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            // the mapping stays valid
+            raf.close();
+        }
+        if (matches(names)) {
+            nextSeq.set(newestSeq() + 1);
+        } else {
+            format(names);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public List<String> getApiNames() {
+        return apiNames;
+    }
+
+    /**
+     * @param durationNanos time the call took, without waiting for the lock
+     */
+    public void record(int apiId, Object[] args, Object ret, long durationNanos, int flags) {
+        int code = 0;
+        if (ret instanceof Integer) {
+            code = (Integer) ret;
+        } else if ((flags & FLAG_REMOTE_ERROR) == 0) {
+            flags |= FLAG_NOT_INT;
+        }
+        if (apiId >= 0 && apiId < foldSeq.length()) {
+            foldSeq.set(apiId, -1);
+        }
+        append(apiId, flags, code, durationNanos, digest(args));
+    }
+
+    /**
+     * Records a poll that found nothing, folded into the previous one when that was
+     * an idle poll of the same API with the same result. Pollers of one API are
+     * expected to be a single thread; concurrent ones may lose a count.
+     */
+    public void recordIdlePoll(int apiId, int code, long durationNanos) {
+        if (apiId < 0 || apiId >= foldSeq.length()) {
+            append(apiId, FLAG_FOLDED, code, durationNanos, 1);
+            return;
+        }
+        long seq = foldSeq.get(apiId);
+        int off = offset(seq);
+        if (seq >= 0 && map.getInt(off + 20) == code && map.getLong(off) == seq) {
+            map.putLong(off + 8, System.currentTimeMillis());
+            map.putInt(off + 24, micros(durationNanos));
+            map.putInt(off + 28, map.getInt(off + 28) + 1);
+            return;
+        }
+        foldSeq.set(apiId, append(apiId, FLAG_FOLDED, code, durationNanos, 1));
+    }
+
+    private long append(int apiId, int flags, int code, long durationNanos, int digest) {
+        long seq = nextSeq.getAndIncrement();
+        int off = offset(seq);
+        map.putLong(off, -1);
+        map.putLong(off + 8, System.currentTimeMillis());
+        map.putShort(off + 16, (short) apiId);
+        map.putShort(off + 18, (short) flags);
+        map.putInt(off + 20, code);
+        map.putInt(off + 24, micros(durationNanos));
+        map.putInt(off + 28, digest);
+        map.putLong(off, seq);
+        return seq;
+    }
+
+    private int offset(long seq) {
+        return HEADER_SIZE + NAMES_SIZE + (int) (Math.max(seq, 0) % capacity) * RECORD_SIZE;
+    }
+
+    private static int micros(long nanos) {
+        long micros = nanos / 1000;
+        return micros > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) micros;
+    }
+
+    /**
+     * The newest {@code limit} records, oldest first, each a map with seq, time, api,
+     * flags, code, durationUs and argsDigest.
+     */
+    public List<Map<String, Object>> records(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        List<long[]> raw = new ArrayList<>();
+        for (int i = 0; i < capacity; i++) {
+            int off = HEADER_SIZE + NAMES_SIZE + i * RECORD_SIZE;
+            long seq = map.getLong(off);
+            if (seq < 0) {
+                continue;
+            }
+            long[] r = {seq, map.getLong(off + 8), map.getShort(off + 16), map.getShort(off + 18),
+                    map.getInt(off + 20), map.getInt(off + 24), map.getInt(off + 28)};
+            if (map.getLong(off) == seq && seq % capacity == i) {
+                raw.add(r);
+            }
+        }
+        Collections.sort(raw, (a, b) -> Long.compare(a[0], b[0]));
+        List<Map<String, Object>> records = new ArrayList<>(Math.min(limit, raw.size()));
+        for (long[] r : raw.subList(Math.max(0, raw.size() - limit), raw.size())) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("seq", r[0]);
+            m.put("time", r[1]);
+            int api = (int) r[2] & 0xFFFF;
+            m.put("api", api < apiNames.size() ? apiNames.get(api) : String.valueOf(api));
+            m.put("flags", (int) r[3]);
+            m.put("code", (int) r[4]);
+            m.put("durationUs", (int) r[5]);
+            m.put("argsDigest", (int) r[6]);
+            records.add(m);
+        }
+        return records;
+    }
+
+    /**
+     * Copies the whole ring file to {@code dest}, replacing it atomically.
+     */
+    public void export(File dest) throws IOException {
+        ByteBuffer copy = map.duplicate();
+        copy.clear();
+        File tmp = new File(dest.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.getChannel().write(copy);
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!tmp.renameTo(dest)) {
+            throw new IOException("Failed to replace " + dest.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Writes the pages back; recording may continue.
+     */
+    public void close() {
+        map.force();
+    }
+
+    private boolean matches(byte[] names) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (map.get(i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        if (map.getInt(8) != RECORD_SIZE || map.getInt(12) != capacity || map.getInt(16) != names.length) {
+            return false;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (map.get(HEADER_SIZE + i) != names[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void format(byte[] names) {
+        for (int i = 0; i < capacity; i++) {
+            map.putLong(HEADER_SIZE + NAMES_SIZE + i * RECORD_SIZE, -1);
+        }
+        for (int i = 0; i < names.length; i++) {
+            map.put(HEADER_SIZE + i, names[i]);
+        }
+        map.putInt(8, RECORD_SIZE);
+        map.putInt(12, capacity);
+        map.putInt(16, names.length);
+        // magic last, so a crash while formatting formats again
+        for (int i = 0; i < MAGIC.length; i++) {
+            map.put(i, MAGIC[i]);
+        }
+        nextSeq.set(0);
+    }
+
+    private long newestSeq() {
+        long newest = -1;
+        for (int i = 0; i < capacity; i++) {
+            newest = Math.max(newest, map.getLong(HEADER_SIZE + NAMES_SIZE + i * RECORD_SIZE));
+        }
+        return newest;
+    }
+
+    private static byte[] encodeNames(List<String> apiNames) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : apiNames) {
+            sb.append(name).append('\n');
+        }
+        byte[] names = sb.toString().getBytes(UTF8);
+        if (names.length > NAMES_SIZE) {
+            throw new IllegalArgumentException("API names do not fit in " + NAMES_SIZE + " bytes");
+        }
+        return names;
+    }
+
+    /**
+     * FNV-1a over primitive arguments and array lengths.
+     */
+    static int digest(Object[] args) {
+        int h = 0x811C9DC5;
+        if (args == null) {
+            return h;
+        }
+        for (Object arg : args) {
+            long v;
+            if (arg instanceof Number) {
+                v = ((Number) arg).longValue();
+            } else if (arg instanceof Boolean) {
+                v = (Boolean) arg ? 1 : 0;
+            } else if (arg instanceof Character) {
+                v = (Character) arg;
+            } else if (arg instanceof byte[]) {
+                v = ((byte[]) arg).length;
+            } else if (arg instanceof int[]) {
+                v = ((int[]) arg).length;
+            } else if (arg instanceof String) {
+                v = ((String) arg).length();
+            } else {
+                v = arg == null ? -1 : 0;
+            }
+            for (int i = 0; i < 8; i++) {
+                h = (h ^ (int) (v & 0xFF)) * 0x01000193;
+                v >>>= 8;
+            }
+        }
+        return h;
+    }
+}
@@ -0,0 +1,303 @@
+package com.ctk.sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a manifest of PIN, MAC and DES keys and DUKPT IPEKs in one pass.
+ *
+ * Master keys are written before the working keys they protect. A key with an
+ * expected KCV is read back first and left alone when the KCV already matches, so
+ * running the same manifest again changes nothing; otherwise it is written and its
+ * KCV checked right away. Working keys of a master that failed are not attempted,
+ * and working keys of a master that was rewritten are always rewritten. An IPEK
+ * cannot be read back and writing it again resets the KSN counter, so it is only
+ * written when its entry is marked {@code force}.
+ *
+ * Not thread safe; the caller holds the service lock for the whole operation.
+ */
+public class KeyInjector {
+    public static final int TYPE_PIN = 0;
+    public static final int TYPE_MAC = 1;
+    public static final int TYPE_DES = 2;
+    public static final int TYPE_DUKPT = 3;
+
+    public static final String UNCHANGED = "unchanged";
+    public static final String WRITTEN = "written";
+    public static final String FAILED = "failed";
+    public static final String SKIPPED = "skipped";
+
+    public static final int ERR_KCV_MISMATCH = -9301;
+
+    private static final int KCV_MAIN_PIN = 0x0A;
+    private static final int KCV_WORK_PIN = 0x0D;
+    private static final String[] TYPE_NAMES = {"pin", "mac", "des", "dukpt"};
+
+    /**
+     * Device calls used by the injector.
+     */
+    public interface Pci {
+        int writeMasterKey(int type, int keyNo, byte[] key, int mode);
+
+        int writeWorkingKey(int type, int keyNo, byte[] key, int mode, int masterNo);
+
+        int writeDukptIpek(int keyId, byte[] ipek, byte[] ksn);
+
+        /**
+         * @param kcvType PciReadKCV key type, 0x0A-0x0C for masters, 0x0D-0x0F for working keys
+         */
+        int readKcv(int keyNo, int kcvType, byte[] kcv);
+    }
+
+    public static Pci pci(final PosApiHelper posApiHelper) {
+        return new Pci() {
+            @Override
+            public int writeMasterKey(int type, int keyNo, byte[] key, int mode) {
+                switch (type) {
+                    case TYPE_PIN:
+                        return posApiHelper.PciWritePinMKey((byte) keyNo, (byte) key.length, key, (byte) mode);
+                    case TYPE_MAC:
+                        return posApiHelper.PciWriteMacMKey((byte) keyNo, (byte) key.length, key, (byte) mode);
+                    default:
+                        return posApiHelper.PciWriteDesMKey((byte) keyNo, (byte) key.length, key, (byte) mode);
+                }
+            }
+
+            @Override
+            public int writeWorkingKey(int type, int keyNo, byte[] key, int mode, int masterNo) {
+                switch (type) {
+                    case TYPE_PIN:
+                        return posApiHelper.PciWritePinKey((byte) keyNo, (byte) key.length, key, (byte) mode,
+                                (byte) masterNo);
+                    case TYPE_MAC:
+                        return posApiHelper.PciWriteMacKey((byte) keyNo, (byte) key.length, key, (byte) mode,
+                                (byte) masterNo);
+                    default:
+                        return posApiHelper.PciWriteDesKey((byte) keyNo, (byte) key.length, key, (byte) mode,
+                                (byte) masterNo);
+                }
+            }
+
+            @Override
+            public int writeDukptIpek(int keyId, byte[] ipek, byte[] ksn) {
+                return posApiHelper.PciWriteDukptIpek(keyId, ipek.length, ipek, ksn.length, ksn);
+            }
+
+            @Override
+            public int readKcv(int keyNo, int kcvType, byte[] kcv) {
+                return posApiHelper.PciReadKCV((byte) keyNo, (byte) kcvType, kcv);
+            }
+        };
+    }
+
+    /**
+     * One key of the manifest.
+     */
+    public static class Entry {
+        final String name;
+        final int type;
+        final boolean master;
+        final int index;
+        final int masterIndex;
+        final byte[] key;
+        final int mode;
+        final byte[] kcv;
+        final byte[] ksn;
+        final boolean force;
+
+        /**
+         * @param master     master key; ignored for DUKPT
+         * @param masterIndex master protecting a working key
+         * @param kcv        expected KCV, null to always write
+         * @param ksn        initial KSN of an IPEK
+         */
+        public Entry(String name, int type, boolean master, int index, int masterIndex, byte[] key, int mode,
+                     byte[] kcv, byte[] ksn, boolean force) {
+            if (type < TYPE_PIN || type > TYPE_DUKPT) {
+                throw new IllegalArgumentException("Invalid key type " + type);
+            }
+            if (key == null || key.length == 0) {
+                throw new IllegalArgumentException("Key data missing for " + name);
+            }
+            if (type == TYPE_DUKPT && ksn == null) {
+                throw new IllegalArgumentException("KSN missing for " + name);
+            }
+            this.type = type;
+            this.master = master && type != TYPE_DUKPT;
+            this.index = index;
+            this.masterIndex = masterIndex;
+            this.key = key;
+            this.mode = mode;
+            this.kcv = kcv;
+            this.ksn = ksn;
+            this.force = force;
+            this.name = name != null ? name : TYPE_NAMES[type]
+                    + (type == TYPE_DUKPT ? "" : this.master ? " master" : " working") + " " + index;
+        }
+
+        int rank() {
+            return type == TYPE_DUKPT ? 2 : master ? 0 : 1;
+        }
+
+        String masterSlot() {
+            return type + ":" + (master ? index : masterIndex);
+        }
+
+        String slot() {
+            return (type == TYPE_DUKPT ? "d" : master ? "m" : "w") + type + ":" + index;
+        }
+    }
+
+    /**
+     * Entries from maps with name (optional), type ("pin", "mac", "des" or "dukpt"),
+     * master (bool), index, masterIndex, key, mode, kcv, ksn and force.
+     */
+    public static List<Entry> fromMaps(List<Map<String, Object>> maps) {
+        List<Entry> entries = new ArrayList<>(maps.size());
+        for (Map<String, Object> map : maps) {
+            int type = Arrays.asList(TYPE_NAMES).indexOf(map.get("type"));
+            entries.add(new Entry((String) map.get("name"), type, Boolean.TRUE.equals(map.get("master")),
+                    intValue(map.get("index"), 0), intValue(map.get("masterIndex"), 0), (byte[]) map.get("key"),
+                    intValue(map.get("mode"), 0), (byte[]) map.get("kcv"), (byte[]) map.get("ksn"),
+                    Boolean.TRUE.equals(map.get("force"))));
+        }
+        return entries;
+    }
+
+    private static int intValue(Object value, int defaultValue) {
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    private final Pci pci;
+    private final byte[] kcv = new byte[8];
+
+    public KeyInjector(Pci pci) {
+        this.pci = pci;
+    }
+
+    /**
+     * Loads the manifest.
+     *
+     * @return a map with keys (one map per entry in the order processed: name, type,
+     * index, status, and code, kcv or reason where they apply), written, unchanged,
+     * failed, skipped (counts) and elapsedMs
+     */
+    public Map<String, Object> load(List<Entry> manifest) {
+        long start = System.currentTimeMillis();
+        List<Entry> ordered = order(manifest);
+        Set<String> failedMasters = new HashSet<>();
+        Set<String> rewrittenMasters = new HashSet<>();
+        List<Map<String, Object>> keys = new ArrayList<>(ordered.size());
+        Map<String, Integer> counts = new HashMap<>();
+        for (Entry e : ordered) {
+            Map<String, Object> report = new HashMap<>();
+            report.put("name", e.name);
+            report.put("type", TYPE_NAMES[e.type]);
+            report.put("index", e.index);
+            String status = load(e, failedMasters, rewrittenMasters, report);
+            report.put("status", status);
+            keys.add(report);
+            Integer n = counts.get(status);
+            counts.put(status, n == null ? 1 : n + 1);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("keys", keys);
+        for (String status : new String[]{WRITTEN, UNCHANGED, FAILED, SKIPPED}) {
+            Integer n = counts.get(status);
+            result.put(status, n == null ? 0 : n);
+        }
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private String load(Entry e, Set<String> failedMasters, Set<String> rewrittenMasters,
+                        Map<String, Object> report) {
+        if (e.type == TYPE_DUKPT) {
+            if (!e.force) {
+                report.put("reason", "IPEK cannot be verified; set force to write it");
+                return SKIPPED;
+            }
+            int ret = pci.writeDukptIpek(e.index, e.key, e.ksn);
+            if (ret != 0) {
+                report.put("code", ret);
+                return FAILED;
+            }
+            return WRITTEN;
+        }
+        if (!e.master && failedMasters.contains(e.masterSlot())) {
+            report.put("reason", "master key " + e.masterIndex + " failed");
+            return SKIPPED;
+        }
+        int kcvType = (e.master ? KCV_MAIN_PIN : KCV_WORK_PIN) + e.type;
+        boolean masterRewritten = !e.master && rewrittenMasters.contains(e.masterSlot());
+        if (e.kcv != null && !masterRewritten && readKcv(e.index, kcvType) == 0 && kcvMatches(e.kcv)) {
+            report.put("kcv", kcvBytes(e.kcv.length));
+            return UNCHANGED;
+        }
+        int ret = e.master ? pci.writeMasterKey(e.type, e.index, e.key, e.mode)
+                : pci.writeWorkingKey(e.type, e.index, e.key, e.mode, e.masterIndex);
+        if (ret == 0) {
+            ret = readKcv(e.index, kcvType);
+            if (ret == 0 && e.kcv != null && !kcvMatches(e.kcv)) {
+                ret = ERR_KCV_MISMATCH;
+            }
+        }
+        if (ret == 0 || ret == ERR_KCV_MISMATCH) {
+            report.put("kcv", kcvBytes(e.kcv == null ? 3 : e.kcv.length));
+        }
+        if (ret != 0) {
+            report.put("code", ret);
+            if (e.master) {
+                failedMasters.add(e.masterSlot());
+            }
+            return FAILED;
+        }
+        if (e.master) {
+            rewrittenMasters.add(e.masterSlot());
+        }
+        return WRITTEN;
+    }
+
+    /**
+     * Masters, then working keys, then IPEKs, keeping manifest order within each.
+     */
+    private static List<Entry> order(List<Entry> manifest) {
+        Set<String> slots = new HashSet<>();
+        for (Entry e : manifest) {
+            if (!slots.add(e.slot())) {
+                throw new IllegalArgumentException("Key slot used twice: " + e.name);
+            }
+        }
+        List<Entry> ordered = new ArrayList<>(manifest);
+        // stable, so manifest order is kept within a rank
+        Collections.sort(ordered, (a, b) -> a.rank() - b.rank());
+        return ordered;
+    }
+
+    private int readKcv(int keyNo, int kcvType) {
+        Arrays.fill(kcv, (byte) 0);
+        return pci.readKcv(keyNo, kcvType, kcv);
+    }
+
+    private boolean kcvMatches(byte[] expected) {
+        if (expected.length > kcv.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (kcv[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] kcvBytes(int length) {
+        return Arrays.copyOf(kcv, Math.min(length, kcv.length));
+    }
+}
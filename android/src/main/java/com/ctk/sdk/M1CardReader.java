@@ -0,0 +1,326 @@
+package com.ctk.sdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes whole MIFARE Classic cards in one go.
+ *
+ * Each sector is authenticated with the first key of the key set that works, trying
+ * key A then key B. The key that opened a sector is remembered for the card UID, so
+ * the next read of the same card authenticates every sector at the first attempt.
+ * Sector layout follows MIFARE Classic 1K/4K: sectors 0-31 have 4 blocks, sectors
+ * 32-39 have 16 blocks, the last block of a sector being its trailer.
+ *
+ * Instances are not thread safe, since an authenticated sector belongs to one
+ * sequence of card calls; the key cache is shared and synchronized.
+ */
+public class M1CardReader {
+    public static final int BLOCK_SIZE = 16;
+    public static final int KEY_SIZE = 6;
+    public static final byte KEY_A = 'A';
+    public static final byte KEY_B = 'B';
+
+    private static final int MAX_CACHED_CARDS = 32;
+
+    /**
+     * Device calls used by the reader.
+     */
+    public interface Card {
+        /**
+         * Selects the card in the field, filling serialNo as PiccCheck does.
+         */
+        int activate(byte[] cardType, byte[] serialNo);
+
+        int authenticate(byte keyType, int block, byte[] key, byte[] uid);
+
+        int readBlock(int block, byte[] value);
+
+        int writeBlock(int block, byte[] value);
+    }
+
+    public static Card card(final PosApiHelper posApiHelper) {
+        return new Card() {
+            @Override
+            public int activate(byte[] cardType, byte[] serialNo) {
+                return PiccField.activate(posApiHelper, () -> posApiHelper.PiccCheck((byte) 'A', cardType, serialNo));
+            }
+
+            @Override
+            public int authenticate(byte keyType, int block, byte[] key, byte[] uid) {
+                return posApiHelper.PiccM1Authority(keyType, (byte) block, key, uid);
+            }
+
+            @Override
+            public int readBlock(int block, byte[] value) {
+                return posApiHelper.PiccM1ReadBlock((byte) block, value);
+            }
+
+            @Override
+            public int writeBlock(int block, byte[] value) {
+                return posApiHelper.PiccM1WriteBlock((byte) block, value);
+            }
+        };
+    }
+
+    /**
+     * Key that opened a sector, and its index in the key set of the call that used it.
+     * Immutable, since cached instances are shared between readers.
+     */
+    private static class SectorKey {
+        final byte[] key;
+        final byte keyType;
+        final int keyIndex;
+
+        SectorKey(byte[] key, byte keyType, int keyIndex) {
+            this.key = key.clone();
+            this.keyType = keyType;
+            this.keyIndex = keyIndex;
+        }
+    }
+
+    // uid hex -> sector -> key, least recently used card evicted first
+    private static final Map<String, Map<Integer, SectorKey>> sKeyCache =
+            new LinkedHashMap<String, Map<Integer, SectorKey>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<Integer, SectorKey>> eldest) {
+                    return size() > MAX_CACHED_CARDS;
+                }
+            };
+
+    private final Card card;
+    private final byte[] cardType = new byte[3];
+    private final byte[] serialNo = new byte[50];
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private byte[] uid;
+    private int lastError;
+
+    public M1CardReader(Card card) {
+        this.card = card;
+    }
+
+    public static int firstBlock(int sector) {
+        return sector < 32 ? sector * 4 : 128 + (sector - 32) * 16;
+    }
+
+    public static int blockCount(int sector) {
+        return sector < 32 ? 4 : 16;
+    }
+
+    public static int sectorOf(int block) {
+        return block < 128 ? block / 4 : 32 + (block - 128) / 16;
+    }
+
+    public static boolean isTrailer(int block) {
+        int sector = sectorOf(block);
+        return block == firstBlock(sector) + blockCount(sector) - 1;
+    }
+
+    public static void clearKeyCache() {
+        synchronized (sKeyCache) {
+            sKeyCache.clear();
+        }
+    }
+
+    /**
+     * Reads sectors {@code firstSector..lastSector}.
+     *
+     * @param keys candidate 6 byte keys, tried in order as key A then key B
+     * @return uid, cardType and sectors: one map per sector with sector, keyType ("A" or
+     * "B"), keyIndex and blocks (list of 16 byte arrays), or sector and error (device
+     * code) when no key opened it or a block could not be read; or null with
+     * {@code error} set when no card could be activated
+     */
+    public Map<String, Object> read(List<byte[]> keys, int firstSector, int lastSector) {
+        checkKeys(keys);
+        checkSectors(firstSector, lastSector);
+        Map<String, Object> result = new HashMap<>();
+        int ret = activate();
+        if (ret != 0) {
+            result.put("error", ret);
+            return result;
+        }
+        List<Map<String, Object>> sectors = new ArrayList<>();
+        for (int sector = firstSector; sector <= lastSector; sector++) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("sector", sector);
+            SectorKey key = authenticate(sector, keys);
+            if (key == null) {
+                entry.put("error", lastError);
+                sectors.add(entry);
+                continue;
+            }
+            entry.put("keyType", String.valueOf((char) key.keyType));
+            entry.put("keyIndex", key.keyIndex);
+            List<byte[]> blocks = new ArrayList<>(blockCount(sector));
+            int first = firstBlock(sector);
+            for (int b = first; b < first + blockCount(sector); b++) {
+                ret = card.readBlock(b, block);
+                if (ret != 0) {
+                    entry.put("error", ret);
+                    break;
+                }
+                blocks.add(Arrays.copyOf(block, BLOCK_SIZE));
+            }
+            entry.put("blocks", blocks);
+            sectors.add(entry);
+        }
+        result.put("uid", uid);
+        result.put("cardType", Arrays.copyOf(cardType, 2));
+        result.put("sectors", sectors);
+        return result;
+    }
+
+    /**
+     * Writes the given blocks, skipping those whose current content already matches.
+     * Block 0 is never written; sector trailers only when {@code allowTrailers} is set.
+     *
+     * @param blocks block number to 16 byte content
+     * @return uid, written, unchanged (lists of block numbers) and failed (block number
+     * to device code, -1 for a refused block); or error when no card could be activated
+     */
+    public Map<String, Object> write(List<byte[]> keys, Map<Integer, byte[]> blocks, boolean allowTrailers) {
+        checkKeys(keys);
+        Map<String, Object> result = new HashMap<>();
+        int ret = activate();
+        if (ret != 0) {
+            result.put("error", ret);
+            return result;
+        }
+        List<Integer> written = new ArrayList<>();
+        List<Integer> unchanged = new ArrayList<>();
+        Map<Integer, Integer> failed = new HashMap<>();
+        int authenticatedSector = -1;
+        SortedMap<Integer, byte[]> ordered = new TreeMap<>(blocks);
+        for (Map.Entry<Integer, byte[]> entry : ordered.entrySet()) {
+            int b = entry.getKey();
+            byte[] value = entry.getValue();
+            if (b <= 0 || b >= 256 || value == null || value.length != BLOCK_SIZE
+                    || (isTrailer(b) && !allowTrailers)) {
+                failed.put(b, -1);
+                continue;
+            }
+            int sector = sectorOf(b);
+            if (sector != authenticatedSector) {
+                if (authenticate(sector, keys) == null) {
+                    failed.put(b, lastError);
+                    authenticatedSector = -1;
+                    continue;
+                }
+                authenticatedSector = sector;
+            }
+            ret = card.readBlock(b, block);
+            if (ret == 0 && Arrays.equals(block, value)) {
+                unchanged.add(b);
+                continue;
+            }
+            ret = card.writeBlock(b, value);
+            if (ret == 0) {
+                written.add(b);
+            } else {
+                failed.put(b, ret);
+            }
+        }
+        result.put("uid", uid);
+        result.put("written", written);
+        result.put("unchanged", unchanged);
+        result.put("failed", failed);
+        return result;
+    }
+
+    private int activate() {
+        int ret = card.activate(cardType, serialNo);
+        if (ret == 0) {
+            int len = Math.min(serialNo[0] & 0xff, serialNo.length - 1);
+            uid = Arrays.copyOfRange(serialNo, 1, 1 + len);
+        }
+        return ret;
+    }
+
+    /**
+     * Opens a sector with the cached key for this card if there is one, else with the
+     * first key that works. A failed attempt halts a MIFARE Classic card, so the card
+     * is selected again before the next one.
+     */
+    private SectorKey authenticate(int sector, List<byte[]> keys) {
+        String cardId = ByteUtil.toHexString(uid, 0, uid.length);
+        int trailer = firstBlock(sector) + blockCount(sector) - 1;
+        SectorKey cached;
+        synchronized (sKeyCache) {
+            Map<Integer, SectorKey> sectors = sKeyCache.get(cardId);
+            cached = sectors == null ? null : sectors.get(sector);
+        }
+        int cachedIndex = cached == null ? -1 : indexOf(keys, cached.key);
+        if (cachedIndex >= 0) {
+            lastError = card.authenticate(cached.keyType, trailer, cached.key, uid);
+            if (lastError == 0) {
+                return cachedIndex == cached.keyIndex ? cached
+                        : new SectorKey(cached.key, cached.keyType, cachedIndex);
+            }
+            card.activate(cardType, serialNo);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            for (byte keyType : new byte[]{KEY_A, KEY_B}) {
+                if (i == cachedIndex && keyType == cached.keyType) {
+                    // just failed above
+                    continue;
+                }
+                lastError = card.authenticate(keyType, trailer, keys.get(i), uid);
+                if (lastError == 0) {
+                    SectorKey key = new SectorKey(keys.get(i), keyType, i);
+                    synchronized (sKeyCache) {
+                        Map<Integer, SectorKey> sectors = sKeyCache.get(cardId);
+                        if (sectors == null) {
+                            sectors = new HashMap<>();
+                            sKeyCache.put(cardId, sectors);
+                        }
+                        sectors.put(sector, key);
+                    }
+                    return key;
+                }
+                card.activate(cardType, serialNo);
+            }
+        }
+        if (cachedIndex >= 0) {
+            synchronized (sKeyCache) {
+                Map<Integer, SectorKey> sectors = sKeyCache.get(cardId);
+                if (sectors != null && sectors.get(sector) == cached) {
+                    sectors.remove(sector);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(List<byte[]> keys, byte[] key) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (Arrays.equals(keys.get(i), key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void checkKeys(List<byte[]> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("keys are required");
+        }
+        for (byte[] key : keys) {
+            if (key == null || key.length != KEY_SIZE) {
+                throw new IllegalArgumentException("Keys must be " + KEY_SIZE + " bytes");
+            }
+        }
+    }
+
+    private static void checkSectors(int firstSector, int lastSector) {
+        if (firstSector < 0 || lastSector > 39 || firstSector > lastSector) {
+            throw new IllegalArgumentException("Invalid sector range " + firstSector + ".." + lastSector);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.ctk.sdk;
+
+/**
+ * Splits ISO 7813 track 1 and track 2 data into its fields without copying.
+ *
+ * Fields are offsets into the array passed to {@link #parseTrack1} or
+ * {@link #parseTrack2}; a missing field has offset -1. Start and end sentinels
+ * ('%', ';', '?') and anything after the end sentinel or a 0 byte are ignored, so
+ * the 256 byte buffers filled by McrRead can be passed as they are.
+ *
+ * <pre>
+ * track 1: %B PAN ^ NAME ^ YYMM SSS discretionary ?
+ * track 2: ;PAN = YYMM SSS discretionary ?
+ * </pre>
+ */
+public class MagTrackParser {
+    private byte[] buf;
+    private int panOffset;
+    private int panLength;
+    private int nameOffset;
+    private int nameLength;
+    private int expiryOffset;
+    private int serviceCodeOffset;
+    private int discretionaryOffset;
+    private int discretionaryLength;
+
+    public MagTrackParser() {
+        clear(null);
+    }
+
+    /**
+     * @return false if the data is not a format B track 1
+     */
+    public boolean parseTrack1(byte[] buf, int offset, int length) {
+        clear(buf);
+        int end = dataEnd(buf, offset, length);
+        int pos = offset;
+        if (pos < end && buf[pos] == '%') {
+            pos++;
+        }
+        if (pos >= end || buf[pos] != 'B') {
+            return false;
+        }
+        pos++;
+        int sep = indexOf(buf, pos, end, '^');
+        if (sep < 0 || sep == pos) {
+            return false;
+        }
+        panOffset = pos;
+        panLength = sep - pos;
+        pos = sep + 1;
+        sep = indexOf(buf, pos, end, '^');
+        if (sep < 0) {
+            return false;
+        }
+        nameOffset = pos;
+        nameLength = trimRight(buf, pos, sep) - pos;
+        additionalData(sep + 1, end);
+        return true;
+    }
+
+    /**
+     * @return false if the data has no PAN and separator
+     */
+    public boolean parseTrack2(byte[] buf, int offset, int length) {
+        clear(buf);
+        int end = dataEnd(buf, offset, length);
+        int pos = offset;
+        if (pos < end && buf[pos] == ';') {
+            pos++;
+        }
+        int sep = indexOf(buf, pos, end, '=');
+        if (sep < 0) {
+            // some readers send the alternative separator
+            sep = indexOf(buf, pos, end, 'D');
+        }
+        if (sep <= pos) {
+            return false;
+        }
+        panOffset = pos;
+        panLength = sep - pos;
+        additionalData(sep + 1, end);
+        return true;
+    }
+
+    public int panOffset() {
+        return panOffset;
+    }
+
+    public int panLength() {
+        return panLength;
+    }
+
+    public int nameOffset() {
+        return nameOffset;
+    }
+
+    public int nameLength() {
+        return nameLength;
+    }
+
+    /**
+     * Offset of the 4 digit YYMM expiry date, -1 if absent.
+     */
+    public int expiryOffset() {
+        return expiryOffset;
+    }
+
+    /**
+     * Offset of the 3 digit service code, -1 if absent.
+     */
+    public int serviceCodeOffset() {
+        return serviceCodeOffset;
+    }
+
+    public int discretionaryOffset() {
+        return discretionaryOffset;
+    }
+
+    public int discretionaryLength() {
+        return discretionaryLength;
+    }
+
+    /**
+     * Service code as a number (e.g. 201), -1 if absent.
+     */
+    public int serviceCode() {
+        return serviceCodeOffset < 0 ? -1 : digits(buf, serviceCodeOffset, 3);
+    }
+
+    /**
+     * Expiry as YYMM (e.g. 2812), -1 if absent.
+     */
+    public int expiry() {
+        return expiryOffset < 0 ? -1 : digits(buf, expiryOffset, 4);
+    }
+
+    /**
+     * Copies the PAN with all but the first 6 and last 4 digits replaced by '*'.
+     */
+    public int maskedPan(char[] dst, int dstOff) {
+        for (int i = 0; i < panLength; i++) {
+            boolean clear = i < 6 || i >= panLength - 4;
+            dst[dstOff + i] = clear ? (char) buf[panOffset + i] : '*';
+        }
+        return panLength;
+    }
+
+    /**
+     * Expiry (YYMM, "=" stands for "not present" in track 2), then service code and
+     * discretionary data.
+     */
+    private void additionalData(int pos, int end) {
+        if (pos < end && buf[pos] == '=') {
+            pos++;
+        } else if (end - pos >= 4 && isDigits(buf, pos, 4)) {
+            expiryOffset = pos;
+            pos += 4;
+        }
+        if (end - pos >= 3 && isDigits(buf, pos, 3)) {
+            serviceCodeOffset = pos;
+            pos += 3;
+        }
+        discretionaryOffset = pos;
+        discretionaryLength = end - pos;
+    }
+
+    private void clear(byte[] buf) {
+        this.buf = buf;
+        panOffset = -1;
+        panLength = 0;
+        nameOffset = -1;
+        nameLength = 0;
+        expiryOffset = -1;
+        serviceCodeOffset = -1;
+        discretionaryOffset = -1;
+        discretionaryLength = 0;
+    }
+
+    private static int dataEnd(byte[] buf, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buf.length) {
+            throw new IllegalArgumentException("Range " + offset + "+" + length + " outside buffer");
+        }
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (buf[i] == 0 || buf[i] == '?') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int indexOf(byte[] buf, int from, int end, char c) {
+        for (int i = from; i < end; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int trimRight(byte[] buf, int from, int end) {
+        while (end > from && buf[end - 1] == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isDigits(byte[] buf, int from, int n) {
+        for (int i = from; i < from + n; i++) {
+            if (buf[i] < '0' || buf[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digits(byte[] buf, int from, int n) {
+        int value = 0;
+        for (int i = from; i < from + n; i++) {
+            value = value * 10 + (buf[i] - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,290 @@
+package com.ctk.sdk;
+
+import java.util.Arrays;
+
+/**
+ * Watches the magnetic stripe reader for swipes on a background thread.
+ *
+ * {@link PosApiHelper#McrCheck} is polled every {@code fastIntervalMs} after start
+ * or a swipe, backing off to {@code idleIntervalMs} once nothing has been swiped for
+ * {@code fastWindowMs}. A swipe is read into three reused track buffers, tracks 1
+ * and 2 are parsed in place and the listener is called once; the reader is then
+ * reset for the next swipe. Nothing is allocated per poll or per swipe.
+ */
+public class McrSwipeMonitor {
+    private static final String TAG = "McrSwipeMonitor";
+
+    public static final int TRACK_SIZE = 256;
+    public static final int TRACK1_OK = 0x01;
+    public static final int TRACK2_OK = 0x02;
+    public static final int TRACK3_OK = 0x04;
+
+    /**
+     * Device calls used by the monitor.
+     */
+    public interface Reader {
+        int open();
+
+        int check();
+
+        int read(byte keyNo, byte mode, byte[] track1, byte[] track2, byte[] track3);
+
+        int reset();
+
+        int close();
+    }
+
+    /**
+     * Called on the monitor thread. The tracks and parsers are reused for the next
+     * swipe, so anything kept must be copied before returning.
+     */
+    public interface Listener {
+        /**
+         * @param status McrRead result: TRACKn_OK bits, bits 4-6 set for tracks
+         *               whose check failed; 0 or less for a swipe that could not be read
+         */
+        void onSwipe(int status, Swipe swipe);
+
+        void onError(int code);
+    }
+
+    /**
+     * Track data of one swipe; see {@link Listener#onSwipe}.
+     */
+    public static class Swipe {
+        public final byte[] track1 = new byte[TRACK_SIZE];
+        public final byte[] track2 = new byte[TRACK_SIZE];
+        public final byte[] track3 = new byte[TRACK_SIZE];
+        public final MagTrackParser parsed1 = new MagTrackParser();
+        public final MagTrackParser parsed2 = new MagTrackParser();
+        public int track1Length;
+        public int track2Length;
+        public int track3Length;
+        /**
+         * True when the track was read correctly and, for tracks 1 and 2, parsed.
+         */
+        public boolean hasTrack1;
+        public boolean hasTrack2;
+        public boolean hasTrack3;
+    }
+
+    public static Reader reader(final PosApiHelper posApiHelper) {
+        return new Reader() {
+            @Override
+            public int open() {
+                return posApiHelper.McrOpen();
+            }
+
+            @Override
+            public int check() {
+                return posApiHelper.McrCheck();
+            }
+
+            @Override
+            public int read(byte keyNo, byte mode, byte[] track1, byte[] track2, byte[] track3) {
+                return posApiHelper.McrRead(keyNo, mode, track1, track2, track3);
+            }
+
+            @Override
+            public int reset() {
+                return posApiHelper.McrReset();
+            }
+
+            @Override
+            public int close() {
+                return posApiHelper.McrClose();
+            }
+        };
+    }
+
+    private final Reader reader;
+    private final Listener listener;
+    private final Swipe swipe = new Swipe();
+
+    private volatile byte keyNo;
+    private volatile boolean encrypted;
+    private volatile long fastIntervalMs = 20;
+    private volatile long idleIntervalMs = 100;
+    private volatile long fastWindowMs = 10000;
+
+    // the current poller; a poller that is no longer current stops
+    private volatile Thread thread;
+    // the most recently started poller, possibly still closing the reader
+    private Thread lastThread;
+
+    public McrSwipeMonitor(Reader reader, Listener listener) {
+        this.reader = reader;
+        this.listener = listener;
+    }
+
+    /**
+     * Reads tracks encrypted with the given DES key index; the tracks are then
+     * passed on unparsed.
+     */
+    public McrSwipeMonitor setEncrypted(boolean encrypted, int keyNo) {
+        this.encrypted = encrypted;
+        this.keyNo = (byte) keyNo;
+        return this;
+    }
+
+    public McrSwipeMonitor setIntervals(long fastIntervalMs, long idleIntervalMs, long fastWindowMs) {
+        if (fastIntervalMs < 0 || idleIntervalMs < fastIntervalMs) {
+            throw new IllegalArgumentException("Invalid polling intervals");
+        }
+        this.fastIntervalMs = fastIntervalMs;
+        this.idleIntervalMs = idleIntervalMs;
+        this.fastWindowMs = fastWindowMs;
+        return this;
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Starts polling. After a stop the new poller opens the reader only once the
+     * previous one has closed it.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        final Thread previous = lastThread;
+        Thread t = new Thread(() -> poll(previous), TAG);
+        t.setDaemon(true);
+        thread = t;
+        lastThread = t;
+        t.start();
+    }
+
+    /**
+     * Stops polling; the poller closes the reader on its way out.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    /**
+     * Waits until the last poller has closed the reader; not for the main thread.
+     *
+     * @return false if it was still running after {@code timeoutMs}
+     */
+    public boolean awaitStopped(long timeoutMs) throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = lastThread;
+        }
+        if (t == null) {
+            return true;
+        }
+        t.join(timeoutMs);
+        return !t.isAlive();
+    }
+
+    private void poll(Thread previous) {
+        if (previous != null) {
+            try {
+                previous.join();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+        if (thread != Thread.currentThread()) {
+            return;
+        }
+        int ret = reader.open();
+        if (ret != 0) {
+            synchronized (this) {
+                if (thread != Thread.currentThread()) {
+                    return;
+                }
+                thread = null;
+            }
+            listener.onError(ret);
+            return;
+        }
+        reader.reset();
+        long lastActivity = System.currentTimeMillis();
+        try {
+            while (thread == Thread.currentThread()) {
+                long now = System.currentTimeMillis();
+                if (reader.check() == 0) {
+                    handleSwipe();
+                    reader.reset();
+                    lastActivity = now;
+                }
+                long interval = now - lastActivity < fastWindowMs ? fastIntervalMs : backOff(now - lastActivity);
+                if (interval > 0) {
+                    Thread.sleep(interval);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() requested
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void handleSwipe() {
+        Swipe s = swipe;
+        s.hasTrack1 = s.hasTrack2 = s.hasTrack3 = false;
+        s.track1Length = s.track2Length = s.track3Length = 0;
+        Arrays.fill(s.track1, (byte) 0);
+        Arrays.fill(s.track2, (byte) 0);
+        Arrays.fill(s.track3, (byte) 0);
+        int status = reader.read(keyNo, (byte) (encrypted ? 1 : 0), s.track1, s.track2, s.track3);
+        if (status <= 0) {
+            // a bad swipe: nothing was read correctly
+            listener.onSwipe(status, s);
+            return;
+        }
+        boolean plain = !encrypted;
+        s.track1Length = plain ? length(s.track1) : cipherLength(s.track1);
+        s.track2Length = plain ? length(s.track2) : cipherLength(s.track2);
+        s.track3Length = plain ? length(s.track3) : cipherLength(s.track3);
+        s.hasTrack1 = (status & TRACK1_OK) != 0
+                && (!plain || s.parsed1.parseTrack1(s.track1, 0, s.track1Length));
+        s.hasTrack2 = (status & TRACK2_OK) != 0
+                && (!plain || s.parsed2.parseTrack2(s.track2, 0, s.track2Length));
+        s.hasTrack3 = (status & TRACK3_OK) != 0;
+        listener.onSwipe(status, s);
+    }
+
+    private static int length(byte[] track) {
+        for (int i = 0; i < track.length; i++) {
+            if (track[i] == 0) {
+                return i;
+            }
+        }
+        return track.length;
+    }
+
+    /**
+     * McrRead does not report the length of an encrypted track and the ciphertext may
+     * hold 0x00 anywhere, so the track runs to its last non-zero byte rounded up to
+     * whole DES blocks. The buffers are cleared before each read.
+     */
+    private static int cipherLength(byte[] track) {
+        int end = track.length;
+        while (end > 0 && track[end - 1] == 0) {
+            end--;
+        }
+        return Math.min((end + 7) / 8 * 8, track.length);
+    }
+
+    /**
+     * Interval doubles for every further fast window without a swipe, up to the idle interval.
+     */
+    private long backOff(long idleMs) {
+        long windows = fastWindowMs <= 0 ? 63 : Math.min(idleMs / fastWindowMs, 63);
+        long interval = Math.max(fastIntervalMs, 1) << Math.min(windows, 20);
+        return Math.min(interval, idleIntervalMs);
+    }
+}
@@ -0,0 +1,283 @@
+package com.ctk.sdk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams block ranges from and to a MIFARE Plus card in security level 3.
+ *
+ * The card is activated and authenticated once; moving to another sector costs a
+ * following authentication, not a new session. Ranges are transferred in the largest
+ * chunk the card accepts: a chunk that keeps failing is halved and the smaller size
+ * is kept for the rest of the session. Each chunk is retried on a fresh session
+ * before giving up, since an RF error also drops the secure messaging state. All
+ * transfers go through one preallocated buffer.
+ *
+ * Block layout is the MIFARE Classic 2K/4K one, see {@link M1CardReader#firstBlock}.
+ *
+ * Not thread safe. The activation and authenticated sector it tracks are only valid
+ * while the caller keeps the service lock, so use one session per locked operation.
+ */
+public class MifarePlusSession {
+    public static final int BLOCK_SIZE = M1CardReader.BLOCK_SIZE;
+    /**
+     * Vendor limit of one write command.
+     */
+    public static final int MAX_WRITE_BLOCKS = 3;
+    /**
+     * 15 blocks plus MAC still fit in a 256 byte frame.
+     */
+    public static final int DEFAULT_READ_BLOCKS = 15;
+    /**
+     * Largest block count the read call takes: it is passed as a signed byte.
+     */
+    public static final int MAX_READ_BLOCKS = Byte.MAX_VALUE;
+    public static final int DEFAULT_RETRIES = 2;
+
+    /**
+     * Returned when a block may not be written through this API.
+     */
+    public static final int ERR_REFUSED = -1;
+
+    private static final int AES_KEY_BLOCK = 0x4000;
+
+    /**
+     * Device calls used by the session.
+     */
+    public interface Card {
+        int activate();
+
+        int authenticate(boolean first, int keyBlock, int keyNumber, int keyVersion);
+
+        int read(int block, int count, byte[] blocks);
+
+        int write(int block, int count, byte[] blocks);
+    }
+
+    /**
+     * Reads with MAC on command and response, writes with MAC on response;
+     * {@code encrypted} selects encrypted rather than plain data.
+     */
+    public static Card card(final PosApiHelper posApiHelper, final boolean encrypted) {
+        final byte enc = (byte) (encrypted ? 1 : 0);
+        return new Card() {
+            @Override
+            public int activate() {
+                return PiccField.activate(posApiHelper, posApiHelper::PiccMfpActivateCard);
+            }
+
+            @Override
+            public int authenticate(boolean first, int keyBlock, int keyNumber, int keyVersion) {
+                return posApiHelper.PiccMfpAuthenticateSL((byte) 3, (byte) (first ? 1 : 0), keyBlock,
+                        keyNumber, keyVersion, (byte) 0, null, (byte) 0, null,
+                        new byte[6], new byte[6], new byte[6]);
+            }
+
+            @Override
+            public int read(int block, int count, byte[] blocks) {
+                return posApiHelper.PiccMfpRead(enc, (byte) 1, (byte) 1, block, (byte) count, blocks);
+            }
+
+            @Override
+            public int write(int block, int count, byte[] blocks) {
+                return posApiHelper.PiccMfpWrite(enc, (byte) 1, block, (byte) count, blocks);
+            }
+        };
+    }
+
+    private final Card card;
+    private final int keyNumber;
+    private final int keyVersion;
+    private final boolean keyB;
+    // sector -> {keyNumber, keyVersion} for sectors not using the default key
+    private final Map<Integer, int[]> sectorKeys = new HashMap<>();
+    private byte[] buffer;
+    private int readChunk = DEFAULT_READ_BLOCKS;
+    private int writeChunk = MAX_WRITE_BLOCKS;
+    private int retries = DEFAULT_RETRIES;
+    private boolean active;
+    private int authenticatedSector = -1;
+    private int failedBlock = -1;
+    // the last transfer failed authenticating, so a smaller chunk would not help
+    private boolean authFailed;
+
+    /**
+     * @param keyNumber  key store entry holding the sector key, see
+     *                   {@link PosApiHelper#PiccMfpKeyStore}
+     * @param keyVersion version of that entry
+     * @param keyB       authenticate with the sector's key B rather than key A
+     */
+    public MifarePlusSession(Card card, int keyNumber, int keyVersion, boolean keyB) {
+        this.card = card;
+        this.keyNumber = keyNumber;
+        this.keyVersion = keyVersion;
+        this.keyB = keyB;
+        this.buffer = new byte[DEFAULT_READ_BLOCKS * BLOCK_SIZE];
+    }
+
+    public void setSectorKey(int sector, int keyNumber, int keyVersion) {
+        sectorKeys.put(sector, new int[]{keyNumber, keyVersion});
+    }
+
+    /**
+     * @throws IllegalArgumentException unless 1 <= blocks <= {@link #MAX_READ_BLOCKS}
+     */
+    public void setMaxReadBlocks(int blocks) {
+        if (blocks < 1 || blocks > MAX_READ_BLOCKS) {
+            throw new IllegalArgumentException("Invalid read chunk " + blocks);
+        }
+        readChunk = blocks;
+        if (buffer.length < blocks * BLOCK_SIZE) {
+            buffer = new byte[blocks * BLOCK_SIZE];
+        }
+    }
+
+    public void setRetries(int retries) {
+        this.retries = Math.max(0, retries);
+    }
+
+    /**
+     * Chunk size currently used for reads, after any reduction.
+     */
+    public int getReadChunk() {
+        return readChunk;
+    }
+
+    /**
+     * First block of the chunk that failed in the last read or write, -1 if none did.
+     */
+    public int getFailedBlock() {
+        return failedBlock;
+    }
+
+    /**
+     * Reads {@code count} blocks from {@code firstBlock} into {@code dst}.
+     *
+     * @return 0, or the device code of the chunk that failed
+     */
+    public int read(int firstBlock, int count, byte[] dst, int dstOff) {
+        checkRange(firstBlock, count);
+        if (dstOff < 0 || dst.length - dstOff < count * BLOCK_SIZE) {
+            throw new IllegalArgumentException("Destination too small for " + count + " blocks");
+        }
+        failedBlock = -1;
+        int end = firstBlock + count;
+        int block = firstBlock;
+        while (block < end) {
+            int n = chunk(block, end, readChunk);
+            int ret = transfer(false, block, n);
+            if (ret != 0) {
+                if (n > 1 && !authFailed) {
+                    readChunk = n / 2;
+                    continue;
+                }
+                failedBlock = block;
+                return ret;
+            }
+            System.arraycopy(buffer, 0, dst, dstOff + (block - firstBlock) * BLOCK_SIZE, n * BLOCK_SIZE);
+            block += n;
+        }
+        return 0;
+    }
+
+    /**
+     * Writes {@code count} blocks from {@code src} starting at {@code firstBlock}.
+     * Block 0 is never written; sector trailers only when {@code allowTrailers} is set.
+     *
+     * @return 0, {@link #ERR_REFUSED} if the range holds a protected block, or the
+     * device code of the chunk that failed
+     */
+    public int write(int firstBlock, int count, byte[] src, int srcOff, boolean allowTrailers) {
+        checkRange(firstBlock, count);
+        if (srcOff < 0 || src.length - srcOff < count * BLOCK_SIZE) {
+            throw new IllegalArgumentException("Source shorter than " + count + " blocks");
+        }
+        failedBlock = -1;
+        int end = firstBlock + count;
+        for (int b = firstBlock; b < end; b++) {
+            if (b == 0 || (!allowTrailers && M1CardReader.isTrailer(b))) {
+                failedBlock = b;
+                return ERR_REFUSED;
+            }
+        }
+        int block = firstBlock;
+        while (block < end) {
+            int n = chunk(block, end, writeChunk);
+            System.arraycopy(src, srcOff + (block - firstBlock) * BLOCK_SIZE, buffer, 0, n * BLOCK_SIZE);
+            int ret = transfer(true, block, n);
+            if (ret != 0) {
+                if (n > 1 && !authFailed) {
+                    writeChunk = n / 2;
+                    continue;
+                }
+                failedBlock = block;
+                return ret;
+            }
+            block += n;
+        }
+        return 0;
+    }
+
+    /**
+     * Blocks from {@code block} to send in one command: capped by the chunk size and
+     * by the end of the sector, since authentication is per sector.
+     */
+    private static int chunk(int block, int end, int max) {
+        int sector = M1CardReader.sectorOf(block);
+        int sectorEnd = M1CardReader.firstBlock(sector) + M1CardReader.blockCount(sector);
+        return Math.min(max, Math.min(end, sectorEnd) - block);
+    }
+
+    private int transfer(boolean write, int block, int n) {
+        int sector = M1CardReader.sectorOf(block);
+        int ret = 0;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            authFailed = false;
+            if (attempt > 0) {
+                // the failed command may have left the card halted or out of sync
+                active = false;
+            }
+            ret = authenticate(sector);
+            if (ret != 0) {
+                authFailed = true;
+                continue;
+            }
+            ret = write ? card.write(block, n, buffer) : card.read(block, n, buffer);
+            if (ret == 0) {
+                return 0;
+            }
+        }
+        return ret;
+    }
+
+    private int authenticate(int sector) {
+        if (active && authenticatedSector == sector) {
+            return 0;
+        }
+        boolean first = !active;
+        if (first) {
+            authenticatedSector = -1;
+            int ret = card.activate();
+            if (ret != 0) {
+                return ret;
+            }
+            active = true;
+        }
+        int[] key = sectorKeys.get(sector);
+        int ret = card.authenticate(first, AES_KEY_BLOCK + sector * 2 + (keyB ? 1 : 0),
+                key == null ? keyNumber : key[0], key == null ? keyVersion : key[1]);
+        if (ret != 0) {
+            active = false;
+            authenticatedSector = -1;
+            return ret;
+        }
+        authenticatedSector = sector;
+        return 0;
+    }
+
+    private static void checkRange(int firstBlock, int count) {
+        if (firstBlock < 0 || count < 0 || firstBlock + count > 256) {
+            throw new IllegalArgumentException("Invalid block range " + firstBlock + "+" + count);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.ctk.sdk;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cursor over the records of an NDEF message.
+ *
+ * Like {@link TlvReader} the reader never copies: type, ID and payload are offsets
+ * into the array passed to {@link #reset}. A message still wrapped in its NDEF
+ * Message TLV (03 len ...), as stored on Type 2 tags, is unwrapped first. Chunked
+ * records are reported chunk by chunk; {@link #toMaps} joins them.
+ *
+ * <pre>
+ * reader.reset(buf, 0, len);
+ * while (reader.next()) {
+ *     if (reader.isWellKnown('U')) ...
+ * }
+ * </pre>
+ */
+public class NdefReader {
+    public static final int TNF_EMPTY = 0x00;
+    public static final int TNF_WELL_KNOWN = 0x01;
+    public static final int TNF_MIME_MEDIA = 0x02;
+    public static final int TNF_ABSOLUTE_URI = 0x03;
+    public static final int TNF_EXTERNAL = 0x04;
+    public static final int TNF_UNKNOWN = 0x05;
+    public static final int TNF_UNCHANGED = 0x06;
+
+    private static final int FLAG_MB = 0x80;
+    private static final int FLAG_ME = 0x40;
+    private static final int FLAG_CF = 0x20;
+    private static final int FLAG_SR = 0x10;
+    private static final int FLAG_IL = 0x08;
+
+    private static final int TLV_NDEF = 0x03;
+    private static final int MAX_NESTING = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+
+    /**
+     * URI identifier codes of the NFC Forum URI record type.
+     */
+    private static final String[] URI_PREFIXES = {
+            "", "http://www.", "https://www.", "http://", "https://", "tel:", "mailto:",
+            "ftp://anonymous:anonymous@", "ftp://ftp.", "ftps://", "sftp://", "smb://",
+            "nfs://", "ftp://", "dav://", "news:", "telnet://", "imap:", "rtsp://", "urn:",
+            "pop:", "sip:", "sips:", "tftp:", "btspp://", "btl2cap://", "btgoep://",
+            "tcpobex://", "irdaobex://", "file://", "urn:epc:id:", "urn:epc:tag:",
+            "urn:epc:pat:", "urn:epc:raw:", "urn:epc:", "urn:nfc:"};
+
+    private byte[] buf;
+    private int pos;
+    private int end;
+
+    private int header;
+    private int typeOffset;
+    private int typeLength;
+    private int idOffset;
+    private int idLength;
+    private int payloadOffset;
+    private int payloadLength;
+
+    public NdefReader reset(byte[] buf, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buf.length) {
+            throw new IllegalArgumentException("Range " + offset + "+" + length + " outside buffer");
+        }
+        this.buf = buf;
+        this.pos = offset;
+        this.end = offset + length;
+        this.header = 0;
+        // a first record never has TNF 3 without MB, so 03 can only be the TLV tag
+        if (length >= 2 && buf[offset] == TLV_NDEF) {
+            int len = buf[offset + 1] & 0xff;
+            int start = offset + 2;
+            if (len == 0xff) {
+                if (length < 4) {
+                    throw new IllegalArgumentException("Truncated NDEF TLV length");
+                }
+                len = ByteUtil.getUShortBE(buf, offset + 2);
+                start = offset + 4;
+            }
+            if (start + len > end) {
+                throw new IllegalArgumentException("NDEF TLV length " + len + " exceeds buffer");
+            }
+            this.pos = start;
+            this.end = start + len;
+        }
+        return this;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false after the record flagged ME or at the end of the buffer
+     * @throws IllegalArgumentException if a record is truncated
+     */
+    public boolean next() {
+        if ((header & FLAG_ME) != 0 || pos >= end) {
+            return false;
+        }
+        int start = pos;
+        header = buf[pos++] & 0xff;
+        typeLength = readByte(start);
+        if ((header & FLAG_SR) != 0) {
+            payloadLength = readByte(start);
+        } else {
+            require(start, 4);
+            long len = ((long) ByteUtil.getIntBE(buf, pos)) & 0xffffffffL;
+            pos += 4;
+            if (len > end - pos) {
+                throw new IllegalArgumentException("Payload length " + len + " exceeds buffer at " + start);
+            }
+            payloadLength = (int) len;
+        }
+        idLength = (header & FLAG_IL) != 0 ? readByte(start) : 0;
+        typeOffset = pos;
+        idOffset = typeOffset + typeLength;
+        payloadOffset = idOffset + idLength;
+        pos = payloadOffset;
+        require(start, payloadLength);
+        pos += payloadLength;
+        return true;
+    }
+
+    public int tnf() {
+        return header & 0x07;
+    }
+
+    public boolean isMessageBegin() {
+        return (header & FLAG_MB) != 0;
+    }
+
+    public boolean isMessageEnd() {
+        return (header & FLAG_ME) != 0;
+    }
+
+    /**
+     * True for every chunk but the last one of a chunked record.
+     */
+    public boolean isChunked() {
+        return (header & FLAG_CF) != 0;
+    }
+
+    public int typeOffset() {
+        return typeOffset;
+    }
+
+    public int typeLength() {
+        return typeLength;
+    }
+
+    public int idOffset() {
+        return idOffset;
+    }
+
+    public int idLength() {
+        return idLength;
+    }
+
+    public int payloadOffset() {
+        return payloadOffset;
+    }
+
+    public int payloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * True for an NFC Forum well-known record of a one letter type such as 'U' or 'T'.
+     */
+    public boolean isWellKnown(char type) {
+        return tnf() == TNF_WELL_KNOWN && typeLength == 1 && buf[typeOffset] == type;
+    }
+
+    /**
+     * Full URI of a 'U' record payload, the prefix code expanded.
+     */
+    public static String uri(byte[] buf, int offset, int length) {
+        if (length < 1) {
+            return "";
+        }
+        int code = buf[offset] & 0xff;
+        String prefix = code < URI_PREFIXES.length ? URI_PREFIXES[code] : "";
+        return prefix + new String(buf, offset + 1, length - 1, UTF_8);
+    }
+
+    /**
+     * @return {language, text} of a 'T' record payload
+     */
+    public static String[] text(byte[] buf, int offset, int length) {
+        if (length < 1) {
+            return new String[]{"", ""};
+        }
+        int status = buf[offset] & 0xff;
+        int langLength = Math.min(status & 0x3f, length - 1);
+        Charset charset = (status & 0x80) != 0 ? UTF_16 : UTF_8;
+        return new String[]{
+                new String(buf, offset + 1, langLength, UTF_8),
+                new String(buf, offset + 1 + langLength, length - 1 - langLength, charset)};
+    }
+
+    /**
+     * Decodes a whole message for the method channel: one map per record with tnf,
+     * type, id (when present) and payload, plus uri for URI records, language and
+     * text for text records and records for the nested message of a smart poster.
+     */
+    public static List<Map<String, Object>> toMaps(byte[] buf, int offset, int length) {
+        return toMaps(buf, offset, length, 0);
+    }
+
+    private static List<Map<String, Object>> toMaps(byte[] buf, int offset, int length, int nesting) {
+        NdefReader reader = new NdefReader().reset(buf, offset, length);
+        List<Map<String, Object>> records = new ArrayList<>();
+        while (reader.next()) {
+            Map<String, Object> record = new HashMap<>();
+            record.put("tnf", reader.tnf());
+            record.put("type", slice(buf, reader.typeOffset, reader.typeLength));
+            if (reader.idLength > 0) {
+                record.put("id", slice(buf, reader.idOffset, reader.idLength));
+            }
+            byte[] payload;
+            if (reader.isChunked()) {
+                payload = joinChunks(reader);
+            } else {
+                payload = slice(buf, reader.payloadOffset, reader.payloadLength);
+            }
+            record.put("payload", payload);
+            if (isWellKnown(record, "U")) {
+                record.put("uri", uri(payload, 0, payload.length));
+            } else if (isWellKnown(record, "T")) {
+                String[] text = text(payload, 0, payload.length);
+                record.put("language", text[0]);
+                record.put("text", text[1]);
+            } else if (nesting < MAX_NESTING && isWellKnown(record, "Sp")) {
+                record.put("records", toMaps(payload, 0, payload.length, nesting + 1));
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Concatenates the chunks of a chunked record, the reader positioned on the first.
+     */
+    private static byte[] joinChunks(NdefReader reader) {
+        byte[] buf = reader.buf;
+        int total = reader.payloadLength;
+        // size the result before copying anything
+        NdefReader probe = new NdefReader();
+        probe.buf = buf;
+        probe.pos = reader.pos;
+        probe.end = reader.end;
+        while (probe.next()) {
+            total += probe.payloadLength;
+            if (!probe.isChunked()) {
+                break;
+            }
+        }
+        byte[] payload = new byte[total];
+        int n = 0;
+        do {
+            System.arraycopy(buf, reader.payloadOffset, payload, n, reader.payloadLength);
+            n += reader.payloadLength;
+        } while (reader.isChunked() && reader.next());
+        return payload;
+    }
+
+    private static boolean isWellKnown(Map<String, Object> record, String type) {
+        if ((Integer) record.get("tnf") != TNF_WELL_KNOWN) {
+            return false;
+        }
+        byte[] t = (byte[]) record.get("type");
+        if (t.length != type.length()) {
+            return false;
+        }
+        for (int i = 0; i < t.length; i++) {
+            if (t[i] != type.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] slice(byte[] buf, int offset, int length) {
+        byte[] out = new byte[length];
+        System.arraycopy(buf, offset, out, 0, length);
+        return out;
+    }
+
+    private int readByte(int start) {
+        require(start, 1);
+        return buf[pos++] & 0xff;
+    }
+
+    private void require(int start, int n) {
+        if (n > end - pos) {
+            throw new IllegalArgumentException("Truncated record at " + start);
+        }
+    }
+}
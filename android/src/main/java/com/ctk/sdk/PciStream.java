@@ -0,0 +1,461 @@
+package com.ctk.sdk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * MAC or encrypt a payload of any size through the PCI key APIs with constant memory.
+ *
+ * Data written to the stream is cut into chunks of {@code chunkSize} bytes (a
+ * multiple of 8) and each chunk is one secure-processor call, chained so that the
+ * result equals a single call over the whole payload:
+ * <ul>
+ * <li>{@link #MAC_CBC}: the MAC of the previous chunk is XORed into the first block
+ * of the next one, which continues the CBC chain;</li>
+ * <li>{@link #MAC_XOR}: blocks are XORed in software and only the 8 byte sum is
+ * sent, which gives the same MAC since the algorithm starts by XORing the blocks;</li>
+ * <li>{@link #des}: ECB, chunks are independent;</li>
+ * <li>{@link #dukptDes}: CBC, the IV of each chunk is the last ciphertext block of
+ * the previous one, with the KSN held until the last chunk.</li>
+ * </ul>
+ * The final block is zero padded (ISO 9797-1 method 1). Calls run on a worker thread
+ * while the writer fills the other of two chunk buffers, so reading the payload
+ * overlaps the secure processor. The writing thread must not hold the service lock.
+ * Not thread safe: one writer per stream.
+ */
+public class PciStream extends OutputStream {
+    public static final int BLOCK = 8;
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /**
+     * ANSI X9.9 CBC MAC, PciGetMac mode 0.
+     */
+    public static final int MAC_CBC = 0;
+    /**
+     * ANSI X9.19 retail MAC, PciGetMac mode 1. Its intermediate blocks use single DES
+     * under half of the key, which the API does not expose, so it cannot be chained.
+     */
+    public static final int MAC_X919 = 1;
+    /**
+     * XOR of all blocks then encrypted (UnionPay style), PciGetMac mode 2.
+     */
+    public static final int MAC_XOR = 2;
+
+    /**
+     * PCI calls used by the stream. {@code in} may be longer than {@code len}.
+     */
+    public interface Pci {
+        int mac(byte keyNo, byte[] in, int len, byte[] mac, byte mode);
+
+        int des(byte keyNo, byte[] in, int len, byte[] out, byte mode);
+
+        /**
+         * @param holdKsn true to keep the KSN, false to advance it after this call
+         */
+        int dukptDes(int keyId, boolean holdKsn, boolean encrypt, byte[] in, int len, byte[] iv, byte[] out,
+                     byte[] ksn);
+    }
+
+    public static Pci pci(final PosApiHelper posApiHelper) {
+        return new Pci() {
+            // the key check value is not needed
+            private final byte[] kcv = new byte[8];
+
+            @Override
+            public int mac(byte keyNo, byte[] in, int len, byte[] mac, byte mode) {
+                return posApiHelper.PciGetMac(keyNo, len, in, mac, mode);
+            }
+
+            @Override
+            public int des(byte keyNo, byte[] in, int len, byte[] out, byte mode) {
+                return posApiHelper.PciGetDes(keyNo, len, in, out, mode);
+            }
+
+            @Override
+            public int dukptDes(int keyId, boolean holdKsn, boolean encrypt, byte[] in, int len, byte[] iv,
+                                byte[] out, byte[] ksn) {
+                return posApiHelper.PciGetDuktDes(keyId, (byte) (holdKsn ? 1 : 0), (byte) (encrypt ? 0 : 1), len,
+                        in, iv, out, ksn, kcv);
+            }
+        };
+    }
+
+    private interface Step {
+        /**
+         * @return 0 or the error of the PCI call
+         */
+        int process(byte[] in, int len, boolean last) throws IOException;
+    }
+
+    /**
+     * MAC of everything written, available from {@link #getResult} after close.
+     *
+     * @param algorithm {@link #MAC_CBC} or {@link #MAC_XOR}
+     */
+    public static PciStream mac(Pci pci, int keyNo, int algorithm, int chunkSize) {
+        if (algorithm != MAC_CBC && algorithm != MAC_XOR) {
+            throw new IllegalArgumentException("MAC algorithm " + algorithm + " cannot be computed in chunks");
+        }
+        PciStream s = new PciStream(chunkSize, null);
+        byte mode = (byte) algorithm;
+        s.step = algorithm == MAC_CBC ? (in, len, last) -> {
+            if (last) {
+                len = s.pad(in, len);
+            }
+            if (s.chained) {
+                xor(s.result, 0, in, 0);
+            }
+            s.chained = true;
+            return pci.mac((byte) keyNo, in, len, s.result, mode);
+        } : (in, len, last) -> {
+            if (last) {
+                len = s.pad(in, len);
+            }
+            for (int off = 0; off < len; off += BLOCK) {
+                xor(in, off, s.sum, 0);
+            }
+            return last ? pci.mac((byte) keyNo, s.sum, BLOCK, s.result, mode) : 0;
+        };
+        return s;
+    }
+
+    /**
+     * DES/3DES ECB with a master/session key; the output goes to {@code out}.
+     * Ciphertext to decrypt must be a whole number of blocks.
+     */
+    public static PciStream des(Pci pci, int keyNo, boolean encrypt, int chunkSize, OutputStream out) {
+        PciStream s = new PciStream(chunkSize, out);
+        s.step = (in, len, last) -> {
+            if (last) {
+                len = encrypt ? s.pad(in, len) : s.checkBlocks(len);
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int ret = pci.des((byte) keyNo, in, len, s.output, (byte) (encrypt ? 1 : 0));
+            if (ret == 0) {
+                s.downstream.write(s.output, 0, len);
+            }
+            return ret;
+        };
+        return s;
+    }
+
+    /**
+     * DUKPT CBC with the key of one KSN; the KSN advances after the last chunk and is
+     * available from {@link #getKsn} after close. Pass the service lock as
+     * {@code lock} so that no other DUKPT call moves the KSN between chunks.
+     */
+    public static PciStream dukptDes(Pci pci, int keyId, boolean encrypt, byte[] iv, int chunkSize,
+                                     OutputStream out, Lock lock) {
+        checkIv(iv);
+        PciStream s = new PciStream(chunkSize, out);
+        s.lock = lock;
+        System.arraycopy(iv, 0, s.sum, 0, BLOCK);
+        byte[] nextIv = new byte[BLOCK];
+        s.step = (in, len, last) -> {
+            if (last) {
+                len = encrypt ? s.pad(in, len) : s.checkBlocks(len);
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (!encrypt) {
+                System.arraycopy(in, len - BLOCK, nextIv, 0, BLOCK);
+            }
+            int ret = pci.dukptDes(keyId, !last, encrypt, in, len, s.sum, s.output, s.ksn);
+            if (ret != 0) {
+                return ret;
+            }
+            System.arraycopy(encrypt ? s.output : nextIv, encrypt ? len - BLOCK : 0, s.sum, 0, BLOCK);
+            s.downstream.write(s.output, 0, len);
+            return 0;
+        };
+        return s;
+    }
+
+    private final int chunkSize;
+    private final OutputStream downstream;
+    // the chunk being filled by the writer and the one handed to the worker
+    private byte[] fill;
+    private byte[] spare;
+    private int fillLength;
+    private final byte[] output;
+    private final byte[] single = new byte[1];
+    private final byte[] result = new byte[BLOCK];
+    private final byte[] sum = new byte[BLOCK];
+    private final byte[] ksn = new byte[10];
+    private Step step;
+    private Lock lock;
+    private boolean chained;
+    private boolean closed;
+    private boolean aborted;
+
+    private Thread worker;
+    // guarded by this
+    private byte[] pending;
+    private int pendingLength;
+    private boolean pendingLast;
+    private boolean busy;
+    private IOException failure;
+    private int error;
+
+    /**
+     * Checks a chunk size before any output is opened for the stream.
+     *
+     * @throws IllegalArgumentException unless it is a positive multiple of 8
+     */
+    public static void checkChunkSize(int chunkSize) {
+        if (chunkSize < BLOCK || chunkSize % BLOCK != 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive multiple of 8");
+        }
+    }
+
+    /**
+     * Checks a DUKPT IV before any output is opened for the stream.
+     *
+     * @throws IllegalArgumentException unless it is 8 bytes
+     */
+    public static void checkIv(byte[] iv) {
+        if (iv == null || iv.length != BLOCK) {
+            throw new IllegalArgumentException("IV must be 8 bytes");
+        }
+    }
+
+    private PciStream(int chunkSize, OutputStream downstream) {
+        checkChunkSize(chunkSize);
+        this.chunkSize = chunkSize;
+        this.downstream = downstream;
+        fill = new byte[chunkSize];
+        spare = new byte[chunkSize];
+        output = downstream == null ? null : new byte[chunkSize];
+    }
+
+    /**
+     * MAC, once closed.
+     */
+    public byte[] getResult() {
+        return closed && !aborted ? result.clone() : null;
+    }
+
+    /**
+     * KSN used by a DUKPT stream, once closed.
+     */
+    public byte[] getKsn() {
+        return closed && !aborted ? ksn.clone() : null;
+    }
+
+    /**
+     * Error code of the PCI call that failed, 0 if none did.
+     */
+    public synchronized int getError() {
+        return error;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            if (fillLength == chunkSize) {
+                // more data follows, so this chunk is not the last one
+                submit(false);
+            }
+            int n = Math.min(len, chunkSize - fillLength);
+            System.arraycopy(b, off, fill, fillLength, n);
+            fillLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Processes the last chunk and waits for the worker; closes the downstream stream.
+     *
+     * @throws IOException if a PCI call failed, see {@link #getError}
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            submit(true);
+            synchronized (this) {
+                while (busy && failure == null) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            closed = true;
+            stopWorker();
+            if (downstream != null) {
+                downstream.close();
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Discards the data not yet processed and stops without the last chunk, for a
+     * writer whose input failed: nothing is padded or written as a final block, and a
+     * DUKPT stream never sends the call that advances the KSN. Waits for a chunk
+     * already handed to the worker, then closes the downstream stream, ignoring its
+     * errors since the output is incomplete anyway.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        aborted = true;
+        fillLength = 0;
+        try {
+            synchronized (this) {
+                while (busy && failure == null) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopWorker();
+            if (downstream != null) {
+                try {
+                    downstream.close();
+                } catch (IOException ignored) {
+                    // the partial output is discarded by the caller
+                }
+            }
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        try {
+            synchronized (this) {
+                while (busy && failure == null) {
+                    wait();
+                }
+                checkFailure();
+                pending = fill;
+                pendingLength = fillLength;
+                pendingLast = last;
+                busy = true;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        if (worker == null) {
+            worker = new Thread(this::work, "PciStream");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        byte[] t = fill;
+        fill = spare;
+        spare = t;
+        fillLength = 0;
+    }
+
+    private synchronized void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void work() {
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            boolean last = false;
+            while (!last) {
+                byte[] in;
+                int len;
+                synchronized (this) {
+                    while (pending == null) {
+                        wait();
+                    }
+                    in = pending;
+                    len = pendingLength;
+                    last = pendingLast;
+                }
+                IOException e = null;
+                int ret;
+                try {
+                    ret = step.process(in, len, last);
+                } catch (IOException ioe) {
+                    ret = 0;
+                    e = ioe;
+                }
+                synchronized (this) {
+                    if (ret != 0) {
+                        error = ret;
+                        e = new IOException("PCI call failed: " + ret);
+                    }
+                    failure = e;
+                    pending = null;
+                    busy = false;
+                    notifyAll();
+                    if (e != null) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stream closed after a failure
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void stopWorker() {
+        Thread t = worker;
+        if (t == null) {
+            return;
+        }
+        t.interrupt();
+        try {
+            t.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Zero pads the last chunk to whole blocks, at least one.
+     */
+    private int pad(byte[] in, int len) {
+        int padded = Math.max(BLOCK, (len + BLOCK - 1) / BLOCK * BLOCK);
+        Arrays.fill(in, len, padded, (byte) 0);
+        return padded;
+    }
+
+    private int checkBlocks(int len) throws IOException {
+        if (len % BLOCK != 0) {
+            throw new IOException("Ciphertext is not a whole number of blocks");
+        }
+        return len;
+    }
+
+    private static void xor(byte[] src, int srcOff, byte[] dst, int dstOff) {
+        for (int i = 0; i < BLOCK; i++) {
+            dst[dstOff + i] ^= src[srcOff + i];
+        }
+    }
+}
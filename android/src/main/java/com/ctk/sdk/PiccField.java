@@ -0,0 +1,101 @@
+package com.ctk.sdk;
+
+/**
+ * Who relies on the contactless field staying open, so that one user does not close
+ * it under another.
+ *
+ * A user that opens the field for calls spread over time, such as the app between
+ * its own open and close, holds it with {@link #hold} and lets go with
+ * {@link #release}. A background user that opened the field only for itself closes
+ * it through {@link #closeIfUnused}, which leaves it open while anyone holds it. An
+ * operation that runs entirely under the service lock need not hold the field:
+ * closing goes through the service too and waits for the lock.
+ *
+ * The service records every card call except PiccRemove through {@link #touch}, so a
+ * background user can tell with {@link #usedWithin} that someone is in the middle of
+ * a command sequence with the card.
+ *
+ * Never call these while holding the service lock; {@link #closeIfUnused} waits for
+ * that lock with this class locked. {@link #activate}, {@link #touch} and
+ * {@link #usedWithin} are the exception: they take no lock of their own.
+ *
+ * Thread safe.
+ */
+public final class PiccField {
+    /**
+     * Returned by card calls made while the field is closed.
+     */
+    public static final int ERR_MODULE_NOT_OPENED = -3502;
+
+    /**
+     * A device call returning a vendor result code.
+     */
+    public interface Call {
+        int run();
+    }
+
+    private static int holders;
+    // System.nanoTime() of the last card call, 0 before the first
+    private static volatile long lastUse;
+
+    private PiccField() {
+    }
+
+    public static synchronized void hold() {
+        holders++;
+    }
+
+    public static synchronized void release() {
+        if (holders > 0) {
+            holders--;
+        }
+    }
+
+    public static synchronized boolean isHeld() {
+        return holders > 0;
+    }
+
+    static void touch() {
+        lastUse = System.nanoTime();
+    }
+
+    /**
+     * @return true if a card call other than PiccRemove was made in the last {@code ms}
+     */
+    public static boolean usedWithin(long ms) {
+        long t = lastUse;
+        return t != 0 && System.nanoTime() - t < ms * 1000000L;
+    }
+
+    /**
+     * Runs {@code activation} and, if it failed because the field was closed, opens
+     * the field and runs it once more.
+     */
+    public static int activate(Call open, Call activation) {
+        int ret = activation.run();
+        if (ret == ERR_MODULE_NOT_OPENED && open.run() == 0) {
+            ret = activation.run();
+        }
+        return ret;
+    }
+
+    /**
+     * {@link #activate} opening the field with {@link PosApiHelper#PiccOpen}.
+     */
+    public static int activate(final PosApiHelper posApiHelper, Call activation) {
+        return activate(posApiHelper::PiccOpen, activation);
+    }
+
+    /**
+     * Runs {@code closer} unless someone holds the field.
+     *
+     * @return true if the field was closed
+     */
+    public static synchronized boolean closeIfUnused(Call closer) {
+        if (holders > 0) {
+            return false;
+        }
+        closer.run();
+        return true;
+    }
+}
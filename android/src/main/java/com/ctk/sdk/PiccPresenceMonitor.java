@@ -0,0 +1,238 @@
+package com.ctk.sdk;
+
+/**
+ * Watches the contactless field for card arrival and removal on a background thread.
+ *
+ * The field is opened once when monitoring starts. While no card is present
+ * {@link PosApiHelper#PiccCheck} is polled, every {@code fastIntervalMs} right after
+ * start or a removal and backing off to {@code idleIntervalMs} once nothing has been
+ * seen for {@code fastWindowMs}. While a card is present {@link PosApiHelper#PiccRemove}
+ * is polled every {@code presentIntervalMs}, except while the card was used by
+ * someone else within that interval: PiccRemove would halt the card in the middle of
+ * their command sequence. Each poll is a single service call, so other callers are
+ * never blocked for longer than one poll.
+ *
+ * {@link #stop} does not wait: the poller notices after its current call and then
+ * closes the field, unless someone holds it (see {@link PiccField}). A poller started
+ * after a stop waits for the previous one to finish before it opens the field, so
+ * open and close never interleave.
+ */
+public class PiccPresenceMonitor {
+    private static final String TAG = "PiccPresenceMonitor";
+
+    /**
+     * Device calls used by the monitor.
+     */
+    public interface Reader {
+        int open();
+
+        int check(byte mode, byte[] cardType, byte[] serialNo);
+
+        int remove();
+
+        int close();
+    }
+
+    public interface Listener {
+        void onCardArrived(byte[] cardType, byte[] uid);
+
+        void onCardRemoved(byte[] uid, long presentMillis);
+
+        void onError(int code);
+    }
+
+    public static Reader reader(final PosApiHelper posApiHelper) {
+        return new Reader() {
+            @Override
+            public int open() {
+                return posApiHelper.PiccOpen();
+            }
+
+            @Override
+            public int check(byte mode, byte[] cardType, byte[] serialNo) {
+                return posApiHelper.PiccCheck(mode, cardType, serialNo);
+            }
+
+            @Override
+            public int remove() {
+                return posApiHelper.PiccRemove();
+            }
+
+            @Override
+            public int close() {
+                return posApiHelper.PiccClose();
+            }
+        };
+    }
+
+    private final Reader reader;
+    private final Listener listener;
+    private final byte[] cardType = new byte[3];
+    private final byte[] serialNo = new byte[50];
+
+    private volatile byte mode = 'A';
+    private volatile long fastIntervalMs = 10;
+    private volatile long idleIntervalMs = 40;
+    private volatile long fastWindowMs = 5000;
+    private volatile long presentIntervalMs = 50;
+    // allocated once, the poll loop runs for as long as the app watches the field
+    private final PiccField.Call open;
+    private final PiccField.Call check;
+
+    // the current poller, null when stopped; a poller runs while it is this
+    private volatile Thread thread;
+    // the most recently started poller, possibly still finishing
+    private Thread lastThread;
+
+    public PiccPresenceMonitor(Reader reader, Listener listener) {
+        this.reader = reader;
+        this.listener = listener;
+        open = reader::open;
+        check = () -> reader.check(mode, cardType, serialNo);
+    }
+
+    /**
+     * @param mode card search mode passed to PiccCheck: 'A', 'B' or 'M'
+     */
+    public PiccPresenceMonitor setMode(byte mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException unless 0 <= fastIntervalMs <= idleIntervalMs and
+     *                                  fastWindowMs, presentIntervalMs >= 0
+     */
+    public PiccPresenceMonitor setIntervals(long fastIntervalMs, long idleIntervalMs,
+                                            long fastWindowMs, long presentIntervalMs) {
+        if (fastIntervalMs < 0 || idleIntervalMs < fastIntervalMs || fastWindowMs < 0 || presentIntervalMs < 0) {
+            throw new IllegalArgumentException("Invalid polling intervals");
+        }
+        this.fastIntervalMs = fastIntervalMs;
+        this.idleIntervalMs = idleIntervalMs;
+        this.fastWindowMs = fastWindowMs;
+        this.presentIntervalMs = presentIntervalMs;
+        return this;
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        final Thread previous = lastThread;
+        Thread t = new Thread(() -> poll(previous), TAG);
+        t.setDaemon(true);
+        thread = t;
+        lastThread = t;
+        t.start();
+    }
+
+    /**
+     * Stops polling without waiting for the poller.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    /**
+     * Waits until the last poller has closed the field; not for the main thread.
+     *
+     * @return false if it was still running after {@code timeoutMs}
+     */
+    public boolean awaitStopped(long timeoutMs) throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = lastThread;
+        }
+        if (t == null) {
+            return true;
+        }
+        t.join(timeoutMs);
+        return !t.isAlive();
+    }
+
+    private void poll(Thread previous) {
+        if (previous != null) {
+            try {
+                previous.join();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+        if (thread != Thread.currentThread()) {
+            return;
+        }
+        int ret = reader.open();
+        if (ret != 0) {
+            synchronized (this) {
+                if (thread != Thread.currentThread()) {
+                    return;
+                }
+                thread = null;
+            }
+            listener.onError(ret);
+            return;
+        }
+        byte[] uid = null;
+        long arrivedAt = 0;
+        long lastActivity = System.currentTimeMillis();
+        try {
+            while (thread == Thread.currentThread()) {
+                long now = System.currentTimeMillis();
+                long interval;
+                if (uid == null) {
+                    ret = PiccField.activate(open, check);
+                    if (ret == 0) {
+                        int uidLen = Math.min(serialNo[0] & 0xff, serialNo.length - 1);
+                        uid = new byte[uidLen];
+                        System.arraycopy(serialNo, 1, uid, 0, uidLen);
+                        arrivedAt = now;
+                        listener.onCardArrived(new byte[]{cardType[0], cardType[1]}, uid);
+                        interval = presentIntervalMs;
+                    } else {
+                        interval = now - lastActivity < fastWindowMs ? fastIntervalMs : backOff(now - lastActivity);
+                    }
+                } else if (PiccField.usedWithin(presentIntervalMs)) {
+                    // a command sequence is talking to the card; probe once it pauses
+                    interval = presentIntervalMs;
+                } else {
+                    if (reader.remove() != 0) {
+                        listener.onCardRemoved(uid, now - arrivedAt);
+                        uid = null;
+                        lastActivity = now;
+                        interval = fastIntervalMs;
+                    } else {
+                        interval = presentIntervalMs;
+                    }
+                }
+                if (interval > 0) {
+                    Thread.sleep(interval);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() requested
+        } finally {
+            PiccField.closeIfUnused(reader::close);
+        }
+    }
+
+    /**
+     * Interval doubles for every further fast window without a card, up to the idle interval.
+     */
+    private long backOff(long idleMs) {
+        long windows = fastWindowMs <= 0 ? 63 : Math.min(idleMs / fastWindowMs, 63);
+        long interval = Math.max(fastIntervalMs, 1) << Math.min(windows, 20);
+        return Math.min(interval, idleIntervalMs);
+    }
+}
@@ -267,6 +267,7 @@ import com.ciontek.ciontekposservice.IInputPinCallback;
 
 import android.graphics.Bitmap;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 //import test.apidemo.activity.pinkeypad.PinpadLayoutEntity;
 
@@ -282,12 +283,15 @@ public class PosApiHelper {
     private ICiontekPosService mPosService;
     private static PosApiHelper mInstance;
 
+    // Serializes access to the pos service; taken per binder call by PosServiceInterceptor
+    private final ReentrantLock mServiceLock = new ReentrantLock();
+
     private PosApiHelper() {
         try {
             Class serviceManager = Class.forName("android.os.ServiceManager");
             Method method = serviceManager.getMethod("getService", String.class);
             IBinder b = (IBinder)method.invoke(serviceManager.newInstance(), POS_SERVICE);
-            mPosService = ICiontekPosService.Stub.asInterface(b);
+            mPosService = PosServiceInterceptor.wrap(ICiontekPosService.Stub.asInterface(b), mServiceLock);
             Log.d(TAG, "get pos service success!");
             if(mPosService == null){
                 Log.d(TAG, "get pos service null!");
@@ -307,6 +311,14 @@ public class PosApiHelper {
         return mInstance;
     }
 
+    /**
+     * Lock taken around every pos service call. Hold it to run a sequence of calls,
+     * e.g. an APDU exchange, without other callers' calls interleaving; it is reentrant.
+     */
+    public ReentrantLock getServiceLock() {
+        return mServiceLock;
+    }
+
 /*******************************************************************************************************
  ****************************** API start from here ******************************************************
  *******************************************************************************************************/
@@ -339,7 +351,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //1.0.1
-    synchronized public int installRomPackage(String romFilePath){
+    public int installRomPackage(String romFilePath){
         if (mPosService != null) {
             try {
                 return mPosService.installRomPackage(romFilePath);
@@ -400,7 +412,7 @@ public class PosApiHelper {
      * @throws
      */
     //2.0.1
-    synchronized public int SysLogSwitch(int level){
+    public int SysLogSwitch(int level){
         if(mPosService != null){
             try {
                 return  mPosService.Lib_LogSwitch(level);
@@ -423,7 +435,7 @@ public class PosApiHelper {
      * @throws
      */
     //2.0.2
-    synchronized public int SysGetRand(byte[] rnd){
+    public int SysGetRand(byte[] rnd){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_GetRand(rnd);
@@ -446,7 +458,7 @@ public class PosApiHelper {
      * @throws
      */
     //2.0.3
-    synchronized public int SysUpdate(){
+    public int SysUpdate(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_Update_32550();
@@ -472,7 +484,7 @@ public class PosApiHelper {
      * @throws
      */
     //2.0.4
-    synchronized public int SysGetVersion(byte[] buf) {
+    public int SysGetVersion(byte[] buf) {
         if (mPosService != null) {
             try {
                 return mPosService.Lib_GetVersion(buf);
@@ -497,7 +509,7 @@ public class PosApiHelper {
      * @throws
      */
     //2.0.5
-    synchronized public int SysReadSN(byte[] SN){
+    public int SysReadSN(byte[] SN){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_ReadSN(SN);
@@ -521,7 +533,7 @@ public class PosApiHelper {
      * @throws
      */
     //2.0.6
-    synchronized public int SysWriteSN(byte[] SN){
+    public int SysWriteSN(byte[] SN){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_WriteSN(SN);
@@ -543,7 +555,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //2.0.7
-    synchronized public int SysReadChipID(byte[] buf,int len){
+    public int SysReadChipID(byte[] buf,int len){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_ReadChipID(buf,len);
@@ -578,7 +590,7 @@ public class PosApiHelper {
      * (-2503)	Communication failure.
      */
     //3.0.1
-    synchronized public int IccOpen(byte slot, byte vccMode, byte[] atr){
+    public int IccOpen(byte slot, byte vccMode, byte[] atr){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_IccOpen(slot,vccMode,atr);
@@ -602,7 +614,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //3.0.2
-    synchronized public int IccClose(byte slot){
+    public int IccClose(byte slot){
         if (mPosService != null) {
             try {
                 Log.d("PosManagerService","Lib_IccClose");
@@ -635,7 +647,7 @@ public class PosApiHelper {
     (-2406)	No reset card
      */
     //3.0.3
-    synchronized public int IccCommand(byte slot, byte[] apduSend, byte[]  apduResp){
+    public int IccCommand(byte slot, byte[] apduSend, byte[]  apduResp){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_IccCommand(slot,apduSend,apduResp);
@@ -646,6 +658,10 @@ public class PosApiHelper {
         return -5555;
     }
 
+    public int IccCommand(byte slot, ApduSend apduSend, ApduResp apduResp){
+        return IccCommand(slot, apduSend.getBytes(), apduResp.getBytes());
+    }
+
     /**
      * @Title: IccCheck
      * @Description: Check if there is a card in the specified cassette。
@@ -656,7 +672,7 @@ public class PosApiHelper {
      * !0 - fail
      */
     //3.0.4
-    synchronized public int IccCheck(byte slot){
+    public int IccCheck(byte slot){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_IccCheck(slot);
@@ -668,7 +684,7 @@ public class PosApiHelper {
     }
 
     //3.0.5
-    synchronized public int SC_ApduCmd(byte bslot, byte[] pbInApdu, int usInApduLen, byte[]pbOut,byte[] pbOutLen){
+    public int SC_ApduCmd(byte bslot, byte[] pbInApdu, int usInApduLen, byte[]pbOut,byte[] pbOutLen){
         if (mPosService != null) {
             try {
                 return mPosService.SC_ApduCmd(bslot,pbInApdu,usInApduLen,pbOut,pbOutLen);
@@ -679,7 +695,7 @@ public class PosApiHelper {
         return -5555;
     }
 
-    synchronized public int SleOpenAt24(byte slot){
+    public int SleOpenAt24(byte slot){
         if (mPosService != null) {
             try {
                 return mPosService.SleOpenAt24(slot);
@@ -691,7 +707,7 @@ public class PosApiHelper {
 
     }
 
-    synchronized public int SleCloseAt24(byte slot){
+    public int SleCloseAt24(byte slot){
         if (mPosService != null) {
             try {
                 return mPosService.SleCloseAt24(slot);
@@ -703,7 +719,7 @@ public class PosApiHelper {
 
     }
 
-    synchronized public int SleCheckAt24(byte slot){
+    public int SleCheckAt24(byte slot){
         if (mPosService != null) {
             try {
                 return mPosService.SleCheckAt24(slot);
@@ -715,7 +731,7 @@ public class PosApiHelper {
 
     }
 
-    synchronized public int SleReadMemAt24(byte slot, int startAddress, int length,  byte []outData){
+    public int SleReadMemAt24(byte slot, int startAddress, int length,  byte []outData){
         if (mPosService != null) {
             try {
 
@@ -728,7 +744,7 @@ public class PosApiHelper {
 
     }
 
-    synchronized public int SleWriteMemAt24(byte slot, int startAddress, int length,  byte []inData){
+    public int SleWriteMemAt24(byte slot, int startAddress, int length,  byte []inData){
         if (mPosService != null) {
             try {
                 return mPosService.SleWriteMemAt24(slot,startAddress,length,inData);
@@ -751,7 +767,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.1
-    synchronized public int PrintInit(){
+    public int PrintInit(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnInit();
@@ -789,8 +805,9 @@ public class PosApiHelper {
     -4010 : PRINT GETFONTERR
      */
     //4.0.2
-    synchronized public int PrintInit(int gray,int fontHeight, int fontWidth, int fontZoom) {
+    public int PrintInit(int gray,int fontHeight, int fontWidth, int fontZoom) {
         if (mPosService != null) {
+            mServiceLock.lock();
             try {
                 int ret = -1;
                 ret =  mPosService.Lib_PrnInit();
@@ -814,6 +831,8 @@ public class PosApiHelper {
                 return  ret;
             } catch (RemoteException e) {
                 e.printStackTrace();
+            } finally {
+                mServiceLock.unlock();
             }
         }
         return -5555;
@@ -833,7 +852,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.3
-    synchronized public int PrintSetFont(byte AsciiFontHeight, byte ExtendFontHeight, byte Zoom){
+    public int PrintSetFont(byte AsciiFontHeight, byte ExtendFontHeight, byte Zoom){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetFont( AsciiFontHeight,  ExtendFontHeight,  Zoom);
@@ -856,7 +875,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.4
-    synchronized public int PrintSetGray(int nLevel){
+    public int PrintSetGray(int nLevel){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetGray( nLevel);
@@ -878,7 +897,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.5
-    synchronized public int PrintSetSpace(byte x, byte y){
+    public int PrintSetSpace(byte x, byte y){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetSpace( x,  y);
@@ -901,7 +920,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.6
-    synchronized public int PrintGetFont( byte[] AsciiFontHeight,  byte[] ExtendFontHeight,  byte[] Zoom){
+    public int PrintGetFont( byte[] AsciiFontHeight,  byte[] ExtendFontHeight,  byte[] Zoom){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnGetFont( AsciiFontHeight,  ExtendFontHeight,  Zoom);
@@ -922,7 +941,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.7
-    synchronized public int PrintStep(int pixel){
+    public int PrintStep(int pixel){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnStep( pixel);
@@ -948,7 +967,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.8
-    synchronized public int PrintSetVoltage(int voltage){
+    public int PrintSetVoltage(int voltage){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetVoltage( voltage);
@@ -970,7 +989,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.9
-    synchronized public int PrintIsCharge(int ischarge){
+    public int PrintIsCharge(int ischarge){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnIsCharge( ischarge);
@@ -991,7 +1010,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.10
-    synchronized public int PrintSetLinPixelDis(char LinDistance){
+    public int PrintSetLinPixelDis(char LinDistance){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_SetLinPixelDis( LinDistance);
@@ -1015,7 +1034,7 @@ public class PosApiHelper {
      * -4003 –data error
      */
     //4.0.11
-    synchronized public int PrintStr(String str){
+    public int PrintStr(String str){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnStr(str);
@@ -1041,7 +1060,7 @@ public class PosApiHelper {
     -4008 PRN_BUFFOVERFLOW
      */
     //4.0.12
-    synchronized public int PrintBmp(Bitmap bitmap){
+    public int PrintBmp(Bitmap bitmap){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnBmp(bitmap);
@@ -1067,7 +1086,7 @@ public class PosApiHelper {
     Other -failure
      */
     //4.0.13
-    synchronized public int PrintBarcode(String contents, int desiredWidth,int desiredHeight,String barcodeFormat){
+    public int PrintBarcode(String contents, int desiredWidth,int desiredHeight,String barcodeFormat){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnBarcode(contents,desiredWidth,desiredHeight,barcodeFormat);
@@ -1095,7 +1114,7 @@ public class PosApiHelper {
     Other -failure
      */
     //4.0.14
-    synchronized public int PrintQrCode_Cut(String contents, int desiredWidth,int desiredHeight, String barcodeFormat){
+    public int PrintQrCode_Cut(String contents, int desiredWidth,int desiredHeight, String barcodeFormat){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrintCutQrCode(contents,desiredWidth,desiredHeight,barcodeFormat);
@@ -1123,7 +1142,7 @@ public class PosApiHelper {
     Other -failure
      */
     //4.0.15
-    synchronized public int PrintCutQrCode_Str(String contents, String printTxt ,int distance,
+    public int PrintCutQrCode_Str(String contents, String printTxt ,int distance,
                                                int desiredWidth,int desiredHeight, String barcodeFormat){
         if (mPosService != null) {
             try {
@@ -1157,7 +1176,7 @@ public class PosApiHelper {
     -1015/-1014;Short of paper；
      */
     //4.0.16
-    synchronized public int PrintStart(){
+    public int PrintStart(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnStart();
@@ -1178,7 +1197,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.17
-    synchronized public int PrintSetLeftIndent(int x){
+    public int PrintSetLeftIndent(int x){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetLeftIndent( x);
@@ -1199,7 +1218,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.18
-    synchronized public int PrintSetAlign(int X){
+    public int PrintSetAlign(int X){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetAlign( X);
@@ -1220,7 +1239,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.19
-    synchronized public int PrintCharSpace(int X){
+    public int PrintCharSpace(int X){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetCharSpace( X);
@@ -1241,7 +1260,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.20
-    synchronized public int PrintSetLineSpace(int x){
+    public int PrintSetLineSpace(int x){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetLineSpace( x);
@@ -1262,7 +1281,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.21
-    synchronized public int PrintSetLeftSpace(int x){
+    public int PrintSetLeftSpace(int x){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetLeftSpace( x);
@@ -1284,7 +1303,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.22
-    synchronized public int PrintSetSpeed(int iSpeed){
+    public int PrintSetSpeed(int iSpeed){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetSpeed( iSpeed);
@@ -1305,7 +1324,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //7.0.23
-    synchronized public int PrintCheckStatus( ){
+    public int PrintCheckStatus( ){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnCheckStatus( );
@@ -1326,7 +1345,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.24
-    synchronized public int PrintFeedPaper(int step){
+    public int PrintFeedPaper(int step){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnFeedPaper( step);
@@ -1350,7 +1369,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.25
-    synchronized public int PrintSetMode(int mode){
+    public int PrintSetMode(int mode){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetMode(mode);
@@ -1378,7 +1397,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.26
-    synchronized public int PrintSetUnderline(int x){
+    public int PrintSetUnderline(int x){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetUnderline(x);
@@ -1403,7 +1422,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.27
-    synchronized public int PrintSetReverse(int x){
+    public int PrintSetReverse(int x){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetReverse(x);
@@ -1428,7 +1447,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.28
-    synchronized public int PrintSetBold(int x){
+    public int PrintSetBold(int x){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnSetBold(x);
@@ -1453,7 +1472,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.29
-    synchronized public int PrintLogo(byte[] logo){
+    public int PrintLogo(byte[] logo){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnLogo(logo);
@@ -1474,7 +1493,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //4.0.30
-    synchronized public int PrintLabLocate (int step){
+    public int PrintLabLocate (int step){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PrnFeedPaper( step);
@@ -1501,7 +1520,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //5.0.1
-    synchronized  public boolean enableAppInstallWhiteList(){
+    public boolean enableAppInstallWhiteList(){
 
         if (mPosService != null) {
             try {
@@ -1525,7 +1544,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //5.0.2
-    synchronized  public boolean disableAppInstallWhiteList(){
+    public boolean disableAppInstallWhiteList(){
 
         if (mPosService != null) {
             try {
@@ -1550,7 +1569,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //5.0.3
-    synchronized public boolean addAppToInstallWhiteList(String pkgName){
+    public boolean addAppToInstallWhiteList(String pkgName){
 
         if (mPosService != null) {
             try {
@@ -1576,7 +1595,7 @@ public class PosApiHelper {
      *
      */
     //5.0.4
-    synchronized public boolean delAppFromInstallWhiteList(String pkgName){
+    public boolean delAppFromInstallWhiteList(String pkgName){
 
         if (mPosService != null) {
             try {
@@ -1604,7 +1623,7 @@ public class PosApiHelper {
      *
      */
     //5.0.5
-    synchronized public List<String> getAppInstallWhiteList(){
+    public List<String> getAppInstallWhiteList(){
 
         if (mPosService != null) {
             try {
@@ -1631,7 +1650,7 @@ public class PosApiHelper {
      *
      */
     //5.0.6
-    synchronized public boolean enableAppUninstallBlackList(){
+    public boolean enableAppUninstallBlackList(){
 
         if (mPosService != null) {
             try {
@@ -1656,7 +1675,7 @@ public class PosApiHelper {
      *
      */
     //5.0.7
-    synchronized public boolean disableAppUninstallBlackList(){
+    public boolean disableAppUninstallBlackList(){
 
         if (mPosService != null) {
             try {
@@ -1682,7 +1701,7 @@ public class PosApiHelper {
      *
      */
     //5.0.8
-    synchronized public boolean addAppToUninstallBlackList(String pkgName){
+    public boolean addAppToUninstallBlackList(String pkgName){
 
         if (mPosService != null) {
             try {
@@ -1707,7 +1726,7 @@ public class PosApiHelper {
      *
      */
     //5.0.9
-    synchronized public boolean delAppFromUninstallBlackList(String pkgName){
+    public boolean delAppFromUninstallBlackList(String pkgName){
 
         if (mPosService != null) {
             try {
@@ -1733,7 +1752,7 @@ public class PosApiHelper {
      *
      */
     //5.0.10
-    synchronized public List<String> getAppUninstallBlackList(){
+    public List<String> getAppUninstallBlackList(){
 
         if (mPosService != null) {
             try {
@@ -1770,7 +1789,7 @@ public class PosApiHelper {
      *
      */
     //6.0.1
-    synchronized public int fiscalOpen(int baudrate,int size, int stop, char parity, char cflow){
+    public int fiscalOpen(int baudrate,int size, int stop, char parity, char cflow){
 
         if (mPosService != null) {
             try {
@@ -1800,7 +1819,7 @@ public class PosApiHelper {
      *
      */
     //6.0.2
-    synchronized public int fiscalClose(){
+    public int fiscalClose(){
 
         if (mPosService != null) {
             try {
@@ -1831,7 +1850,7 @@ public class PosApiHelper {
      *
      */
     //6.0.3
-    synchronized public int fiscalWrite(byte[] data){
+    public int fiscalWrite(byte[] data){
         if (mPosService != null) {
             try {
                 return mPosService.fiscalWrite(data);
@@ -1862,7 +1881,7 @@ public class PosApiHelper {
      *
      */
     //6.0.4
-    synchronized public int fiscalRead(byte[] buffer,int bufLen,int timeout){
+    public int fiscalRead(byte[] buffer,int bufLen,int timeout){
         if (mPosService != null) {
             try {
                 return mPosService.fiscalRead(buffer,bufLen,timeout);
@@ -1884,7 +1903,7 @@ public class PosApiHelper {
      * !0   fail
      */
     //7.0.1
-    synchronized public int SysBeep(){
+    public int SysBeep(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_Beep();
@@ -1907,7 +1926,7 @@ public class PosApiHelper {
      * !0  fail
      */
     //8.0.1
-    synchronized public int McrOpen(){
+    public int McrOpen(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_McrOpen();
@@ -1928,7 +1947,7 @@ public class PosApiHelper {
      * !0  fail
      */
     //8.0.2
-    synchronized public int McrClose(){
+    public int McrClose(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_McrClose();
@@ -1949,7 +1968,7 @@ public class PosApiHelper {
      * !0  fail
      */
     //8.0.3
-    synchronized public int McrReset(){
+    public int McrReset(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_McrReset();
@@ -1970,7 +1989,7 @@ public class PosApiHelper {
      * !0  fail
      */
     //8.0.4
-    synchronized public int McrCheck(){
+    public int McrCheck(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_McrCheck();
@@ -2009,7 +2028,7 @@ public class PosApiHelper {
     other value\
      */
     //8.0.5
-    synchronized public int McrRead(byte keyNo, byte mode, byte[] track1, byte[] track2, byte[] track3){
+    public int McrRead(byte keyNo, byte mode, byte[] track1, byte[] track2, byte[] track3){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_McrRead(keyNo,mode,track1,track2,track3);
@@ -2030,7 +2049,7 @@ public class PosApiHelper {
      * !0  fail
      */
     //9.0.1
-    synchronized public int PiccOpen(){
+    public int PiccOpen(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccOpen();
@@ -2049,7 +2068,7 @@ public class PosApiHelper {
      * !0  fail
      */
     //9.0.2
-    synchronized public int PiccClose(){
+    public int PiccClose(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccClose();
@@ -2085,7 +2104,7 @@ public class PosApiHelper {
 
      */
     //9.0.3
-    synchronized public int PiccCheck(byte mode, byte[] cardType,byte[] serialNo){
+    public int PiccCheck(byte mode, byte[] cardType,byte[] serialNo){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccCheck(mode,cardType,serialNo);
@@ -2112,7 +2131,7 @@ public class PosApiHelper {
     other => error;
      */
     //9.0.4
-    synchronized public int PiccPolling(byte[] CardType,byte[] UID,byte[] ucUIDLen,byte[] ATS,byte[] ucATSLen,byte[] SAK){
+    public int PiccPolling(byte[] CardType,byte[] UID,byte[] ucUIDLen,byte[] ATS,byte[] ucATSLen,byte[] SAK){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccPolling(CardType,UID,ucUIDLen,ATS,ucATSLen,SAK);
@@ -2137,7 +2156,7 @@ public class PosApiHelper {
      *  (-3524) Data exchange error
      */
     //9.0.5
-    synchronized public int PiccCommand(byte[] apduSend,byte[] apduResp){
+    public int PiccCommand(byte[] apduSend,byte[] apduResp){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccCommand(apduSend,apduResp);
@@ -2148,6 +2167,10 @@ public class PosApiHelper {
         return -5555;
     }
 
+    public int PiccCommand(ApduSend apduSend, ApduResp apduResp){
+        return PiccCommand(apduSend.getBytes(), apduResp.getBytes());
+    }
+
     /**
      * @Title: PiccApduCmd
      * @Description: Send apdu command to the card
@@ -2164,7 +2187,7 @@ public class PosApiHelper {
      * Other: fail
      */
     //9.0.6
-    synchronized public int PiccApduCmd(byte[] jpucInput,int usInputLen, byte[] jpucOutput,byte[] jpusOutputLen){
+    public int PiccApduCmd(byte[] jpucInput,int usInputLen, byte[] jpucOutput,byte[] jpusOutputLen){
         if (mPosService != null) {
             try {
                 return mPosService.Picc_ApduCmd(jpucInput,usInputLen,jpucOutput,jpusOutputLen);
@@ -2185,7 +2208,7 @@ public class PosApiHelper {
      * Other: fail
      */
     //9.0.7
-    synchronized public int PiccNfc(byte[] NfcData_Len, byte[] Technology, byte[] UID, byte[] NDEF_message){
+    public int PiccNfc(byte[] NfcData_Len, byte[] Technology, byte[] UID, byte[] NDEF_message){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_Nfc(NfcData_Len,Technology,UID,NDEF_message);
@@ -2207,7 +2230,7 @@ public class PosApiHelper {
      *
      */
     //9.0.8
-    synchronized public int PiccRemove(){
+    public int PiccRemove(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccRemove();
@@ -2227,7 +2250,7 @@ public class PosApiHelper {
      *
      */
     //9.0.9
-    synchronized public int PiccHalt(){
+    public int PiccHalt(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccHalt();
@@ -2247,7 +2270,7 @@ public class PosApiHelper {
      *
      */
     //9.0.10
-    synchronized public int PiccReset(){
+    public int PiccReset(){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccReset();
@@ -2274,7 +2297,7 @@ public class PosApiHelper {
      *
      */
     //9.0.11
-    synchronized public int PiccSamAv2Init(int SamSlotNo , byte[] SamHostKey, byte[] SAMHostMode, byte[]  SAMAV2Version, byte[] jSamAv2VerLen){
+    public int PiccSamAv2Init(int SamSlotNo , byte[] SamHostKey, byte[] SAMHostMode, byte[]  SAMAV2Version, byte[] jSamAv2VerLen){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccSamAv2Init( SamSlotNo , SamHostKey,SAMHostMode, SAMAV2Version,  jSamAv2VerLen);
@@ -2298,7 +2321,7 @@ public class PosApiHelper {
      *
      */
     //9.0.12
-    synchronized public int PiccHwModeSet(int Mode){
+    public int PiccHwModeSet(int Mode){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccHwModeSet(Mode);
@@ -2333,7 +2356,7 @@ public class PosApiHelper {
      *
      */
     //9.0.13
-    synchronized public int PiccM1Authority(byte type, byte blkNo, byte[] pwd, byte[] serialNo){
+    public int PiccM1Authority(byte type, byte blkNo, byte[] pwd, byte[] serialNo){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccM1Authority(type,blkNo, pwd, serialNo);
@@ -2362,7 +2385,7 @@ public class PosApiHelper {
      * -3522:	Read block data failure
      */
     //9.0.14
-    synchronized public int PiccM1ReadBlock(byte blkNo, byte[] blkValue){
+    public int PiccM1ReadBlock(byte blkNo, byte[] blkValue){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccM1ReadBlock(blkNo, blkValue);
@@ -2391,7 +2414,7 @@ public class PosApiHelper {
      * -3522:	write  block data failure
      */
     //9.0.15
-    synchronized public int PiccM1WriteBlock(byte blkNo, byte[] blkValue){
+    public int PiccM1WriteBlock(byte blkNo, byte[] blkValue){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccM1WriteBlock( blkNo,  blkValue);
@@ -2427,7 +2450,7 @@ public class PosApiHelper {
      * (-3520)	Top up failure
      */
     //9.0.16
-    synchronized public int PiccM1Operate(byte type, byte blkNo, byte [] value, byte updateBlkNo){
+    public int PiccM1Operate(byte type, byte blkNo, byte [] value, byte updateBlkNo){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccM1Operate( type,  blkNo,  value,  updateBlkNo);
@@ -2452,7 +2475,7 @@ public class PosApiHelper {
      *
      */
     //9.0.17
-    synchronized public int PiccM1WriteValue(int blkNo,byte[] value){
+    public int PiccM1WriteValue(int blkNo,byte[] value){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccM1WriteValue(blkNo, value);
@@ -2477,7 +2500,7 @@ public class PosApiHelper {
      *
      */
     //9.0.18
-    synchronized public int PiccM1ReadValue(int blkNo,byte[] value){
+    public int PiccM1ReadValue(int blkNo,byte[] value){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccM1ReadValue(blkNo,value);
@@ -2499,7 +2522,7 @@ public class PosApiHelper {
      *
      */
     //9.0.19
-    synchronized public int PiccM1RestoreTransfer(byte SrcBlock,byte DstBlock){
+    public int PiccM1RestoreTransfer(byte SrcBlock,byte DstBlock){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccM1RestoreTransfer(SrcBlock, DstBlock);
@@ -2529,7 +2552,7 @@ public class PosApiHelper {
      *
      */
     //9.0.20
-    synchronized public int PiccSamMfcAuth(byte KeyType, byte BlkNo, byte KeyNumber, byte KeyVersion){
+    public int PiccSamMfcAuth(byte KeyType, byte BlkNo, byte KeyNumber, byte KeyVersion){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccSamMfcAuth(KeyType, BlkNo, KeyNumber, KeyVersion);
@@ -2555,7 +2578,7 @@ public class PosApiHelper {
      *
      */
     //9.0.21
-    synchronized public int PiccWriSl1KeyToAv2(byte[] key ,byte KeyNumber,byte KeyPos,byte KeyVersion){
+    public int PiccWriSl1KeyToAv2(byte[] key ,byte KeyNumber,byte KeyPos,byte KeyVersion){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PiccWriSl1KeyToAv2(key , KeyNumber, KeyPos, KeyVersion);
@@ -2579,7 +2602,7 @@ public class PosApiHelper {
      *
      */
     //9.0.22
-    synchronized public int PiccMfulActivateCard(){
+    public int PiccMfulActivateCard(){
         if (mPosService != null) {
             try {
                 return mPosService.Mful_ActivateCard();
@@ -2604,7 +2627,7 @@ public class PosApiHelper {
      *
      */
     //9.0.23
-    synchronized public int PiccMfulPwdAuth(byte[] Key,byte[] Pack ){
+    public int PiccMfulPwdAuth(byte[] Key,byte[] Pack ){
         if (mPosService != null) {
             try {
                 return mPosService.Mful_PwdAuth( Key, Pack );
@@ -2629,7 +2652,7 @@ public class PosApiHelper {
      *
      */
     //9.0.24
-    synchronized public int PiccMfulRead(int PageNum,byte[] Data){
+    public int PiccMfulRead(int PageNum,byte[] Data){
         if (mPosService != null) {
             try {
                 return mPosService.Mful_Read(PageNum, Data);
@@ -2654,7 +2677,7 @@ public class PosApiHelper {
      *
      */
     //9.0.25
-    synchronized public int PiccMfulWrite(int PageNum,byte[] Data){
+    public int PiccMfulWrite(int PageNum,byte[] Data){
         if (mPosService != null) {
             try {
                 return mPosService.Mful_Write(PageNum, Data);
@@ -2679,7 +2702,7 @@ public class PosApiHelper {
      *
      */
     //9.0.26
-    synchronized public int PiccMfulReadSign(int Addr,byte[] Signature){
+    public int PiccMfulReadSign(int Addr,byte[] Signature){
         if (mPosService != null) {
             try {
                 return mPosService.Mful_ReadSign( Addr, Signature);
@@ -2704,7 +2727,7 @@ public class PosApiHelper {
      *
      */
     //9.0.27
-    synchronized public int PiccMfulReadCnt(int CntNum,byte[] Counter){
+    public int PiccMfulReadCnt(int CntNum,byte[] Counter){
         if (mPosService != null) {
             try {
                 return mPosService.Mful_ReadCnt(CntNum, Counter);
@@ -2729,7 +2752,7 @@ public class PosApiHelper {
      *
      */
     //9.0.28
-    synchronized public int PiccMfulIncrCnt(int CntNum, byte[] IncValue){
+    public int PiccMfulIncrCnt(int CntNum, byte[] IncValue){
         if (mPosService != null) {
             try {
                 return mPosService.Mful_IncrCnt(CntNum, IncValue);
@@ -2754,7 +2777,7 @@ public class PosApiHelper {
      *
      */
     //9.0.29
-    synchronized public int PiccMfpActivateCard(){
+    public int PiccMfpActivateCard(){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_ActivateCard();
@@ -2780,7 +2803,7 @@ public class PosApiHelper {
      *
      */
     //9.0.30
-    synchronized public int PiccMfpWritePerso(short wBlockNr,byte[] jaValue){
+    public int PiccMfpWritePerso(short wBlockNr,byte[] jaValue){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_WritePerso(wBlockNr,jaValue);
@@ -2805,7 +2828,7 @@ public class PosApiHelper {
      *
      */
     //9.0.31
-    synchronized public int PiccMfpCommitPerso(){
+    public int PiccMfpCommitPerso(){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_CommitPerso();
@@ -2844,7 +2867,7 @@ public class PosApiHelper {
      *
      */
     //9.0.32
-    synchronized public int PiccMfpKeyStore(byte[] pbNewKey,byte ucNewKeyLen,byte ucKeyStoreKeyType,byte ucKeyNumber,byte ucKeyVersion){
+    public int PiccMfpKeyStore(byte[] pbNewKey,byte ucNewKeyLen,byte ucKeyStoreKeyType,byte ucKeyNumber,byte ucKeyVersion){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_KeyStore(pbNewKey,ucNewKeyLen,ucKeyStoreKeyType,ucKeyNumber,ucKeyVersion);
@@ -2879,7 +2902,7 @@ public class PosApiHelper {
      *
      */
     //9.0.33
-    synchronized public int PiccMfpAuthenticateSL(byte bSLNum,byte bFirstAuth,int wBlockNr,int wKeyNumber,int wKeyVersion,byte bLenDivInput,
+    public int PiccMfpAuthenticateSL(byte bSLNum,byte bFirstAuth,int wBlockNr,int wKeyNumber,int wKeyVersion,byte bLenDivInput,
                                                   byte[] jaDivInput,
                                                   byte bLenPcdCap2,
                                                   byte[] jaPcdCap2In,
@@ -2912,7 +2935,7 @@ public class PosApiHelper {
      *
      */
     //9.0.34
-    synchronized public int PiccMfpAuthenticateClassicSL2(byte bBlockNo,byte bKeyType,int wKeyNumber,int wKeyVersion) {
+    public int PiccMfpAuthenticateClassicSL2(byte bBlockNo,byte bKeyType,int wKeyNumber,int wKeyVersion) {
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_AuthenticateClassicSL2(bBlockNo, bKeyType, wKeyNumber, wKeyVersion);
@@ -2938,7 +2961,7 @@ public class PosApiHelper {
      *
      */
     //9.0.35
-    synchronized public int PiccMfpMultiBlockRead(byte bBlockNr,byte bNumBlocks,byte[] jaBlocks) {
+    public int PiccMfpMultiBlockRead(byte bBlockNr,byte bNumBlocks,byte[] jaBlocks) {
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_MultiBlockRead(bBlockNr, bNumBlocks, jaBlocks);
@@ -2964,7 +2987,7 @@ public class PosApiHelper {
      *
      */
     //9.0.36
-    synchronized public int PiccMfpMultiBlockWrite(byte bBlockNr,byte bNumBlocks,byte[] jaBlocks) {
+    public int PiccMfpMultiBlockWrite(byte bBlockNr,byte bNumBlocks,byte[] jaBlocks) {
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_MultiBlockWrite(bBlockNr, bNumBlocks, jaBlocks);
@@ -2992,7 +3015,7 @@ public class PosApiHelper {
      *
      */
     //9.0.37
-    synchronized  public int PiccMfpWrite(byte bEncrypted,byte	bWriteMaced,int	wBlockNr,byte bNumBlocks,byte[] jaBlocks){
+    public int PiccMfpWrite(byte bEncrypted,byte	bWriteMaced,int	wBlockNr,byte bNumBlocks,byte[] jaBlocks){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_Write(bEncrypted, bWriteMaced, wBlockNr,bNumBlocks,jaBlocks);
@@ -3020,7 +3043,7 @@ public class PosApiHelper {
      *
      */
     //9.0.38
-    synchronized  public int PiccMfpWriteValue(byte bEncrypted,byte	bWriteMaced,int	wBlockNr,byte[] jaBlocks,byte bAddrData){
+    public int PiccMfpWriteValue(byte bEncrypted,byte	bWriteMaced,int	wBlockNr,byte[] jaBlocks,byte bAddrData){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_WriteValue(bEncrypted, bWriteMaced, wBlockNr,jaBlocks,bAddrData);
@@ -3049,7 +3072,7 @@ public class PosApiHelper {
      *
      */
     //9.0.39
-    synchronized  public int PiccMfpChangeKey(byte bChangeKeyMaced,int wBlockNr,int	wKeyNumber,int wKeyVersion,byte bLenDivInput,byte[] jaDivInput){
+    public int PiccMfpChangeKey(byte bChangeKeyMaced,int wBlockNr,int	wKeyNumber,int wKeyVersion,byte bLenDivInput,byte[] jaDivInput){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_ChangeKey(bChangeKeyMaced, wBlockNr, wKeyNumber,wKeyVersion,bLenDivInput,jaDivInput);
@@ -3076,7 +3099,7 @@ public class PosApiHelper {
      *
      */
     //9.0.40
-    synchronized  public int PiccMfpRead(byte bEncrypted,byte bReadMaced,byte bMacOnCmd,int	wBlockNr,byte bNumBlocks,byte[]	jaBlocks){
+    public int PiccMfpRead(byte bEncrypted,byte bReadMaced,byte bMacOnCmd,int	wBlockNr,byte bNumBlocks,byte[]	jaBlocks){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_Read(bEncrypted, bReadMaced, bMacOnCmd,wBlockNr,bNumBlocks,jaBlocks);
@@ -3105,7 +3128,7 @@ public class PosApiHelper {
      *
      */
     //9.0.41
-    synchronized  public int PiccMfpReadValue(int bEncrypted,byte bReadMaced,byte bMacOnCmd,int	wBlockNr,byte[] jaValue,byte[] jaAddrData){
+    public int PiccMfpReadValue(int bEncrypted,byte bReadMaced,byte bMacOnCmd,int	wBlockNr,byte[] jaValue,byte[] jaAddrData){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_ReadValue(bEncrypted, bReadMaced, bMacOnCmd,wBlockNr,jaValue,jaAddrData);
@@ -3128,7 +3151,7 @@ public class PosApiHelper {
      *
      */
     //9.0.42
-    synchronized  public int PiccMfpResetAuth(){
+    public int PiccMfpResetAuth(){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_ResetAuth();
@@ -3157,7 +3180,7 @@ public class PosApiHelper {
      *
      */
     //9.0.42
-    synchronized  public int PiccMfpProximityCheck(int bGenerateRndC,byte[] jaRndC,byte bPps1,byte bNumSteps,byte[] jaUsedRndC){
+    public int PiccMfpProximityCheck(int bGenerateRndC,byte[] jaRndC,byte bPps1,byte bNumSteps,byte[] jaUsedRndC){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_ProximityCheck(bGenerateRndC,jaRndC,bPps1,bNumSteps,jaUsedRndC);
@@ -3179,7 +3202,7 @@ public class PosApiHelper {
      *
      */
     //9.0.43
-    synchronized  public int PiccMfpResetSecMsgState(){
+    public int PiccMfpResetSecMsgState(){
         if (mPosService != null) {
             try {
                 return mPosService.Mfp_ResetSecMsgState();
@@ -3206,7 +3229,7 @@ public class PosApiHelper {
      *
      */
     //9.0.44
-    synchronized  public int PiccSamOpen(int SamSlotNo,byte[] SamAtr){
+    public int PiccSamOpen(int SamSlotNo,byte[] SamAtr){
         if (mPosService != null) {
             try {
                 return mPosService.Picc_SamOpen(SamSlotNo,SamAtr);
@@ -3229,7 +3252,7 @@ public class PosApiHelper {
      *
      */
     //9.0.45
-    synchronized  public int PiccSamClose(int SamSlotNo){
+    public int PiccSamClose(int SamSlotNo){
         if (mPosService != null) {
             try {
                 return mPosService.Picc_SamClose(SamSlotNo);
@@ -3664,7 +3687,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //12.0.18
-    synchronized public int EmvGetPinBlock(int type, int pinkey_n, byte[] card_no, byte[] mode, byte[] pin_block, int timeout){
+    public int EmvGetPinBlock(int type, int pinkey_n, byte[] card_no, byte[] mode, byte[] pin_block, int timeout){
         if (mPosService != null) {
             try {
                 return mPosService.EmvGetPinBlock(type,pinkey_n,card_no,mode,pin_block,timeout);
@@ -3769,7 +3792,7 @@ public class PosApiHelper {
      * !0	fail
      */
     //12.0.23
-    synchronized public int EmvGetDukptPinblock(int type ,int pinkey_n , byte[] card_no, byte[] pin_block, byte[] OutKsn, byte[] PinKcv, int timeout){
+    public int EmvGetDukptPinblock(int type ,int pinkey_n , byte[] card_no, byte[] pin_block, byte[] OutKsn, byte[] PinKcv, int timeout){
         if (mPosService != null) {
             try {
                 return mPosService.EmvGetDukptPinblock(type,pinkey_n,card_no,pin_block,OutKsn,PinKcv,timeout);
@@ -4826,7 +4849,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.1
-    synchronized public int PciWritePinMKey(byte keyNo, byte keyLen, byte[] keyData, byte mode){
+    public int PciWritePinMKey(byte keyNo, byte keyLen, byte[] keyData, byte mode){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciWritePinMKey(keyNo, keyLen, keyData, mode);
@@ -4859,7 +4882,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.2
-    synchronized public int PciWriteMacMKey(byte keyNo, byte keyLen, byte[] keyData, byte mode){
+    public int PciWriteMacMKey(byte keyNo, byte keyLen, byte[] keyData, byte mode){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciWriteMacMKey(keyNo, keyLen, keyData, mode);
@@ -4892,7 +4915,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.3
-    synchronized public int PciWriteDesMKey(byte keyNo, byte keyLen, byte[] keyData, byte mode){
+    public int PciWriteDesMKey(byte keyNo, byte keyLen, byte[] keyData, byte mode){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciWriteDesMKey(keyNo, keyLen, keyData, mode);
@@ -4926,7 +4949,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.4
-    synchronized public int PciWritePinKey(byte keyNo, byte keyLen, byte[] keyData, byte mode, byte mkeyNo){
+    public int PciWritePinKey(byte keyNo, byte keyLen, byte[] keyData, byte mode, byte mkeyNo){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciWritePinKey(keyNo, keyLen, keyData, mode,mkeyNo);
@@ -4960,7 +4983,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.5
-    synchronized public int PciWriteMacKey(byte keyNo, byte keyLen, byte[] keyData, byte mode, byte mkeyNo){
+    public int PciWriteMacKey(byte keyNo, byte keyLen, byte[] keyData, byte mode, byte mkeyNo){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciWriteMacKey(keyNo, keyLen, keyData, mode,mkeyNo);
@@ -4994,7 +5017,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.6
-    synchronized public int PciWriteDesKey(byte keyNo, byte keyLen, byte[] keyData, byte mode, byte mkeyNo){
+    public int PciWriteDesKey(byte keyNo, byte keyLen, byte[] keyData, byte mode, byte mkeyNo){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciWriteDesKey(keyNo, keyLen, keyData, mode,mkeyNo);
@@ -5028,7 +5051,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.7
-    synchronized public int PciReadKCV(byte mkey_no, byte key_type,byte[] mkey_kcv){
+    public int PciReadKCV(byte mkey_no, byte key_type,byte[] mkey_kcv){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciReadKCV( mkey_no, key_type, mkey_kcv);
@@ -5075,7 +5098,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.8
-    synchronized public int PciGetPin(byte keyNo, byte minLen, byte maxLen, byte mode, byte[] cardNo,  byte[] pinBlock,  byte[] pinPasswd,byte pin_len, byte mark,  byte[] iAmount, byte waitTimeSec){
+    public int PciGetPin(byte keyNo, byte minLen, byte maxLen, byte mode, byte[] cardNo,  byte[] pinBlock,  byte[] pinPasswd,byte pin_len, byte mark,  byte[] iAmount, byte waitTimeSec){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciGetPin(keyNo, minLen,  maxLen,  mode,cardNo,  pinBlock, pinPasswd, pin_len,  mark, iAmount,  waitTimeSec);
@@ -5110,7 +5133,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.9
-    synchronized public int PciGetMac(byte keyNo, int inLen,  byte[] inData,  byte[] macout, byte mode){
+    public int PciGetMac(byte keyNo, int inLen,  byte[] inData,  byte[] macout, byte mode){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciGetMac( keyNo, inLen,  inData, macout, mode);
@@ -5144,7 +5167,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.10
-    synchronized public int PciGetDes(byte keyNo, int inLen,  byte[] inData,  byte[] desout, byte mode){
+    public int PciGetDes(byte keyNo, int inLen,  byte[] inData,  byte[] desout, byte mode){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciGetDes( keyNo, inLen,  inData, desout, mode);
@@ -5172,7 +5195,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.11
-    synchronized public int PciWriteDukptIpek(int KeyId,  int IpekLen,  byte[] Ipek, int KsnLen,  byte[] Ksn){
+    public int PciWriteDukptIpek(int KeyId,  int IpekLen,  byte[] Ipek, int KsnLen,  byte[] Ksn){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciWriteDukptIpek(KeyId,  IpekLen,   Ipek,  KsnLen, Ksn);
@@ -5206,7 +5229,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.12
-    synchronized public int PciGetDukptMac(int KeyId, byte  mode, byte  Mac_data_len, byte[]  Mac_data_in, byte[] Mac_out, byte[] OutKsn, byte[] MacKcv){
+    public int PciGetDukptMac(int KeyId, byte  mode, byte  Mac_data_len, byte[]  Mac_data_in, byte[] Mac_out, byte[] OutKsn, byte[] MacKcv){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciGetDukptMac(KeyId, mode, Mac_data_len, Mac_data_in, Mac_out, OutKsn, MacKcv);
@@ -5241,7 +5264,7 @@ public class PosApiHelper {
      * @throws
      */
     //14.0.13
-    synchronized public int PciGetDuktDes(int KeyId, byte mode, byte DesMode, int  Des_data_len, byte[] Des_data_in, byte[] jIV,  byte[]  Des_out, byte[]  OutKsn, byte[] DesKcv){
+    public int PciGetDuktDes(int KeyId, byte mode, byte DesMode, int  Des_data_len, byte[] Des_data_in, byte[] jIV,  byte[]  Des_out, byte[]  OutKsn, byte[] DesKcv){
         if (mPosService != null) {
             try {
                 return mPosService.Lib_PciGetDuktDes(KeyId, mode, DesMode, Des_data_len, Des_data_in, jIV, Des_out,  OutKsn, DesKcv);
@@ -5262,7 +5285,7 @@ public class PosApiHelper {
      * Other: fail
      */
     //1x.0.1
-    synchronized public int InitPaySysKernel() {
+    public int InitPaySysKernel() {
         if (mPosService != null) {
             try {
                 return mPosService.InitPaySysKernel();
@@ -5395,7 +5418,7 @@ public class PosApiHelper {
      * Other: fail
      */
     //1x.0.5
-    synchronized public int EmvSetKeyPadPrompt(String Prompt){
+    public int EmvSetKeyPadPrompt(String Prompt){
         if (mPosService != null) {
             try {
                 mPosService.EmvSetKeyPadPrompt(Prompt);
@@ -5418,7 +5441,7 @@ public class PosApiHelper {
      * Other: fail
      */
     //1x.0.5
-    synchronized public int EmvSetCurrencyCode(String Code){
+    public int EmvSetCurrencyCode(String Code){
         if (mPosService != null) {
             try {
                 mPosService.EmvSetCurrencyCode(Code);
@@ -5602,7 +5625,7 @@ public class PosApiHelper {
 //        return null;
 //    }
 
-    synchronized public int EmvSetInputPinCallback(int timeout, IInputPinCallback callback){
+    public int EmvSetInputPinCallback(int timeout, IInputPinCallback callback){
         if (mPosService != null) {
             try {
                 return mPosService.EmvSetInputPinCallback(timeout,callback);
@@ -5613,7 +5636,7 @@ public class PosApiHelper {
         return -5555;
     }
 
-    synchronized public int EmvKernelPinInput(int timeout, int keyId, IInputPinCallback callback){
+    public int EmvKernelPinInput(int timeout, int keyId, IInputPinCallback callback){
         if (mPosService != null) {
             try {
                 return mPosService.EmvKernelPinInput(timeout, keyId, callback);
@@ -5666,7 +5689,7 @@ public class PosApiHelper {
 //        }
 //    }
 
-    synchronized public int InitOnLinePINContext() {
+    public int InitOnLinePINContext() {
         if (mPosService != null) {
             try {
                 return mPosService.InitPaySysKernel();
@@ -5677,7 +5700,7 @@ public class PosApiHelper {
         return -5555;
     }
 
-    synchronized public int CallContactEmvPinblock(int pinType){
+    public int CallContactEmvPinblock(int pinType){
         if (mPosService != null) {
             try {
                 return mPosService.ServicesCallContactEmvPinblock(pinType);
@@ -0,0 +1,249 @@
+package com.ctk.sdk;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-API call statistics for the POS service.
+ *
+ * Every binder call made through {@link PosApiHelper} is recorded here by
+ * {@link PosServiceInterceptor}: call count, a log2-bucketed latency histogram,
+ * time spent waiting for the device lock, RemoteException count and the
+ * distribution of non-zero return codes. All updates are lock-free.
+ */
+public class PosMetrics {
+    /**
+     * Bucket 0 counts calls under 1us, bucket i counts calls in [2^(i-1), 2^i) us,
+     * the last bucket also absorbs everything slower.
+     */
+    public static final int BUCKET_COUNT = 32;
+
+    private static final PosMetrics mInstance = new PosMetrics();
+
+    private final ConcurrentHashMap<String, ApiStats> apiStats = new ConcurrentHashMap<>();
+    private volatile long startedAtMillis = System.currentTimeMillis();
+
+    private PosMetrics() {
+    }
+
+    public static PosMetrics getInstance() {
+        return mInstance;
+    }
+
+    public ApiStats stats(String api) {
+        ApiStats stats = apiStats.get(api);
+        if (stats == null) {
+            ApiStats created = new ApiStats();
+            stats = apiStats.putIfAbsent(api, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    public void reset() {
+        apiStats.clear();
+        startedAtMillis = System.currentTimeMillis();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> apis = new HashMap<>();
+        for (Map.Entry<String, ApiStats> entry : apiStats.entrySet()) {
+            apis.put(entry.getKey(), entry.getValue().toMap());
+        }
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("since", startedAtMillis);
+        snapshot.put("timestamp", System.currentTimeMillis());
+        snapshot.put("apis", apis);
+        return snapshot;
+    }
+
+    /**
+     * {@link #snapshot()} followed by {@link #reset()} without losing calls: every
+     * counter is read and zeroed in one atomic step, so a call recorded meanwhile is
+     * counted in this snapshot or the next one. APIs not called since the last reset
+     * are left out.
+     */
+    public Map<String, Object> snapshotAndReset() {
+        long now = System.currentTimeMillis();
+        long since = startedAtMillis;
+        startedAtMillis = now;
+        Map<String, Object> apis = new HashMap<>();
+        for (Map.Entry<String, ApiStats> entry : apiStats.entrySet()) {
+            Map<String, Object> map = entry.getValue().drain();
+            if ((Long) map.get("calls") != 0) {
+                apis.put(entry.getKey(), map);
+            }
+        }
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("since", since);
+        snapshot.put("timestamp", now);
+        snapshot.put("apis", apis);
+        return snapshot;
+    }
+
+    /**
+     * Writes {@link #snapshot()} as JSON. The file is replaced atomically so a
+     * reader never sees a half-written snapshot.
+     */
+    public void writeSnapshot(File file) throws IOException, JSONException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tmp);
+        try {
+            fos.write(new JSONObject(snapshot()).toString(2).getBytes());
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file.getAbsolutePath());
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    public static class ApiStats {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong remoteErrors = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong lockWaitNanos = new AtomicLong();
+        private final AtomicLong maxLockWaitNanos = new AtomicLong();
+        private final AtomicLongArray latency = new AtomicLongArray(BUCKET_COUNT);
+        private final ConcurrentHashMap<Integer, AtomicLong> returnCodes = new ConcurrentHashMap<>();
+
+        public void record(long nanos, long lockWait, Object ret) {
+            calls.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            updateMax(maxNanos, nanos);
+            latency.incrementAndGet(bucketOf(nanos));
+            if (lockWait > 0) {
+                lockWaitNanos.addAndGet(lockWait);
+                updateMax(maxLockWaitNanos, lockWait);
+            }
+            if (ret instanceof Integer && (Integer) ret != 0) {
+                recordReturnCode((Integer) ret);
+            }
+        }
+
+        public void recordRemoteError(long nanos, long lockWait) {
+            remoteErrors.incrementAndGet();
+            record(nanos, lockWait, null);
+        }
+
+        private void recordReturnCode(int code) {
+            AtomicLong counter = returnCodes.get(code);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong();
+                counter = returnCodes.putIfAbsent(code, created);
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+            counter.incrementAndGet();
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        /**
+         * Upper bound, in microseconds, of the bucket holding the given quantile.
+         */
+        public long quantileMicros(double quantile) {
+            long[] buckets = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = latency.get(i);
+            }
+            return quantileMicros(buckets, quantile);
+        }
+
+        private static long quantileMicros(long[] buckets, double quantile) {
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKET_COUNT - 1);
+        }
+
+        Map<String, Object> toMap() {
+            return toMap(false);
+        }
+
+        /**
+         * {@link #toMap()} zeroing each counter as it is read.
+         */
+        Map<String, Object> drain() {
+            return toMap(true);
+        }
+
+        private Map<String, Object> toMap(boolean drain) {
+            long[] buckets = new long[BUCKET_COUNT];
+            List<Long> histogram = new ArrayList<>(BUCKET_COUNT);
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = drain ? latency.getAndSet(i, 0) : latency.get(i);
+                histogram.add(buckets[i]);
+            }
+            Map<String, Object> codes = new HashMap<>();
+            for (Map.Entry<Integer, AtomicLong> entry : returnCodes.entrySet()) {
+                long count = read(entry.getValue(), drain);
+                if (count != 0 || !drain) {
+                    codes.put(String.valueOf(entry.getKey()), count);
+                }
+            }
+            Map<String, Object> map = new HashMap<>();
+            map.put("calls", read(calls, drain));
+            map.put("remoteErrors", read(remoteErrors, drain));
+            map.put("totalMicros", read(totalNanos, drain) / 1000);
+            map.put("maxMicros", read(maxNanos, drain) / 1000);
+            map.put("lockWaitMicros", read(lockWaitNanos, drain) / 1000);
+            map.put("maxLockWaitMicros", read(maxLockWaitNanos, drain) / 1000);
+            map.put("p50Micros", quantileMicros(buckets, 0.50));
+            map.put("p90Micros", quantileMicros(buckets, 0.90));
+            map.put("p99Micros", quantileMicros(buckets, 0.99));
+            map.put("latencyBuckets", histogram);
+            map.put("returnCodes", codes);
+            return map;
+        }
+
+        private static long read(AtomicLong counter, boolean drain) {
+            return drain ? counter.getAndSet(0) : counter.get();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.ctk.sdk;
+
+import android.os.RemoteException;
+
+import com.ciontek.ciontekposservice.ICiontekPosService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wraps the binder interface of the POS service so that every call is
+ * serialized on the device lock, measured in {@link PosMetrics} and, once
+ * started, kept in the {@link FlightRecorder}. Polls that found nothing are
+ * folded there into one record per run, see {@link #isIdlePoll}. Card calls are
+ * noted in {@link PiccField#usedWithin}.
+ *
+ * The lock is taken here rather than by {@code synchronized} methods on
+ * {@link PosApiHelper} so that the time a caller spends waiting for another
+ * caller's device operation can be measured separately from the call itself.
+ */
+class PosServiceInterceptor implements InvocationHandler {
+    /**
+     * Calls that never took the device lock in {@link PosApiHelper}, and the fiscal
+     * UART calls: fiscalRead blocks for its whole timeout and the fiscal module shares
+     * nothing with the printer or card readers, so {@link FiscalTransport} polls it
+     * from its own threads without stalling them.
+     */
+    private static final Set<String> UNLOCKED = new HashSet<>(Arrays.asList(
+            "asBinder", "getOSVersion", "getDeviceId", "EmvSetCallback",
+            "fiscalOpen", "fiscalClose", "fiscalWrite", "fiscalRead"));
+
+    private static final List<String> API_NAMES;
+    private static final Map<String, Integer> API_IDS = new HashMap<>();
+
+    static {
+        Set<String> names = new TreeSet<>();
+        for (Method method : ICiontekPosService.class.getMethods()) {
+            names.add(method.getName());
+        }
+        API_NAMES = new ArrayList<>(names);
+        for (int i = 0; i < API_NAMES.size(); i++) {
+            API_IDS.put(API_NAMES.get(i), i);
+        }
+    }
+
+    /**
+     * Service method names in flight recorder id order; sorted, so ids only change
+     * when the interface does.
+     */
+    static List<String> apiNames() {
+        return API_NAMES;
+    }
+
+    private final ICiontekPosService target;
+    private final ReentrantLock lock;
+    private final PosMetrics metrics;
+
+    private PosServiceInterceptor(ICiontekPosService target, ReentrantLock lock, PosMetrics metrics) {
+        this.target = target;
+        this.lock = lock;
+        this.metrics = metrics;
+    }
+
+    static ICiontekPosService wrap(ICiontekPosService target, ReentrantLock lock) {
+        if (target == null) {
+            return null;
+        }
+        return (ICiontekPosService) Proxy.newProxyInstance(
+                ICiontekPosService.class.getClassLoader(),
+                new Class<?>[]{ICiontekPosService.class},
+                new PosServiceInterceptor(target, lock, PosMetrics.getInstance()));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(target, args);
+        }
+        String api = method.getName();
+        boolean locked = !UNLOCKED.contains(api);
+        long requested = System.nanoTime();
+        if (locked) {
+            lock.lock();
+        }
+        long acquired = System.nanoTime();
+        try {
+            Object ret = method.invoke(target, args);
+            long elapsed = System.nanoTime() - acquired;
+            metrics.stats(api).record(elapsed, acquired - requested, ret);
+            record(api, args, ret, elapsed, 0);
+            return ret;
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                long elapsed = System.nanoTime() - acquired;
+                metrics.stats(api).recordRemoteError(elapsed, acquired - requested);
+                record(api, args, null, elapsed, FlightRecorder.FLAG_REMOTE_ERROR);
+            }
+            throw cause;
+        } finally {
+            if (api.startsWith("Lib_Picc") && !api.equals("Lib_PiccRemove")) {
+                PiccField.touch();
+            }
+            if (locked) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static void record(String api, Object[] args, Object ret, long elapsed, int flags) {
+        FlightRecorder recorder = FlightRecorder.current();
+        Integer id = API_IDS.get(api);
+        if (recorder == null || id == null) {
+            return;
+        }
+        if (flags == 0 && isIdlePoll(api, ret)) {
+            recorder.recordIdlePoll(id, (Integer) ret, elapsed);
+        } else {
+            recorder.record(id, args, ret, elapsed, flags);
+        }
+    }
+
+    /**
+     * Calls made in a polling loop that returned "nothing yet": fiscalRead, which
+     * {@link FiscalTransport} calls for every byte and every timeout, McrCheck and
+     * PiccCheck without a card, and PiccRemove while the card is still there.
+     */
+    static boolean isIdlePoll(String api, Object ret) {
+        if (!(ret instanceof Integer)) {
+            return false;
+        }
+        int code = (Integer) ret;
+        switch (api) {
+            case "fiscalRead":
+                return true;
+            case "Lib_McrCheck":
+            case "Lib_PiccCheck":
+                return code != 0;
+            case "Lib_PiccRemove":
+                return code == 0;
+            default:
+                return false;
+        }
+    }
+}
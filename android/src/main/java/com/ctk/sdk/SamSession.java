@@ -0,0 +1,205 @@
+package com.ctk.sdk;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a SAM AV2 host session open across card authentications.
+ *
+ * {@link PosApiHelper#PiccSamOpen} and {@link PosApiHelper#PiccSamAv2Init} run on
+ * the first authentication only; every later card costs a single
+ * {@link PosApiHelper#PiccSamMfcAuth}. The session is closed once it has been idle
+ * for the configured time, and set up again by the next authentication. After
+ * {@link #MAX_CONSECUTIVE_FAILURES} failed authentications in a row the SAM may have
+ * been reset underneath us, so the next authentication also starts a new session.
+ *
+ * Not thread safe; the caller holds the service lock.
+ */
+public class SamSession {
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    public static final int MAX_CONSECUTIVE_FAILURES = 2;
+
+    /**
+     * Returned by {@link #mfcAuth} before {@link #configure} was called.
+     */
+    public static final int ERR_NOT_CONFIGURED = -9101;
+
+    /**
+     * Device calls used by the session.
+     */
+    public interface Sam {
+        int open(int slot, byte[] atr);
+
+        int init(int slot, byte[] hostKey, byte[] hostMode, byte[] version, byte[] versionLen);
+
+        int mfcAuth(byte keyType, byte block, byte keyNumber, byte keyVersion);
+
+        int close(int slot);
+    }
+
+    public static Sam sam(final PosApiHelper posApiHelper) {
+        return new Sam() {
+            @Override
+            public int open(int slot, byte[] atr) {
+                return posApiHelper.PiccSamOpen(slot, atr);
+            }
+
+            @Override
+            public int init(int slot, byte[] hostKey, byte[] hostMode, byte[] version, byte[] versionLen) {
+                return posApiHelper.PiccSamAv2Init(slot, hostKey, hostMode, version, versionLen);
+            }
+
+            @Override
+            public int mfcAuth(byte keyType, byte block, byte keyNumber, byte keyVersion) {
+                return posApiHelper.PiccSamMfcAuth(keyType, block, keyNumber, keyVersion);
+            }
+
+            @Override
+            public int close(int slot) {
+                return posApiHelper.PiccSamClose(slot);
+            }
+        };
+    }
+
+    private final Sam sam;
+    private final byte[] atr = new byte[64];
+    private final byte[] hostMode = new byte[2];
+    private final byte[] version = new byte[32];
+    private final byte[] versionLen = new byte[1];
+
+    private int slot;
+    private byte[] hostKey;
+    private long idleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private boolean open;
+    private long lastUsed;
+    private int failures;
+    private int sessionsOpened;
+
+    public SamSession(Sam sam) {
+        this.sam = sam;
+    }
+
+    /**
+     * Sets the slot and host key used by later authentications. A different slot or
+     * key closes the current session.
+     */
+    public void configure(int slot, byte[] hostKey, long idleTimeoutMs) {
+        if (open && (slot != this.slot || !Arrays.equals(hostKey, this.hostKey))) {
+            close();
+        }
+        this.slot = slot;
+        this.hostKey = hostKey.clone();
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Opens the session now unless it is already open, so the first card does not
+     * pay for it.
+     *
+     * @return 0, or the code of PiccSamOpen / PiccSamAv2Init
+     */
+    public int open() {
+        if (hostKey == null) {
+            return ERR_NOT_CONFIGURED;
+        }
+        expireIfIdle();
+        if (open && failures < MAX_CONSECUTIVE_FAILURES) {
+            return 0;
+        }
+        if (open) {
+            close();
+        }
+        Arrays.fill(atr, (byte) 0);
+        int ret = sam.open(slot, atr);
+        if (ret == 0) {
+            ret = sam.init(slot, hostKey, hostMode, version, versionLen);
+            if (ret != 0) {
+                sam.close(slot);
+            }
+        }
+        if (ret == 0) {
+            open = true;
+            failures = 0;
+            sessionsOpened++;
+            lastUsed = now();
+        }
+        return ret;
+    }
+
+    /**
+     * Authenticates the MIFARE Classic block of the card in the field with a SAM key,
+     * opening the session first if needed.
+     *
+     * @param keyType 'A' or 'B'
+     */
+    public int mfcAuth(byte keyType, int block, int keyNumber, int keyVersion) {
+        int ret = open();
+        if (ret != 0) {
+            return ret;
+        }
+        ret = sam.mfcAuth(keyType, (byte) block, (byte) keyNumber, (byte) keyVersion);
+        failures = ret == 0 ? 0 : failures + 1;
+        lastUsed = now();
+        return ret;
+    }
+
+    /**
+     * Closes the session if it has not been used for the idle timeout.
+     *
+     * @return true if the session was closed
+     */
+    public boolean expireIfIdle() {
+        if (open && now() - lastUsed >= idleTimeoutMs) {
+            close();
+            return true;
+        }
+        return false;
+    }
+
+    public void close() {
+        if (open) {
+            open = false;
+            sam.close(slot);
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    /**
+     * Number of times the host authentication ran, for diagnostics.
+     */
+    public int getSessionsOpened() {
+        return sessionsOpened;
+    }
+
+    /**
+     * ATR of the SAM, empty while no session is open.
+     */
+    public byte[] getAtr() {
+        if (!open) {
+            return new byte[0];
+        }
+        int len = Math.min(atr[0] & 0xff, atr.length - 1);
+        return Arrays.copyOfRange(atr, 1, 1 + len);
+    }
+
+    public byte[] getVersion() {
+        if (!open) {
+            return new byte[0];
+        }
+        return Arrays.copyOf(version, Math.min(versionLen[0] & 0xff, version.length));
+    }
+
+    public int getHostMode() {
+        return ByteUtil.getUShortLE(hostMode, 0);
+    }
+
+    long now() {
+        return System.nanoTime() / 1000000;
+    }
+}
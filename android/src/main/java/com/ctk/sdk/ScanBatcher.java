@@ -0,0 +1,210 @@
+package com.ctk.sdk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects barcode scans into batches for one delivery each.
+ *
+ * The first scan after a delivery starts a window; the caller flushes when it ends
+ * and {@link #drain} hands over everything collected meanwhile. At most one batch is
+ * in flight: until the receiver acknowledges it with {@link #delivered}, scans keep
+ * collecting, so a slow consumer gets fewer, larger batches instead of a growing
+ * queue of deliveries. The batch holds at most {@code maxQueue} scans; when it is
+ * full the oldest or the new scan is dropped, and with merging on a scan equal to one
+ * already in the batch only bumps its count. Drops and merges are reported with the
+ * batch.
+ *
+ * Scans are copied into preallocated slots; hex is only produced by {@link #drain}.
+ *
+ * Not thread safe; confine it to the thread the scans arrive on.
+ */
+public class ScanBatcher {
+    public static final int DROP_OLDEST = 0;
+    public static final int DROP_NEWEST = 1;
+
+    private static final class Scan {
+        // null for raw scans
+        String text;
+        byte[] raw = new byte[64];
+        int rawLength;
+        int length;
+        int encodeType;
+        int count;
+        long time;
+
+        boolean sameAs(String t, byte[] r, int rLength, int type) {
+            if (encodeType != type) {
+                return false;
+            }
+            if (t != null) {
+                return t.equals(text);
+            }
+            if (text != null || rawLength != rLength) {
+                return false;
+            }
+            for (int i = 0; i < rLength; i++) {
+                if (raw[i] != r[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Scan[] slots;
+    private final int overflow;
+    private final boolean merge;
+    private int first;
+    private int size;
+    private int dropped;
+    private int merged;
+    private long totalDropped;
+    private long totalMerged;
+    private boolean inFlight;
+
+    public ScanBatcher(int maxQueue, int overflow, boolean merge) {
+        if (maxQueue <= 0) {
+            throw new IllegalArgumentException("maxQueue must be positive");
+        }
+        if (overflow != DROP_OLDEST && overflow != DROP_NEWEST) {
+            throw new IllegalArgumentException("Unknown overflow policy " + overflow);
+        }
+        slots = new Scan[maxQueue];
+        for (int i = 0; i < maxQueue; i++) {
+            slots[i] = new Scan();
+        }
+        this.overflow = overflow;
+        this.merge = merge;
+    }
+
+    /**
+     * @return the policy named {@code name} ("dropOldest", "dropNewest"), -1 if none is
+     */
+    public static int overflowOf(String name) {
+        if ("dropOldest".equals(name)) {
+            return DROP_OLDEST;
+        }
+        if ("dropNewest".equals(name)) {
+            return DROP_NEWEST;
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a decoded scan.
+     *
+     * @return true if the caller should schedule a flush after the window
+     */
+    public boolean offerText(String text, int length, int encodeType, long timeMs) {
+        return offer(text != null ? text : "", null, 0, length, encodeType, timeMs);
+    }
+
+    /**
+     * Adds a raw scan; the first {@code rawLength} bytes of {@code raw} are copied.
+     *
+     * @return true if the caller should schedule a flush after the window
+     */
+    public boolean offerRaw(byte[] raw, int rawLength, int length, int encodeType, long timeMs) {
+        int n = raw == null ? 0 : Math.max(0, Math.min(rawLength, raw.length));
+        return offer(null, raw, n, length, encodeType, timeMs);
+    }
+
+    private boolean offer(String text, byte[] raw, int rawLength, int length, int encodeType, long timeMs) {
+        boolean schedule = size == 0 && !inFlight;
+        if (merge) {
+            for (int i = 0; i < size; i++) {
+                Scan s = slots[(first + i) % slots.length];
+                if (s.sameAs(text, raw, rawLength, encodeType)) {
+                    s.count++;
+                    s.time = timeMs;
+                    merged++;
+                    totalMerged++;
+                    return false;
+                }
+            }
+        }
+        if (size == slots.length) {
+            dropped++;
+            totalDropped++;
+            if (overflow == DROP_NEWEST) {
+                return false;
+            }
+            first = (first + 1) % slots.length;
+            size--;
+        }
+        Scan s = slots[(first + size) % slots.length];
+        size++;
+        s.text = text;
+        if (text == null) {
+            if (s.raw.length < rawLength) {
+                s.raw = new byte[rawLength];
+            }
+            System.arraycopy(raw, 0, s.raw, 0, rawLength);
+        }
+        s.rawLength = rawLength;
+        s.length = length;
+        s.encodeType = encodeType;
+        s.count = 1;
+        s.time = timeMs;
+        return schedule;
+    }
+
+    /**
+     * Takes the collected scans as a map with scans (each result, length, encodeType,
+     * count and time of the last occurrence), dropped and merged.
+     *
+     * @return null if nothing was collected or a batch is still in flight
+     */
+    public Map<String, Object> drain() {
+        if (inFlight || size == 0) {
+            return null;
+        }
+        List<Map<String, Object>> scans = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Scan s = slots[(first + i) % slots.length];
+            Map<String, Object> m = new HashMap<>();
+            m.put("result", s.text != null ? s.text : ByteUtil.bytearrayToHexString(s.raw, s.rawLength));
+            m.put("length", s.length);
+            m.put("encodeType", s.encodeType);
+            m.put("count", s.count);
+            m.put("time", s.time);
+            scans.add(m);
+            s.text = null;
+        }
+        Map<String, Object> batch = new HashMap<>();
+        batch.put("scans", scans);
+        batch.put("dropped", dropped);
+        batch.put("merged", merged);
+        first = 0;
+        size = 0;
+        dropped = 0;
+        merged = 0;
+        inFlight = true;
+        return batch;
+    }
+
+    /**
+     * Acknowledges the batch returned by {@link #drain}.
+     *
+     * @return true if scans arrived meanwhile and the caller should flush now
+     */
+    public boolean delivered() {
+        inFlight = false;
+        return size > 0;
+    }
+
+    public int pending() {
+        return size;
+    }
+
+    public long getDropped() {
+        return totalDropped;
+    }
+
+    public long getMerged() {
+        return totalMerged;
+    }
+}
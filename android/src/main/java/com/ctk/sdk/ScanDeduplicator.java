@@ -0,0 +1,168 @@
+package com.ctk.sdk;
+
+/**
+ * Suppresses repeats of a barcode that is still in front of a continuous scanner.
+ *
+ * A scan is a duplicate when the same code (bytes and encode type) was last seen
+ * less than {@code windowMs} ago. Every sighting restarts that code's window, so an
+ * item held in view stays suppressed until it has been gone for a whole window. The
+ * most recent {@code capacity} codes are remembered; the least recently seen one is
+ * forgotten to make room.
+ *
+ * Codes are compared as bytes copied into preallocated slots; a text scan is keyed
+ * by its UTF-16 code units, so no String or array is created per scan. A lookup is
+ * a linear pass over the slot hashes, which for a few dozen codes costs less than
+ * maintaining an index.
+ *
+ * Thread safe.
+ */
+public class ScanDeduplicator {
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final long DEFAULT_WINDOW_MS = 1000;
+
+    private final byte[][] keys;
+    private final int[] lengths;
+    private final int[] hashes;
+    private final int[] types;
+    private final long[] lastSeen;
+    private int used;
+    private byte[] scratch = new byte[256];
+    private boolean enabled = true;
+    private long windowMs = DEFAULT_WINDOW_MS;
+    private long passed;
+    private long suppressed;
+    private long unreported;
+
+    public ScanDeduplicator(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        keys = new byte[capacity][64];
+        lengths = new int[capacity];
+        hashes = new int[capacity];
+        types = new int[capacity];
+        lastSeen = new long[capacity];
+    }
+
+    /**
+     * @param enabled  false lets every scan through
+     * @param windowMs how long after its last sighting a code counts as a repeat
+     */
+    public synchronized void configure(boolean enabled, long windowMs) {
+        this.enabled = enabled;
+        this.windowMs = Math.max(0, windowMs);
+        used = 0;
+    }
+
+    /**
+     * Forgets the remembered codes, e.g. when a new scan session starts.
+     */
+    public synchronized void reset() {
+        used = 0;
+    }
+
+    /**
+     * @return false if the first {@code length} bytes of {@code raw} are a repeat
+     */
+    public synchronized boolean acceptRaw(byte[] raw, int length, int encodeType, long nowMs) {
+        int n = raw == null ? 0 : Math.max(0, Math.min(length, raw.length));
+        return accept(raw, n, encodeType, nowMs);
+    }
+
+    /**
+     * @return false if {@code text} is a repeat
+     */
+    public synchronized boolean acceptText(CharSequence text, int encodeType, long nowMs) {
+        int chars = text == null ? 0 : text.length();
+        if (scratch.length < chars * 2) {
+            scratch = new byte[chars * 2];
+        }
+        for (int i = 0; i < chars; i++) {
+            char c = text.charAt(i);
+            scratch[2 * i] = (byte) (c >> 8);
+            scratch[2 * i + 1] = (byte) c;
+        }
+        return accept(scratch, chars * 2, encodeType, nowMs);
+    }
+
+    private boolean accept(byte[] key, int length, int encodeType, long nowMs) {
+        if (!enabled) {
+            passed++;
+            return true;
+        }
+        int hash = hash(key, length, encodeType);
+        int slot = find(key, length, encodeType, hash);
+        if (slot >= 0) {
+            boolean repeat = nowMs - lastSeen[slot] < windowMs;
+            lastSeen[slot] = nowMs;
+            if (repeat) {
+                suppressed++;
+                unreported++;
+                return false;
+            }
+            passed++;
+            return true;
+        }
+        if (used < keys.length) {
+            slot = used++;
+        } else {
+            slot = 0;
+            for (int i = 1; i < used; i++) {
+                if (lastSeen[i] < lastSeen[slot]) {
+                    slot = i;
+                }
+            }
+        }
+        if (keys[slot].length < length) {
+            keys[slot] = new byte[length];
+        }
+        System.arraycopy(key, 0, keys[slot], 0, length);
+        lengths[slot] = length;
+        hashes[slot] = hash;
+        types[slot] = encodeType;
+        lastSeen[slot] = nowMs;
+        passed++;
+        return true;
+    }
+
+    private int find(byte[] key, int length, int encodeType, int hash) {
+        outer:
+        for (int i = 0; i < used; i++) {
+            if (hashes[i] != hash || lengths[i] != length || types[i] != encodeType) {
+                continue;
+            }
+            byte[] k = keys[i];
+            for (int j = 0; j < length; j++) {
+                if (k[j] != key[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int hash(byte[] key, int length, int encodeType) {
+        int h = 0x811C9DC5 ^ encodeType;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (key[i] & 0xFF)) * 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * @return {passed, suppressed} since creation
+     */
+    public synchronized long[] counts() {
+        return new long[]{passed, suppressed};
+    }
+
+    /**
+     * Scans suppressed since the previous call.
+     */
+    public synchronized int takeSuppressed() {
+        int n = (int) Math.min(unreported, Integer.MAX_VALUE);
+        unreported = 0;
+        return n;
+    }
+}
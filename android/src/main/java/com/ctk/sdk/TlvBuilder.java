@@ -0,0 +1,185 @@
+package com.ctk.sdk;
+
+/**
+ * Writes BER-TLV into a reusable buffer.
+ *
+ * Templates are opened with {@link #begin(int)} and closed with {@link #end()};
+ * the template length is patched in place when it is closed, so nothing is
+ * buffered per object. Call {@link #reset()} to reuse the builder, the buffer
+ * only grows.
+ *
+ * <pre>
+ * builder.reset()
+ *         .begin(0x70)
+ *         .put(0x5A, pan)
+ *         .putBcd(0x9F02, 6, amount)
+ *         .end();
+ * </pre>
+ */
+public class TlvBuilder {
+    private final int[] open = new int[TlvReader.MAX_DEPTH];
+    private byte[] buf;
+    private int len;
+    private int depth;
+
+    public TlvBuilder() {
+        this(256);
+    }
+
+    public TlvBuilder(int capacity) {
+        buf = new byte[Math.max(capacity, 16)];
+    }
+
+    public TlvBuilder reset() {
+        len = 0;
+        depth = 0;
+        return this;
+    }
+
+    public TlvBuilder put(int tag, byte[] value) {
+        return put(tag, value, 0, value.length);
+    }
+
+    public TlvBuilder put(int tag, byte[] value, int offset, int length) {
+        writeTag(tag);
+        ensure(lengthSize(length) + length);
+        len = writeLength(len, length);
+        System.arraycopy(value, offset, buf, len, length);
+        len += length;
+        return this;
+    }
+
+    public TlvBuilder putByte(int tag, int value) {
+        writeTag(tag);
+        ensure(2);
+        buf[len++] = 1;
+        buf[len++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Writes {@code value} as {@code length} bytes of packed BCD.
+     */
+    public TlvBuilder putBcd(int tag, int length, long value) {
+        writeTag(tag);
+        ensure(lengthSize(length) + length);
+        len = writeLength(len, length);
+        ByteUtil.putBcd(buf, len, length, value);
+        len += length;
+        return this;
+    }
+
+    /**
+     * Opens a constructed template; objects put until the matching {@link #end()}
+     * become its value.
+     */
+    public TlvBuilder begin(int tag) {
+        if ((TlvReader.firstTagByte(tag) & 0x20) == 0) {
+            throw new IllegalArgumentException("Tag " + Integer.toHexString(tag) + " is not constructed");
+        }
+        if (depth == open.length) {
+            throw new IllegalStateException("Templates nested deeper than " + open.length);
+        }
+        writeTag(tag);
+        ensure(1);
+        open[depth++] = len;
+        buf[len++] = 0;
+        return this;
+    }
+
+    public TlvBuilder end() {
+        if (depth == 0) {
+            throw new IllegalStateException("No open template");
+        }
+        int lengthOffset = open[--depth];
+        int content = len - lengthOffset - 1;
+        int extra = lengthSize(content) - 1;
+        if (extra > 0) {
+            ensure(extra);
+            System.arraycopy(buf, lengthOffset + 1, buf, lengthOffset + 1 + extra, content);
+            len += extra;
+        }
+        writeLength(lengthOffset, content);
+        return this;
+    }
+
+    /**
+     * Backing buffer; valid bytes are {@code [0, length())}.
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int length() {
+        return len;
+    }
+
+    public int copyTo(byte[] dst, int offset) {
+        checkClosed();
+        System.arraycopy(buf, 0, dst, offset, len);
+        return len;
+    }
+
+    public byte[] toByteArray() {
+        checkClosed();
+        byte[] out = new byte[len];
+        System.arraycopy(buf, 0, out, 0, len);
+        return out;
+    }
+
+    private void checkClosed() {
+        if (depth != 0) {
+            throw new IllegalStateException(depth + " template(s) still open");
+        }
+    }
+
+    private void writeTag(int tag) {
+        if (tag == 0) {
+            throw new IllegalArgumentException("Invalid tag 0");
+        }
+        ensure(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int b = (tag >>> shift) & 0xff;
+            if (b != 0 || shift == 0 || (tag >>> shift) > 0xff) {
+                buf[len++] = (byte) b;
+            }
+        }
+    }
+
+    private int writeLength(int offset, int length) {
+        if (length < 0x80) {
+            buf[offset++] = (byte) length;
+        } else if (length <= 0xff) {
+            buf[offset++] = (byte) 0x81;
+            buf[offset++] = (byte) length;
+        } else if (length <= 0xffff) {
+            buf[offset++] = (byte) 0x82;
+            buf[offset++] = (byte) (length >> 8);
+            buf[offset++] = (byte) length;
+        } else {
+            buf[offset++] = (byte) 0x83;
+            buf[offset++] = (byte) (length >> 16);
+            buf[offset++] = (byte) (length >> 8);
+            buf[offset++] = (byte) length;
+        }
+        return offset;
+    }
+
+    private static int lengthSize(int length) {
+        if (length < 0x80) {
+            return 1;
+        }
+        if (length <= 0xff) {
+            return 2;
+        }
+        return length <= 0xffff ? 3 : 4;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            byte[] grown = new byte[Math.max(buf.length * 2, len + extra)];
+            System.arraycopy(buf, 0, grown, 0, len);
+            buf = grown;
+        }
+    }
+}
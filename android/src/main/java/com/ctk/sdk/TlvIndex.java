@@ -0,0 +1,205 @@
+package com.ctk.sdk;
+
+import java.util.Arrays;
+
+/**
+ * Offset index of every object in a BER-TLV buffer, including the children of
+ * constructed templates, for repeated tag lookups without re-parsing.
+ *
+ * Entries are kept in parallel int arrays in document order and looked up
+ * through an open addressing table keyed by tag. Arrays only grow, so after the
+ * first few responses {@link #build} produces no garbage. When a tag occurs more
+ * than once {@link #find} returns the first occurrence; use {@link #findNext}
+ * for the others.
+ */
+public class TlvIndex {
+    private final TlvReader reader = new TlvReader();
+
+    private byte[] buf;
+    private int count;
+    private int[] tags;
+    private int[] valueOffsets;
+    private int[] valueLengths;
+    private int[] depths;
+    private int[] slots;
+
+    public TlvIndex() {
+        this(32);
+    }
+
+    public TlvIndex(int capacity) {
+        int cap = Math.max(capacity, 4);
+        tags = new int[cap];
+        valueOffsets = new int[cap];
+        valueLengths = new int[cap];
+        depths = new int[cap];
+        slots = new int[tableSize(cap)];
+    }
+
+    /**
+     * Indexes {@code length} bytes of {@code buf} from {@code offset}. The buffer
+     * is referenced, not copied, and must not change while the index is used.
+     *
+     * @throws IllegalArgumentException if the data is not valid BER-TLV
+     */
+    public TlvIndex build(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        count = 0;
+        reader.reset(buf, offset, length);
+        while (true) {
+            if (reader.next()) {
+                add(reader.tag(), reader.valueOffset(), reader.valueLength(), reader.depth());
+                if (reader.isConstructed()) {
+                    reader.enter();
+                }
+            } else if (reader.depth() > 0) {
+                reader.exit();
+            } else {
+                break;
+            }
+        }
+        rehash();
+        return this;
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int tag(int entry) {
+        return tags[entry];
+    }
+
+    public int valueOffset(int entry) {
+        return valueOffsets[entry];
+    }
+
+    public int valueLength(int entry) {
+        return valueLengths[entry];
+    }
+
+    /**
+     * Nesting depth of the entry, 0 for top level objects.
+     */
+    public int depth(int entry) {
+        return depths[entry];
+    }
+
+    public boolean contains(int tag) {
+        return find(tag) >= 0;
+    }
+
+    /**
+     * @return the entry of the first object with this tag, or -1
+     */
+    public int find(int tag) {
+        int mask = slots.length - 1;
+        for (int i = hash(tag) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if (tags[slot - 1] == tag) {
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * @return the next entry after {@code entry} with the same tag, or -1
+     */
+    public int findNext(int entry) {
+        int tag = tags[entry];
+        for (int i = entry + 1; i < count; i++) {
+            if (tags[i] == tag) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the value of the first object with this tag into {@code dst}.
+     *
+     * @return number of bytes copied, or -1 if the tag is absent or does not fit
+     */
+    public int copyValue(int tag, byte[] dst, int dstOff) {
+        int entry = find(tag);
+        if (entry < 0 || valueLengths[entry] > dst.length - dstOff) {
+            return -1;
+        }
+        System.arraycopy(buf, valueOffsets[entry], dst, dstOff, valueLengths[entry]);
+        return valueLengths[entry];
+    }
+
+    /**
+     * Value of the first object with this tag read as packed BCD, e.g. 9F02.
+     *
+     * @return the value, or -1 if the tag is absent
+     */
+    public long bcdValue(int tag) {
+        int entry = find(tag);
+        if (entry < 0) {
+            return -1;
+        }
+        return ByteUtil.getBcd(buf, valueOffsets[entry], valueLengths[entry]);
+    }
+
+    private void add(int tag, int valueOffset, int valueLength, int depth) {
+        if (count == tags.length) {
+            int cap = count * 2;
+            tags = copyOf(tags, cap);
+            valueOffsets = copyOf(valueOffsets, cap);
+            valueLengths = copyOf(valueLengths, cap);
+            depths = copyOf(depths, cap);
+        }
+        tags[count] = tag;
+        valueOffsets[count] = valueOffset;
+        valueLengths[count] = valueLength;
+        depths[count] = depth;
+        count++;
+    }
+
+    private void rehash() {
+        int size = tableSize(count);
+        if (slots.length < size) {
+            slots = new int[size];
+        } else {
+            Arrays.fill(slots, 0);
+        }
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < count; entry++) {
+            int tag = tags[entry];
+            int i = hash(tag) & mask;
+            while (slots[i] != 0 && tags[slots[i] - 1] != tag) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] == 0) {
+                slots[i] = entry + 1;
+            }
+        }
+    }
+
+    private static int hash(int tag) {
+        int h = tag * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSize(int entries) {
+        int size = 8;
+        while (size < entries * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int[] copyOf(int[] src, int length) {
+        int[] dst = new int[length];
+        System.arraycopy(src, 0, dst, 0, src.length);
+        return dst;
+    }
+}
@@ -0,0 +1,168 @@
+package com.ctk.sdk;
+
+/**
+ * Streaming BER-TLV cursor over EMV tag data.
+ *
+ * The reader never copies: {@link #valueOffset()} and {@link #valueLength()} point
+ * into the array passed to {@link #reset}. Constructed templates (70, 77, A5, ...)
+ * are walked with {@link #enter()} and {@link #exit()}. '00' padding between
+ * objects is skipped. A reader can be reset and reused for any number of buffers.
+ *
+ * <pre>
+ * reader.reset(buf, 0, len);
+ * while (reader.next()) {
+ *     if (reader.tag() == 0x70) reader.enter();
+ *     ...
+ * }
+ * </pre>
+ */
+public class TlvReader {
+    public static final int MAX_DEPTH = 8;
+
+    private final int[] ends = new int[MAX_DEPTH];
+    private byte[] buf;
+    private int pos;
+    private int end;
+    private int depth;
+
+    private int tag;
+    private int tagOffset;
+    private int valueOffset;
+    private int valueLength;
+
+    public TlvReader reset(byte[] buf, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buf.length) {
+            throw new IllegalArgumentException("Range " + offset + "+" + length + " outside buffer");
+        }
+        this.buf = buf;
+        this.pos = offset;
+        this.end = offset + length;
+        this.depth = 0;
+        this.tag = 0;
+        return this;
+    }
+
+    /**
+     * Moves to the next object at the current depth.
+     *
+     * @return false at the end of the buffer or of the entered template
+     * @throws IllegalArgumentException if the object is truncated or its tag or
+     *                                  length is malformed
+     */
+    public boolean next() {
+        while (pos < end && buf[pos] == 0) {
+            pos++;
+        }
+        if (pos >= end) {
+            tag = 0;
+            return false;
+        }
+        tagOffset = pos;
+        int t = buf[pos++] & 0xff;
+        if ((t & 0x1f) == 0x1f) {
+            int b;
+            do {
+                if (pos >= end) {
+                    throw new IllegalArgumentException("Truncated tag at " + tagOffset);
+                }
+                if (t > 0xffffff) {
+                    throw new IllegalArgumentException("Tag longer than 4 bytes at " + tagOffset);
+                }
+                b = buf[pos++] & 0xff;
+                t = (t << 8) | b;
+            } while ((b & 0x80) != 0);
+        }
+        if (pos >= end) {
+            throw new IllegalArgumentException("Missing length at " + tagOffset);
+        }
+        int len = buf[pos++] & 0xff;
+        if (len > 0x7f) {
+            int n = len & 0x7f;
+            if (n == 0 || n > 3 || pos + n > end) {
+                throw new IllegalArgumentException("Invalid length at " + tagOffset);
+            }
+            len = 0;
+            for (int i = 0; i < n; i++) {
+                len = (len << 8) | (buf[pos++] & 0xff);
+            }
+        }
+        if (len > end - pos) {
+            throw new IllegalArgumentException("Value of tag " + Integer.toHexString(t)
+                    + " exceeds buffer at " + tagOffset);
+        }
+        tag = t;
+        valueOffset = pos;
+        valueLength = len;
+        pos += len;
+        return true;
+    }
+
+    /**
+     * Descends into the value of the current constructed object; {@link #next()}
+     * then iterates its children.
+     */
+    public void enter() {
+        if (!isConstructed()) {
+            throw new IllegalStateException("Tag " + Integer.toHexString(tag) + " is not constructed");
+        }
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Templates nested deeper than " + MAX_DEPTH);
+        }
+        ends[depth++] = end;
+        end = valueOffset + valueLength;
+        pos = valueOffset;
+    }
+
+    /**
+     * Skips the rest of the entered template and returns to its parent.
+     */
+    public void exit() {
+        if (depth == 0) {
+            throw new IllegalStateException("Not inside a template");
+        }
+        pos = end;
+        end = ends[--depth];
+        tag = 0;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int tag() {
+        return tag;
+    }
+
+    public int tagOffset() {
+        return tagOffset;
+    }
+
+    public int valueOffset() {
+        return valueOffset;
+    }
+
+    public int valueLength() {
+        return valueLength;
+    }
+
+    public boolean isConstructed() {
+        return tag != 0 && (firstTagByte(tag) & 0x20) != 0;
+    }
+
+    static int firstTagByte(int tag) {
+        if ((tag & 0xff000000) != 0) {
+            return tag >>> 24;
+        }
+        if ((tag & 0xff0000) != 0) {
+            return tag >>> 16;
+        }
+        if ((tag & 0xff00) != 0) {
+            return tag >>> 8;
+        }
+        return tag;
+    }
+}
@@ -0,0 +1,163 @@
+package com.ctk.sdk;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dumps a MIFARE Ultralight / NTAG tag: memory, one counter and the originality
+ * signature, with a single activation.
+ *
+ * READ returns four pages; the pages are copied straight into the memory buffer,
+ * only the last call may copy fewer. When the page count is not given it is taken
+ * from the capability container in page 3: the 4 header pages plus the data area,
+ * which covers the NDEF and user memory of every NTAG21x and Ultralight EV1.
+ *
+ * A tag that does not support the counter or signature command answers with a NAK
+ * and goes idle; it is activated (and authenticated) again and that value is left
+ * out of the result.
+ *
+ * Not thread safe. A password authentication only lasts until the tag is next
+ * activated, so a read must not be interleaved with other card calls.
+ */
+public class UltralightReader {
+    public static final int PAGE_SIZE = 4;
+    public static final int PAGES_PER_READ = 4;
+    public static final int SIGNATURE_SIZE = 32;
+    /**
+     * Counter number of the NFC counter on NTAG21x.
+     */
+    public static final int NFC_COUNTER = 2;
+    public static final int NO_COUNTER = -1;
+
+    private static final int MAX_PAGES = 256;
+
+    /**
+     * Device calls used by the reader.
+     */
+    public interface Tag {
+        int activate();
+
+        int pwdAuth(byte[] pwd, byte[] pack);
+
+        /**
+         * Reads four pages from {@code page} into {@code data} (16 bytes).
+         */
+        int read(int page, byte[] data);
+
+        int readCounter(int counter, byte[] value);
+
+        int readSignature(byte[] signature);
+    }
+
+    public static Tag tag(final PosApiHelper posApiHelper) {
+        return new Tag() {
+            @Override
+            public int activate() {
+                return PiccField.activate(posApiHelper, posApiHelper::PiccMfulActivateCard);
+            }
+
+            @Override
+            public int pwdAuth(byte[] pwd, byte[] pack) {
+                return posApiHelper.PiccMfulPwdAuth(pwd, pack);
+            }
+
+            @Override
+            public int read(int page, byte[] data) {
+                return posApiHelper.PiccMfulRead(page, data);
+            }
+
+            @Override
+            public int readCounter(int counter, byte[] value) {
+                return posApiHelper.PiccMfulReadCnt(counter, value);
+            }
+
+            @Override
+            public int readSignature(byte[] signature) {
+                return posApiHelper.PiccMfulReadSign(0, signature);
+            }
+        };
+    }
+
+    private final Tag tag;
+    private final byte[] chunk = new byte[PAGES_PER_READ * PAGE_SIZE];
+    private final byte[] pack = new byte[2];
+    private final byte[] counter = new byte[4];
+
+    public UltralightReader(Tag tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * @param pageCount pages to read from page 0, or 0 to size from the capability container
+     * @param pwd       4 byte password, or null when the memory is not protected
+     * @param counterNo counter to read, or {@link #NO_COUNTER}
+     * @return memory (pageCount * 4 bytes), pages, pack (when authenticated), counter
+     * (24 bit value) and signature when the tag supports them; or error and, once
+     * reading started, failedPage
+     */
+    public Map<String, Object> read(int pageCount, byte[] pwd, int counterNo, boolean readSignature) {
+        if (pageCount < 0 || pageCount > MAX_PAGES) {
+            throw new IllegalArgumentException("Invalid page count " + pageCount);
+        }
+        if (pwd != null && pwd.length != 4) {
+            throw new IllegalArgumentException("Password must be 4 bytes");
+        }
+        Map<String, Object> result = new HashMap<>();
+        int ret = open(pwd);
+        if (ret != 0) {
+            result.put("error", ret);
+            return result;
+        }
+        ret = tag.read(0, chunk);
+        if (ret != 0) {
+            result.put("error", ret);
+            result.put("failedPage", 0);
+            return result;
+        }
+        if (pageCount == 0) {
+            // CC byte 2 is the data area size in units of 8 bytes
+            pageCount = Math.min(MAX_PAGES, PAGES_PER_READ + (chunk[14] & 0xff) * 2);
+        }
+        byte[] memory = new byte[pageCount * PAGE_SIZE];
+        System.arraycopy(chunk, 0, memory, 0, Math.min(chunk.length, memory.length));
+        for (int page = PAGES_PER_READ; page < pageCount; page += PAGES_PER_READ) {
+            ret = tag.read(page, chunk);
+            if (ret != 0) {
+                result.put("error", ret);
+                result.put("failedPage", page);
+                return result;
+            }
+            System.arraycopy(chunk, 0, memory, page * PAGE_SIZE,
+                    Math.min(PAGES_PER_READ, pageCount - page) * PAGE_SIZE);
+        }
+        result.put("memory", memory);
+        result.put("pages", pageCount);
+        if (pwd != null) {
+            result.put("pack", pack.clone());
+        }
+        if (readSignature) {
+            byte[] signature = new byte[SIGNATURE_SIZE];
+            if (tag.readSignature(signature) == 0) {
+                result.put("signature", signature);
+            } else if (counterNo != NO_COUNTER && open(pwd) != 0) {
+                return result;
+            }
+        }
+        if (counterNo != NO_COUNTER) {
+            Arrays.fill(counter, (byte) 0);
+            if (tag.readCounter(counterNo, counter) == 0) {
+                result.put("counter", (counter[0] & 0xff) | (counter[1] & 0xff) << 8 | (counter[2] & 0xff) << 16);
+            }
+        }
+        return result;
+    }
+
+    private int open(byte[] pwd) {
+        int ret = tag.activate();
+        if (ret == 0 && pwd != null) {
+            ret = tag.pwdAuth(pwd, pack);
+        }
+        return ret;
+    }
+}
@@ -17,6 +17,7 @@ import android.graphics.pdf.PdfRenderer;
 import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.ParcelFileDescriptor;
 import android.renderscript.Allocation;
@@ -27,8 +28,34 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.ctk.sdk.ApduChannel;
+import com.ctk.sdk.ApduResp;
+import com.ctk.sdk.ApduScript;
+import com.ctk.sdk.ApduTransceiver;
 import com.ctk.sdk.ByteUtil;
+import com.ctk.sdk.DebugLogUtil;
+import com.ctk.sdk.DeviceInfo;
+import com.ctk.sdk.EntropyPool;
+import com.ctk.sdk.FeedbackQueue;
+import com.ctk.sdk.FiscalFrameCodec;
+import com.ctk.sdk.FiscalPort;
+import com.ctk.sdk.FiscalTransport;
+import com.ctk.sdk.FlightRecorder;
+import com.ctk.sdk.KeyInjector;
+import com.ctk.sdk.M1CardReader;
+import com.ctk.sdk.MagTrackParser;
+import com.ctk.sdk.McrSwipeMonitor;
+import com.ctk.sdk.MifarePlusSession;
+import com.ctk.sdk.NdefReader;
+import com.ctk.sdk.PciStream;
+import com.ctk.sdk.PiccField;
+import com.ctk.sdk.PiccPresenceMonitor;
 import com.ctk.sdk.PosApiHelper;
+import com.ctk.sdk.PosMetrics;
+import com.ctk.sdk.SamSession;
+import com.ctk.sdk.ScanBatcher;
+import com.ctk.sdk.ScanDeduplicator;
+import com.ctk.sdk.UltralightReader;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -47,8 +74,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import android.content.Intent;
 import android.content.BroadcastReceiver;
@@ -59,6 +93,8 @@ import android.os.Looper;
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.Result;
@@ -78,13 +114,43 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
     private ExecutorService executorService;
     private File printHistoryDir;
     private File printHistoryFile;
+    private static final long METRICS_SNAPSHOT_INTERVAL_SECONDS = 60;
+    // randomBytes serves keys and nonces; a larger reply would tie up the executor and the channel
+    private static final int MAX_RANDOM_BYTES = 64 * 1024;
+    private ScheduledExecutorService metricsScheduler;
+    // the flight recorder start of this attachment, matched by one stop on detach
+    private Future<FlightRecorder> flightRecorderStart;
+    private File metricsFile;
+    private DeviceInfo deviceInfo;
+    private FeedbackQueue feedbackQueue;
+    private EventChannel piccPresenceChannel;
+    private PiccPresenceMonitor piccPresenceMonitor;
+    private EventChannel mcrSwipeChannel;
+    private McrSwipeMonitor mcrSwipeMonitor;
+    private SamSession samSession;
+    private final Handler samExpiryHandler = new Handler(Looper.getMainLooper());
+    private final Runnable samExpiry = this::expireSamSession;
+    private volatile FiscalTransport fiscalTransport;
+    // runs fiscalOpen and fiscalClose one at a time, in the order they were called
+    private ExecutorService fiscalExecutor;
+    // the app opened the field and has not closed it; only touched on the main thread
+    private boolean appHoldsPiccField;
 
     private BroadcastReceiver scannerReceiver;
     public static final int ENCODE_MODE_NONE = 3;
     private Handler mainHandler;
-    private boolean isScanning = false;
-    private boolean isContinuousMode = false;
+    private volatile boolean isScanning = false;
+    private volatile boolean isContinuousMode = false;
     private final Object scanLock = new Object();
+    private final ScanDeduplicator scanDeduplicator = new ScanDeduplicator(ScanDeduplicator.DEFAULT_CAPACITY);
+    private HandlerThread scannerThread;
+    private Handler scannerHandler;
+    private EventChannel scanChannel;
+    // scanBatcher, scanSink and scanWindowMs are only touched on the scanner thread
+    private ScanBatcher scanBatcher;
+    private EventChannel.EventSink scanSink;
+    private long scanWindowMs;
+    private final Runnable flushScans = this::flushScans;
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
@@ -92,9 +158,17 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
         channel.setMethodCallHandler(this);
         context = flutterPluginBinding.getApplicationContext();
         posApiHelper = PosApiHelper.getInstance();
+        feedbackQueue = new FeedbackQueue(FeedbackQueue.device(posApiHelper));
         executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        fiscalExecutor = Executors.newSingleThreadExecutor();
         initializePrintHistory();
         initializeScannerReceiver();
+        initializeMetricsSnapshots();
+        initializeFlightRecorder();
+        initializeDeviceInfo();
+        initializePiccPresence(flutterPluginBinding.getBinaryMessenger());
+        initializeMcrSwipes(flutterPluginBinding.getBinaryMessenger());
+        initializeScanBatches(flutterPluginBinding.getBinaryMessenger());
     }
 
     @TargetApi(Build.VERSION_CODES.KITKAT)
@@ -109,12 +183,19 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
 
         if (call.method.equals("getPlatformVersion")) {
 
-            byte[] version = new byte[10];
-            int ret = posApiHelper.SysGetVersion(version);
+            byte[] version = (byte[]) cachedDeviceInfo("firmwareVersion");
+            int ret = 0;
+            if (version == null) {
+                version = new byte[10];
+                ret = posApiHelper.SysGetVersion(version);
+            }
             int pic = posApiHelper.PiccOpen();
+            if (pic == 0) {
+                holdPiccField();
+            }
             if (ret == 0 && pic == 0) {
-                posApiHelper.SysBeep();
                 result.success("Android " + Build.VERSION.RELEASE + ", SDK Version: " + new String(version) + ", Picc opened");
+                feedback(call);
             } else {
                 result.error("ERROR", "Failed to get SDK version or open picc", null);
             }
@@ -126,8 +207,9 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
 
             int pic = posApiHelper.PiccOpen();
             if (pic == 0) {
-                posApiHelper.SysBeep();
+                holdPiccField();
                 result.success("Picc opened");
+                feedback(call);
             } else {
                 result.error("ERROR", "Failed to open picc", null);
             }
@@ -136,10 +218,10 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             byte[] serialNo = new byte[50];
             int check = posApiHelper.PiccCheck((byte) 'A', cardType, serialNo);
             if (check == 0) {
-                String cardTypeStr = "Card Type: " + ByteUtil.bytearrayToHexString(cardType, cardType.length);
-                String uidStr = "UID: " + ByteUtil.bytearrayToHexString(serialNo, serialNo[0]);
-                String resultStr = cardTypeStr + "\n" + uidStr;
-                result.success(resultStr);
+                Map<String, Object> resultMap = new HashMap<>();
+                resultMap.put("cardType", slice(cardType, 0, 2));
+                resultMap.put("uid", slice(serialNo, 1, serialNo[0] & 0xFF));
+                result.success(resultMap);
             } else {
                 result.error("ERROR", "Failed to check picc", null);
             }
@@ -153,16 +235,17 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             int ret = posApiHelper.PiccOpen();
 
             if (ret == 0) {
+                holdPiccField();
                 ret = posApiHelper.PiccPolling(cardType, uid, uidLen, ats, atsLen, sak);
 
                 if (ret == 0) {
-                    String cardTypeStr = "Card Type: " + new String(cardType);
-                    String uidStr = "UID: " + ByteUtil.bytearrayToHexString(uid, uidLen[0]);
-                    String atsStr = "ATS: " + ByteUtil.bytearrayToHexString(ats, atsLen[0]);
-                    String sakStr = "SAK: " + ByteUtil.bytearrayToHexString(sak, 1);
-                    String resultStr = cardTypeStr + "\n" + uidStr + "\n" + atsStr + "\n" + sakStr;
-                    result.success(resultStr);
-                    posApiHelper.SysBeep();
+                    Map<String, Object> resultMap = new HashMap<>();
+                    resultMap.put("cardType", slice(cardType, 0, 2));
+                    resultMap.put("uid", slice(uid, 0, uidLen[0] & 0xFF));
+                    resultMap.put("ats", slice(ats, 0, atsLen[0] & 0xFF));
+                    resultMap.put("sak", sak[0] & 0xFF);
+                    result.success(resultMap);
+                    feedback(call);
                 } else {
                     result.error("ERROR", "Picc Poll Test Failed...", null);
                 }
@@ -175,38 +258,39 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             for (int i = 0; i < list.size(); i++) {
                 apduSend[i] = list.get(i).byteValue();
             }
-            byte[] apduResp = new byte[256];
-            int command = posApiHelper.PiccCommand(apduSend, apduResp);
-            if (command == 0) {
-                posApiHelper.SysBeep();
-                result.success(new String(apduResp));
-            } else {
-                result.error("ERROR", "Failed to execute PiccCommand", null);
+            ApduResp apduResp = ApduResp.obtain();
+            try {
+                int command = posApiHelper.PiccCommand(apduSend, apduResp.getBytes());
+                if (command == 0) {
+                    result.success(apduResponseMap(apduResp.getDataOut(), apduResp.getSWA(), apduResp.getSWB()));
+                    feedback(call);
+                } else {
+                    result.error("ERROR", "Failed to execute PiccCommand", null);
+                }
+            } finally {
+                apduResp.recycle();
             }
         } else if (call.method.equals("piccApduCmd")) {
-            byte[] pucInput = call.argument("pucInput");
-            byte[] pucOutput = new byte[256];
-            byte[] pusOutputLen = new byte[1];
-            int apduCmd = posApiHelper.PiccApduCmd(pucInput, (short) pucInput.length, pucOutput, pusOutputLen);
-            if (apduCmd == 0) {
-                posApiHelper.SysBeep();
-                result.success(new String(pucOutput));
-            } else {
-                result.error("ERROR", "Failed to execute PiccApduCmd", null);
-            }
+            piccApduCmd(call, result);
+        } else if (call.method.equals("runApduScript")) {
+            runApduScript(call, result);
         } else if (call.method.equals("piccClose")) {
             int close = posApiHelper.PiccClose();
+            if (appHoldsPiccField) {
+                appHoldsPiccField = false;
+                PiccField.release();
+            }
             if (close == 0) {
-                posApiHelper.SysBeep();
                 result.success("Picc closed successfully");
+                feedback(call);
             } else {
                 result.error("ERROR", "Failed to close Picc", null);
             }
         } else if (call.method.equals("piccRemove")) {
             int remove = posApiHelper.PiccRemove();
             if (remove == 0) {
-                posApiHelper.SysBeep();
                 result.success("Card is still in the magnetic field");
+                feedback(call);
             } else {
                 result.error("ERROR", "Card has left the magnetic field", null);
             }
@@ -223,8 +307,8 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             try {
                 int init = posApiHelper.PiccSamAv2Init(samSlotNo, samHostKey, samHostMode, samAv2Version, samAv2VerLen);
                 if (init == 0) {
-                    posApiHelper.SysBeep();
                     result.success("SAM AV2 initialized successfully");
+                    feedback(call);
                 } else {
                     result.error("ERROR", "Failed to initialize SAM AV2", null);
                 }
@@ -232,6 +316,26 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
                 result.error("ERROR", "Exception occurred: " + e.getMessage(), null);
             }
 
+        } else if (call.method.equals("openSamSession")) {
+            openSamSession(call, result);
+        } else if (call.method.equals("samMfcAuth")) {
+            samMfcAuth(call, result);
+        } else if (call.method.equals("closeSamSession")) {
+            closeSamSession(result);
+        } else if (call.method.equals("fiscalOpen")) {
+            fiscalOpen(call, result);
+        } else if (call.method.equals("fiscalSend")) {
+            fiscalSend(call, result);
+        } else if (call.method.equals("fiscalClose")) {
+            fiscalClose(result);
+        } else if (call.method.equals("pciMacFile")) {
+            pciMacFile(call, result);
+        } else if (call.method.equals("pciCryptFile")) {
+            pciCryptFile(call, result);
+        } else if (call.method.equals("loadKeys")) {
+            List<Map<String, Object>> manifest = call.argument("manifest");
+            runCardOperation(result, "KEY_ERROR", "Key loading failed",
+                    helper -> new KeyInjector(KeyInjector.pci(helper)).load(KeyInjector.fromMaps(manifest)));
         } else if (call.method.equals("piccHwModeSet")) {
             int mode = call.argument("mode");
             int set = posApiHelper.PiccHwModeSet(mode);
@@ -247,11 +351,21 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             byte[] serialNo = new byte[4]; // assuming a 4-byte serial number
             int authority = posApiHelper.PiccM1Authority(type, blkNo, pwd, serialNo);
             if (authority == 0) {
-                posApiHelper.SysBeep();
                 result.success("M1 card authority verified successfully");
+                feedback(call);
             } else {
                 result.error("ERROR", "Failed to verify M1 card authority", null);
             }
+        } else if (call.method.equals("readM1Card")) {
+            readM1Card(call, result);
+        } else if (call.method.equals("writeM1Card")) {
+            writeM1Card(call, result);
+        } else if (call.method.equals("readMfpCard")) {
+            readMfpCard(call, result);
+        } else if (call.method.equals("writeMfpCard")) {
+            writeMfpCard(call, result);
+        } else if (call.method.equals("readUltralight")) {
+            readUltralight(call, result);
         } else if (call.method.equals("PiccNfc")) {
             byte[] nfcDataLen = new byte[5];
             byte[] technology = new byte[25];
@@ -262,39 +376,67 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
 
             int technologyLength = nfcDataLen[0] & 0xFF;
             int nfcUidLength = nfcDataLen[1] & 0xFF;
-            int ndefMessageLength = (nfcDataLen[3] & 0xFF) + (nfcDataLen[4] & 0xFF);
-
-            byte[] ndefMessageData = new byte[ndefMessageLength];
-            byte[] nfcUidData = new byte[nfcUidLength];
-
-            System.arraycopy(nfcUid, 0, nfcUidData, 0, nfcUidLength);
-            System.arraycopy(ndefMessage, 0, ndefMessageData, 0, ndefMessageLength);
-
-            String ndefMessageDataStr = new String(ndefMessageData);
-            String ndefStr = null;
-            if (ndefMessageDataStr.contains("http://")) {
-                ndefStr = "NDEF: " + ndefMessageDataStr.substring(ndefMessageDataStr.indexOf("http://"));
-            } else if (ndefMessageDataStr.contains("https://")) {
-                ndefStr = "NDEF: " + ndefMessageDataStr.substring(ndefMessageDataStr.indexOf("https://"));
-            } else if (ndefMessageDataStr.contains("www.")) {
-                ndefStr = "NDEF: " + ndefMessageDataStr.substring(ndefMessageDataStr.indexOf("www."));
-            } else {
-                ndefStr = "NDEF: " + ndefMessageDataStr;
-            }
-
+            int ndefMessageLength = Math.min(ByteUtil.getUShortBE(nfcDataLen, 3), ndefMessage.length);
 
             if (ret == 0) {
-                posApiHelper.SysBeep();
-                String tmpStr = "TYPE: " + new String(technology).substring(0, technologyLength) + "\n" + "UID: " + ByteUtil.bytearrayToHexString(nfcUidData, nfcUidData.length) + "\n" + ndefStr;
-                result.success(tmpStr);
+                Map<String, Object> resultMap = new HashMap<>();
+                resultMap.put("technology", new String(technology, 0, Math.min(technologyLength, technology.length)));
+                resultMap.put("uid", slice(nfcUid, 0, nfcUidLength));
+                resultMap.put("ndef", slice(ndefMessage, 0, ndefMessageLength));
+                try {
+                    resultMap.put("records", NdefReader.toMaps(ndefMessage, 0, ndefMessageLength));
+                } catch (IllegalArgumentException e) {
+                    Log.w(TAG, "Malformed NDEF message: " + e.getMessage());
+                }
+                result.success(resultMap);
+                feedback(call);
             } else {
                 result.error("ERROR", "Read Card Failed !..", null);
             }
+        } else if (call.method.equals("getPosMetrics")) {
+            Boolean reset = call.argument("reset");
+            PosMetrics metrics = PosMetrics.getInstance();
+            result.success(Boolean.TRUE.equals(reset) ? metrics.snapshotAndReset() : metrics.snapshot());
         } else if (call.method.equals("SysApiVerson")) {
             String version = posApiHelper.SysApiVerson();
             result.success(version);
+        } else if (call.method.equals("setFeedback")) {
+            if (!(call.arguments instanceof Map)) {
+                result.error("INVALID_ARGUMENT", "enabled or coalesceMs is required", null);
+                return;
+            }
+            Boolean enabled = call.argument("enabled");
+            feedbackQueue.configure(enabled == null || enabled, longArgument((Map<?, ?>) call.arguments, "coalesceMs", 300));
+            result.success(null);
+        } else if (call.method.equals("playFeedback")) {
+            int pattern = FeedbackQueue.patternOf(call.argument("pattern"));
+            if (pattern < 0) {
+                result.error("INVALID_ARGUMENT", "Unknown feedback pattern " + call.argument("pattern"), null);
+                return;
+            }
+            result.success(feedbackQueue.play(pattern));
+        } else if (call.method.equals("setScanDedup")) {
+            Boolean enabled = call.argument("enabled");
+            scanDeduplicator.configure(enabled == null || enabled,
+                    longArgument(call.arguments(), "windowMs", ScanDeduplicator.DEFAULT_WINDOW_MS));
+            result.success(null);
+        } else if (call.method.equals("getScanDedupStats")) {
+            long[] counts = scanDeduplicator.counts();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("passed", counts[0]);
+            stats.put("suppressed", counts[1]);
+            result.success(stats);
+        } else if (call.method.equals("getFlightRecords")) {
+            getFlightRecords(call, result);
+        } else if (call.method.equals("exportFlightRecorder")) {
+            exportFlightRecorder(call, result);
+        } else if (call.method.equals("getDeviceInfo")) {
+            getDeviceInfo(call, result);
         } else if (call.method.equals("getOSVersion")) {
-            String osVersion = posApiHelper.getOSVersion();
+            String osVersion = (String) cachedDeviceInfo("osVersion");
+            if (osVersion == null) {
+                osVersion = posApiHelper.getOSVersion();
+            }
             if (osVersion != null) {
                 result.success(osVersion);
             } else {
@@ -302,7 +444,10 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             }
         } else if (call.method.equals("getDeviceId")) {
             try {
-                String deviceId = posApiHelper.getDeviceId();
+                String deviceId = (String) cachedDeviceInfo("deviceId");
+                if (deviceId == null) {
+                    deviceId = posApiHelper.getDeviceId();
+                }
                 if (deviceId != null) {
                     result.success(deviceId);
                 } else {
@@ -327,14 +472,46 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             } else {
                 result.error("ERROR", "Failed to get random number", null);
             }
+        } else if (call.method.equals("randomBytes")) {
+            Integer length = call.argument("length");
+            if (length == null || length < 0 || length > MAX_RANDOM_BYTES) {
+                result.error("INVALID_ARGUMENT", "length must be 0 to " + MAX_RANDOM_BYTES, null);
+                return;
+            }
+            Handler handler = new Handler(Looper.getMainLooper());
+            // only the first call waits for the hardware seed
+            executorService.execute(() -> {
+                try {
+                    byte[] bytes = EntropyPool.getInstance().nextBytes(length);
+                    handler.post(() -> result.success(bytes));
+                } catch (RuntimeException e) {
+                    handler.post(() -> result.error("ERROR", String.valueOf(e.getMessage()), null));
+                }
+            });
         } else if (call.method.equals("SysUpdate")) {
             int update = posApiHelper.SysUpdate();
             if (update == 0) {
+                deviceInfo.invalidate();
                 result.success("MCU app firmware updated successfully");
             } else {
                 result.error("ERROR", "Failed to update MCU app firmware", null);
             }
+        } else if (call.method.equals("installRomPackage")) {
+            String path = call.argument("path");
+            // the cached versions are stale whether or not the device reboots
+            deviceInfo.invalidate();
+            int ret = posApiHelper.installRomPackage(path);
+            if (ret == 0) {
+                result.success("ROM package installation started");
+            } else {
+                result.error("ERROR", "Failed to install ROM package", ret);
+            }
         } else if (call.method.equals("SysGetVersion")) {
+            byte[] cached = (byte[]) cachedDeviceInfo("firmwareVersion");
+            if (cached != null) {
+                result.success(cached.clone());
+                return;
+            }
             byte[] buf = new byte[10]; // assuming a 10-byte buffer
             int getVersion = posApiHelper.SysGetVersion(buf);
             if (getVersion == 0) {
@@ -343,6 +520,11 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
                 result.error("ERROR", "Failed to get MCU firmware version", null);
             }
         } else if (call.method.equals("SysReadSN")) {
+            byte[] cached = (byte[]) cachedDeviceInfo("serialNumber");
+            if (cached != null) {
+                result.success(cached.clone());
+                return;
+            }
             byte[] SN = new byte[16]; // assuming a 16-byte serial number
             int readSN = posApiHelper.SysReadSN(SN);
             if (readSN == 0) {
@@ -454,12 +636,13 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             }
         } else if (call.method.equals("PrintBmp")) {
             byte[] bmpData = call.argument("bmpData");
-            Log.d("PrintBmp", "Received bmpData length: " + (bmpData != null ? bmpData.length : "null"));
+            DebugLogUtil.d("PrintBmp", "Received bmpData length: {}", bmpData != null ? bmpData.length : null);
 
             Bitmap bitmap = BitmapFactory.decodeByteArray(bmpData, 0, bmpData.length);
 
             if (bitmap != null) {
-                Log.d("PrintBmp", "Bitmap decoded successfully. Width: " + bitmap.getWidth() + ", Height: " + bitmap.getHeight());
+                DebugLogUtil.d("PrintBmp", "Bitmap decoded successfully. Width: {}, Height: {}", bitmap.getWidth(),
+                        bitmap.getHeight());
                 int ret = posApiHelper.PrintBmp(bitmap);
                 if (ret == 0) {
                     result.success("Bitmap printed successfully");
@@ -704,61 +887,179 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
         }
 
     }
+    private static byte[] slice(byte[] buf, int offset, int len) {
+        int end = Math.min(buf.length, offset + Math.max(len, 0));
+        return Arrays.copyOfRange(buf, offset, Math.max(offset, end));
+    }
+
+    private static Map<String, Object> apduResponseMap(byte[] data, byte sw1, byte sw2) {
+        Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put("data", data);
+        resultMap.put("sw1", sw1 & 0xFF);
+        resultMap.put("sw2", sw2 & 0xFF);
+        return resultMap;
+    }
+
     private void initializeScannerReceiver() {
+        mainHandler = new Handler(Looper.getMainLooper());
         if (scannerReceiver == null) {
+            // scans are handled off the main thread, which stays free for rendering
+            scannerThread = new HandlerThread("ScannerReceiver");
+            scannerThread.start();
+            scannerHandler = new Handler(scannerThread.getLooper());
             scannerReceiver = new BroadcastReceiver() {
                 @Override
                 public void onReceive(Context context, Intent intent) {
-                    synchronized (scanLock) {
-                        try {
-                            if (!isScanning) {
-                                return;
-                            }
-
-                            String scanResult = "";
-                            int length = intent.getIntExtra("EXTRA_SCAN_LENGTH", 0);
-                            int encodeType = intent.getIntExtra("EXTRA_SCAN_ENCODE_MODE", 1);
-
-                            if (encodeType == ENCODE_MODE_NONE) {
-                                byte[] rawData = intent.getByteArrayExtra("EXTRA_SCAN_RAW_DATA");
-                                int rawLength = intent.getIntExtra("EXTRA_SCAN_RAW_DATA_LEN", 0);
-                                scanResult = ByteUtil.bytearrayToHexString(rawData, rawLength);
-                            } else {
-                                scanResult = intent.getStringExtra("EXTRA_SCAN_DATA");
-                            }
-
-                            final Map<String, Object> resultMap = new HashMap<>();
-                            resultMap.put("result", scanResult);
-                            resultMap.put("length", length);
-                            resultMap.put("encodeType", encodeType);
-                            resultMap.put("method", "onScanResult");
-
-//                          print the result
-                            Log.d(TAG, "Scan result: " + scanResult);
-                            Log.d(TAG, "Scan length: " + length);
-                            Log.d(TAG, "Scan encode type: " + encodeType);
-
-                            new Handler(Looper.getMainLooper()).post(() -> channel.invokeMethod("onScanResult", resultMap));
-//                            mainHandler.post(() -> {
-//                                if (channel != null) {
-//                                    channel.invokeMethod("onScanResult", resultMap);
-//                                }
-//                            });
-
-                            // Stop scanning after receiving result in normal mode
-                            if (!isContinuousMode) {
-                                stopScanning();
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing scan result: " + e.getMessage());
-                        }
-                    }
+                    onScan(intent);
                 }
             };
 
             IntentFilter filter = new IntentFilter("ACTION_BAR_SCAN");
-            context.registerReceiver(scannerReceiver, filter);
+            context.registerReceiver(scannerReceiver, filter, null, scannerHandler);
+        }
+    }
+
+    /**
+     * Runs on the scanner thread. With a scans listener the scan goes into its batch,
+     * otherwise it is sent on its own as onScanResult.
+     */
+    private void onScan(Intent intent) {
+        try {
+            if (!isScanning) {
+                return;
+            }
+
+            int length = intent.getIntExtra("EXTRA_SCAN_LENGTH", 0);
+            int encodeType = intent.getIntExtra("EXTRA_SCAN_ENCODE_MODE", 1);
+            byte[] rawData = null;
+            int rawLength = 0;
+            String text = null;
+            if (encodeType == ENCODE_MODE_NONE) {
+                rawData = intent.getByteArrayExtra("EXTRA_SCAN_RAW_DATA");
+                rawLength = intent.getIntExtra("EXTRA_SCAN_RAW_DATA_LEN", 0);
+            } else {
+                text = intent.getStringExtra("EXTRA_SCAN_DATA");
+            }
+            if (isContinuousMode) {
+                long now = System.nanoTime() / 1000000;
+                boolean fresh = encodeType == ENCODE_MODE_NONE
+                        ? scanDeduplicator.acceptRaw(rawData, rawLength, encodeType, now)
+                        : scanDeduplicator.acceptText(text, encodeType, now);
+                if (!fresh) {
+                    // the same item still in view
+                    return;
+                }
+            }
+            DebugLogUtil.d(TAG, "Scan length: {}, encode type: {}", length, encodeType);
+
+            ScanBatcher batcher = scanBatcher;
+            if (batcher != null) {
+                long now = System.currentTimeMillis();
+                boolean schedule = encodeType == ENCODE_MODE_NONE
+                        ? batcher.offerRaw(rawData, rawLength, length, encodeType, now)
+                        : batcher.offerText(text, length, encodeType, now);
+                if (schedule) {
+                    scannerHandler.postDelayed(flushScans, scanWindowMs);
+                }
+            } else {
+                final Map<String, Object> resultMap = new HashMap<>();
+                resultMap.put("result", text != null ? text : ByteUtil.bytearrayToHexString(rawData, rawLength));
+                resultMap.put("length", length);
+                resultMap.put("encodeType", encodeType);
+                resultMap.put("method", "onScanResult");
+                mainHandler.post(() -> {
+                    // dropped once the engine detached
+                    MethodChannel current = channel;
+                    if (current != null) {
+                        current.invokeMethod("onScanResult", resultMap);
+                    }
+                });
+            }
+
+            // Stop scanning after receiving result in normal mode
+            if (!isContinuousMode) {
+                stopScanning();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing scan result: " + e.getMessage());
+        }
+    }
+
+    private void initializeScanBatches(BinaryMessenger messenger) {
+        scanChannel = new EventChannel(messenger, "cs50sdkupdate/scans");
+        scanChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                startScanBatches(arguments, events);
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                stopScanBatches();
+            }
+        });
+    }
+
+    private void startScanBatches(Object arguments, EventChannel.EventSink events) {
+        long window = 50;
+        int maxQueue = 32;
+        int overflow = ScanBatcher.DROP_OLDEST;
+        boolean merge = true;
+        if (arguments instanceof Map) {
+            Map<?, ?> args = (Map<?, ?>) arguments;
+            window = Math.max(0, longArgument(args, "windowMs", window));
+            maxQueue = (int) longArgument(args, "maxQueue", maxQueue);
+            Object name = args.get("overflow");
+            if (name != null) {
+                overflow = ScanBatcher.overflowOf(name.toString());
+            }
+            merge = !Boolean.FALSE.equals(args.get("merge"));
+        }
+        if (maxQueue <= 0 || overflow < 0) {
+            events.error("INVALID_ARGUMENT", "maxQueue must be positive and overflow dropOldest or dropNewest", null);
+            return;
+        }
+        final ScanBatcher batcher = new ScanBatcher(maxQueue, overflow, merge);
+        final long windowMs = window;
+        scannerHandler.post(() -> {
+            scannerHandler.removeCallbacks(flushScans);
+            scanBatcher = batcher;
+            scanSink = events;
+            scanWindowMs = windowMs;
+        });
+    }
+
+    private void stopScanBatches() {
+        scannerHandler.post(() -> {
+            scannerHandler.removeCallbacks(flushScans);
+            scanBatcher = null;
+            scanSink = null;
+        });
+    }
+
+    /**
+     * Runs on the scanner thread when a batch window ends. The next batch is not
+     * drained until the main thread has handed this one to the sink.
+     */
+    private void flushScans() {
+        final ScanBatcher batcher = scanBatcher;
+        final EventChannel.EventSink sink = scanSink;
+        if (batcher == null) {
+            return;
         }
+        final Map<String, Object> batch = batcher.drain();
+        if (batch == null) {
+            return;
+        }
+        batch.put("suppressed", scanDeduplicator.takeSuppressed());
+        mainHandler.post(() -> {
+            sink.success(batch);
+            scannerHandler.post(() -> {
+                if (scanBatcher == batcher && batcher.delivered()) {
+                    flushScans();
+                }
+            });
+        });
     }
 
     private void startScanning(Result result) {
@@ -766,6 +1067,7 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             try {
                 if (!isScanning) {
                     isScanning = true;
+                    scanDeduplicator.reset();
                     Intent intent = new Intent("ACTION_BAR_TRIGSCAN");
                     context.sendBroadcast(intent);
                     result.success("Scanner started");
@@ -789,6 +1091,15 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
     }
 
 
+    /**
+     * Success beep after the result has been sent, unless the call passed beep: false.
+     */
+    private void feedback(MethodCall call) {
+        if (!Boolean.FALSE.equals(call.argument("beep"))) {
+            feedbackQueue.play(FeedbackQueue.SUCCESS);
+        }
+    }
+
     private void handleGetPlatformVersion(Result result) {
         byte[] version = new byte[10];
         int ret = posApiHelper.SysGetVersion(version);
@@ -801,6 +1112,129 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
         }
     }
 
+    private void initializeFlightRecorder() {
+        File file = new File(context.getFilesDir(), "flight_recorder.bin");
+        // mapping and, on first use, formatting the ring file is disk I/O
+        flightRecorderStart = executorService.submit(() -> {
+            try {
+                return FlightRecorder.start(file);
+            } catch (IOException e) {
+                Log.e(TAG, "Flight recorder unavailable", e);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Stops the recorder this attachment started, once its start has finished; an
+     * engine attached since keeps its own start of the same recorder.
+     */
+    private void stopFlightRecorder() {
+        Future<FlightRecorder> start = flightRecorderStart;
+        flightRecorderStart = null;
+        if (start == null) {
+            return;
+        }
+        // off the main thread like the start; force() writes the pages back
+        executorService.execute(() -> {
+            try {
+                FlightRecorder.stop(start.get());
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Flight recorder start failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    private void getFlightRecords(MethodCall call, Result result) {
+        FlightRecorder recorder = FlightRecorder.current();
+        if (recorder == null) {
+            result.error("NOT_AVAILABLE", "Flight recorder is not running", null);
+            return;
+        }
+        Map<?, ?> args = call.arguments instanceof Map ? (Map<?, ?>) call.arguments : new HashMap<>();
+        long limit = longArgument(args, "limit", recorder.getCapacity());
+        if (limit < 0) {
+            result.error("INVALID_ARGUMENT", "limit must not be negative", limit);
+            return;
+        }
+        int n = (int) Math.min(limit, recorder.getCapacity());
+        Handler handler = new Handler(Looper.getMainLooper());
+        // decoding the whole ring takes a few ms
+        executorService.execute(() -> {
+            try {
+                List<Map<String, Object>> records = recorder.records(n);
+                handler.post(() -> result.success(records));
+            } catch (RuntimeException e) {
+                handler.post(() -> result.error("ERROR", e.getMessage(), null));
+            }
+        });
+    }
+
+    private void exportFlightRecorder(MethodCall call, Result result) {
+        FlightRecorder recorder = FlightRecorder.current();
+        String path = call.argument("path");
+        if (recorder == null) {
+            result.error("NOT_AVAILABLE", "Flight recorder is not running", null);
+            return;
+        }
+        if (path == null) {
+            result.error("INVALID_ARGUMENT", "path is required", null);
+            return;
+        }
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            try {
+                recorder.export(new File(path));
+                handler.post(() -> result.success(path));
+            } catch (IOException e) {
+                handler.post(() -> result.error("IO_ERROR", e.getMessage(), null));
+            }
+        });
+    }
+
+    private void initializeDeviceInfo() {
+        deviceInfo = new DeviceInfo(DeviceInfo.source(posApiHelper),
+                new File(context.getFilesDir(), "device_info.json"), Build.FINGERPRINT);
+        // off the attach path; the file answers at once when the build is unchanged
+        executorService.execute(deviceInfo::get);
+    }
+
+    private Object cachedDeviceInfo(String key) {
+        Map<String, Object> snapshot = deviceInfo.peek();
+        return snapshot != null ? snapshot.get(key) : null;
+    }
+
+    private void getDeviceInfo(MethodCall call, Result result) {
+        boolean refresh = Boolean.TRUE.equals(call.argument("refresh"));
+        Map<String, Object> snapshot = deviceInfo.peek();
+        if (snapshot != null && !refresh) {
+            result.success(snapshot);
+            return;
+        }
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            Map<String, Object> info = refresh ? deviceInfo.refresh() : deviceInfo.get();
+            handler.post(() -> result.success(info));
+        });
+    }
+
+    private void initializeMetricsSnapshots() {
+        metricsFile = new File(context.getFilesDir(), "pos_metrics.json");
+        metricsScheduler = Executors.newSingleThreadScheduledExecutor();
+        metricsScheduler.scheduleWithFixedDelay(this::writeMetricsSnapshot,
+                METRICS_SNAPSHOT_INTERVAL_SECONDS, METRICS_SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void writeMetricsSnapshot() {
+        try {
+            PosMetrics.getInstance().writeSnapshot(metricsFile);
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to write pos metrics snapshot", (Throwable) e);
+        }
+    }
+
     private void initializePrintHistory() {
         // Use the app's external files directory instead of internal storage
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO) {
@@ -896,6 +1330,705 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
         });
     }
 
+    private void initializePiccPresence(BinaryMessenger messenger) {
+        piccPresenceChannel = new EventChannel(messenger, "cs50sdkupdate/picc_presence");
+        piccPresenceChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                startPiccPresence(arguments, events);
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                stopPiccPresence();
+            }
+        });
+    }
+
+    private void startPiccPresence(Object arguments, EventChannel.EventSink events) {
+        stopPiccPresence();
+        Handler handler = new Handler(Looper.getMainLooper());
+        PiccPresenceMonitor monitor = new PiccPresenceMonitor(
+                PiccPresenceMonitor.reader(PosApiHelper.getInstance()),
+                new PiccPresenceMonitor.Listener() {
+                    @Override
+                    public void onCardArrived(byte[] cardType, byte[] uid) {
+                        Map<String, Object> event = new HashMap<>();
+                        event.put("event", "arrived");
+                        event.put("cardType", cardType);
+                        event.put("uid", uid);
+                        event.put("timestamp", System.currentTimeMillis());
+                        handler.post(() -> events.success(event));
+                    }
+
+                    @Override
+                    public void onCardRemoved(byte[] uid, long presentMillis) {
+                        Map<String, Object> event = new HashMap<>();
+                        event.put("event", "removed");
+                        event.put("uid", uid);
+                        event.put("presentMillis", presentMillis);
+                        event.put("timestamp", System.currentTimeMillis());
+                        handler.post(() -> events.success(event));
+                    }
+
+                    @Override
+                    public void onError(int code) {
+                        Log.e(TAG, "PiccOpen failed: " + code);
+                        handler.post(() -> events.error("PICC_OPEN_FAILED", "Failed to open picc", code));
+                    }
+                });
+        if (arguments instanceof Map) {
+            Map<?, ?> args = (Map<?, ?>) arguments;
+            Object mode = args.get("mode");
+            if (mode instanceof String && !((String) mode).isEmpty()) {
+                monitor.setMode((byte) ((String) mode).charAt(0));
+            }
+            try {
+                monitor.setIntervals(
+                        longArgument(args, "fastIntervalMs", 10),
+                        longArgument(args, "idleIntervalMs", 40),
+                        longArgument(args, "fastWindowMs", 5000),
+                        longArgument(args, "presentIntervalMs", 50));
+            } catch (IllegalArgumentException e) {
+                events.error("INVALID_ARGUMENT", e.getMessage(), null);
+                return;
+            }
+        }
+        piccPresenceMonitor = monitor;
+        monitor.start();
+    }
+
+    /**
+     * Keeps a presence monitor that stops from closing the field the app opened.
+     */
+    private void holdPiccField() {
+        if (!appHoldsPiccField) {
+            appHoldsPiccField = true;
+            PiccField.hold();
+        }
+    }
+
+    private void stopPiccPresence() {
+        if (piccPresenceMonitor != null) {
+            piccPresenceMonitor.stop();
+            piccPresenceMonitor = null;
+        }
+    }
+
+    private void initializeMcrSwipes(BinaryMessenger messenger) {
+        mcrSwipeChannel = new EventChannel(messenger, "cs50sdkupdate/mcr_swipes");
+        mcrSwipeChannel.setStreamHandler(new EventChannel.StreamHandler() {
+            @Override
+            public void onListen(Object arguments, EventChannel.EventSink events) {
+                startMcrSwipes(arguments, events);
+            }
+
+            @Override
+            public void onCancel(Object arguments) {
+                stopMcrSwipes();
+            }
+        });
+    }
+
+    private void startMcrSwipes(Object arguments, EventChannel.EventSink events) {
+        stopMcrSwipes();
+        Handler handler = new Handler(Looper.getMainLooper());
+        final boolean encrypted = arguments instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) arguments).get("encrypted"));
+        McrSwipeMonitor monitor = new McrSwipeMonitor(
+                McrSwipeMonitor.reader(PosApiHelper.getInstance()),
+                new McrSwipeMonitor.Listener() {
+                    @Override
+                    public void onSwipe(int status, McrSwipeMonitor.Swipe swipe) {
+                        Map<String, Object> event = swipeEvent(status, swipe, encrypted);
+                        handler.post(() -> events.success(event));
+                    }
+
+                    @Override
+                    public void onError(int code) {
+                        Log.e(TAG, "McrOpen failed: " + code);
+                        handler.post(() -> events.error("MCR_OPEN_FAILED", "Failed to open magnetic card reader", code));
+                    }
+                });
+        if (arguments instanceof Map) {
+            Map<?, ?> args = (Map<?, ?>) arguments;
+            try {
+                monitor.setIntervals(
+                        longArgument(args, "fastIntervalMs", 20),
+                        longArgument(args, "idleIntervalMs", 100),
+                        longArgument(args, "fastWindowMs", 10000));
+            } catch (IllegalArgumentException e) {
+                events.error("INVALID_ARGUMENT", e.getMessage(), null);
+                return;
+            }
+            monitor.setEncrypted(encrypted, (int) longArgument(args, "keyNo", 0));
+        }
+        mcrSwipeMonitor = monitor;
+        monitor.start();
+    }
+
+    private void stopMcrSwipes() {
+        if (mcrSwipeMonitor != null) {
+            mcrSwipeMonitor.stop();
+            mcrSwipeMonitor = null;
+        }
+    }
+
+    /**
+     * Copies what the event needs out of the monitor's reused buffers. Encrypted
+     * tracks are passed on as they are, without card fields.
+     */
+    private static Map<String, Object> swipeEvent(int status, McrSwipeMonitor.Swipe swipe, boolean encrypted) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("status", status);
+        event.put("timestamp", System.currentTimeMillis());
+        if (swipe.hasTrack1) {
+            event.put("track1", slice(swipe.track1, 0, swipe.track1Length));
+        }
+        if (swipe.hasTrack2) {
+            event.put("track2", slice(swipe.track2, 0, swipe.track2Length));
+        }
+        if (swipe.hasTrack3) {
+            event.put("track3", slice(swipe.track3, 0, swipe.track3Length));
+        }
+        if (encrypted) {
+            return event;
+        }
+        // track 2 is the reference for the PAN; track 1 adds the cardholder name
+        MagTrackParser fields = swipe.hasTrack2 ? swipe.parsed2 : swipe.hasTrack1 ? swipe.parsed1 : null;
+        if (fields != null && fields.panOffset() >= 0) {
+            byte[] track = fields == swipe.parsed2 ? swipe.track2 : swipe.track1;
+            event.put("pan", new String(track, fields.panOffset(), fields.panLength()));
+            char[] masked = new char[fields.panLength()];
+            event.put("maskedPan", new String(masked, 0, fields.maskedPan(masked, 0)));
+            if (fields.expiryOffset() >= 0) {
+                event.put("expiry", new String(track, fields.expiryOffset(), 4));
+            }
+            if (fields.serviceCodeOffset() >= 0) {
+                event.put("serviceCode", new String(track, fields.serviceCodeOffset(), 3));
+            }
+        }
+        if (swipe.hasTrack1 && swipe.parsed1.nameOffset() >= 0) {
+            event.put("name", new String(swipe.track1, swipe.parsed1.nameOffset(), swipe.parsed1.nameLength()));
+        }
+        return event;
+    }
+
+    private static long longArgument(Map<?, ?> args, String key, long defaultValue) {
+        Object value = args.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    private void openSamSession(MethodCall call, Result result) {
+        Integer slot = call.argument("samSlotNo");
+        byte[] hostKey = call.argument("samHostKey");
+        if (slot == null || hostKey == null) {
+            result.error("INVALID_ARGUMENT", "samSlotNo and samHostKey are required", null);
+            return;
+        }
+        long idleTimeoutMs = longArgument((Map<?, ?>) call.arguments, "idleTimeoutMs",
+                SamSession.DEFAULT_IDLE_TIMEOUT_MS);
+        PosApiHelper posApiHelper = PosApiHelper.getInstance();
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            Map<String, Object> info = new HashMap<>();
+            int ret;
+            ReentrantLock lock = posApiHelper.getServiceLock();
+            lock.lock();
+            try {
+                if (samSession == null) {
+                    samSession = new SamSession(SamSession.sam(posApiHelper));
+                }
+                samSession.configure(slot, hostKey, idleTimeoutMs);
+                ret = samSession.open();
+                if (ret == 0) {
+                    info.put("atr", samSession.getAtr());
+                    info.put("version", samSession.getVersion());
+                    info.put("hostMode", samSession.getHostMode());
+                }
+            } finally {
+                lock.unlock();
+            }
+            handler.post(() -> {
+                if (ret == 0) {
+                    scheduleSamExpiry(idleTimeoutMs);
+                    result.success(info);
+                } else {
+                    result.error("SAM_ERROR", "Failed to open SAM session", ret);
+                }
+            });
+        });
+    }
+
+    private void samMfcAuth(MethodCall call, Result result) {
+        String keyType = call.argument("keyType");
+        Integer blockNo = call.argument("blockNo");
+        Integer keyNumber = call.argument("keyNumber");
+        Integer keyVersion = call.argument("keyVersion");
+        if (blockNo == null || keyNumber == null) {
+            result.error("INVALID_ARGUMENT", "blockNo and keyNumber are required", null);
+            return;
+        }
+        if (!"A".equals(keyType) && !"B".equals(keyType)) {
+            result.error("INVALID_ARGUMENT", "keyType must be \"A\" or \"B\"", keyType);
+            return;
+        }
+        final byte type = (byte) keyType.charAt(0);
+        PosApiHelper posApiHelper = PosApiHelper.getInstance();
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            int ret;
+            boolean open;
+            long idleTimeoutMs;
+            ReentrantLock lock = posApiHelper.getServiceLock();
+            lock.lock();
+            try {
+                if (samSession == null) {
+                    ret = SamSession.ERR_NOT_CONFIGURED;
+                    open = false;
+                    idleTimeoutMs = 0;
+                } else {
+                    ret = samSession.mfcAuth(type, blockNo, keyNumber, keyVersion == null ? 0 : keyVersion);
+                    // the session may have been opened even when the authentication failed
+                    open = samSession.isOpen();
+                    idleTimeoutMs = samSession.getIdleTimeoutMs();
+                }
+            } finally {
+                lock.unlock();
+            }
+            handler.post(() -> {
+                if (open) {
+                    scheduleSamExpiry(idleTimeoutMs);
+                }
+                if (ret == 0) {
+                    result.success(true);
+                } else if (ret == SamSession.ERR_NOT_CONFIGURED) {
+                    result.error("SAM_NOT_OPEN", "Call openSamSession first", ret);
+                } else {
+                    result.error("SAM_ERROR", "SAM authentication failed", ret);
+                }
+            });
+        });
+    }
+
+    private void closeSamSession(Result result) {
+        samExpiryHandler.removeCallbacks(samExpiry);
+        PosApiHelper posApiHelper = PosApiHelper.getInstance();
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            ReentrantLock lock = posApiHelper.getServiceLock();
+            lock.lock();
+            try {
+                if (samSession != null) {
+                    samSession.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (result != null) {
+                handler.post(() -> result.success(null));
+            }
+        });
+    }
+
+    /**
+     * Checks for idle expiry one timeout after the last use; every use pushes it back.
+     */
+    private void scheduleSamExpiry(long idleTimeoutMs) {
+        samExpiryHandler.removeCallbacks(samExpiry);
+        samExpiryHandler.postDelayed(samExpiry, idleTimeoutMs);
+    }
+
+    private void expireSamSession() {
+        PosApiHelper posApiHelper = PosApiHelper.getInstance();
+        executorService.execute(() -> {
+            ReentrantLock lock = posApiHelper.getServiceLock();
+            lock.lock();
+            try {
+                if (samSession != null && samSession.expireIfIdle()) {
+                    Log.d(TAG, "SAM session closed after idle timeout");
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private void fiscalOpen(MethodCall call, Result result) {
+        Map<?, ?> args = call.arguments instanceof Map ? (Map<?, ?>) call.arguments : new HashMap<>();
+        int baudrate = (int) longArgument(args, "baudrate", 115200);
+        int dataBits = (int) longArgument(args, "dataBits", 8);
+        int stopBits = (int) longArgument(args, "stopBits", 1);
+        String parity = call.argument("parity");
+        boolean flowControl = Boolean.TRUE.equals(call.argument("flowControl"));
+        long responseTimeoutMs = longArgument(args, "responseTimeoutMs", 2000);
+        int window = (int) longArgument(args, "window", 4);
+        int maxRetries = (int) longArgument(args, "maxRetries", 2);
+        FiscalTransport transport;
+        try {
+            transport = new FiscalTransport(new FiscalPort.Device(PosApiHelper.getInstance(), baudrate, dataBits,
+                    stopBits, parity == null || parity.isEmpty() ? 'N' : parity.charAt(0), flowControl ? 'H' : 'N'),
+                    new FiscalFrameCodec.StxEtx())
+                    .setResponseTimeoutMs(responseTimeoutMs)
+                    .setWindow(window)
+                    .setMaxRetries(maxRetries);
+        } catch (IllegalArgumentException e) {
+            result.error("INVALID_ARGUMENT", e.getMessage(), null);
+            return;
+        }
+        Handler handler = new Handler(Looper.getMainLooper());
+        fiscalExecutor.execute(() -> {
+            FiscalTransport previous = fiscalTransport;
+            if (previous != null) {
+                previous.close();
+            }
+            int ret = transport.open();
+            fiscalTransport = ret == 0 ? transport : null;
+            handler.post(() -> {
+                if (ret == 0) {
+                    result.success(null);
+                } else {
+                    result.error("FISCAL_ERROR", "Failed to open the fiscal module", ret);
+                }
+            });
+        });
+    }
+
+    private void fiscalSend(MethodCall call, Result result) {
+        byte[] payload = call.argument("payload");
+        if (payload == null) {
+            result.error("INVALID_ARGUMENT", "payload is required", null);
+            return;
+        }
+        FiscalTransport transport = fiscalTransport;
+        if (transport == null) {
+            result.error("FISCAL_NOT_OPEN", "Call fiscalOpen first", null);
+            return;
+        }
+        Handler handler = new Handler(Looper.getMainLooper());
+        transport.send(payload).setCallback((response, error) -> handler.post(() -> {
+            if (error == null) {
+                result.success(response);
+            } else if (error instanceof TimeoutException) {
+                result.error("FISCAL_TIMEOUT", error.getMessage(), null);
+            } else {
+                result.error("FISCAL_ERROR", error.getMessage(), null);
+            }
+        }));
+    }
+
+    private void fiscalClose(Result result) {
+        Handler handler = new Handler(Looper.getMainLooper());
+        fiscalExecutor.execute(() -> {
+            FiscalTransport transport = fiscalTransport;
+            fiscalTransport = null;
+            int ret = transport == null ? 0 : transport.close();
+            if (result != null) {
+                handler.post(() -> result.success(ret));
+            }
+        });
+    }
+
+    private void pciMacFile(MethodCall call, Result result) {
+        String path = call.argument("path");
+        Integer keyNo = call.argument("keyNo");
+        if (path == null || keyNo == null) {
+            result.error("INVALID_ARGUMENT", "path and keyNo are required", null);
+            return;
+        }
+        Map<?, ?> args = (Map<?, ?>) call.arguments;
+        int algorithm = (int) longArgument(args, "algorithm", PciStream.MAC_CBC);
+        int chunkSize = (int) longArgument(args, "chunkSize", PciStream.DEFAULT_CHUNK_SIZE);
+        PciStream stream;
+        try {
+            stream = PciStream.mac(PciStream.pci(PosApiHelper.getInstance()), keyNo, algorithm, chunkSize);
+        } catch (IllegalArgumentException e) {
+            result.error("INVALID_ARGUMENT", e.getMessage(), null);
+            return;
+        }
+        runPciStream(path, () -> stream, result, PciStream::getResult);
+    }
+
+    private void pciCryptFile(MethodCall call, Result result) {
+        String path = call.argument("path");
+        String outPath = call.argument("outPath");
+        Integer keyNo = call.argument("keyNo");
+        if (path == null || outPath == null || keyNo == null) {
+            result.error("INVALID_ARGUMENT", "path, outPath and keyNo are required", null);
+            return;
+        }
+        Map<?, ?> args = (Map<?, ?>) call.arguments;
+        boolean encrypt = !Boolean.FALSE.equals(call.argument("encrypt"));
+        boolean dukpt = Boolean.TRUE.equals(call.argument("dukpt"));
+        byte[] argIv = call.argument("iv");
+        byte[] iv = argIv == null ? new byte[PciStream.BLOCK] : argIv;
+        int chunkSize = (int) longArgument(args, "chunkSize", PciStream.DEFAULT_CHUNK_SIZE);
+        try {
+            PciStream.checkChunkSize(chunkSize);
+            if (dukpt) {
+                PciStream.checkIv(iv);
+            }
+        } catch (IllegalArgumentException e) {
+            result.error("INVALID_ARGUMENT", e.getMessage(), null);
+            return;
+        }
+        PosApiHelper posApiHelper = PosApiHelper.getInstance();
+        // outPath is truncated only once the arguments and the input file are good
+        runPciStream(path, () -> {
+            FileOutputStream out = new FileOutputStream(outPath);
+            return dukpt
+                    ? PciStream.dukptDes(PciStream.pci(posApiHelper), keyNo, encrypt, iv, chunkSize, out,
+                    posApiHelper.getServiceLock())
+                    : PciStream.des(PciStream.pci(posApiHelper), keyNo, encrypt, chunkSize, out);
+        }, result, stream -> dukpt ? stream.getKsn() : null);
+    }
+
+    private interface PciStreamFactory {
+        /**
+         * Creates the stream once the input file is open, opening any output file.
+         */
+        PciStream create() throws IOException;
+    }
+
+    private interface PciStreamValue {
+        Object get(PciStream stream);
+    }
+
+    /**
+     * Feeds a file through the stream from {@code factory} on the executor. The input
+     * is opened before the stream is created, and a read error aborts the stream
+     * rather than closing it, so no padded final chunk is sent for a partial input.
+     * The service lock is not held here: the stream's worker thread makes the PCI
+     * calls.
+     */
+    private void runPciStream(String path, PciStreamFactory factory, Result result, PciStreamValue value) {
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            Object ret = null;
+            String error = null;
+            PciStream stream = null;
+            try (FileInputStream in = new FileInputStream(path)) {
+                stream = factory.create();
+                byte[] buffer = new byte[8192];
+                int n;
+                try {
+                    while ((n = in.read(buffer)) > 0) {
+                        stream.write(buffer, 0, n);
+                    }
+                } catch (IOException e) {
+                    stream.abort();
+                    throw e;
+                }
+                stream.close();
+                ret = value.get(stream);
+            } catch (Exception e) {
+                error = e.getMessage() == null ? e.toString() : e.getMessage();
+            }
+            Object response = ret;
+            String message = error;
+            int pciError = stream == null ? 0 : stream.getError();
+            handler.post(() -> {
+                if (message == null) {
+                    result.success(response);
+                } else if (pciError != 0) {
+                    result.error("PCI_ERROR", message, pciError);
+                } else {
+                    result.error("IO_ERROR", message, null);
+                }
+            });
+        });
+    }
+
+    private void readM1Card(MethodCall call, Result result) {
+        List<byte[]> keys = call.argument("keys");
+        Integer firstSector = call.argument("firstSector");
+        Integer lastSector = call.argument("lastSector");
+        runCardOperation(result, "NO_CARD", "No M1 card in the field", helper -> new M1CardReader(M1CardReader.card(helper))
+                .read(keys, firstSector == null ? 0 : firstSector, lastSector == null ? 15 : lastSector));
+    }
+
+    private void writeM1Card(MethodCall call, Result result) {
+        List<byte[]> keys = call.argument("keys");
+        Map<Integer, byte[]> blocks = call.argument("blocks");
+        Boolean allowTrailers = call.argument("allowTrailers");
+        runCardOperation(result, "NO_CARD", "No M1 card in the field", helper -> new M1CardReader(M1CardReader.card(helper))
+                .write(keys, blocks, Boolean.TRUE.equals(allowTrailers)));
+    }
+
+    private void readMfpCard(MethodCall call, Result result) {
+        Integer firstBlock = call.argument("firstBlock");
+        Integer blockCount = call.argument("blockCount");
+        runCardOperation(result, "MFP_ERROR", "MIFARE Plus read failed", helper -> {
+            MifarePlusSession session = mfpSession(call, helper);
+            byte[] data = new byte[blockCount * MifarePlusSession.BLOCK_SIZE];
+            int ret = session.read(firstBlock, blockCount, data, 0);
+            return mfpResult(session, ret, "data", data);
+        });
+    }
+
+    private void writeMfpCard(MethodCall call, Result result) {
+        Integer firstBlock = call.argument("firstBlock");
+        byte[] data = call.argument("data");
+        Boolean allowTrailers = call.argument("allowTrailers");
+        runCardOperation(result, "MFP_ERROR", "MIFARE Plus write failed", helper -> {
+            if (data.length % MifarePlusSession.BLOCK_SIZE != 0) {
+                throw new IllegalArgumentException("Data is not a whole number of blocks");
+            }
+            MifarePlusSession session = mfpSession(call, helper);
+            int count = data.length / MifarePlusSession.BLOCK_SIZE;
+            int ret = session.write(firstBlock, count, data, 0, Boolean.TRUE.equals(allowTrailers));
+            return mfpResult(session, ret, "written", count);
+        });
+    }
+
+    private void readUltralight(MethodCall call, Result result) {
+        Integer pageCount = call.argument("pageCount");
+        byte[] password = call.argument("password");
+        Integer counter = call.argument("counter");
+        Boolean signature = call.argument("signature");
+        runCardOperation(result, "MFUL_ERROR", "Ultralight read failed", helper -> new UltralightReader(
+                UltralightReader.tag(helper)).read(pageCount == null ? 0 : pageCount, password,
+                counter == null ? UltralightReader.NFC_COUNTER : counter, !Boolean.FALSE.equals(signature)));
+    }
+
+    private static MifarePlusSession mfpSession(MethodCall call, PosApiHelper helper) {
+        Integer keyNumber = call.argument("keyNumber");
+        Integer keyVersion = call.argument("keyVersion");
+        String keyType = call.argument("keyType");
+        Boolean encrypted = call.argument("encrypted");
+        MifarePlusSession session = new MifarePlusSession(
+                MifarePlusSession.card(helper, Boolean.TRUE.equals(encrypted)),
+                keyNumber == null ? 0 : keyNumber, keyVersion == null ? 0 : keyVersion, "B".equals(keyType));
+        Map<Integer, List<Integer>> sectorKeys = call.argument("sectorKeys");
+        if (sectorKeys != null) {
+            for (Map.Entry<Integer, List<Integer>> entry : sectorKeys.entrySet()) {
+                session.setSectorKey(entry.getKey(), entry.getValue().get(0), entry.getValue().get(1));
+            }
+        }
+        return session;
+    }
+
+    private static Map<String, Object> mfpResult(MifarePlusSession session, int ret, String key, Object value) {
+        Map<String, Object> map = new HashMap<>();
+        if (ret != 0) {
+            map.put("error", ret);
+            map.put("failedBlock", session.getFailedBlock());
+        } else {
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    private interface CardOperation {
+        Map<String, Object> run(PosApiHelper posApiHelper);
+    }
+
+    /**
+     * Runs a multi-command card operation in the background under the service lock.
+     * A result holding "error" is reported as errorCode with that result as details.
+     */
+    private void runCardOperation(Result result, String errorCode, String errorMessage, CardOperation operation) {
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            Map<String, Object> cardResult;
+            ReentrantLock lock = posApiHelper.getServiceLock();
+            lock.lock();
+            try {
+                cardResult = operation.run(posApiHelper);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Card operation failed", e);
+                handler.post(() -> result.error("INVALID_ARGUMENT", e.getMessage(), null));
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (cardResult.containsKey("error")) {
+                handler.post(() -> result.error(errorCode, errorMessage, cardResult));
+            } else {
+                handler.post(() -> result.success(cardResult));
+            }
+        });
+    }
+
+    /**
+     * Follows 61xx/6Cxx and chains long commands, so the whole response arrives in one
+     * call. That can take many exchanges, so it runs in the background under the
+     * service lock.
+     */
+    private void piccApduCmd(MethodCall call, Result result) {
+        byte[] pucInput = call.argument("pucInput");
+        if (pucInput == null || pucInput.length == 0) {
+            result.error("INVALID_ARGUMENT", "pucInput is required", null);
+            return;
+        }
+        ApduTransceiver transceiver = new ApduTransceiver(new ApduChannel.Picc(posApiHelper));
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            int outLen;
+            ReentrantLock lock = posApiHelper.getServiceLock();
+            lock.lock();
+            try {
+                outLen = transceiver.transceive(pucInput, 0, pucInput.length);
+            } catch (IllegalArgumentException e) {
+                handler.post(() -> result.error("INVALID_APDU", e.getMessage(), null));
+                return;
+            } catch (RuntimeException e) {
+                handler.post(() -> result.error("ERROR", String.valueOf(e.getMessage()), null));
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (outLen >= 2) {
+                // Response is the data followed by SW1 SW2
+                byte[] out = transceiver.response();
+                Map<String, Object> response = apduResponseMap(slice(out, 0, outLen - 2), out[outLen - 2],
+                        out[outLen - 1]);
+                handler.post(() -> {
+                    result.success(response);
+                    feedback(call);
+                });
+            } else if (outLen == ApduTransceiver.ERR_NO_STATUS_WORD) {
+                handler.post(() -> result.error("ERROR", "PiccApduCmd returned no status word", null));
+            } else {
+                final int ret = outLen;
+                handler.post(() -> result.error("ERROR", "Failed to execute PiccApduCmd", ret));
+            }
+        });
+    }
+
+    private void runApduScript(MethodCall call, Result result) {
+        ApduScript script;
+        try {
+            List<Map<String, Object>> steps = call.argument("steps");
+            script = ApduScript.fromMaps(steps);
+        } catch (RuntimeException e) {
+            result.error("INVALID_SCRIPT", e.getMessage(), null);
+            return;
+        }
+        String channelName = call.argument("channel");
+        Integer slot = call.argument("slot");
+        Map<String, byte[]> variables = call.argument("variables");
+        ApduChannel apduChannel = "icc".equals(channelName)
+                ? new ApduChannel.Icc(posApiHelper, slot == null ? (byte) 0 : slot.byteValue())
+                : new ApduChannel.Picc(posApiHelper);
+
+        Handler handler = new Handler(Looper.getMainLooper());
+        executorService.execute(() -> {
+            Map<String, Object> scriptResult;
+            ReentrantLock lock = posApiHelper.getServiceLock();
+            lock.lock();
+            try {
+                scriptResult = script.run(apduChannel, variables);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "APDU script failed", e);
+                handler.post(() -> result.error("SCRIPT_FAILED", e.getMessage(), null));
+                return;
+            } finally {
+                lock.unlock();
+            }
+            handler.post(() -> result.success(scriptResult));
+        });
+    }
+
     private String savePrintedDocument(String originalPdfPath) throws IOException, JSONException {
         // Read the current print history
         JSONArray historyArray = new JSONArray(readFileContent(printHistoryFile));
@@ -1124,7 +2257,7 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             progressMap.put("totalPages", totalPages);
             progressMap.put("method", "retryProgress");
 
-            Log.d(TAG, "Sending retry progress update: " + currentPage + "/" + totalPages);
+            DebugLogUtil.d(TAG, "Sending retry progress update: {}/{}", currentPage, totalPages);
 
             new Handler(Looper.getMainLooper()).post(() -> channel.invokeMethod("retryProgress", progressMap));
         }
@@ -1172,7 +2305,7 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             progressMap.put("totalPages", totalPages);
             progressMap.put("method", "processingProgress");
 
-            Log.d(TAG, "Sending processing progress update: " + currentPage + "/" + totalPages);
+            DebugLogUtil.d(TAG, "Sending processing progress update: {}/{}", currentPage, totalPages);
 
             new Handler(Looper.getMainLooper()).post(() -> channel.invokeMethod("processingProgress", progressMap));
         }
@@ -1185,7 +2318,7 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
             progressMap.put("totalPages", totalPages);
             progressMap.put("method", "printingProgress");
 
-            Log.d(TAG, "Sending printing progress update: " + currentPage + "/" + totalPages);
+            DebugLogUtil.d(TAG, "Sending printing progress update: {}/{}", currentPage, totalPages);
 
             new Handler(Looper.getMainLooper()).post(() -> channel.invokeMethod("printingProgress", progressMap));
         }
@@ -1228,6 +2361,38 @@ public class Cs50sdkupdatePlugin implements FlutterPlugin, MethodChannel.MethodC
                 scannerReceiver = null;
             }
         }
+        if (scanChannel != null) {
+            scanChannel.setStreamHandler(null);
+            scanChannel = null;
+        }
+        if (scannerThread != null) {
+            scannerThread.quitSafely();
+            scannerThread = null;
+        }
+        stopPiccPresence();
+        if (appHoldsPiccField) {
+            appHoldsPiccField = false;
+            PiccField.release();
+        }
+        stopMcrSwipes();
+        if (mcrSwipeChannel != null) {
+            mcrSwipeChannel.setStreamHandler(null);
+            mcrSwipeChannel = null;
+        }
+        closeSamSession(null);
+        fiscalClose(null);
+        fiscalExecutor.shutdown();
+        feedbackQueue.close();
+        stopFlightRecorder();
+        if (piccPresenceChannel != null) {
+            piccPresenceChannel.setStreamHandler(null);
+            piccPresenceChannel = null;
+        }
+        if (metricsScheduler != null) {
+            metricsScheduler.execute(this::writeMetricsSnapshot);
+            metricsScheduler.shutdown();
+            metricsScheduler = null;
+        }
         channel.setMethodCallHandler(null);
         channel = null;
     }
@@ -0,0 +1,118 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+public class ApduFrameTest {
+    private static final byte[] SELECT = {0x00, (byte) 0xA4, 0x04, 0x00};
+    private static final byte[] PPSE = "2PAY.SYS.DDF01".getBytes();
+
+    @Test
+    public void send_matchesLegacyLayout() {
+        byte[] legacy = new byte[ApduSend.FRAME_SIZE];
+        System.arraycopy(SELECT, 0, legacy, 0, 4);
+        legacy[4] = 0;
+        legacy[5] = (byte) PPSE.length;
+        System.arraycopy(PPSE, 0, legacy, 6, PPSE.length);
+        legacy[518] = 1;
+        legacy[519] = 0;
+
+        ApduSend send = new ApduSend(SELECT, (short) PPSE.length, PPSE, (short) 256);
+        assertArrayEquals(legacy, send.getBytes());
+        assertEquals(PPSE.length, send.data().remaining());
+        assertEquals((byte) 0xA4, send.header().get(1));
+        assertEquals(256, send.getLe());
+    }
+
+    @Test
+    public void send_zeroesDataOfLongerPreviousCommand() {
+        ApduSend send = new ApduSend();
+        send.set(SELECT, PPSE, 0, PPSE.length, 0);
+        send.set((byte) 0x80, (byte) 0xA8, (byte) 0, (byte) 0, new byte[]{(byte) 0x83, 0}, 0, 2, 0);
+        for (int i = 6 + 2; i < 6 + PPSE.length; i++) {
+            assertEquals(0, send.getBytes()[i]);
+        }
+    }
+
+    @Test
+    public void resp_readsOnlyLenOutBytes() {
+        byte[] frame = new byte[ApduResp.FRAME_SIZE];
+        frame[0] = 3;
+        frame[2] = 0x6F;
+        frame[3] = 0x01;
+        frame[4] = 0x02;
+        frame[5] = 0x7F;
+        frame[514] = (byte) 0x90;
+
+        ApduResp resp = new ApduResp(frame);
+        assertEquals(3, resp.getLenOut());
+        assertArrayEquals(new byte[]{0x6F, 0x01, 0x02}, resp.getDataOut());
+        assertEquals(0, resp.getBytes()[5]);
+        assertEquals(0x9000, resp.getSW());
+        ByteBuffer data = resp.data();
+        assertEquals(3, data.remaining());
+        assertEquals(0x6F, data.get(0));
+    }
+
+    @Test
+    public void pool_reusesInstances() {
+        ApduResp first = ApduResp.obtain();
+        first.recycle();
+        assertSame(first, ApduResp.obtain());
+        ApduSend send = ApduSend.obtain();
+        send.set(SELECT, PPSE, 0, PPSE.length, 0);
+        send.recycle();
+        ApduSend again = ApduSend.obtain();
+        assertSame(send, again);
+        assertEquals(0, again.getLc());
+        assertEquals(0, again.getBytes()[1]);
+    }
+
+    @Test
+    public void exchange_allocatesNothingOnceWarm() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        byte[] device = new byte[ApduResp.FRAME_SIZE];
+        device[0] = 16;
+        device[514] = (byte) 0x90;
+        byte[] out = new byte[ApduResp.MAX_DATA];
+        for (int i = 0; i < 10_000; i++) {
+            exchange(device, out);
+        }
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        int sw = 0;
+        for (int i = 0; i < 10_000; i++) {
+            sw |= exchange(device, out);
+        }
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+        assertEquals(0x9000, sw);
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    // Stands in for PosApiHelper.PiccCommand(ApduSend, ApduResp) with a canned response.
+    private static int exchange(byte[] device, byte[] out) {
+        ApduSend send = ApduSend.obtain().set(SELECT, PPSE, 0, PPSE.length, 0);
+        ApduResp resp = ApduResp.obtain();
+        System.arraycopy(device, 0, resp.getBytes(), 0, ApduResp.FRAME_SIZE);
+        resp.copyDataOut(out, 0);
+        int sw = resp.getSW();
+        resp.recycle();
+        send.recycle();
+        return sw;
+    }
+}
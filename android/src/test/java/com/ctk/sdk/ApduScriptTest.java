@@ -0,0 +1,141 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ApduScriptTest {
+    private static byte[] hex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        ByteUtil.decodeHex(s, 0, s.length(), out, 0);
+        return out;
+    }
+
+    /**
+     * Answers each command with the next canned response and records what was sent.
+     */
+    private static class FakeChannel implements ApduChannel {
+        final List<String> sent = new ArrayList<>();
+        final Map<String, String> answers = new HashMap<>();
+
+        @Override
+        public int transmit(byte[] apdu, int apduLen, byte[] resp) {
+            String command = ByteUtil.toHexString(apdu, 0, apduLen);
+            sent.add(command);
+            String answer = answers.get(command);
+            if (answer == null) {
+                answer = "6A82";
+            }
+            return ByteUtil.decodeHex(answer, 0, answer.length(), resp, 0);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void run_substitutesSavedTagValues() {
+        FakeChannel channel = new FakeChannel();
+        channel.answers.put("00A404000E325041592E5359532E444446303100",
+                "6F0B" + "A509" + "BF0C06" + "4F04A0000003" + "9000");
+        channel.answers.put("00A4040004A000000300", "6F04" + "9F38010F" + "9000");
+        channel.answers.put("80A80000010F00", "770482021980" + "9000");
+
+        ApduScript script = new ApduScript(Arrays.asList(
+                new ApduScript.Step("00A404000E 325041592E5359532E4444463031 00").save("aid", 0x4F),
+                new ApduScript.Step("00A40400{#aid}{aid}00").save("pdol", 0x9F38),
+                new ApduScript.Step("80A80000{#pdol}{pdol}00").save("aip", 0x82)));
+        Map<String, Object> result = script.run(channel, null);
+
+        assertEquals(null, result.get("error"));
+        assertTrue((Boolean) result.get("completed"));
+        assertEquals(3, channel.sent.size());
+        Map<String, byte[]> vars = (Map<String, byte[]>) result.get("variables");
+        assertArrayEquals(hex("1980"), vars.get("aip"));
+        List<Map<String, Object>> responses = (List<Map<String, Object>>) result.get("responses");
+        assertEquals(0x90, responses.get(2).get("sw1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void run_branchesOnMismatchAndStopsOnUnexpectedStatus() {
+        FakeChannel channel = new FakeChannel();
+        channel.answers.put("00B2010C00", "7003" + "5A0112" + "9000");
+
+        ApduScript script = new ApduScript(Arrays.asList(
+                new ApduScript.Step("00A4040002A00100").onMismatch("records"),
+                new ApduScript.Step("00B2011400"),
+                new ApduScript.Step("00B2010C00").label("records").expect("90XX", "6283"),
+                new ApduScript.Step("00B2020C00")));
+        Map<String, Object> result = script.run(channel, null);
+
+        assertEquals(Arrays.asList("00A4040002A00100", "00B2010C00", "00B2020C00"), channel.sent);
+        assertFalse((Boolean) result.get("completed"));
+        assertEquals(3, result.get("failedStep"));
+        assertEquals("Unexpected status word 6A82", result.get("error"));
+        List<Map<String, Object>> responses = (List<Map<String, Object>>) result.get("responses");
+        assertFalse((Boolean) responses.get(0).get("matched"));
+        assertTrue((Boolean) responses.get(1).get("matched"));
+    }
+
+    @Test
+    public void run_reportsDeviceErrorsAndUndefinedVariables() {
+        ApduScript script = new ApduScript(Arrays.asList(new ApduScript.Step("00B2010C00")));
+        Map<String, Object> result = script.run((apdu, len, resp) -> -3524, null);
+        assertEquals("Device error -3524", result.get("error"));
+        assertEquals(0, result.get("failedStep"));
+
+        ApduScript undefined = new ApduScript(Arrays.asList(new ApduScript.Step("00A40400{#aid}{aid}")));
+        assertEquals("Undefined variable #aid", undefined.run(new FakeChannel(), null).get("error"));
+    }
+
+    @Test
+    public void run_boundsBranchLoops() {
+        ApduScript script = new ApduScript(Arrays.asList(
+                new ApduScript.Step("00CA9F3600").label("loop").onMismatch("loop")));
+        Map<String, Object> result = script.run(new FakeChannel(), null);
+        assertFalse((Boolean) result.get("completed"));
+        assertNull(((Map<?, ?>) result.get("variables")).get("x"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsUnknownLabels() {
+        new ApduScript(Arrays.asList(new ApduScript.Step("00B2010C00").onMismatch("nowhere")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsDuplicateLabels() {
+        new ApduScript(Arrays.asList(
+                new ApduScript.Step("00B2010C00").label("read"),
+                new ApduScript.Step("00B2020C00").label("read")));
+    }
+
+    @Test
+    public void run_failsOnLengthAbove255() {
+        ApduScript script = new ApduScript(Arrays.asList(new ApduScript.Step("80CA0000{#blob}")));
+        Map<String, byte[]> vars = new HashMap<>();
+        vars.put("blob", new byte[256]);
+        Map<String, Object> result = script.run(new FakeChannel(), vars);
+        assertFalse((Boolean) result.get("completed"));
+        assertEquals("Variable blob is longer than 255 bytes", result.get("error"));
+    }
+
+    @Test
+    public void icc_mapsApduCasesToFrame() {
+        ApduSend send = new ApduSend();
+        ApduChannel.Icc.setCommand(send, hex("00B2010C00"), 5);
+        assertEquals(0, send.getLc());
+        assertEquals(256, send.getLe());
+        ApduChannel.Icc.setCommand(send, hex("00A4040002A00100"), 8);
+        assertEquals(2, send.getLc());
+        assertEquals(1, send.getLe());
+    }
+}
@@ -0,0 +1,134 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+public class ApduTransceiverTest {
+    private static byte[] hex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        ByteUtil.decodeHex(s, 0, s.length(), out, 0);
+        return out;
+    }
+
+    /**
+     * Returns queued responses in order and records every command sent.
+     */
+    private static class ScriptedCard implements ApduChannel {
+        final List<String> sent = new ArrayList<>();
+        final Deque<byte[]> replies = new ArrayDeque<>();
+
+        ScriptedCard reply(byte[] data, String sw) {
+            byte[] r = Arrays.copyOf(data, data.length + 2);
+            System.arraycopy(hex(sw), 0, r, data.length, 2);
+            replies.add(r);
+            return this;
+        }
+
+        @Override
+        public int transmit(byte[] apdu, int apduLen, byte[] resp) {
+            sent.add(ByteUtil.toHexString(apdu, 0, apduLen));
+            byte[] r = replies.poll();
+            System.arraycopy(r, 0, resp, 0, r.length);
+            return r.length;
+        }
+    }
+
+    private static byte[] fill(int len, int seed) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) (seed + i);
+        }
+        return b;
+    }
+
+    @Test
+    public void getResponse_collectsEverythingBeyond256Bytes() {
+        byte[] first = fill(256, 0);
+        byte[] second = fill(256, 7);
+        byte[] third = fill(40, 3);
+        ScriptedCard card = new ScriptedCard()
+                .reply(new byte[0], "6100")
+                .reply(first, "6100")
+                .reply(second, "6128")
+                .reply(third, "9000");
+        ApduTransceiver transceiver = new ApduTransceiver(card);
+
+        int len = transceiver.transceive(hex("84B2010C00"), 0, 5);
+
+        assertEquals(552 + 2, len);
+        assertEquals(Arrays.asList("84B2010C00", "00C0000000", "00C0000000", "00C0000028"), card.sent);
+        byte[] out = transceiver.response();
+        assertArrayEquals(first, Arrays.copyOfRange(out, 0, 256));
+        assertArrayEquals(second, Arrays.copyOfRange(out, 256, 512));
+        assertArrayEquals(third, Arrays.copyOfRange(out, 512, 552));
+        assertEquals((byte) 0x90, out[552]);
+    }
+
+    @Test
+    public void getResponse_staysOnFurtherInterindustryChannel() {
+        ScriptedCard card = new ScriptedCard()
+                .reply(new byte[0], "6104")
+                .reply(fill(4, 1), "9000");
+        ApduTransceiver transceiver = new ApduTransceiver(card);
+
+        assertEquals(6, transceiver.transceive(hex("41B2010C00"), 0, 5));
+        assertEquals(Arrays.asList("41B2010C00", "41C0000004"), card.sent);
+    }
+
+    @Test
+    public void wrongLength_resendsWithCardLe() {
+        ScriptedCard card = new ScriptedCard()
+                .reply(new byte[0], "6C12")
+                .reply(fill(0x12, 1), "9000");
+        ApduTransceiver transceiver = new ApduTransceiver(card);
+
+        assertEquals(0x12 + 2, transceiver.transceive(hex("80CA9F17"), 0, 4));
+        assertEquals(Arrays.asList("80CA9F17", "80CA9F1712"), card.sent);
+    }
+
+    @Test
+    public void extendedLengthCommand_isChained() {
+        byte[] data = fill(300, 0);
+        byte[] apdu = new byte[7 + data.length];
+        System.arraycopy(hex("00DA0000000000"), 0, apdu, 0, 7);
+        ByteUtil.putShortBE(apdu, 5, data.length);
+        System.arraycopy(data, 0, apdu, 7, data.length);
+        ScriptedCard card = new ScriptedCard()
+                .reply(new byte[0], "9000")
+                .reply(new byte[0], "9000");
+        ApduTransceiver transceiver = new ApduTransceiver(card);
+
+        assertEquals(2, transceiver.transceive(apdu, 0, apdu.length));
+        assertEquals("10DA0000FF" + ByteUtil.toHexString(data, 0, 255), card.sent.get(0));
+        assertEquals("00DA00002D" + ByteUtil.toHexString(data, 255, 45), card.sent.get(1));
+    }
+
+    @Test
+    public void chaining_stopsAtFirstError() {
+        ScriptedCard card = new ScriptedCard().reply(new byte[0], "6A80");
+        ApduTransceiver transceiver = new ApduTransceiver(card);
+        transceiver.setChunkSize(4);
+
+        int len = transceiver.transceive((byte) 0x80, (byte) 0xE2, (byte) 0, (byte) 0, fill(10, 0), 0, 10, -1);
+
+        assertEquals(2, len);
+        assertEquals(1, card.sent.size());
+        assertEquals((byte) 0x6A, transceiver.response()[0]);
+    }
+
+    @Test
+    public void deviceErrors_passThrough() {
+        ApduTransceiver transceiver = new ApduTransceiver((apdu, len, resp) -> -3524);
+        assertEquals(-3524, transceiver.transceive(hex("00B2010C00"), 0, 5));
+        ApduTransceiver empty = new ApduTransceiver((apdu, len, resp) -> 0);
+        assertEquals(ApduTransceiver.ERR_NO_STATUS_WORD, empty.transceive(hex("00B2010C00"), 0, 5));
+    }
+}
@@ -0,0 +1,36 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ByteRingBufferTest {
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new ByteRingBuffer(5).capacity());
+        assertEquals(8, new ByteRingBuffer(8).capacity());
+    }
+
+    @Test
+    public void writeStopsWhenFull() {
+        ByteRingBuffer ring = new ByteRingBuffer(4);
+        assertEquals(4, ring.write(new byte[]{1, 2, 3, 4, 5}, 0, 5));
+        assertEquals(0, ring.write(new byte[]{6}, 0, 1));
+        assertEquals(4, ring.available());
+    }
+
+    @Test
+    public void readAndPeekAcrossWrapAround() {
+        ByteRingBuffer ring = new ByteRingBuffer(4);
+        ring.write(new byte[]{1, 2, 3}, 0, 3);
+        ring.skip(2);
+        assertEquals(3, ring.write(new byte[]{4, 5, 6}, 0, 3));
+        assertEquals(3, ring.get(0));
+        assertEquals(6, ring.get(3));
+        byte[] out = new byte[4];
+        assertEquals(4, ring.read(out, 0, 4));
+        assertArrayEquals(new byte[]{3, 4, 5, 6}, out);
+        assertEquals(0, ring.available());
+    }
+}
@@ -0,0 +1,97 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ByteUtilHexTest {
+    private static final String DIGITS = "0123456789ABCDEF";
+
+    // Previous StringBuffer based implementation, kept as the reference output.
+    private static String legacyHex(byte[] b, int leng) {
+        StringBuffer strbuf = new StringBuffer();
+        for (int i = 0; i < leng; i++) {
+            strbuf.append(DIGITS.charAt(((byte) ((b[i] & 0xf0) >> 4))));
+            strbuf.append(DIGITS.charAt((byte) (b[i] & 0x0f)));
+            strbuf.append(" ");
+        }
+        return strbuf.toString();
+    }
+
+    @Test
+    public void bytearrayToHexString_matchesLegacyOutput() {
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        assertEquals(legacyHex(all, all.length), ByteUtil.bytearrayToHexString(all, all.length));
+        assertEquals(legacyHex(all, 7), ByteUtil.bytearrayToHexString(all, 7));
+        assertEquals("", ByteUtil.bytearrayToHexString(all, 0));
+        assertEquals("", ByteUtil.bytearrayToHexString(all, -1));
+    }
+
+    @Test
+    public void byteToHexString_coversEveryValue() {
+        for (int i = 0; i < 256; i++) {
+            String expected = "" + DIGITS.charAt(i >> 4) + DIGITS.charAt(i & 0x0f);
+            assertEquals(expected, ByteUtil.byteToHexString((byte) i));
+        }
+    }
+
+    @Test
+    public void encodeHex_writesSeparatorBetweenBytesOnly() {
+        byte[] src = {0x00, (byte) 0x9f, 0x3a};
+        char[] dst = new char[2 + ByteUtil.hexLength(src.length, ':')];
+        int written = ByteUtil.encodeHex(src, 0, src.length, dst, 2, ':', false);
+        assertEquals(8, written);
+        assertEquals("00:9f:3a", new String(dst, 2, written));
+
+        StringBuilder sb = new StringBuilder("x");
+        ByteUtil.encodeHex(src, 1, 2, sb, ByteUtil.NO_SEPARATOR, true);
+        assertEquals("x9F3A", sb.toString());
+        assertEquals("009F3A", ByteUtil.toHexString(src, 0, src.length));
+    }
+
+    @Test
+    public void decodeHex_roundTripsRandomPayloads() {
+        Random random = new Random(42);
+        for (int len = 0; len < 300; len += 13) {
+            byte[] src = new byte[len];
+            random.nextBytes(src);
+            char[] hex = new char[ByteUtil.hexLength(len, ' ')];
+            ByteUtil.encodeHex(src, 0, len, hex, 0, ' ', (len & 1) == 0);
+
+            byte[] fromChars = new byte[len];
+            assertEquals(len, ByteUtil.decodeHex(hex, 0, hex.length, fromChars, 0));
+            assertArrayEquals(src, fromChars);
+
+            byte[] fromString = new byte[len];
+            assertEquals(len, ByteUtil.decodeHex(new String(hex), 0, hex.length, fromString, 0));
+            assertArrayEquals(src, fromString);
+        }
+    }
+
+    @Test
+    public void decodeHex_rejectsMalformedInput() {
+        byte[] dst = new byte[8];
+        String[] malformed = {"0G", "ABC", "A B", "éA"};
+        for (String s : malformed) {
+            try {
+                ByteUtil.decodeHex(s, 0, s.length(), dst, 0);
+                fail("Expected failure for " + s);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void hexStr2Str_acceptsBothCases() {
+        assertEquals("AB", ByteUtil.hexStr2Str("4142"));
+        assertEquals("ab", ByteUtil.hexStr2Str("6162"));
+        assertEquals("J", ByteUtil.hexStr2Str("4a"));
+    }
+}
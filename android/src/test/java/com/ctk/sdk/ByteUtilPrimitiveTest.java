@@ -0,0 +1,139 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+public class ByteUtilPrimitiveTest {
+    private final Random random = new Random(7);
+
+    // Previous stream based implementations, kept as the reference output.
+    private static byte[] legacyIToBytes(int n) throws IOException {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        new DataOutputStream(byteOut).writeInt(n);
+        return byteOut.toByteArray();
+    }
+
+    private static int legacyBytesToInt(byte[] b) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(b)).readInt();
+    }
+
+    @Test
+    public void iToBytesAndBytesToInt_matchStreamImplementation() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            int n = random.nextInt();
+            byte[] expected = legacyIToBytes(n);
+            assertArrayEquals(expected, ByteUtil.iToBytes(n));
+            assertEquals(legacyBytesToInt(expected), ByteUtil.bytesToInt(expected));
+        }
+        assertEquals(0, ByteUtil.bytesToInt(new byte[3]));
+    }
+
+    @Test
+    public void littleEndian_matchesExistingHelpers() {
+        byte[] expected = new byte[11];
+        byte[] actual = new byte[11];
+        for (int i = 0; i < 1000; i++) {
+            long x = random.nextLong();
+            ByteUtil.LongToBytes(expected, x, 3);
+            ByteUtil.putLongLE(actual, 3, x);
+            assertArrayEquals(expected, actual);
+            assertEquals(ByteUtil.BytesToLong(expected, 3), ByteUtil.getLongLE(actual, 3));
+
+            ByteUtil.IntToBytes(expected, (int) x, 1);
+            ByteUtil.putIntLE(actual, 1, (int) x);
+            assertArrayEquals(expected, actual);
+            assertEquals(ByteUtil.BytesToInt(expected, 1), ByteUtil.getIntLE(actual, 1));
+
+            ByteUtil.ShortToBytes(expected, (short) x, 9);
+            ByteUtil.putShortLE(actual, 9, (short) x);
+            assertArrayEquals(expected, actual);
+            assertEquals(ByteUtil.BytesToShort(expected, 9), ByteUtil.getShortLE(actual, 9));
+        }
+    }
+
+    @Test
+    public void bigEndian_matchesByteBuffer() {
+        byte[] b = new byte[12];
+        ByteBuffer view = ByteBuffer.wrap(b).order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < 1000; i++) {
+            long x = random.nextLong();
+            ByteUtil.putLongBE(b, 2, x);
+            assertEquals(view.getLong(2), x);
+            assertEquals(x, ByteUtil.getLongBE(b, 2));
+            ByteUtil.putIntBE(b, 1, (int) x);
+            assertEquals(view.getInt(1), (int) x);
+            assertEquals((int) x, ByteUtil.getIntBE(b, 1));
+            ByteUtil.putShortBE(b, 5, (int) x);
+            assertEquals(view.getShort(5), (short) x);
+            assertEquals((short) x, ByteUtil.getShortBE(b, 5));
+            assertEquals(view.getShort(5) & 0xffff, ByteUtil.getUShortBE(b, 5));
+        }
+    }
+
+    @Test
+    public void bcd_roundTripsAndValidates() {
+        byte[] amount = new byte[6];
+        ByteUtil.putBcd(amount, 0, 6, 123456L);
+        assertArrayEquals(new byte[]{0x00, 0x00, 0x00, 0x12, 0x34, 0x56}, amount);
+        assertEquals(123456L, ByteUtil.getBcd(amount, 0, 6));
+        assertEquals(999999999999L, roundTrip(999999999999L));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        ByteUtil.putBcd(direct, 1, 6, 42L);
+        assertEquals(42L, ByteUtil.getBcd(direct, 1, 6));
+
+        try {
+            ByteUtil.putBcd(amount, 0, 1, 100L);
+            fail("Expected overflow");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            ByteUtil.getBcd(new byte[]{0x1A}, 0, 1);
+            fail("Expected invalid digit");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static long roundTrip(long value) {
+        byte[] b = new byte[6];
+        ByteUtil.putBcd(b, 0, 6, value);
+        return ByteUtil.getBcd(b, 0, 6);
+    }
+
+    @Test
+    public void lengthPrefixed_matchesOutputBytesLayout() {
+        byte[] legacy = new byte[20];
+        byte[] data = {1, 2, 3, 4, 5};
+        System.arraycopy(data, 0, legacy, 0, data.length);
+        ByteUtil.encodeOutputBytes(legacy, (short) data.length);
+
+        byte[] actual = new byte[20];
+        assertEquals(7, ByteUtil.putLengthPrefixed(actual, 0, data, 0, data.length));
+        assertArrayEquals(legacy, actual);
+        assertEquals(5, ByteUtil.getLengthPrefix(actual, 0));
+
+        assertEquals(5, ByteUtil.decodeOutputBytes(actual));
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(data[i], actual[i]);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        ByteUtil.putLengthPrefixed(buf, data, 1, 3);
+        assertEquals(5, buf.position());
+        buf.flip();
+        assertEquals(3, ByteUtil.getLengthPrefix(buf));
+        assertEquals(2, buf.get());
+    }
+}
@@ -0,0 +1,104 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DebugLogUtilTest {
+    private final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        DebugLogUtil.flush(1000);
+        DebugLogUtil.setLevel(DebugLogUtil.DEBUG);
+        DebugLogUtil.setCallerInfo(false);
+        DebugLogUtil.setSink((level, tag, message) -> lines.add(level + "/" + tag + ": " + message));
+    }
+
+    @Test
+    public void argumentsAreSubstitutedInOrder() {
+        DebugLogUtil.d("T", "page {}/{}", 3, 7);
+        DebugLogUtil.i("T", "no args {}");
+        DebugLogUtil.d("T", "{} extra", "a", "b", "c");
+        assertTrue(DebugLogUtil.flush(1000));
+        assertEquals("2/T: page 3/7", lines.get(0));
+        assertEquals("3/T: no args {}", lines.get(1));
+        assertEquals("2/T: a extra", lines.get(2));
+    }
+
+    @Test
+    public void disabledLevelIsNotFormatted() {
+        final int[] formatted = new int[1];
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                formatted[0]++;
+                return "x";
+            }
+        };
+        DebugLogUtil.v("T", "value {}", arg);
+        DebugLogUtil.d("T", "");
+        assertTrue(DebugLogUtil.flush(1000));
+        assertEquals(0, formatted[0]);
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void callerIsAddedWhenConfigured() {
+        DebugLogUtil.setCallerInfo(true);
+        DebugLogUtil.w("T", "here");
+        assertTrue(DebugLogUtil.flush(1000));
+        DebugLogUtil.setCallerInfo(false);
+        assertTrue(lines.get(0), lines.get(0).startsWith("4/T: [ (DebugLogUtilTest.java:"));
+        assertTrue(lines.get(0).endsWith(")#callerIsAddedWhenConfigured ] here"));
+    }
+
+    @Test
+    public void throwingArgumentDoesNotStopTheDrainer() {
+        Object bad = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("broken toString");
+            }
+        };
+        DebugLogUtil.d("T", "bad {}", bad);
+        DebugLogUtil.d("T", "after");
+        assertTrue(DebugLogUtil.flush(1000));
+        assertEquals(1, lines.size());
+        assertEquals("2/T: after", lines.get(0));
+    }
+
+    @Test
+    public void fullRingDropsAndReports() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        DebugLogUtil.setSink((level, tag, message) -> {
+            blocked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lines.add(message);
+        });
+        DebugLogUtil.e("T", "first");
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        long before = DebugLogUtil.getDropped();
+        for (int i = 0; i < DebugLogUtil.CAPACITY + 10; i++) {
+            DebugLogUtil.e("T", "record {}", i);
+        }
+        assertTrue(DebugLogUtil.getDropped() - before >= 10);
+        release.countDown();
+        assertTrue(DebugLogUtil.flush(5000));
+        Thread.sleep(20);
+        assertTrue(lines.get(lines.size() - 1), lines.get(lines.size() - 1).endsWith("log records dropped"));
+    }
+}
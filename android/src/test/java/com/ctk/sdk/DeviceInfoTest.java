@@ -0,0 +1,135 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DeviceInfoTest {
+    private static class FakeSource implements DeviceInfo.Source {
+        int calls;
+        int snResult;
+        byte version = '1';
+
+        @Override
+        public String osVersion() {
+            calls++;
+            return "CS50_V2.1";
+        }
+
+        @Override
+        public String deviceId() {
+            calls++;
+            return "50000123";
+        }
+
+        @Override
+        public String apiVersion() {
+            return "v1.0.5";
+        }
+
+        @Override
+        public int firmwareVersion(byte[] buf) {
+            calls++;
+            buf[0] = version;
+            return 0;
+        }
+
+        @Override
+        public int serialNumber(byte[] buf) {
+            calls++;
+            buf[0] = 'S';
+            return snResult;
+        }
+
+        @Override
+        public int chipId(byte[] buf, int len) {
+            calls++;
+            buf[len - 1] = 0x7F;
+            return 0;
+        }
+    }
+
+    @Test
+    public void deviceIsReadOnce() {
+        FakeSource source = new FakeSource();
+        DeviceInfo info = new DeviceInfo(source, null, "build");
+        assertNull(info.peek());
+        Map<String, Object> first = info.get();
+        int calls = source.calls;
+        assertSame(first, info.get());
+        assertSame(first, info.peek());
+        assertEquals(calls, source.calls);
+        assertEquals("50000123", first.get("deviceId"));
+        assertEquals("build", first.get("buildFingerprint"));
+        assertEquals(0x7F, ((byte[]) first.get("chipId"))[DeviceInfo.CHIP_ID_SIZE - 1]);
+    }
+
+    @Test
+    public void failedFieldIsLeftOutAndReadAgain() {
+        FakeSource source = new FakeSource();
+        source.snResult = -1;
+        DeviceInfo info = new DeviceInfo(source, null, null);
+        Map<String, Object> s = info.get();
+        assertFalse(s.containsKey("serialNumber"));
+        assertFalse(s.containsKey("buildFingerprint"));
+        assertEquals("CS50_V2.1", s.get("osVersion"));
+        assertNull(info.peek());
+
+        source.snResult = 0;
+        int calls = source.calls;
+        s = info.get();
+        assertEquals('S', ((byte[]) s.get("serialNumber"))[0]);
+        assertEquals(calls + 1, source.calls);
+        assertSame(s, info.peek());
+    }
+
+    @Test
+    public void invalidateDoesNotWaitForACollect() throws InterruptedException {
+        final CountDownLatch collecting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final DeviceInfo info = new DeviceInfo(new FakeSource() {
+            @Override
+            public String osVersion() {
+                collecting.countDown();
+                try {
+                    release.await(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.osVersion();
+            }
+        }, null, "build");
+        Thread collector = new Thread(info::get);
+        collector.start();
+        assertTrue(collecting.await(1, TimeUnit.SECONDS));
+        Thread invalidator = new Thread(info::invalidate);
+        invalidator.start();
+        invalidator.join(1000);
+        assertFalse(invalidator.isAlive());
+        release.countDown();
+        collector.join(1000);
+        // collected before the invalidation, so not kept
+        assertNull(info.peek());
+    }
+
+    @Test
+    public void invalidateReadsDeviceAgain() {
+        FakeSource source = new FakeSource();
+        DeviceInfo info = new DeviceInfo(source, null, "build");
+        info.get();
+        source.version = '2';
+        info.invalidate();
+        assertNull(info.peek());
+        byte[] version = (byte[]) info.get().get("firmwareVersion");
+        assertArrayEquals(new byte[]{'2', 0, 0, 0, 0, 0, 0, 0, 0, 0}, version);
+    }
+}
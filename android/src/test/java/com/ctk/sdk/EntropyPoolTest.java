@@ -0,0 +1,118 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EntropyPoolTest {
+    private static class CountingSource implements EntropyPool.Source {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile int error;
+
+        @Override
+        public int read(byte[] rnd) {
+            int n = calls.incrementAndGet();
+            Arrays.fill(rnd, (byte) n);
+            return error;
+        }
+    }
+
+    private static byte[] hex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        ByteUtil.decodeHex(s, 0, s.length(), out, 0);
+        return out;
+    }
+
+    private static void waitForCalls(CountingSource source, int calls) throws InterruptedException {
+        long until = System.currentTimeMillis() + 2000;
+        while (source.calls.get() < calls && System.currentTimeMillis() < until) {
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * CAVP HMAC_DRBG.rsp, [SHA-256] without prediction resistance, personalization
+     * or additional input, COUNT = 0: the second of two 1024 bit generate calls.
+     */
+    @Test
+    public void matchesSp80090aKnownAnswer() {
+        EntropyPool pool = new EntropyPool(
+                hex("ca851911349384bffe89de1cbdc46e6831e44d34a4fb935ee285dd14b71a7488"),
+                hex("659ba96c601dc69fc902940805ec0ca8"));
+        pool.nextBytes(128);
+        assertArrayEquals(hex("e528e9abf2dece54d47c7e75e5fe302149f817ea9fb4bee6f4199697d04d5b89"
+                + "d54fbb978a15b5c443c9ec21036d2460b6f73ebad0dc2aba6e624abf07745bc1"
+                + "07694bb7547bb0995f70de25d6b29e2d3011bb19d27676c07162c8b5ccde0668"
+                + "961df86803482cb37ed6d5c0bb8d50cf1f50d476aa0458bdaba806f48be9dcb8"), pool.nextBytes(128));
+    }
+
+    @Test
+    public void bytesAreServedWithoutBinderCalls() throws InterruptedException {
+        CountingSource source = new CountingSource();
+        EntropyPool pool = new EntropyPool(source);
+        byte[] first = pool.nextBytes(32);
+        // three calls for the seed, three more prefetching the next one
+        waitForCalls(source, 6);
+        for (int i = 0; i < 1000; i++) {
+            pool.nextBytes(32);
+        }
+        assertEquals(6, source.calls.get());
+        assertFalse(Arrays.equals(first, pool.nextBytes(32)));
+        pool.close();
+    }
+
+    @Test
+    public void reseedsFromPrefetchedSeed() throws InterruptedException {
+        CountingSource source = new CountingSource();
+        EntropyPool pool = new EntropyPool(source).setReseedInterval(1024, 60000);
+        pool.nextBytes(1024);
+        waitForCalls(source, 6);
+        pool.nextBytes(16);
+        // the prefetched seed was used and the next one is being fetched
+        waitForCalls(source, 9);
+        assertEquals(9, source.calls.get());
+        pool.close();
+    }
+
+    @Test
+    public void sameSeedGivesDifferentStreamsWithDifferentMaterial() {
+        EntropyPool a = new EntropyPool(new CountingSource());
+        EntropyPool b = new EntropyPool(new CountingSource());
+        a.nextBytes(0);
+        b.nextBytes(0);
+        b.addSeedMaterial(new byte[]{1, 2, 3});
+        assertFalse(Arrays.equals(a.nextBytes(64), b.nextBytes(64)));
+        a.close();
+        b.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failingHardwareRefusesToSeed() {
+        CountingSource source = new CountingSource();
+        source.error = -1;
+        new EntropyPool(source).nextBytes(16);
+    }
+
+    @Test
+    public void secureRandomUsesPool() {
+        CountingSource source = new CountingSource();
+        EntropyPool pool = new EntropyPool(source);
+        SecureRandom random = pool.secureRandom();
+        byte[] bytes = new byte[40];
+        random.nextBytes(bytes);
+        assertFalse(Arrays.equals(new byte[40], bytes));
+        int before = source.calls.get();
+        assertEquals(20, random.generateSeed(20).length);
+        assertTrue(source.calls.get() >= before + 2);
+        assertEquals(EntropyPool.ALGORITHM, EntropyPool.HardwareProvider.INSTANCE
+                .getService("SecureRandom", EntropyPool.ALGORITHM).getAlgorithm());
+        pool.close();
+    }
+}
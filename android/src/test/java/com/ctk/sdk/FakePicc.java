@@ -0,0 +1,85 @@
+package com.ctk.sdk;
+
+/**
+ * Contactless field and card shared by the card reader tests: the field is opened
+ * and closed, activation fails with {@link PiccField#ERR_MODULE_NOT_OPENED} while it
+ * is closed, and a card that rejects a command goes idle until activated again.
+ *
+ * Counters are plain fields; tests that poll from another thread read them through
+ * the synchronized accessors.
+ */
+class FakePicc {
+    static final byte[] UID = {0x04, 0x11, 0x22, 0x33};
+
+    boolean fieldOpen = true;
+    int openResult;
+    volatile boolean cardPresent = true;
+    boolean active;
+    int opens;
+    int closes;
+    int activations;
+
+    public synchronized int open() {
+        opens++;
+        if (openResult == 0) {
+            fieldOpen = true;
+        }
+        return openResult;
+    }
+
+    public synchronized int close() {
+        closes++;
+        fieldOpen = false;
+        active = false;
+        return 0;
+    }
+
+    /**
+     * @return 0, or the code the card or reader answers an activation with
+     */
+    public synchronized int activate() {
+        if (!fieldOpen) {
+            return PiccField.ERR_MODULE_NOT_OPENED;
+        }
+        if (!cardPresent) {
+            return -3501;
+        }
+        activations++;
+        active = true;
+        return 0;
+    }
+
+    /**
+     * Activates and fills in the type and length-prefixed UID the way PiccCheck does.
+     */
+    synchronized int activate(byte type, byte[] cardType, byte[] serialNo) {
+        int ret = activate();
+        if (ret == 0) {
+            cardType[0] = 'A';
+            cardType[1] = type;
+            serialNo[0] = (byte) UID.length;
+            System.arraycopy(UID, 0, serialNo, 1, UID.length);
+        }
+        return ret;
+    }
+
+    /**
+     * The card rejected a command: it goes idle and the code is passed on.
+     */
+    synchronized int reject(int code) {
+        active = false;
+        return code;
+    }
+
+    synchronized int getOpens() {
+        return opens;
+    }
+
+    synchronized int getCloses() {
+        return closes;
+    }
+
+    synchronized int getActivations() {
+        return activations;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FeedbackQueueTest {
+    /**
+     * Buzzer whose first beep blocks until released.
+     */
+    private static class FakeDevice implements FeedbackQueue.Device {
+        final AtomicInteger beeps = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        @Override
+        public int beep() {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            beeps.incrementAndGet();
+            return 0;
+        }
+    }
+
+    private static void awaitBeeps(FakeDevice device, int n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (device.beeps.get() < n && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void playReturnsBeforeBeepEnds() throws InterruptedException {
+        FakeDevice device = new FakeDevice();
+        FeedbackQueue queue = new FeedbackQueue(device);
+        assertTrue(queue.play(FeedbackQueue.SUCCESS));
+        assertTrue(device.started.await(5, TimeUnit.SECONDS));
+        assertEquals(0, device.beeps.get());
+        device.release.countDown();
+        awaitBeeps(device, 1);
+        assertEquals(1, device.beeps.get());
+        queue.close();
+    }
+
+    @Test
+    public void burstIsCoalesced() throws InterruptedException {
+        FakeDevice device = new FakeDevice();
+        FeedbackQueue queue = new FeedbackQueue(device);
+        queue.configure(true, 10000);
+        assertTrue(queue.play(FeedbackQueue.SUCCESS));
+        device.started.await(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 20; i++) {
+            assertFalse(queue.play(FeedbackQueue.SUCCESS));
+        }
+        device.release.countDown();
+        awaitBeeps(device, 1);
+        Thread.sleep(50);
+        assertEquals(1, device.beeps.get());
+        assertEquals(1, queue.counts()[0]);
+        assertEquals(20, queue.counts()[1]);
+        queue.close();
+    }
+
+    @Test
+    public void patternsPlayTheirBeeps() throws InterruptedException {
+        FakeDevice device = new FakeDevice();
+        device.release.countDown();
+        FeedbackQueue queue = new FeedbackQueue(device);
+        queue.play(FeedbackQueue.SUCCESS);
+        queue.play(FeedbackQueue.ERROR);
+        awaitBeeps(device, 4);
+        assertEquals(4, device.beeps.get());
+        queue.close();
+    }
+
+    @Test
+    public void disabledQueueDropsRequests() {
+        FakeDevice device = new FakeDevice();
+        FeedbackQueue queue = new FeedbackQueue(device);
+        queue.configure(false, 0);
+        assertFalse(queue.play(FeedbackQueue.WARNING));
+        assertEquals(-1, FeedbackQueue.patternOf("chime"));
+        assertEquals(FeedbackQueue.ERROR, FeedbackQueue.patternOf("error"));
+    }
+}
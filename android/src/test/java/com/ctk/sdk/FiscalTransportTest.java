@@ -0,0 +1,231 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class FiscalTransportTest {
+    /**
+     * In-memory stand-in for the fiscal UART: frames written by the transport are
+     * decoded by a fake module, which answers with ACK and the reversed payload.
+     */
+    private static class LoopbackPort implements FiscalPort {
+        final FiscalFrameCodec.StxEtx codec = new FiscalFrameCodec.StxEtx();
+        final ByteRingBuffer received = new ByteRingBuffer(4096);
+        final LinkedBlockingQueue<Byte> toHost = new LinkedBlockingQueue<>();
+        final List<Integer> requests = new ArrayList<>();
+        final List<Integer> hostAcks = new ArrayList<>();
+        final List<FiscalFrame> held = new ArrayList<>();
+        volatile int nakCount;
+        volatile boolean silent;
+        volatile boolean ackOnly;
+        volatile boolean hold;
+
+        @Override
+        public int open() {
+            return 0;
+        }
+
+        @Override
+        public synchronized int write(byte[] data) {
+            received.write(data, 0, data.length);
+            FiscalFrame f;
+            while ((f = codec.decode(received)) != null) {
+                if (f.type == FiscalFrame.Type.ACK) {
+                    hostAcks.add(f.seq);
+                    continue;
+                }
+                requests.add(f.seq);
+                if (silent) {
+                    continue;
+                }
+                if (nakCount > 0) {
+                    nakCount--;
+                    send(new byte[]{FiscalFrameCodec.StxEtx.NAK, (byte) f.seq});
+                    continue;
+                }
+                send(codec.ack(f.seq));
+                if (ackOnly) {
+                    continue;
+                }
+                if (hold) {
+                    held.add(f);
+                } else {
+                    respond(f);
+                }
+            }
+            return 0;
+        }
+
+        synchronized void releaseReversed() {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                respond(held.get(i));
+            }
+            held.clear();
+        }
+
+        synchronized int requestCount() {
+            return requests.size();
+        }
+
+        private void respond(FiscalFrame f) {
+            byte[] answer = new byte[f.payload.length];
+            for (int i = 0; i < answer.length; i++) {
+                answer[i] = f.payload[answer.length - 1 - i];
+            }
+            send(codec.encode(f.seq, answer));
+        }
+
+        private void send(byte[] bytes) {
+            for (byte b : bytes) {
+                toHost.add(b);
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int length, int timeoutMs) {
+            try {
+                Byte b = toHost.poll(timeoutMs, TimeUnit.MILLISECONDS);
+                if (b == null) {
+                    return ERR_TIMEOUT;
+                }
+                int n = 0;
+                do {
+                    buffer[n++] = b;
+                } while (n < length && (b = toHost.poll()) != null);
+                return n;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ERR_TIMEOUT;
+            }
+        }
+
+        @Override
+        public int close() {
+            return 0;
+        }
+    }
+
+    private final LoopbackPort port = new LoopbackPort();
+    private final FiscalTransport transport = new FiscalTransport(port, new FiscalFrameCodec.StxEtx())
+            .setResponseTimeoutMs(200)
+            .setReadTimeoutMs(5);
+
+    @After
+    public void tearDown() {
+        transport.close();
+    }
+
+    @Test
+    public void pipelinedResponsesAreMatchedBySequence() throws Exception {
+        port.hold = true;
+        assertEquals(0, transport.open());
+        FiscalTransport.Response r1 = transport.send(new byte[]{1, 2});
+        FiscalTransport.Response r2 = transport.send(new byte[]{3, 4});
+        FiscalTransport.Response r3 = transport.send(new byte[]{5, 6});
+        // all three go out before any response comes back
+        long until = System.currentTimeMillis() + 1000;
+        while (port.requestCount() < 3 && System.currentTimeMillis() < until) {
+            Thread.sleep(5);
+        }
+        assertEquals(3, port.requestCount());
+        port.releaseReversed();
+        assertArrayEquals(new byte[]{2, 1}, r1.get(1, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{4, 3}, r2.get(1, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{6, 5}, r3.get(1, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        synchronized (port) {
+            assertEquals(3, port.hostAcks.size());
+        }
+        assertEquals(0, transport.getInFlight());
+    }
+
+    @Test
+    public void nakedRequestIsSentAgain() throws Exception {
+        port.nakCount = 1;
+        transport.open();
+        byte[] response = transport.send(new byte[]{9, 8, 7}).get(1, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[]{7, 8, 9}, response);
+        assertEquals(2, port.requestCount());
+        assertEquals(1L, transport.counts()[0]);
+    }
+
+    @Test
+    public void cancelledRequestLeavesTheWindow() throws Exception {
+        port.ackOnly = true;
+        transport.setWindow(1).setResponseTimeoutMs(10000).open();
+        FiscalTransport.Response r1 = transport.send(new byte[]{1});
+        long until = System.currentTimeMillis() + 1000;
+        while (port.requestCount() < 1 && System.currentTimeMillis() < until) {
+            Thread.sleep(5);
+        }
+        assertTrue(r1.cancel(false));
+        assertEquals(0, transport.getInFlight());
+        port.ackOnly = false;
+        assertArrayEquals(new byte[]{3, 2}, transport.send(new byte[]{2, 3}).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void oversizedPayloadFails() throws Exception {
+        transport.open();
+        try {
+            transport.send(new byte[FiscalFrameCodec.StxEtx.MAX_DATA + 1]).get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(0, port.requestCount());
+    }
+
+    @Test
+    public void unacknowledgedRequestIsRetriedThenFails() throws Exception {
+        port.silent = true;
+        transport.setMaxRetries(2).open();
+        try {
+            transport.send(new byte[]{1}).get(2, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(3, port.requestCount());
+    }
+
+    @Test
+    public void acknowledgedRequestIsNeverSentTwice() throws Exception {
+        port.ackOnly = true;
+        transport.open();
+        try {
+            transport.send(new byte[]{1}).get(2, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(1, port.requestCount());
+    }
+
+    @Test
+    public void closeFailsPendingRequests() throws Exception {
+        port.ackOnly = true;
+        transport.setResponseTimeoutMs(10000).open();
+        FiscalTransport.Response r = transport.send(new byte[]{1});
+        transport.close();
+        try {
+            r.get(1, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
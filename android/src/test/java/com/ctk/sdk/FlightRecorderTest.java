@@ -0,0 +1,138 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class FlightRecorderTest {
+    private static final List<String> APIS = Arrays.asList("Lib_Beep", "Lib_PiccOpen", "Lib_PrnStart");
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("flight", ".bin");
+        file.deleteOnExit();
+    }
+
+    @Test
+    public void recordsAreReadBackInOrder() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(file, 8, APIS);
+        recorder.record(1, new Object[]{(byte) 'A'}, 0, 1500000, 0);
+        recorder.record(2, null, -4001, 2000, 0);
+        recorder.record(0, null, null, 10, FlightRecorder.FLAG_REMOTE_ERROR);
+        List<Map<String, Object>> records = recorder.records(10);
+        assertEquals(3, records.size());
+        assertEquals("Lib_PiccOpen", records.get(0).get("api"));
+        assertEquals(1500, records.get(0).get("durationUs"));
+        assertEquals(-4001, records.get(1).get("code"));
+        assertEquals(FlightRecorder.FLAG_REMOTE_ERROR, records.get(2).get("flags"));
+        assertEquals(2L, records.get(2).get("seq"));
+    }
+
+    @Test
+    public void idlePollsAreFoldedUntilAnotherRecordOfTheApi() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(file, 8, APIS);
+        for (int i = 0; i < 100; i++) {
+            recorder.recordIdlePoll(1, -3501, 1000);
+        }
+        recorder.record(0, null, 0, 0, 0);
+        recorder.recordIdlePoll(1, -3501, 1000);
+        recorder.record(1, null, 0, 0, 0);
+        recorder.recordIdlePoll(1, -3501, 1000);
+        List<Map<String, Object>> records = recorder.records(10);
+        assertEquals(4, records.size());
+        assertEquals(FlightRecorder.FLAG_FOLDED, records.get(0).get("flags"));
+        assertEquals(101, records.get(0).get("argsDigest"));
+        assertEquals("Lib_Beep", records.get(1).get("api"));
+        assertEquals(0, records.get(2).get("flags"));
+        assertEquals(1, records.get(3).get("argsDigest"));
+    }
+
+    @Test
+    public void ringKeepsNewest() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(file, 4, APIS);
+        for (int i = 0; i < 10; i++) {
+            recorder.record(0, null, i, 0, 0);
+        }
+        List<Map<String, Object>> records = recorder.records(3);
+        assertEquals(3, records.size());
+        assertEquals(7, records.get(0).get("code"));
+        assertEquals(9, records.get(2).get("code"));
+    }
+
+    @Test
+    public void lateStopLeavesALaterStartRunning() throws IOException {
+        FlightRecorder first = FlightRecorder.start(file);
+        // the next engine attached before the first one's stop ran
+        FlightRecorder second = FlightRecorder.start(file);
+        assertSame(first, second);
+        FlightRecorder.stop(first);
+        assertSame(second, FlightRecorder.current());
+        FlightRecorder.stop(second);
+        assertNull(FlightRecorder.current());
+
+        FlightRecorder third = FlightRecorder.start(file);
+        // a stop of the closed recorder arriving late
+        FlightRecorder.stop(first);
+        assertSame(third, FlightRecorder.current());
+        FlightRecorder.stop(third);
+        assertNull(FlightRecorder.current());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLimitIsRejected() throws IOException {
+        new FlightRecorder(file, 4, APIS).records(-1);
+    }
+
+    @Test
+    public void reopenContinuesAfterNewest() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(file, 4, APIS);
+        recorder.record(0, null, 1, 0, 0);
+        recorder.record(0, null, 2, 0, 0);
+        recorder.close();
+        FlightRecorder reopened = new FlightRecorder(file, 4, APIS);
+        reopened.record(0, null, 3, 0, 0);
+        List<Map<String, Object>> records = reopened.records(10);
+        assertEquals(3, records.size());
+        assertEquals(2L, records.get(2).get("seq"));
+        assertEquals(3, records.get(2).get("code"));
+    }
+
+    @Test
+    public void changedApisStartAFreshFile() throws IOException {
+        new FlightRecorder(file, 4, APIS).record(0, null, 1, 0, 0);
+        FlightRecorder other = new FlightRecorder(file, 4, Arrays.asList("Lib_Beep", "Lib_SetLed"));
+        assertEquals(0, other.records(10).size());
+    }
+
+    @Test
+    public void exportCopiesTheRing() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(file, 4, APIS);
+        recorder.record(2, null, 0, 0, 0);
+        File dest = File.createTempFile("export", ".bin");
+        dest.deleteOnExit();
+        recorder.export(dest);
+        assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(dest.toPath()));
+    }
+
+    @Test
+    public void digestIgnoresArrayContents() {
+        int a = FlightRecorder.digest(new Object[]{1, new byte[]{1, 2, 3, 4}});
+        int b = FlightRecorder.digest(new Object[]{1, new byte[]{9, 9, 9, 9}});
+        assertEquals(a, b);
+        assertTrue(a != FlightRecorder.digest(new Object[]{2, new byte[4]}));
+    }
+}
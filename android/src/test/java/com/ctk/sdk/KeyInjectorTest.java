@@ -0,0 +1,149 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class KeyInjectorTest {
+    /**
+     * Key store whose KCV is the first three key bytes.
+     */
+    private static class FakePci implements KeyInjector.Pci {
+        final Map<String, byte[]> keys = new HashMap<>();
+        final List<String> writes = new ArrayList<>();
+        int failMasterWrite;
+
+        @Override
+        public int writeMasterKey(int type, int keyNo, byte[] key, int mode) {
+            writes.add("m" + type + ":" + keyNo);
+            if (failMasterWrite != 0) {
+                return failMasterWrite;
+            }
+            keys.put((0x0A + type) + ":" + keyNo, key);
+            return 0;
+        }
+
+        @Override
+        public int writeWorkingKey(int type, int keyNo, byte[] key, int mode, int masterNo) {
+            writes.add("w" + type + ":" + keyNo);
+            if (!keys.containsKey((0x0A + type) + ":" + masterNo)) {
+                return -7011;
+            }
+            keys.put((0x0D + type) + ":" + keyNo, key);
+            return 0;
+        }
+
+        @Override
+        public int writeDukptIpek(int keyId, byte[] ipek, byte[] ksn) {
+            writes.add("d" + keyId);
+            return 0;
+        }
+
+        @Override
+        public int readKcv(int keyNo, int kcvType, byte[] kcv) {
+            byte[] key = keys.get(kcvType + ":" + keyNo);
+            if (key == null) {
+                return 1010;
+            }
+            System.arraycopy(key, 0, kcv, 0, 3);
+            return 0;
+        }
+    }
+
+    private static byte[] key(int b) {
+        byte[] key = new byte[16];
+        Arrays.fill(key, (byte) b);
+        return key;
+    }
+
+    private static byte[] kcv(int b) {
+        return new byte[]{(byte) b, (byte) b, (byte) b};
+    }
+
+    private static List<KeyInjector.Entry> manifest() {
+        return Arrays.asList(
+                new KeyInjector.Entry(null, KeyInjector.TYPE_PIN, false, 1, 0, key(2), 0, kcv(2), null, false),
+                new KeyInjector.Entry(null, KeyInjector.TYPE_MAC, true, 0, 0, key(3), 0, kcv(3), null, false),
+                new KeyInjector.Entry(null, KeyInjector.TYPE_PIN, true, 0, 0, key(1), 0, kcv(1), null, false),
+                new KeyInjector.Entry("ipek", KeyInjector.TYPE_DUKPT, false, 0, 0, key(4), 0, null,
+                        new byte[10], false));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> keys(Map<String, Object> report) {
+        return (List<Map<String, Object>>) report.get("keys");
+    }
+
+    @Test
+    public void mastersAreWrittenBeforeWorkingKeys() {
+        FakePci pci = new FakePci();
+        Map<String, Object> report = new KeyInjector(pci).load(manifest());
+        assertEquals(Arrays.asList("m1:0", "m0:0", "w0:1"), pci.writes);
+        assertEquals(3, report.get("written"));
+        assertEquals(1, report.get("skipped"));
+        assertEquals(0, report.get("failed"));
+        assertEquals("mac master 0", keys(report).get(0).get("name"));
+        assertArrayEquals(kcv(2), (byte[]) keys(report).get(2).get("kcv"));
+    }
+
+    @Test
+    public void secondRunChangesNothing() {
+        FakePci pci = new FakePci();
+        new KeyInjector(pci).load(manifest());
+        pci.writes.clear();
+        Map<String, Object> report = new KeyInjector(pci).load(manifest());
+        assertEquals(0, pci.writes.size());
+        assertEquals(3, report.get("unchanged"));
+    }
+
+    @Test
+    public void wrongKcvFailsAndSkipsDependentKeys() {
+        FakePci pci = new FakePci();
+        List<KeyInjector.Entry> manifest = Arrays.asList(
+                new KeyInjector.Entry(null, KeyInjector.TYPE_DES, true, 2, 0, key(5), 0, kcv(6), null, false),
+                new KeyInjector.Entry(null, KeyInjector.TYPE_DES, false, 0, 2, key(7), 0, kcv(7), null, false));
+        Map<String, Object> report = new KeyInjector(pci).load(manifest);
+        assertEquals(KeyInjector.FAILED, keys(report).get(0).get("status"));
+        assertEquals(KeyInjector.ERR_KCV_MISMATCH, keys(report).get(0).get("code"));
+        assertEquals(KeyInjector.SKIPPED, keys(report).get(1).get("status"));
+        assertEquals(Arrays.asList("m2:2"), pci.writes);
+    }
+
+    @Test
+    public void rewrittenMasterForcesItsWorkingKeys() {
+        FakePci pci = new FakePci();
+        new KeyInjector(pci).load(manifest());
+        pci.keys.remove("10:0");
+        pci.writes.clear();
+        new KeyInjector(pci).load(manifest());
+        assertEquals(Arrays.asList("m0:0", "w0:1"), pci.writes);
+    }
+
+    @Test
+    public void forcedIpekIsWritten() {
+        FakePci pci = new FakePci();
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", "dukpt");
+        map.put("index", 1);
+        map.put("key", key(9));
+        map.put("ksn", new byte[10]);
+        map.put("force", true);
+        Map<String, Object> report = new KeyInjector(pci).load(KeyInjector.fromMaps(Arrays.asList(map)));
+        assertEquals(Arrays.asList("d1"), pci.writes);
+        assertEquals(1, report.get("written"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateSlotIsRejected() {
+        new KeyInjector(new FakePci()).load(Arrays.asList(
+                new KeyInjector.Entry(null, KeyInjector.TYPE_PIN, true, 0, 0, key(1), 0, null, null, false),
+                new KeyInjector.Entry(null, KeyInjector.TYPE_PIN, true, 0, 0, key(2), 0, null, null, false)));
+    }
+}
@@ -0,0 +1,164 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class M1CardReaderTest {
+    private static final byte[] DEFAULT_KEY = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+    private static final byte[] TRANSIT_KEY = {0x10, 0x20, 0x30, 0x40, 0x50, 0x60};
+
+    /**
+     * 1K card: sector 1 only opens with the transit key as key B, sector 2 with no key.
+     */
+    private static class FakeCard extends FakePicc implements M1CardReader.Card {
+        final byte[][] blocks = new byte[64][16];
+        int authentications;
+        int writes;
+        int authenticatedSector = -1;
+        // sector 0 rekeyed to the transit key as key A
+        boolean sector0Rekeyed;
+
+        FakeCard() {
+            for (int b = 0; b < 64; b++) {
+                Arrays.fill(blocks[b], (byte) b);
+            }
+        }
+
+        @Override
+        public int activate(byte[] cardType, byte[] serialNo) {
+            authenticatedSector = -1;
+            return activate((byte) 'M', cardType, serialNo);
+        }
+
+        @Override
+        public int authenticate(byte keyType, int block, byte[] key, byte[] uid) {
+            authentications++;
+            int sector = M1CardReader.sectorOf(block);
+            boolean ok;
+            if (sector == 1) {
+                ok = keyType == M1CardReader.KEY_B && Arrays.equals(key, TRANSIT_KEY);
+            } else if (sector == 0 && sector0Rekeyed) {
+                ok = keyType == M1CardReader.KEY_A && Arrays.equals(key, TRANSIT_KEY);
+            } else {
+                ok = sector != 2 && Arrays.equals(key, DEFAULT_KEY);
+            }
+            authenticatedSector = ok ? sector : -1;
+            return ok ? 0 : -3523;
+        }
+
+        @Override
+        public int readBlock(int block, byte[] value) {
+            if (M1CardReader.sectorOf(block) != authenticatedSector) {
+                return -3522;
+            }
+            System.arraycopy(blocks[block], 0, value, 0, 16);
+            return 0;
+        }
+
+        @Override
+        public int writeBlock(int block, byte[] value) {
+            if (M1CardReader.sectorOf(block) != authenticatedSector) {
+                return -3522;
+            }
+            writes++;
+            System.arraycopy(value, 0, blocks[block], 0, 16);
+            return 0;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        M1CardReader.clearKeyCache();
+    }
+
+    @Test
+    public void layout_covers1kAnd4k() {
+        assertEquals(4, M1CardReader.firstBlock(1));
+        assertEquals(128, M1CardReader.firstBlock(32));
+        assertEquals(144, M1CardReader.firstBlock(33));
+        assertEquals(33, M1CardReader.sectorOf(159));
+        assertEquals(true, M1CardReader.isTrailer(7));
+        assertEquals(true, M1CardReader.isTrailer(143));
+        assertEquals(false, M1CardReader.isTrailer(142));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void read_reportsKeysPerSectorAndCachesThem() {
+        FakeCard card = new FakeCard();
+        List<byte[]> keys = Arrays.asList(DEFAULT_KEY, TRANSIT_KEY);
+        Map<String, Object> result = new M1CardReader(card).read(keys, 0, 3);
+
+        assertArrayEquals(FakePicc.UID, (byte[]) result.get("uid"));
+        List<Map<String, Object>> sectors = (List<Map<String, Object>>) result.get("sectors");
+        assertEquals("A", sectors.get(0).get("keyType"));
+        assertEquals("B", sectors.get(1).get("keyType"));
+        assertEquals(1, sectors.get(1).get("keyIndex"));
+        assertEquals(-3523, sectors.get(2).get("error"));
+        List<byte[]> blocks = (List<byte[]>) sectors.get(3).get("blocks");
+        assertEquals(4, blocks.size());
+        assertArrayEquals(card.blocks[13], blocks.get(1));
+
+        card.authentications = 0;
+        new M1CardReader(card).read(keys, 0, 1);
+        assertEquals(2, card.authentications);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void read_doesNotRetryACachedKeyThatFailed() {
+        FakeCard card = new FakeCard();
+        List<byte[]> keys = Arrays.asList(DEFAULT_KEY, TRANSIT_KEY);
+        new M1CardReader(card).read(keys, 0, 0);
+
+        card.sector0Rekeyed = true;
+        card.authentications = 0;
+        Map<String, Object> result = new M1CardReader(card).read(keys, 0, 0);
+
+        // cached default key A, default key B, transit key A
+        assertEquals(3, card.authentications);
+        Map<String, Object> sector = ((List<Map<String, Object>>) result.get("sectors")).get(0);
+        assertEquals(1, sector.get("keyIndex"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void read_rejectsKeysThatAreNotSixBytes() {
+        new M1CardReader(new FakeCard()).read(Arrays.asList(DEFAULT_KEY, new byte[4]), 0, 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void write_onlyTouchesChangedBlocks() {
+        FakeCard card = new FakeCard();
+        Map<Integer, byte[]> blocks = new HashMap<>();
+        blocks.put(4, card.blocks[4].clone());
+        byte[] changed = new byte[16];
+        changed[0] = 0x42;
+        blocks.put(5, changed);
+        blocks.put(7, new byte[16]);
+        blocks.put(0, new byte[16]);
+        blocks.put(9, new byte[16]);
+
+        Map<String, Object> result = new M1CardReader(card)
+                .write(Arrays.asList(DEFAULT_KEY, TRANSIT_KEY), blocks, false);
+
+        assertEquals(Arrays.asList(5), result.get("written"));
+        assertEquals(Arrays.asList(4), result.get("unchanged"));
+        Map<Integer, Integer> failed = (Map<Integer, Integer>) result.get("failed");
+        assertEquals(Integer.valueOf(-1), failed.get(7));
+        assertEquals(Integer.valueOf(-1), failed.get(0));
+        assertEquals(Integer.valueOf(-3523), failed.get(9));
+        assertEquals(1, card.writes);
+        assertArrayEquals(changed, card.blocks[5]);
+        assertNull(result.get("error"));
+    }
+}
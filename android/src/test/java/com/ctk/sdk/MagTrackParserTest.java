@@ -0,0 +1,86 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class MagTrackParserTest {
+    private static final String TRACK1 = "%B4761739001010119^VISA TEST/CARD          ^2812201000000000000000?";
+    private static final String TRACK2 = ";4761739001010119=28122010000000000000?";
+
+    private static byte[] mcrBuffer(String track) {
+        // McrRead fills a zeroed 256 byte buffer
+        return Arrays.copyOf(track.getBytes(), 256);
+    }
+
+    private static String field(byte[] buf, int offset, int length) {
+        return new String(buf, offset, length);
+    }
+
+    @Test
+    public void parsesTrack1InPlace() {
+        byte[] buf = mcrBuffer(TRACK1);
+        MagTrackParser parser = new MagTrackParser();
+
+        assertTrue(parser.parseTrack1(buf, 0, buf.length));
+
+        assertEquals("4761739001010119", field(buf, parser.panOffset(), parser.panLength()));
+        assertEquals("VISA TEST/CARD", field(buf, parser.nameOffset(), parser.nameLength()));
+        assertEquals(2812, parser.expiry());
+        assertEquals(201, parser.serviceCode());
+        assertEquals("000000000000000", field(buf, parser.discretionaryOffset(), parser.discretionaryLength()));
+    }
+
+    @Test
+    public void parsesTrack2WithAndWithoutSentinels() {
+        MagTrackParser parser = new MagTrackParser();
+        byte[] buf = mcrBuffer(TRACK2);
+        assertTrue(parser.parseTrack2(buf, 0, buf.length));
+        assertEquals(1, parser.panOffset());
+        assertEquals(16, parser.panLength());
+        assertEquals(2812, parser.expiry());
+        assertEquals(201, parser.serviceCode());
+
+        buf = mcrBuffer("4761739001010119D2812201");
+        assertTrue(parser.parseTrack2(buf, 0, buf.length));
+        assertEquals(0, parser.panOffset());
+        assertEquals(201, parser.serviceCode());
+        assertEquals(0, parser.discretionaryLength());
+    }
+
+    @Test
+    public void missingExpiryAndServiceCodeAreReportedAbsent() {
+        MagTrackParser parser = new MagTrackParser();
+        byte[] buf = mcrBuffer(";1234567890=");
+        assertTrue(parser.parseTrack2(buf, 0, buf.length));
+        assertEquals(-1, parser.expiryOffset());
+        assertEquals(-1, parser.serviceCode());
+    }
+
+    @Test
+    public void masksPan() {
+        byte[] buf = mcrBuffer(TRACK2);
+        MagTrackParser parser = new MagTrackParser();
+        parser.parseTrack2(buf, 0, buf.length);
+        char[] masked = new char[32];
+
+        int n = parser.maskedPan(masked, 0);
+
+        assertEquals("476173******0119", new String(masked, 0, n));
+    }
+
+    @Test
+    public void rejectsMalformedTracks() {
+        MagTrackParser parser = new MagTrackParser();
+        byte[] buf = mcrBuffer("%A123^NAME^");
+        assertFalse(parser.parseTrack1(buf, 0, buf.length));
+        buf = mcrBuffer("%B4761739001010119");
+        assertFalse(parser.parseTrack1(buf, 0, buf.length));
+        buf = mcrBuffer(";=2812");
+        assertFalse(parser.parseTrack2(buf, 0, buf.length));
+    }
+}
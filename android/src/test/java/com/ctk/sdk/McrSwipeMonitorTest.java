@@ -0,0 +1,181 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class McrSwipeMonitorTest {
+    private static class FakeReader implements McrSwipeMonitor.Reader {
+        volatile boolean swiped;
+        volatile int openResult;
+        volatile int readStatus = McrSwipeMonitor.TRACK1_OK | McrSwipeMonitor.TRACK2_OK;
+        // ciphertext for track 2 instead of the plain tracks
+        volatile byte[] cipher2;
+        final AtomicInteger resets = new AtomicInteger();
+        final AtomicInteger closes = new AtomicInteger();
+
+        @Override
+        public int open() {
+            return openResult;
+        }
+
+        @Override
+        public int check() {
+            return swiped ? 0 : -1;
+        }
+
+        @Override
+        public int read(byte keyNo, byte mode, byte[] track1, byte[] track2, byte[] track3) {
+            byte[] t1 = "%B5413330089020029^MC TEST^30121010000?".getBytes();
+            byte[] t2 = cipher2 != null ? cipher2 : ";5413330089020029=3012101000?".getBytes();
+            System.arraycopy(t1, 0, track1, 0, t1.length);
+            System.arraycopy(t2, 0, track2, 0, t2.length);
+            return readStatus;
+        }
+
+        @Override
+        public int reset() {
+            resets.incrementAndGet();
+            swiped = false;
+            return 0;
+        }
+
+        @Override
+        public int close() {
+            closes.incrementAndGet();
+            return 0;
+        }
+    }
+
+    private static class RecordingListener implements McrSwipeMonitor.Listener {
+        final CountDownLatch swipes = new CountDownLatch(2);
+        final CountDownLatch error = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        volatile int status;
+        volatile String pan;
+        volatile int expiry;
+        volatile int panOffset;
+        volatile boolean hasTrack3;
+        volatile int track2Length;
+
+        @Override
+        public void onSwipe(int status, McrSwipeMonitor.Swipe swipe) {
+            this.status = status;
+            panOffset = swipe.parsed2.panOffset();
+            if (swipe.hasTrack2 && swipe.parsed2.panOffset() >= 0) {
+                pan = new String(swipe.track2, swipe.parsed2.panOffset(), swipe.parsed2.panLength());
+                expiry = swipe.parsed2.expiry();
+            }
+            hasTrack3 = swipe.hasTrack3;
+            track2Length = swipe.track2Length;
+            count.incrementAndGet();
+            swipes.countDown();
+        }
+
+        @Override
+        public void onError(int code) {
+            error.countDown();
+        }
+    }
+
+    private static void awaitCount(AtomicInteger counter, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (counter.get() < count) {
+            assertTrue("timed out waiting for " + count, System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void emitsOneEventPerSwipeAndResets() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        RecordingListener listener = new RecordingListener();
+        McrSwipeMonitor monitor = new McrSwipeMonitor(reader, listener).setIntervals(1, 5, 100);
+
+        monitor.start();
+        // the monitor resets the reader when it starts, which would clear the swipe
+        awaitCount(reader.resets, 1);
+        reader.swiped = true;
+        awaitCount(listener.count, 1);
+        Thread.sleep(20);
+        assertEquals(1, listener.count.get());
+
+        reader.readStatus = 0;
+        reader.swiped = true;
+        assertTrue(listener.swipes.await(2, TimeUnit.SECONDS));
+        monitor.stop();
+        assertTrue(monitor.awaitStopped(1000));
+
+        assertEquals(2, listener.count.get());
+        assertEquals(0, listener.status);
+        assertEquals("5413330089020029", listener.pan);
+        assertEquals(3012, listener.expiry);
+        assertFalse(listener.hasTrack3);
+        // one reset on open, one per swipe
+        assertEquals(3, reader.resets.get());
+        assertEquals(1, reader.closes.get());
+        assertFalse(monitor.isRunning());
+    }
+
+    @Test
+    public void encryptedTracksAreNotParsed() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        RecordingListener listener = new RecordingListener();
+        McrSwipeMonitor monitor = new McrSwipeMonitor(reader, listener).setEncrypted(true, 1).setIntervals(1, 5, 100);
+
+        monitor.start();
+        awaitCount(reader.resets, 1);
+        reader.swiped = true;
+        awaitCount(listener.count, 1);
+        monitor.stop();
+
+        assertEquals(-1, listener.panOffset);
+        assertNull(listener.pan);
+    }
+
+    @Test
+    public void encryptedTrackKeepsZeroBytes() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        reader.cipher2 = new byte[]{0x3A, 0x00, 0x51, 0x00, 0x00, 0x7C, 0x19, 0x42, 0x00, 0x05, 0x00, 0x00, 0x00, 0x00,
+                0x00, 0x00};
+        RecordingListener listener = new RecordingListener();
+        McrSwipeMonitor monitor = new McrSwipeMonitor(reader, listener).setEncrypted(true, 1).setIntervals(1, 5, 100);
+
+        monitor.start();
+        awaitCount(reader.resets, 1);
+        reader.swiped = true;
+        awaitCount(listener.count, 1);
+        monitor.stop();
+
+        // two blocks, the second ending in zeros
+        assertEquals(16, listener.track2Length);
+    }
+
+    @Test
+    public void restartAfterOpenFailureOpensAgain() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        reader.openResult = -1;
+        RecordingListener listener = new RecordingListener();
+        McrSwipeMonitor monitor = new McrSwipeMonitor(reader, listener).setIntervals(1, 5, 100);
+
+        monitor.start();
+        assertTrue(listener.error.await(1, TimeUnit.SECONDS));
+        assertTrue(monitor.awaitStopped(1000));
+        assertFalse(monitor.isRunning());
+
+        reader.openResult = 0;
+        monitor.start();
+        awaitCount(reader.resets, 1);
+        assertTrue(monitor.isRunning());
+        monitor.stop();
+        assertTrue(monitor.awaitStopped(1000));
+        assertEquals(1, reader.closes.get());
+    }
+}
@@ -0,0 +1,183 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class MifarePlusSessionTest {
+    /**
+     * 2K card accepting at most maxBlocks blocks per read; sector 5 needs key store entry 7.
+     */
+    private static class FakeCard extends FakePicc implements MifarePlusSession.Card {
+        final byte[][] blocks = new byte[128][16];
+        int firstAuthentications;
+        int authentications;
+        int reads;
+        int writes;
+        int failNextTransfers;
+        int maxBlocks = 2;
+        int authenticatedSector = -1;
+
+        FakeCard() {
+            for (int b = 0; b < blocks.length; b++) {
+                for (int i = 0; i < 16; i++) {
+                    blocks[b][i] = (byte) (b + i);
+                }
+            }
+        }
+
+        @Override
+        public int activate() {
+            authenticatedSector = -1;
+            return super.activate();
+        }
+
+        @Override
+        public int authenticate(boolean first, int keyBlock, int keyNumber, int keyVersion) {
+            authentications++;
+            if (first) {
+                firstAuthentications++;
+            }
+            int sector = (keyBlock - 0x4000) / 2;
+            boolean ok = keyNumber == (sector == 5 ? 7 : 1);
+            authenticatedSector = ok ? sector : -1;
+            return ok ? 0 : -3601;
+        }
+
+        @Override
+        public int read(int block, int count, byte[] dst) {
+            reads++;
+            if (failNextTransfers > 0) {
+                failNextTransfers--;
+                authenticatedSector = -1;
+                return -3510;
+            }
+            if (count > maxBlocks) {
+                return -3620;
+            }
+            for (int i = 0; i < count; i++) {
+                if (M1CardReader.sectorOf(block + i) != authenticatedSector) {
+                    return -3622;
+                }
+                System.arraycopy(blocks[block + i], 0, dst, i * 16, 16);
+            }
+            return 0;
+        }
+
+        @Override
+        public int write(int block, int count, byte[] src) {
+            writes++;
+            if (failNextTransfers > 0) {
+                failNextTransfers--;
+                authenticatedSector = -1;
+                return -3510;
+            }
+            for (int i = 0; i < count; i++) {
+                if (M1CardReader.sectorOf(block + i) != authenticatedSector) {
+                    return -3622;
+                }
+                System.arraycopy(src, i * 16, blocks[block + i], 0, 16);
+            }
+            return 0;
+        }
+    }
+
+    private static MifarePlusSession session(FakeCard card) {
+        MifarePlusSession session = new MifarePlusSession(card, 1, 0, false);
+        session.setSectorKey(5, 7, 0);
+        return session;
+    }
+
+    @Test
+    public void readsWholeCardAndKeepsTheChunkSizeTheCardAccepts() {
+        FakeCard card = new FakeCard();
+        MifarePlusSession session = session(card);
+        byte[] data = new byte[128 * 16];
+
+        assertEquals(0, session.read(0, 128, data, 0));
+
+        for (int b = 0; b < 128; b++) {
+            byte[] block = new byte[16];
+            System.arraycopy(data, b * 16, block, 0, 16);
+            assertArrayEquals(card.blocks[b], block);
+        }
+        // the first 4 block chunk is tried 3 times, each on a fresh session, then
+        // every sector is read in 2 block chunks after one following authentication
+        assertEquals(3, card.activations);
+        assertEquals(3, card.firstAuthentications);
+        assertEquals(3 + 31, card.authentications);
+        assertEquals(3 + 64, card.reads);
+        assertEquals(2, session.getReadChunk());
+        assertEquals(-1, session.getFailedBlock());
+    }
+
+    @Test
+    public void retriesTransientErrorOnFreshSession() {
+        FakeCard card = new FakeCard();
+        MifarePlusSession session = session(card);
+        session.setMaxReadBlocks(4);
+        card.maxBlocks = 4;
+        byte[] data = new byte[8 * 16];
+        card.failNextTransfers = 1;
+
+        assertEquals(0, session.read(8, 8, data, 0));
+
+        assertEquals(2, card.activations);
+        assertEquals(2, card.firstAuthentications);
+        assertEquals(4, session.getReadChunk());
+        assertEquals(card.blocks[15][0], data[7 * 16]);
+    }
+
+    @Test
+    public void readChunkFitsTheSignedBlockCount() {
+        MifarePlusSession session = session(new FakeCard());
+        session.setMaxReadBlocks(MifarePlusSession.MAX_READ_BLOCKS);
+        assertEquals(127, session.getReadChunk());
+        try {
+            session.setMaxReadBlocks(128);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(127, session.getReadChunk());
+    }
+
+    @Test
+    public void writesInChunksOfThreeAndRefusesProtectedBlocks() {
+        FakeCard card = new FakeCard();
+        MifarePlusSession session = session(card);
+        byte[] data = new byte[6 * 16];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) 0xA5;
+        }
+
+        assertEquals(MifarePlusSession.ERR_REFUSED, session.write(0, 1, data, 0, true));
+        assertEquals(0, session.getFailedBlock());
+        assertEquals(MifarePlusSession.ERR_REFUSED, session.write(4, 4, data, 0, false));
+        assertEquals(7, session.getFailedBlock());
+        assertEquals(0, card.writes);
+
+        assertEquals(0, session.write(20, 3, data, 0, false));
+        assertEquals(0, session.write(16, 6, data, 0, true));
+        // 20-22, then 16-18, 19 and 20-21: chunks never cross a sector
+        assertEquals(4, card.writes);
+        assertEquals((byte) 0xA5, card.blocks[19][0]);
+        assertEquals((byte) 0xA5, card.blocks[21][15]);
+        assertEquals(23, card.blocks[23][0]);
+    }
+
+    @Test
+    public void stopsAtSectorWhoseKeyIsRejected() {
+        FakeCard card = new FakeCard();
+        MifarePlusSession session = new MifarePlusSession(card, 1, 0, false);
+        card.maxBlocks = 4;
+        byte[] data = new byte[8 * 16];
+
+        assertEquals(-3601, session.read(16, 8, data, 0));
+
+        assertEquals(20, session.getFailedBlock());
+        assertEquals(card.blocks[19][3], data[3 * 16 + 3]);
+        assertEquals(15, session.getReadChunk());
+    }
+}
@@ -0,0 +1,109 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class NdefReaderTest {
+    private static byte[] hex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        return Arrays.copyOf(out, ByteUtil.decodeHex(s, 0, s.length(), out, 0));
+    }
+
+    // U record "https://example.com" followed by T record "en" "Hi"
+    private static final String URI_AND_TEXT =
+            "91 01 0C 55 04 65 78 61 6D 70 6C 65 2E 63 6F 6D"
+                    + " 51 01 05 54 02 65 6E 48 69";
+
+    @Test
+    public void walksRecordsInPlace() {
+        byte[] buf = hex(URI_AND_TEXT);
+        NdefReader reader = new NdefReader().reset(buf, 0, buf.length);
+
+        assertTrue(reader.next());
+        assertTrue(reader.isMessageBegin());
+        assertTrue(reader.isWellKnown('U'));
+        assertEquals(4, reader.payloadOffset());
+        assertEquals(12, reader.payloadLength());
+        assertEquals("https://example.com",
+                NdefReader.uri(buf, reader.payloadOffset(), reader.payloadLength()));
+
+        assertTrue(reader.next());
+        assertTrue(reader.isMessageEnd());
+        assertTrue(reader.isWellKnown('T'));
+        String[] text = NdefReader.text(buf, reader.payloadOffset(), reader.payloadLength());
+        assertEquals("en", text[0]);
+        assertEquals("Hi", text[1]);
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void unwrapsTlvAndStopsAtMessageEnd() {
+        // NDEF TLV, message, terminator TLV and trailing zeroes from the tag memory
+        byte[] buf = hex("03 19 " + URI_AND_TEXT + " FE 00 00 00");
+
+        List<Map<String, Object>> records = NdefReader.toMaps(buf, 0, buf.length);
+
+        assertEquals(2, records.size());
+        assertEquals("https://example.com", records.get(0).get("uri"));
+        assertEquals("Hi", records.get(1).get("text"));
+        assertEquals(NdefReader.TNF_WELL_KNOWN, records.get(1).get("tnf"));
+    }
+
+    @Test
+    public void decodesLongRecordIdAndBinaryPayload() {
+        // MB ME, not SR, IL, MIME "a/b", id "7", 3 byte payload holding 00 and FF
+        byte[] buf = hex("CA 03 00 00 00 03 01 61 2F 62 37 00 FF 10");
+
+        Map<String, Object> record = NdefReader.toMaps(buf, 0, buf.length).get(0);
+
+        assertEquals(NdefReader.TNF_MIME_MEDIA, record.get("tnf"));
+        assertArrayEquals("a/b".getBytes(), (byte[]) record.get("type"));
+        assertArrayEquals("7".getBytes(), (byte[]) record.get("id"));
+        assertArrayEquals(new byte[]{0x00, (byte) 0xFF, 0x10}, (byte[]) record.get("payload"));
+    }
+
+    @Test
+    public void joinsChunkedRecord() {
+        // first chunk carries the type, the middle and last ones are TNF unchanged
+        byte[] buf = hex("B2 03 02 61 2F 62 01 02 36 00 01 03 56 00 02 04 05");
+
+        List<Map<String, Object>> records = NdefReader.toMaps(buf, 0, buf.length);
+
+        assertEquals(1, records.size());
+        assertArrayEquals("a/b".getBytes(), (byte[]) records.get(0).get("type"));
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, (byte[]) records.get(0).get("payload"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void decodesSmartPosterContent() {
+        byte[] buf = hex("D1 02 19 53 70 " + URI_AND_TEXT);
+
+        Map<String, Object> poster = NdefReader.toMaps(buf, 0, buf.length).get(0);
+        List<Map<String, Object>> content = (List<Map<String, Object>>) poster.get("records");
+
+        assertEquals(2, content.size());
+        assertEquals("https://example.com", content.get(0).get("uri"));
+        assertEquals("en", content.get(1).get("language"));
+    }
+
+    @Test
+    public void rejectsTruncatedRecord() {
+        byte[] buf = hex("D1 01 0C 55 04 65 78");
+        try {
+            NdefReader.toMaps(buf, 0, buf.length);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
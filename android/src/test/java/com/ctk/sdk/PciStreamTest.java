@@ -0,0 +1,201 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class PciStreamTest {
+    private static final byte[] KEY = {0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF};
+
+    /**
+     * Single DES in software, with the call sizes the secure processor accepts.
+     */
+    private static class FakePci implements PciStream.Pci {
+        int calls;
+        int ksnAdvances;
+        int failAt = -1;
+
+        @Override
+        public int mac(byte keyNo, byte[] in, int len, byte[] mac, byte mode) {
+            if (++calls == failAt) {
+                return -7011;
+            }
+            assertEquals(0, len % 8);
+            byte[] data = Arrays.copyOf(in, len);
+            if (mode == PciStream.MAC_XOR) {
+                byte[] sum = new byte[8];
+                for (int off = 0; off < len; off += 8) {
+                    for (int i = 0; i < 8; i++) {
+                        sum[i] ^= data[off + i];
+                    }
+                }
+                data = sum;
+            }
+            byte[] cbc = crypt("DES/CBC/NoPadding", true, data, new byte[8]);
+            System.arraycopy(cbc, cbc.length - 8, mac, 0, 8);
+            return 0;
+        }
+
+        @Override
+        public int des(byte keyNo, byte[] in, int len, byte[] out, byte mode) {
+            calls++;
+            byte[] r = crypt("DES/ECB/NoPadding", mode == 1, Arrays.copyOf(in, len), null);
+            System.arraycopy(r, 0, out, 0, len);
+            return 0;
+        }
+
+        @Override
+        public int dukptDes(int keyId, boolean holdKsn, boolean encrypt, byte[] in, int len, byte[] iv, byte[] out,
+                            byte[] ksn) {
+            calls++;
+            ksn[9] = (byte) ksnAdvances;
+            if (!holdKsn) {
+                ksnAdvances++;
+            }
+            byte[] r = crypt("DES/CBC/NoPadding", encrypt, Arrays.copyOf(in, len), iv);
+            System.arraycopy(r, 0, out, 0, len);
+            return 0;
+        }
+    }
+
+    private static byte[] crypt(String transformation, boolean encrypt, byte[] data, byte[] iv) {
+        try {
+            Cipher c = Cipher.getInstance(transformation);
+            SecretKeySpec key = new SecretKeySpec(KEY, "DES");
+            int mode = encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+            if (iv == null) {
+                c.init(mode, key);
+            } else {
+                c.init(mode, key, new IvParameterSpec(iv));
+            }
+            return c.doFinal(data);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] payload(int length) {
+        byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) {
+            b[i] = (byte) (i * 31 + 7);
+        }
+        return b;
+    }
+
+    private static byte[] padded(byte[] data) {
+        return Arrays.copyOf(data, Math.max(8, (data.length + 7) / 8 * 8));
+    }
+
+    @Test
+    public void chunkedCbcMacEqualsSingleCall() throws IOException {
+        byte[] data = payload(1003);
+        FakePci pci = new FakePci();
+        PciStream s = PciStream.mac(pci, 1, PciStream.MAC_CBC, 64);
+        // odd write sizes cross chunk boundaries
+        for (int off = 0; off < data.length; off += 100) {
+            s.write(data, off, Math.min(100, data.length - off));
+        }
+        s.close();
+        byte[] expected = new byte[8];
+        new FakePci().mac((byte) 1, padded(data), padded(data).length, expected, (byte) PciStream.MAC_CBC);
+        assertArrayEquals(expected, s.getResult());
+        assertEquals(16, pci.calls);
+    }
+
+    @Test
+    public void xorMacCallsProcessorOnce() throws IOException {
+        byte[] data = payload(640);
+        FakePci pci = new FakePci();
+        PciStream s = PciStream.mac(pci, 1, PciStream.MAC_XOR, 64);
+        s.write(data);
+        s.close();
+        byte[] expected = new byte[8];
+        new FakePci().mac((byte) 1, data, data.length, expected, (byte) PciStream.MAC_XOR);
+        assertArrayEquals(expected, s.getResult());
+        assertEquals(1, pci.calls);
+    }
+
+    @Test
+    public void desRoundTripsThroughChunks() throws IOException {
+        byte[] data = payload(520);
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        PciStream enc = PciStream.des(new FakePci(), 2, true, 64, cipher);
+        enc.write(data);
+        enc.close();
+        assertArrayEquals(crypt("DES/ECB/NoPadding", true, data, null), cipher.toByteArray());
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        PciStream dec = PciStream.des(new FakePci(), 2, false, 64, plain);
+        dec.write(cipher.toByteArray());
+        dec.close();
+        assertArrayEquals(data, plain.toByteArray());
+    }
+
+    @Test
+    public void dukptChainsIvAndAdvancesKsnOnce() throws IOException {
+        byte[] data = payload(300);
+        byte[] iv = new byte[]{0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, (byte) 0x88};
+        FakePci pci = new FakePci();
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        PciStream enc = PciStream.dukptDes(pci, 0, true, iv, 64, cipher, null);
+        enc.write(data);
+        enc.close();
+        assertArrayEquals(crypt("DES/CBC/NoPadding", true, padded(data), iv), cipher.toByteArray());
+        assertEquals(5, pci.calls);
+        assertEquals(1, pci.ksnAdvances);
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        PciStream dec = PciStream.dukptDes(new FakePci(), 0, false, iv, 64, plain, null);
+        dec.write(cipher.toByteArray());
+        dec.close();
+        assertArrayEquals(padded(data), plain.toByteArray());
+    }
+
+    @Test
+    public void failedCallIsReported() throws IOException {
+        FakePci pci = new FakePci();
+        pci.failAt = 2;
+        PciStream s = PciStream.mac(pci, 1, PciStream.MAC_CBC, 8);
+        try {
+            s.write(payload(64));
+            s.close();
+            fail();
+        } catch (IOException e) {
+            assertEquals(-7011, s.getError());
+        }
+        assertTrue(pci.calls < 8);
+    }
+
+    @Test
+    public void abortSendsNoFinalChunk() throws IOException {
+        FakePci pci = new FakePci();
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        PciStream s = PciStream.dukptDes(pci, 0, true, new byte[8], 64, cipher, null);
+        s.write(payload(100));
+        s.abort();
+        assertEquals(1, pci.calls);
+        assertEquals(0, pci.ksnAdvances);
+        assertEquals(64, cipher.size());
+        assertNull(s.getKsn());
+        try {
+            s.write(1);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void retailMacIsRejected() {
+        PciStream.mac(new FakePci(), 1, PciStream.MAC_X919, 64);
+    }
+}
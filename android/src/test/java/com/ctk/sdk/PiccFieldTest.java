@@ -0,0 +1,38 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PiccFieldTest {
+    @Test
+    public void activateOpensAClosedFieldAndRetriesOnce() {
+        final AtomicInteger opens = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        int ret = PiccField.activate(() -> opens.incrementAndGet() == 1 ? 0 : -1,
+                () -> opens.get() == 0 ? PiccField.ERR_MODULE_NOT_OPENED : calls.incrementAndGet() - 1);
+        assertEquals(0, ret);
+        assertEquals(1, opens.get());
+
+        ret = PiccField.activate(() -> -1, () -> PiccField.ERR_MODULE_NOT_OPENED);
+        assertEquals(PiccField.ERR_MODULE_NOT_OPENED, ret);
+        assertEquals(-3501, PiccField.activate(() -> 0, () -> -3501));
+    }
+
+    @Test
+    public void heldFieldIsNotClosed() {
+        final AtomicInteger closes = new AtomicInteger();
+        PiccField.hold();
+        try {
+            assertFalse(PiccField.closeIfUnused(closes::incrementAndGet));
+        } finally {
+            PiccField.release();
+        }
+        assertTrue(PiccField.closeIfUnused(closes::incrementAndGet));
+        assertEquals(1, closes.get());
+    }
+}
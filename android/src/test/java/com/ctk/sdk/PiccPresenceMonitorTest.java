@@ -0,0 +1,210 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PiccPresenceMonitorTest {
+    private static class FakeReader extends FakePicc implements PiccPresenceMonitor.Reader {
+        final AtomicInteger checks = new AtomicInteger();
+        final AtomicInteger removes = new AtomicInteger();
+
+        FakeReader() {
+            fieldOpen = false;
+            cardPresent = false;
+        }
+
+        @Override
+        public int check(byte mode, byte[] cardType, byte[] serialNo) {
+            checks.incrementAndGet();
+            return activate((byte) 'C', cardType, serialNo);
+        }
+
+        @Override
+        public int remove() {
+            removes.incrementAndGet();
+            return cardPresent ? 0 : -1;
+        }
+    }
+
+    private static class RecordingListener implements PiccPresenceMonitor.Listener {
+        final CountDownLatch arrived = new CountDownLatch(1);
+        final CountDownLatch removed = new CountDownLatch(1);
+        final CountDownLatch error = new CountDownLatch(1);
+        volatile byte[] uid;
+        volatile byte[] cardType;
+
+        @Override
+        public void onCardArrived(byte[] cardType, byte[] uid) {
+            this.cardType = cardType;
+            this.uid = uid;
+            arrived.countDown();
+        }
+
+        @Override
+        public void onCardRemoved(byte[] uid, long presentMillis) {
+            removed.countDown();
+        }
+
+        @Override
+        public void onError(int code) {
+            error.countDown();
+        }
+    }
+
+    @Test
+    public void reportsArrivalAndRemovalWithFieldOpenedOnce() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        RecordingListener listener = new RecordingListener();
+        PiccPresenceMonitor monitor = new PiccPresenceMonitor(reader, listener).setIntervals(1, 5, 50, 1);
+        monitor.start();
+
+        reader.cardPresent = true;
+        assertTrue(listener.arrived.await(1, TimeUnit.SECONDS));
+        assertArrayEquals(FakePicc.UID, listener.uid);
+        assertArrayEquals(new byte[]{'A', 'C'}, listener.cardType);
+
+        reader.cardPresent = false;
+        assertTrue(listener.removed.await(1, TimeUnit.SECONDS));
+
+        monitor.stop();
+        assertFalse(monitor.isRunning());
+        assertTrue(monitor.awaitStopped(1000));
+        assertEquals(1, reader.getOpens());
+        assertEquals(1, reader.getCloses());
+    }
+
+    @Test
+    public void removalIsNotProbedDuringACommandSequence() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        reader.cardPresent = true;
+        RecordingListener listener = new RecordingListener();
+        PiccPresenceMonitor monitor = new PiccPresenceMonitor(reader, listener).setIntervals(1, 5, 50, 10);
+        monitor.start();
+        assertTrue(listener.arrived.await(1, TimeUnit.SECONDS));
+
+        // APDUs every few milliseconds from another caller
+        long end = System.currentTimeMillis() + 150;
+        // a probe that had already started when the sequence began
+        PiccField.touch();
+        Thread.sleep(2);
+        PiccField.touch();
+        int before = reader.removes.get();
+        while (System.currentTimeMillis() < end) {
+            PiccField.touch();
+            Thread.sleep(2);
+        }
+        assertEquals(before, reader.removes.get());
+
+        reader.cardPresent = false;
+        assertTrue(listener.removed.await(1, TimeUnit.SECONDS));
+        monitor.stop();
+        assertTrue(monitor.awaitStopped(1000));
+    }
+
+    @Test
+    public void backsOffWhenIdle() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        PiccPresenceMonitor monitor = new PiccPresenceMonitor(reader, new RecordingListener())
+                .setIntervals(1, 40, 20, 1);
+        monitor.start();
+        Thread.sleep(100);
+        int early = reader.checks.get();
+        Thread.sleep(400);
+        int late = reader.checks.get() - early;
+        monitor.stop();
+        // 400ms at the 40ms idle interval is about 10 polls, far fewer than the early fast polls
+        assertTrue("idle polls " + late, late <= 15);
+    }
+
+    @Test
+    public void reportsOpenFailure() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        synchronized (reader) {
+            reader.openResult = -3500;
+        }
+        RecordingListener listener = new RecordingListener();
+        PiccPresenceMonitor monitor = new PiccPresenceMonitor(reader, listener);
+        monitor.start();
+        assertTrue(listener.error.await(1, TimeUnit.SECONDS));
+        monitor.stop();
+        assertEquals(0, reader.checks.get());
+    }
+
+    @Test
+    public void restartOpensAfterThePreviousPollerClosed() throws InterruptedException {
+        final CountDownLatch checking = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch reopened = new CountDownLatch(2);
+        final StringBuffer calls = new StringBuffer();
+        FakeReader reader = new FakeReader() {
+            @Override
+            public int open() {
+                calls.append('o');
+                reopened.countDown();
+                return super.open();
+            }
+
+            @Override
+            public int check(byte mode, byte[] cardType, byte[] serialNo) {
+                checking.countDown();
+                // a call stuck behind the service lock, which interrupt does not end
+                boolean interrupted = false;
+                long deadline = System.currentTimeMillis() + 5000;
+                while (release.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                    try {
+                        release.await(10, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.check(mode, cardType, serialNo);
+            }
+
+            @Override
+            public int close() {
+                calls.append('c');
+                return super.close();
+            }
+        };
+        PiccPresenceMonitor monitor = new PiccPresenceMonitor(reader, new RecordingListener());
+        monitor.start();
+        assertTrue(checking.await(1, TimeUnit.SECONDS));
+        monitor.stop();
+        monitor.start();
+        Thread.sleep(20);
+        assertEquals("o", calls.toString());
+        release.countDown();
+        assertTrue(reopened.await(1, TimeUnit.SECONDS));
+        monitor.stop();
+        assertTrue(monitor.awaitStopped(1000));
+        assertEquals("ococ", calls.toString());
+    }
+
+    @Test
+    public void heldFieldIsLeftOpen() throws InterruptedException {
+        FakeReader reader = new FakeReader();
+        PiccPresenceMonitor monitor = new PiccPresenceMonitor(reader, new RecordingListener());
+        PiccField.hold();
+        try {
+            monitor.start();
+            Thread.sleep(20);
+            monitor.stop();
+            assertTrue(monitor.awaitStopped(1000));
+        } finally {
+            PiccField.release();
+        }
+        assertEquals(1, reader.getOpens());
+        assertEquals(0, reader.getCloses());
+    }
+}
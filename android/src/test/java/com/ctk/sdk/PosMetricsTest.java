@@ -0,0 +1,78 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class PosMetricsTest {
+    @Test
+    public void bucketOf_usesLog2Microseconds() {
+        assertEquals(0, PosMetrics.bucketOf(999));
+        assertEquals(1, PosMetrics.bucketOf(1_000));
+        assertEquals(2, PosMetrics.bucketOf(2_000));
+        assertEquals(2, PosMetrics.bucketOf(3_999));
+        assertEquals(11, PosMetrics.bucketOf(1_500_000));
+        assertEquals(PosMetrics.BUCKET_COUNT - 1, PosMetrics.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void record_tracksCountsLockWaitAndNonZeroReturnCodes() {
+        PosMetrics.ApiStats stats = new PosMetrics.ApiStats();
+        stats.record(5_000, 0, 0);
+        stats.record(5_000, 2_000_000, -4002);
+        stats.record(5_000, 0, -4002);
+        stats.recordRemoteError(1_000, 0);
+
+        Map<String, Object> map = stats.toMap();
+        assertEquals(4L, map.get("calls"));
+        assertEquals(1L, map.get("remoteErrors"));
+        assertEquals(2_000L, map.get("lockWaitMicros"));
+        assertEquals(2L, ((Map<String, Object>) map.get("returnCodes")).get("-4002"));
+        assertEquals(3L, (long) ((List<Long>) map.get("latencyBuckets")).get(3));
+        assertEquals(8L, stats.quantileMicros(0.5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void snapshotAndReset_losesNoCallsRecordedMeanwhile() throws InterruptedException {
+        PosMetrics metrics = PosMetrics.getInstance();
+        metrics.reset();
+        final int perThread = 20_000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    metrics.stats("Lib_PiccCheck").record(5_000, 0, -3501);
+                }
+            });
+            threads[t].start();
+        }
+        long calls = 0;
+        long codes = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread t : threads) {
+                running |= t.isAlive();
+            }
+            Map<String, Object> apis = (Map<String, Object>) metrics.snapshotAndReset().get("apis");
+            Map<String, Object> api = (Map<String, Object>) apis.get("Lib_PiccCheck");
+            if (api != null) {
+                calls += (Long) api.get("calls");
+                Long code = (Long) ((Map<String, Object>) api.get("returnCodes")).get("-3501");
+                codes += code == null ? 0 : code;
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(threads.length * (long) perThread, calls);
+        assertEquals(threads.length * (long) perThread, codes);
+        assertTrue(((Map<String, Object>) metrics.snapshotAndReset().get("apis")).isEmpty());
+    }
+}
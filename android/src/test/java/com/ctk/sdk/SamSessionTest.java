@@ -0,0 +1,126 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SamSessionTest {
+    private static final byte[] HOST_KEY = new byte[16];
+
+    private static class FakeSam implements SamSession.Sam {
+        int opens;
+        int inits;
+        int closes;
+        int auths;
+        int nextAuth;
+
+        @Override
+        public int open(int slot, byte[] atr) {
+            opens++;
+            atr[0] = 2;
+            atr[1] = 0x3B;
+            atr[2] = (byte) 0xDF;
+            return 0;
+        }
+
+        @Override
+        public int init(int slot, byte[] hostKey, byte[] hostMode, byte[] version, byte[] versionLen) {
+            inits++;
+            version[0] = 0x04;
+            versionLen[0] = 1;
+            return slot == 1 ? 0 : -3401;
+        }
+
+        @Override
+        public int mfcAuth(byte keyType, byte block, byte keyNumber, byte keyVersion) {
+            auths++;
+            return nextAuth;
+        }
+
+        @Override
+        public int close(int slot) {
+            closes++;
+            return 0;
+        }
+    }
+
+    private FakeSam sam;
+    private long now;
+    private SamSession session;
+
+    @Before
+    public void setUp() {
+        sam = new FakeSam();
+        session = new SamSession(sam) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+        session.configure(1, HOST_KEY, 1000);
+    }
+
+    @Test
+    public void initializesOnceForManyCards() {
+        for (int card = 0; card < 10; card++) {
+            now += 100;
+            assertEquals(0, session.mfcAuth((byte) 'A', 4, 0x10, 0));
+        }
+
+        assertEquals(1, sam.opens);
+        assertEquals(1, sam.inits);
+        assertEquals(10, sam.auths);
+        assertArrayEquals(new byte[]{0x3B, (byte) 0xDF}, session.getAtr());
+        assertArrayEquals(new byte[]{0x04}, session.getVersion());
+    }
+
+    @Test
+    public void expiresWhenIdle() {
+        assertEquals(0, session.open());
+        now += 999;
+        assertFalse(session.expireIfIdle());
+        now += 1;
+        assertTrue(session.expireIfIdle());
+        assertFalse(session.isOpen());
+        assertEquals(1, sam.closes);
+
+        assertEquals(0, session.mfcAuth((byte) 'B', 8, 0x10, 0));
+        assertEquals(2, session.getSessionsOpened());
+    }
+
+    @Test
+    public void reopensAfterRepeatedFailures() {
+        sam.nextAuth = -3402;
+        assertEquals(-3402, session.mfcAuth((byte) 'A', 4, 0x10, 0));
+        assertEquals(-3402, session.mfcAuth((byte) 'A', 4, 0x10, 0));
+        assertEquals(1, sam.inits);
+
+        sam.nextAuth = 0;
+        assertEquals(0, session.mfcAuth((byte) 'A', 4, 0x10, 0));
+        assertEquals(2, sam.inits);
+        assertEquals(1, sam.closes);
+    }
+
+    @Test
+    public void newHostKeyClosesSessionAndFailedInitReleasesSlot() {
+        assertEquals(0, session.open());
+        session.configure(1, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}, 1000);
+        assertFalse(session.isOpen());
+
+        session.configure(2, HOST_KEY, 1000);
+        assertEquals(-3401, session.mfcAuth((byte) 'A', 4, 0x10, 0));
+        assertFalse(session.isOpen());
+        assertEquals(0, sam.auths);
+        assertEquals(2, sam.closes);
+    }
+
+    @Test
+    public void refusesBeforeConfigure() {
+        SamSession unconfigured = new SamSession(sam);
+        assertEquals(SamSession.ERR_NOT_CONFIGURED, unconfigured.mfcAuth((byte) 'A', 4, 0, 0));
+    }
+}
@@ -0,0 +1,77 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class ScanBatcherTest {
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> scans(Map<String, Object> batch) {
+        return (List<Map<String, Object>>) batch.get("scans");
+    }
+
+    @Test
+    public void onlyFirstScanOfABatchSchedulesAFlush() {
+        ScanBatcher batcher = new ScanBatcher(8, ScanBatcher.DROP_OLDEST, false);
+        assertTrue(batcher.offerText("A", 1, 1, 10));
+        assertFalse(batcher.offerText("B", 1, 1, 11));
+        Map<String, Object> batch = batcher.drain();
+        assertEquals(2, scans(batch).size());
+        assertEquals("A", scans(batch).get(0).get("result"));
+        assertEquals(11L, scans(batch).get(1).get("time"));
+        assertNull(batcher.drain());
+    }
+
+    @Test
+    public void scansWaitWhileABatchIsInFlight() {
+        ScanBatcher batcher = new ScanBatcher(8, ScanBatcher.DROP_OLDEST, false);
+        batcher.offerText("A", 1, 1, 0);
+        batcher.drain();
+        assertFalse(batcher.offerText("B", 1, 1, 0));
+        assertNull(batcher.drain());
+        assertTrue(batcher.delivered());
+        assertEquals("B", scans(batcher.drain()).get(0).get("result"));
+        assertFalse(batcher.delivered());
+        assertTrue(batcher.offerText("C", 1, 1, 0));
+    }
+
+    @Test
+    public void fullBatchDropsByPolicy() {
+        ScanBatcher oldest = new ScanBatcher(2, ScanBatcher.DROP_OLDEST, false);
+        ScanBatcher newest = new ScanBatcher(2, ScanBatcher.DROP_NEWEST, false);
+        for (String s : new String[]{"1", "2", "3"}) {
+            oldest.offerText(s, 1, 1, 0);
+            newest.offerText(s, 1, 1, 0);
+        }
+        Map<String, Object> batch = oldest.drain();
+        assertEquals(1, batch.get("dropped"));
+        assertEquals("2", scans(batch).get(0).get("result"));
+        assertEquals("3", scans(batch).get(1).get("result"));
+        assertEquals("2", scans(newest.drain()).get(1).get("result"));
+        assertEquals(1L, newest.getDropped());
+    }
+
+    @Test
+    public void equalScansAreMerged() {
+        ScanBatcher batcher = new ScanBatcher(4, ScanBatcher.DROP_OLDEST, true);
+        byte[] raw = {0x12, 0x34, 0x56};
+        batcher.offerRaw(raw, 2, 2, 3, 0);
+        batcher.offerRaw(new byte[]{0x12, 0x34}, 2, 2, 3, 5);
+        batcher.offerRaw(raw, 3, 3, 3, 6);
+        batcher.offerText("12 34 ", 6, 1, 7);
+        Map<String, Object> batch = batcher.drain();
+        assertEquals(1, batch.get("merged"));
+        assertEquals(3, scans(batch).size());
+        assertEquals("12 34 ", scans(batch).get(0).get("result"));
+        assertEquals(2, scans(batch).get(0).get("count"));
+        assertEquals(5L, scans(batch).get(0).get("time"));
+        assertEquals(1, scans(batch).get(2).get("encodeType"));
+        assertEquals(-1, ScanBatcher.overflowOf("block"));
+    }
+}
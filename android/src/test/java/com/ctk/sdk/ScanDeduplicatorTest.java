@@ -0,0 +1,58 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ScanDeduplicatorTest {
+    @Test
+    public void repeatWithinWindowIsSuppressed() {
+        ScanDeduplicator dedup = new ScanDeduplicator(4);
+        dedup.configure(true, 100);
+        byte[] code = {0x30, 0x31, 0x32, 0x33};
+        assertTrue(dedup.acceptRaw(code, 3, 3, 0));
+        assertFalse(dedup.acceptRaw(new byte[]{0x30, 0x31, 0x32}, 3, 3, 50));
+        assertTrue(dedup.acceptRaw(code, 4, 3, 60));
+        assertTrue(dedup.acceptText("012", 1, 70));
+        assertEquals(1, dedup.takeSuppressed());
+        assertEquals(0, dedup.takeSuppressed());
+        assertEquals(3L, dedup.counts()[0]);
+        assertEquals(1L, dedup.counts()[1]);
+    }
+
+    @Test
+    public void itemHeldInViewStaysSuppressed() {
+        ScanDeduplicator dedup = new ScanDeduplicator(4);
+        dedup.configure(true, 100);
+        assertTrue(dedup.acceptText("4006381333931", 1, 0));
+        for (int t = 80; t <= 800; t += 80) {
+            assertFalse(dedup.acceptText("4006381333931", 1, t));
+        }
+        assertTrue(dedup.acceptText("4006381333931", 1, 1000));
+    }
+
+    @Test
+    public void leastRecentlySeenCodeIsForgotten() {
+        ScanDeduplicator dedup = new ScanDeduplicator(2);
+        dedup.configure(true, 1000);
+        dedup.acceptText("A", 1, 0);
+        dedup.acceptText("B", 1, 10);
+        assertFalse(dedup.acceptText("A", 1, 20));
+        dedup.acceptText("C", 1, 30);
+        assertFalse(dedup.acceptText("A", 1, 40));
+        assertTrue(dedup.acceptText("B", 1, 50));
+    }
+
+    @Test
+    public void disabledOrResetLetsRepeatsThrough() {
+        ScanDeduplicator dedup = new ScanDeduplicator(4);
+        dedup.acceptText("A", 1, 0);
+        dedup.reset();
+        assertTrue(dedup.acceptText("A", 1, 1));
+        dedup.configure(false, 1000);
+        assertTrue(dedup.acceptText("A", 1, 2));
+        assertTrue(dedup.acceptText("A", 1, 3));
+    }
+}
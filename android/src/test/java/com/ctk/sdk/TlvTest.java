@@ -0,0 +1,116 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class TlvTest {
+    private static byte[] hex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        ByteUtil.decodeHex(s, 0, s.length(), out, 0);
+        return out;
+    }
+
+    // 70 template with a PAN, an amount, padding and a nested A5 template.
+    private static final byte[] RECORD = hex(
+            "7019" + "5A084761739001010010" + "00" + "9F0206000000012345" + "A503" + "500141");
+
+    @Test
+    public void reader_walksNestedTemplatesWithoutCopying() {
+        TlvReader reader = new TlvReader().reset(RECORD, 0, RECORD.length);
+        assertTrue(reader.next());
+        assertEquals(0x70, reader.tag());
+        assertTrue(reader.isConstructed());
+        reader.enter();
+
+        assertTrue(reader.next());
+        assertEquals(0x5A, reader.tag());
+        assertEquals(4, reader.valueOffset());
+        assertEquals(8, reader.valueLength());
+        assertTrue(reader.buffer() == RECORD);
+
+        assertTrue(reader.next());
+        assertEquals(0x9F02, reader.tag());
+        assertEquals(12345L, ByteUtil.getBcd(RECORD, reader.valueOffset(), reader.valueLength()));
+
+        assertTrue(reader.next());
+        assertEquals(0xA5, reader.tag());
+        reader.enter();
+        assertTrue(reader.next());
+        assertEquals(0x50, reader.tag());
+        assertFalse(reader.next());
+        reader.exit();
+
+        assertFalse(reader.next());
+        reader.exit();
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void reader_rejectsTruncatedValue() {
+        byte[] truncated = hex("9F020600000001");
+        TlvReader reader = new TlvReader().reset(truncated, 0, truncated.length);
+        try {
+            reader.next();
+            fail("Expected truncated value to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void index_findsTagsAtEveryDepth() {
+        TlvIndex index = new TlvIndex(2).build(RECORD, 0, RECORD.length);
+        assertEquals(5, index.size());
+        assertEquals(0, index.depth(index.find(0x70)));
+        assertEquals(2, index.depth(index.find(0x50)));
+        assertEquals(12345L, index.bcdValue(0x9F02));
+        assertEquals(-1, index.find(0x9F27));
+
+        byte[] pan = new byte[8];
+        assertEquals(8, index.copyValue(0x5A, pan, 0));
+        assertArrayEquals(hex("4761739001010010"), pan);
+    }
+
+    @Test
+    public void index_keepsDuplicateTagsInOrder() {
+        byte[] data = hex("500141" + "500142");
+        TlvIndex index = new TlvIndex().build(data, 0, data.length);
+        int first = index.find(0x50);
+        int second = index.findNext(first);
+        assertEquals(0x41, data[index.valueOffset(first)]);
+        assertEquals(0x42, data[index.valueOffset(second)]);
+        assertEquals(-1, index.findNext(second));
+    }
+
+    @Test
+    public void builder_producesParsableOutput() {
+        TlvBuilder builder = new TlvBuilder(16);
+        builder.reset()
+                .begin(0x70)
+                .put(0x5A, hex("4761739001010010"))
+                .putBcd(0x9F02, 6, 12345L)
+                .begin(0xA5)
+                .putByte(0x50, 0x41)
+                .end()
+                .end();
+        byte[] built = builder.toByteArray();
+        byte[] expected = hex("7018" + "5A084761739001010010" + "9F0206000000012345" + "A503" + "500141");
+        assertArrayEquals(expected, built);
+    }
+
+    @Test
+    public void builder_widensTemplateLengthWhenNeeded() {
+        TlvBuilder builder = new TlvBuilder();
+        builder.begin(0x77).put(0x9F10, new byte[200]).end();
+        byte[] built = builder.toByteArray();
+
+        TlvIndex index = new TlvIndex().build(built, 0, built.length);
+        assertEquals((byte) 0x81, built[1]);
+        assertEquals(204, index.valueLength(index.find(0x77)));
+        assertEquals(200, index.valueLength(index.find(0x9F10)));
+    }
+}
@@ -0,0 +1,137 @@
+package com.ctk.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+public class UltralightReaderTest {
+    private static final byte[] PWD = {0x12, 0x34, 0x56, 0x78};
+
+    /**
+     * NTAG213: 45 pages, 144 byte data area, pages from 16 on need the password.
+     */
+    private static class FakeTag extends FakePicc implements UltralightReader.Tag {
+        final byte[] memory = new byte[45 * 4];
+        boolean hasSignature = true;
+        boolean authenticated;
+        int reads;
+
+        FakeTag() {
+            for (int i = 0; i < memory.length; i++) {
+                memory[i] = (byte) i;
+            }
+            memory[12] = (byte) 0xE1;
+            memory[13] = 0x10;
+            memory[14] = 0x12;
+            memory[15] = 0x00;
+        }
+
+        @Override
+        public int activate() {
+            authenticated = false;
+            return super.activate();
+        }
+
+        @Override
+        public int pwdAuth(byte[] pwd, byte[] pack) {
+            if (!active || !Arrays.equals(pwd, PWD)) {
+                return reject(-3601);
+            }
+            authenticated = true;
+            pack[0] = (byte) 0x80;
+            pack[1] = (byte) 0x80;
+            return 0;
+        }
+
+        @Override
+        public int read(int page, byte[] data) {
+            reads++;
+            if (!active || page >= 45 || (page + 3 >= 16 && !authenticated)) {
+                return reject(-3610);
+            }
+            for (int i = 0; i < 16; i++) {
+                // reads past the end roll over to page 0
+                data[i] = memory[(page * 4 + i) % memory.length];
+            }
+            return 0;
+        }
+
+        @Override
+        public int readCounter(int counter, byte[] value) {
+            if (!active || counter != 2) {
+                return reject(-3610);
+            }
+            value[0] = 0x05;
+            value[1] = 0x01;
+            value[2] = 0x00;
+            return 0;
+        }
+
+        @Override
+        public int readSignature(byte[] signature) {
+            if (!active || !hasSignature) {
+                return reject(-3610);
+            }
+            Arrays.fill(signature, (byte) 0x5A);
+            return 0;
+        }
+    }
+
+    @Test
+    public void dumpsDataAreaCounterAndSignatureWithOneActivation() {
+        FakeTag tag = new FakeTag();
+
+        Map<String, Object> result = new UltralightReader(tag).read(0, PWD, UltralightReader.NFC_COUNTER, true);
+
+        assertNull(result.get("error"));
+        assertEquals(4 + 36, result.get("pages"));
+        assertArrayEquals(Arrays.copyOf(tag.memory, 40 * 4), (byte[]) result.get("memory"));
+        assertEquals(10, tag.reads);
+        assertEquals(1, tag.activations);
+        assertEquals(0x0105, result.get("counter"));
+        assertArrayEquals(new byte[]{(byte) 0x80, (byte) 0x80}, (byte[]) result.get("pack"));
+        assertEquals(32, ((byte[]) result.get("signature")).length);
+    }
+
+    @Test
+    public void partialLastReadCopiesOnlyRequestedPages() {
+        FakeTag tag = new FakeTag();
+
+        Map<String, Object> result = new UltralightReader(tag).read(45, PWD, UltralightReader.NO_COUNTER, false);
+
+        byte[] memory = (byte[]) result.get("memory");
+        assertArrayEquals(tag.memory, memory);
+        assertEquals(12, tag.reads);
+        assertFalse(result.containsKey("counter"));
+        assertFalse(result.containsKey("signature"));
+    }
+
+    @Test
+    public void reactivatesAfterUnsupportedSignature() {
+        FakeTag tag = new FakeTag();
+        tag.hasSignature = false;
+
+        Map<String, Object> result = new UltralightReader(tag).read(0, PWD, UltralightReader.NFC_COUNTER, true);
+
+        assertEquals(2, tag.activations);
+        assertFalse(result.containsKey("signature"));
+        assertEquals(0x0105, result.get("counter"));
+    }
+
+    @Test
+    public void reportsPageWhereProtectedMemoryStarts() {
+        FakeTag tag = new FakeTag();
+
+        Map<String, Object> result = new UltralightReader(tag).read(0, null, UltralightReader.NFC_COUNTER, true);
+
+        assertEquals(-3610, result.get("error"));
+        assertEquals(16, result.get("failedPage"));
+        assertNull(result.get("memory"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.ctk.sdk.benchmark;
+
+import com.ctk.sdk.ApduResp;
+import com.ctk.sdk.ApduSend;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One APDU exchange with freshly allocated frames versus pooled frames. Run with
+ * {@code -Pjmh.args="-prof gc"} and compare gc.alloc.rate.norm: the pooled path
+ * allocates 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApduFrameBenchmark {
+    private static final byte[] SELECT = {0x00, (byte) 0xA4, 0x04, 0x00};
+    private static final byte[] AID = {(byte) 0xA0, 0x00, 0x00, 0x00, 0x03, 0x10, 0x10};
+
+    private final byte[] device = new byte[ApduResp.FRAME_SIZE];
+    private final byte[] out = new byte[ApduResp.MAX_DATA];
+
+    @Setup
+    public void setUp() {
+        device[0] = 32;
+        device[514] = (byte) 0x90;
+    }
+
+    @Benchmark
+    public int exchangeAllocating() {
+        byte[] frame = new ApduSend(SELECT, (short) AID.length, AID, (short) 256).getBytes();
+        ApduResp resp = new ApduResp(device);
+        return frame.length + resp.getDataOut().length + resp.getSW();
+    }
+
+    @Benchmark
+    public int exchangePooled() {
+        ApduSend send = ApduSend.obtain().set(SELECT, AID, 0, AID.length, 256);
+        ApduResp resp = ApduResp.obtain();
+        System.arraycopy(device, 0, resp.getBytes(), 0, ApduResp.FRAME_SIZE);
+        int ret = send.getBytes().length + resp.copyDataOut(out, 0) + resp.getSW();
+        resp.recycle();
+        send.recycle();
+        return ret;
+    }
+}
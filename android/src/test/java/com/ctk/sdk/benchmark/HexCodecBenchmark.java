@@ -0,0 +1,100 @@
+package com.ctk.sdk.benchmark;
+
+import com.ctk.sdk.ByteUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the table driven hex codec in {@link ByteUtil} with the StringBuffer /
+ * indexOf implementations it replaced. 16 and 258 bytes are typical short and
+ * extended APDU responses, 2048 bytes a large raw scan.
+ *
+ * Run with the {@code jmh} task of this module, e.g. {@code ./gradlew :cs50sdkupdate:jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexCodecBenchmark {
+    private static final String DIGITS = "0123456789ABCDEF";
+
+    @Param({"16", "258", "2048"})
+    public int size;
+
+    private byte[] payload;
+    private String hex;
+    private char[] charBuffer;
+    private byte[] byteBuffer;
+    private StringBuilder builder;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        hex = ByteUtil.toHexString(payload, 0, size);
+        charBuffer = new char[ByteUtil.hexLength(size, ' ')];
+        byteBuffer = new byte[size];
+        builder = new StringBuilder(charBuffer.length);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        StringBuffer strbuf = new StringBuffer();
+        for (int i = 0; i < size; i++) {
+            strbuf.append(DIGITS.charAt(((byte) ((payload[i] & 0xf0) >> 4))));
+            strbuf.append(DIGITS.charAt((byte) (payload[i] & 0x0f)));
+            strbuf.append(" ");
+        }
+        return strbuf.toString();
+    }
+
+    @Benchmark
+    public String encodeString() {
+        return ByteUtil.bytearrayToHexString(payload, size);
+    }
+
+    @Benchmark
+    public char[] encodeIntoCharArray() {
+        ByteUtil.encodeHex(payload, 0, size, charBuffer, 0, ' ', true);
+        return charBuffer;
+    }
+
+    @Benchmark
+    public StringBuilder encodeIntoStringBuilder() {
+        builder.setLength(0);
+        return ByteUtil.encodeHex(payload, 0, size, builder, ' ', true);
+    }
+
+    @Benchmark
+    public byte[] decodeLegacy() {
+        char[] hexs = hex.toCharArray();
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int n = DIGITS.indexOf(hexs[2 * i]) * 16;
+            n += DIGITS.indexOf(hexs[2 * i + 1]);
+            bytes[i] = (byte) (n & 0xff);
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] decodeIntoByteArray() {
+        ByteUtil.decodeHex(hex, 0, hex.length(), byteBuffer, 0);
+        return byteBuffer;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ctk.sdk.benchmark;
+
+import com.ctk.sdk.ByteUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the in-place primitive codecs in {@link ByteUtil} with the stream and
+ * temporary array based conversions they replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveCodecBenchmark {
+    private final byte[] frame = new byte[520];
+    private int value;
+
+    @Setup
+    public void setUp() {
+        value = 0x12345678;
+        ByteUtil.putIntBE(frame, 0, value);
+    }
+
+    @Benchmark
+    public byte[] intToBytesLegacy() throws IOException {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        new DataOutputStream(byteOut).writeInt(value);
+        return byteOut.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] intToBytesInPlace() {
+        ByteUtil.putIntBE(frame, 4, value);
+        return frame;
+    }
+
+    @Benchmark
+    public int bytesToIntLegacy() throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(frame)).readInt();
+    }
+
+    @Benchmark
+    public int bytesToIntWrappedBuffer() {
+        return ByteBuffer.wrap(frame).getInt(0);
+    }
+
+    @Benchmark
+    public int bytesToIntInPlace() {
+        return ByteUtil.getIntBE(frame, 0);
+    }
+
+    @Benchmark
+    public short outputBytesLegacy() {
+        byte[] byShort = new byte[2];
+        ByteUtil.ShortToBytes(byShort, (short) 256, 0);
+        System.arraycopy(byShort, 0, frame, 0, byShort.length);
+        byte[] readBack = new byte[2];
+        System.arraycopy(frame, 0, readBack, 0, readBack.length);
+        return ByteUtil.BytesToShort(readBack, 0);
+    }
+
+    @Benchmark
+    public short outputBytesInPlace() {
+        ByteUtil.putShortLE(frame, 0, 256);
+        return ByteUtil.getShortLE(frame, 0);
+    }
+
+    @Benchmark
+    public long bcdAmount() {
+        ByteUtil.putBcd(frame, 8, 6, 123456789L);
+        return ByteUtil.getBcd(frame, 8, 6);
+    }
+}
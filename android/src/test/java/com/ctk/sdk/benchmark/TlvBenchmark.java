@@ -0,0 +1,71 @@
+package com.ctk.sdk.benchmark;
+
+import com.ctk.sdk.TlvBuilder;
+import com.ctk.sdk.TlvIndex;
+import com.ctk.sdk.TlvReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a roughly 2KB EMV response: a 70 template holding a mix of one and two
+ * byte tags, as read back after a full contact transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlvBenchmark {
+    private final TlvReader reader = new TlvReader();
+    private final TlvIndex index = new TlvIndex();
+    private final TlvBuilder builder = new TlvBuilder();
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        builder.reset().begin(0x70);
+        for (int i = 0; i < 40; i++) {
+            builder.put(0x9F00 | (0x10 + i), new byte[32]);
+            builder.putByte(0x80 | (i % 0x1e), i);
+            builder.putBcd(0x9F02, 6, i);
+        }
+        builder.end();
+        response = builder.toByteArray();
+    }
+
+    @Benchmark
+    public int walk() {
+        int sum = 0;
+        reader.reset(response, 0, response.length);
+        reader.next();
+        reader.enter();
+        while (reader.next()) {
+            sum += reader.valueLength();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int indexAndLookup() {
+        index.build(response, 0, response.length);
+        return index.find(0x9F02) + index.find(0x9F37) + index.find(0x9F10);
+    }
+
+    @Benchmark
+    public int build() {
+        builder.reset().begin(0x77).put(0x9F26, response, 0, 8).putBcd(0x9F02, 6, 12345L).end();
+        return builder.length();
+    }
+}
@@ -229,7 +229,8 @@ class _HomePageState extends State<HomePage> {
   Future<void> piccCheck() async {
     String piccCheckData;
     try {
-      piccCheckData = await _cs50sdkupdatePlugin.piccCheck() ?? 'No data';
+      piccCheckData =
+          (await _cs50sdkupdatePlugin.piccCheck())?.toString() ?? 'No data';
       _showSnackBar('PICC Check: $piccCheckData');
     } on PlatformException {
       _showSnackBar('Failed to check PICC.');
@@ -279,7 +280,7 @@ class _HomePageState extends State<HomePage> {
     List<int> ndefMessage = List.filled(500, 0);
 
     try {
-      String? nfcResponse = await _cs50sdkupdatePlugin.piccNfc(
+      final nfcResponse = await _cs50sdkupdatePlugin.piccNfc(
           nfcDataLen, technology, nfcUid, ndefMessage);
       _showSnackBar('NFC Response: $nfcResponse');
     } catch (e) {
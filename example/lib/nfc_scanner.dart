@@ -1,6 +1,7 @@
 import 'dart:async';
 
 import 'package:cs50sdkupdate/cs50sdkupdate.dart';
+import 'package:cs50sdkupdate/cs50sdkupdate_method_channel.dart';
 import 'package:flutter/material.dart';
 
 import 'nfc_converter.dart';
@@ -61,7 +62,7 @@ class _NFCScannerState extends State<NFCScanner> {
     while (isScanning) {
       try {
         final data = await cs50sdkupdatePlugin.piccPolling();
-        if (data != null && data.isNotEmpty) {
+        if (data != null && data.uid.isNotEmpty) {
           processNFCData(data);
           // Reset the inactivity timer after successful read
           startInactivityTimer();
@@ -102,30 +103,18 @@ class _NFCScannerState extends State<NFCScanner> {
     }
   }
 
-  void processNFCData(String data) {
-    Map<String, String> parsedData = {};
-    List<String> lines = data.split('\n');
-
-    for (String line in lines) {
-      if (line.contains(':')) {
-        List<String> parts = line.split(':');
-        String key = parts[0].trim();
-        String value = parts[1].trim();
-        parsedData[key] = value;
-      }
-    }
-
-    String uid = parsedData['UID'] ?? '';
-    uid = uid.replaceAll(' ', '').substring(0, 8);
+  void processNFCData(PiccPollingResult data) {
+    String uid = data.uidHex;
+    uid = uid.length > 8 ? uid.substring(0, 8) : uid;
 
     int decimalUid = NfcUidConverter.hexToDecimal(uid);
 
     setState(() {
       pollingData = '''
-Card Type: ${parsedData['Card Type'] ?? 'N/A'}
+Card Type: ${String.fromCharCodes(data.cardType)}
 UID (Hex): $uid
 UID (Decimal): $decimalUid
-SAK: ${parsedData['SAK'] ?? 'N/A'}
+SAK: ${data.sak.toRadixString(16).padLeft(2, '0').toUpperCase()}
 ''';
     });
 
@@ -43,20 +43,72 @@ class Cs50sdkupdate {
     await Cs50sdkupdatePlatform.instance.openPicc();
   }
 
-  Future<String?> piccCheck() async {
+  Future<PiccCheckResult?> piccCheck() async {
     return await Cs50sdkupdatePlatform.instance.piccCheck();
   }
 
-  Future<String?> piccPolling() async {
-    return await Cs50sdkupdatePlatform.instance.piccPolling();
+  Future<PiccPollingResult?> piccPolling({bool beep = true}) async {
+    return await Cs50sdkupdatePlatform.instance.piccPolling(beep: beep);
   }
 
-  Future<String?> piccCommand(List<int> apduSend) async {
-    return await Cs50sdkupdatePlatform.instance.piccCommand(apduSend);
+  Future<ApduResponse?> piccCommand(List<int> apduSend,
+      {bool beep = true}) async {
+    return await Cs50sdkupdatePlatform.instance
+        .piccCommand(apduSend, beep: beep);
   }
 
-  Future<String?> piccApduCmd(List<int> pucInput) async {
-    return await Cs50sdkupdatePlatform.instance.piccApduCmd(pucInput);
+  Future<ApduResponse?> piccApduCmd(List<int> pucInput,
+      {bool beep = true}) async {
+    return await Cs50sdkupdatePlatform.instance
+        .piccApduCmd(pucInput, beep: beep);
+  }
+
+  Stream<PiccPresenceEvent> piccPresenceEvents(
+      {String mode = 'A',
+      int fastIntervalMs = 10,
+      int idleIntervalMs = 40,
+      int fastWindowMs = 5000,
+      int presentIntervalMs = 50}) {
+    return Cs50sdkupdatePlatform.instance.piccPresenceEvents(
+        mode: mode,
+        fastIntervalMs: fastIntervalMs,
+        idleIntervalMs: idleIntervalMs,
+        fastWindowMs: fastWindowMs,
+        presentIntervalMs: presentIntervalMs);
+  }
+
+  Stream<MagSwipe> mcrSwipes(
+      {int fastIntervalMs = 20,
+      int idleIntervalMs = 100,
+      int fastWindowMs = 10000,
+      bool encrypted = false,
+      int keyNo = 0}) {
+    return Cs50sdkupdatePlatform.instance.mcrSwipes(
+        fastIntervalMs: fastIntervalMs,
+        idleIntervalMs: idleIntervalMs,
+        fastWindowMs: fastWindowMs,
+        encrypted: encrypted,
+        keyNo: keyNo);
+  }
+
+  Stream<ScanBatch> scanBatches(
+      {int windowMs = 50,
+      int maxQueue = 32,
+      String overflow = 'dropOldest',
+      bool merge = true}) {
+    return Cs50sdkupdatePlatform.instance.scanBatches(
+        windowMs: windowMs,
+        maxQueue: maxQueue,
+        overflow: overflow,
+        merge: merge);
+  }
+
+  Future<ApduScriptResult> runApduScript(List<ApduStep> steps,
+      {String channel = 'picc',
+      int slot = 0,
+      Map<String, Uint8List>? variables}) async {
+    return await Cs50sdkupdatePlatform.instance.runApduScript(steps,
+        channel: channel, slot: slot, variables: variables);
   }
 
   Future<void> piccClose() async {
@@ -72,6 +124,70 @@ class Cs50sdkupdate {
         .piccSamAv2Init(samSlotNo, samHostKey);
   }
 
+  Future<SamSessionInfo> openSamSession(int samSlotNo, Uint8List samHostKey,
+      {int idleTimeoutMs = 300000}) async {
+    return await Cs50sdkupdatePlatform.instance
+        .openSamSession(samSlotNo, samHostKey, idleTimeoutMs: idleTimeoutMs);
+  }
+
+  Future<void> samMfcAuth(int blockNo, int keyNumber,
+      {String keyType = 'A', int keyVersion = 0}) async {
+    return await Cs50sdkupdatePlatform.instance.samMfcAuth(blockNo, keyNumber,
+        keyType: keyType, keyVersion: keyVersion);
+  }
+
+  Future<void> closeSamSession() async {
+    return await Cs50sdkupdatePlatform.instance.closeSamSession();
+  }
+
+  Future<void> fiscalOpen(
+      {int baudrate = 115200,
+      int dataBits = 8,
+      int stopBits = 1,
+      String parity = 'N',
+      bool flowControl = false,
+      int responseTimeoutMs = 2000,
+      int window = 4,
+      int maxRetries = 2}) async {
+    return await Cs50sdkupdatePlatform.instance.fiscalOpen(
+        baudrate: baudrate,
+        dataBits: dataBits,
+        stopBits: stopBits,
+        parity: parity,
+        flowControl: flowControl,
+        responseTimeoutMs: responseTimeoutMs,
+        window: window,
+        maxRetries: maxRetries);
+  }
+
+  Future<Uint8List> fiscalSend(Uint8List payload) async {
+    return await Cs50sdkupdatePlatform.instance.fiscalSend(payload);
+  }
+
+  Future<void> fiscalClose() async {
+    return await Cs50sdkupdatePlatform.instance.fiscalClose();
+  }
+
+  Future<KeyLoadReport> loadKeys(List<KeyManifestEntry> manifest) async {
+    return await Cs50sdkupdatePlatform.instance.loadKeys(manifest);
+  }
+
+  Future<Uint8List> pciMacFile(String path, int keyNo,
+      {int algorithm = 0, int chunkSize = 1024}) async {
+    return await Cs50sdkupdatePlatform.instance.pciMacFile(path, keyNo,
+        algorithm: algorithm, chunkSize: chunkSize);
+  }
+
+  Future<Uint8List?> pciCryptFile(String path, String outPath, int keyNo,
+      {bool encrypt = true,
+      bool dukpt = false,
+      Uint8List? iv,
+      int chunkSize = 1024}) async {
+    return await Cs50sdkupdatePlatform.instance.pciCryptFile(
+        path, outPath, keyNo,
+        encrypt: encrypt, dukpt: dukpt, iv: iv, chunkSize: chunkSize);
+  }
+
   Future<String?> piccHwModeSet(int mode) async {
     return await Cs50sdkupdatePlatform.instance.piccHwModeSet(mode);
   }
@@ -82,10 +198,85 @@ class Cs50sdkupdate {
         .piccM1Authority(type, blkNo, pwd, serialNo);
   }
 
-  Future<String?> piccNfc(List<int> nfcDataLen, List<int> technology,
-      List<int> nfcUid, List<int> ndefMessage) async {
+  Future<M1ReadResult> readM1Card(List<Uint8List> keys,
+      {int firstSector = 0, int lastSector = 15}) async {
     return await Cs50sdkupdatePlatform.instance
-        .piccNfc(nfcDataLen, technology, nfcUid, ndefMessage);
+        .readM1Card(keys, firstSector: firstSector, lastSector: lastSector);
+  }
+
+  Future<M1WriteResult> writeM1Card(
+      List<Uint8List> keys, Map<int, Uint8List> blocks,
+      {bool allowTrailers = false}) async {
+    return await Cs50sdkupdatePlatform.instance
+        .writeM1Card(keys, blocks, allowTrailers: allowTrailers);
+  }
+
+  Future<Uint8List> readMfpCard(int firstBlock, int blockCount,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false}) async {
+    return await Cs50sdkupdatePlatform.instance.readMfpCard(
+        firstBlock, blockCount,
+        keyNumber: keyNumber,
+        keyVersion: keyVersion,
+        keyType: keyType,
+        sectorKeys: sectorKeys,
+        encrypted: encrypted);
+  }
+
+  Future<int> writeMfpCard(int firstBlock, Uint8List data,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false,
+      bool allowTrailers = false}) async {
+    return await Cs50sdkupdatePlatform.instance.writeMfpCard(firstBlock, data,
+        keyNumber: keyNumber,
+        keyVersion: keyVersion,
+        keyType: keyType,
+        sectorKeys: sectorKeys,
+        encrypted: encrypted,
+        allowTrailers: allowTrailers);
+  }
+
+  Future<UltralightDump> readUltralight(
+      {int pageCount = 0,
+      Uint8List? password,
+      int counter = 2,
+      bool signature = true}) async {
+    return await Cs50sdkupdatePlatform.instance.readUltralight(
+        pageCount: pageCount,
+        password: password,
+        counter: counter,
+        signature: signature);
+  }
+
+  Future<NfcReadResult?> piccNfc(List<int> nfcDataLen, List<int> technology,
+      List<int> nfcUid, List<int> ndefMessage,
+      {bool beep = true}) async {
+    return await Cs50sdkupdatePlatform.instance
+        .piccNfc(nfcDataLen, technology, nfcUid, ndefMessage, beep: beep);
+  }
+
+  Future<void> setFeedback({bool enabled = true, int coalesceMs = 300}) async {
+    await Cs50sdkupdatePlatform.instance
+        .setFeedback(enabled: enabled, coalesceMs: coalesceMs);
+  }
+
+  Future<void> setScanDedup({bool enabled = true, int windowMs = 1000}) async {
+    await Cs50sdkupdatePlatform.instance
+        .setScanDedup(enabled: enabled, windowMs: windowMs);
+  }
+
+  Future<Map<String, int>> getScanDedupStats() async {
+    return await Cs50sdkupdatePlatform.instance.getScanDedupStats();
+  }
+
+  Future<bool> playFeedback(String pattern) async {
+    return await Cs50sdkupdatePlatform.instance.playFeedback(pattern);
   }
 
   Future<int?> sysLogSwitch(int level) async {
@@ -96,6 +287,14 @@ class Cs50sdkupdate {
     return await Cs50sdkupdatePlatform.instance.sysGetRand(rnd);
   }
 
+  Future<Uint8List> randomBytes(int length) async {
+    return await Cs50sdkupdatePlatform.instance.randomBytes(length);
+  }
+
+  Future<String?> installRomPackage(String path) async {
+    return await Cs50sdkupdatePlatform.instance.installRomPackage(path);
+  }
+
   Future<int?> sysUpdate() async {
     return await Cs50sdkupdatePlatform.instance.sysUpdate();
   }
@@ -120,6 +319,22 @@ class Cs50sdkupdate {
     return await Cs50sdkupdatePlatform.instance.getDeviceId();
   }
 
+  Future<List<FlightRecord>> getFlightRecords({int? limit}) async {
+    return await Cs50sdkupdatePlatform.instance.getFlightRecords(limit: limit);
+  }
+
+  Future<String?> exportFlightRecorder(String path) async {
+    return await Cs50sdkupdatePlatform.instance.exportFlightRecorder(path);
+  }
+
+  Future<PosDeviceInfo> getDeviceInfo({bool refresh = false}) async {
+    return await Cs50sdkupdatePlatform.instance.getDeviceInfo(refresh: refresh);
+  }
+
+  Future<Map<String, dynamic>> getPosMetrics({bool reset = false}) async {
+    return await Cs50sdkupdatePlatform.instance.getPosMetrics(reset: reset);
+  }
+
 // Printing Methods
   Future<String?> printInit() {
     return Cs50sdkupdatePlatform.instance.printInit();
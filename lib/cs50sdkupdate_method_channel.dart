@@ -13,6 +13,18 @@ class MethodChannelCs50sdkupdate extends Cs50sdkupdatePlatform {
   @visibleForTesting
   final methodChannel = const MethodChannel('cs50sdkupdate');
 
+  /// Card arrival / removal events from the native contactless polling engine.
+  @visibleForTesting
+  final piccPresenceChannel = const EventChannel('cs50sdkupdate/picc_presence');
+
+  /// Swipes from the native magnetic stripe monitor.
+  @visibleForTesting
+  final mcrSwipeChannel = const EventChannel('cs50sdkupdate/mcr_swipes');
+
+  /// Batches of barcode scans, delivered off the main thread's receiver.
+  @visibleForTesting
+  final scanChannel = const EventChannel('cs50sdkupdate/scans');
+
   final StreamController<Map<String, int>> _progressController =
       StreamController<Map<String, int>>.broadcast();
   final StreamController<ScanResult> _scanController =
@@ -59,28 +71,104 @@ class MethodChannelCs50sdkupdate extends Cs50sdkupdatePlatform {
   }
 
   @override
-  Future<String?> piccCheck() async {
-    return await methodChannel.invokeMethod<String>('piccCheck');
+  Future<PiccCheckResult?> piccCheck() async {
+    final result =
+        await methodChannel.invokeMethod<Map<Object?, Object?>>('piccCheck');
+    return result != null ? PiccCheckResult.fromMap(result) : null;
   }
 
   @override
-  Future<String?> piccPolling() async {
-    return await methodChannel.invokeMethod<String>('piccPolling');
+  Future<PiccPollingResult?> piccPolling({bool beep = true}) async {
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'piccPolling', {'beep': beep});
+    return result != null ? PiccPollingResult.fromMap(result) : null;
   }
 
   @override
-  Future<String?> piccCommand(List<int> apduSend) async {
+  Future<ApduResponse?> piccCommand(List<int> apduSend,
+      {bool beep = true}) async {
     final Map<String, dynamic> args = <String, dynamic>{
       'apduSend': apduSend,
+      'beep': beep,
     };
-    final List<int>? apduResp =
-        await methodChannel.invokeMethod<List<int>>('piccCommand', args);
-    return apduResp != null ? String.fromCharCodes(apduResp) : null;
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'piccCommand', args);
+    return result != null ? ApduResponse.fromMap(result) : null;
   }
 
   @override
-  Future<String?> piccApduCmd(List<int> pucInput) async {
-    return await methodChannel.invokeMethod<String>('piccApduCmd', pucInput);
+  Future<ApduResponse?> piccApduCmd(List<int> pucInput,
+      {bool beep = true}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'pucInput': typed_data.Uint8List.fromList(pucInput),
+      'beep': beep,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'piccApduCmd', args);
+    return result != null ? ApduResponse.fromMap(result) : null;
+  }
+
+  @override
+  Stream<PiccPresenceEvent> piccPresenceEvents(
+      {String mode = 'A',
+      int fastIntervalMs = 10,
+      int idleIntervalMs = 40,
+      int fastWindowMs = 5000,
+      int presentIntervalMs = 50}) {
+    return piccPresenceChannel.receiveBroadcastStream(<String, dynamic>{
+      'mode': mode,
+      'fastIntervalMs': fastIntervalMs,
+      'idleIntervalMs': idleIntervalMs,
+      'fastWindowMs': fastWindowMs,
+      'presentIntervalMs': presentIntervalMs,
+    }).map((event) => PiccPresenceEvent.fromMap(event as Map<Object?, Object?>));
+  }
+
+  @override
+  Stream<MagSwipe> mcrSwipes(
+      {int fastIntervalMs = 20,
+      int idleIntervalMs = 100,
+      int fastWindowMs = 10000,
+      bool encrypted = false,
+      int keyNo = 0}) {
+    return mcrSwipeChannel.receiveBroadcastStream(<String, dynamic>{
+      'fastIntervalMs': fastIntervalMs,
+      'idleIntervalMs': idleIntervalMs,
+      'fastWindowMs': fastWindowMs,
+      'encrypted': encrypted,
+      'keyNo': keyNo,
+    }).map((event) => MagSwipe.fromMap(event as Map<Object?, Object?>));
+  }
+
+  //scanBatches: while listened to, scans go here instead of scanResults
+  @override
+  Stream<ScanBatch> scanBatches(
+      {int windowMs = 50,
+      int maxQueue = 32,
+      String overflow = 'dropOldest',
+      bool merge = true}) {
+    return scanChannel.receiveBroadcastStream(<String, dynamic>{
+      'windowMs': windowMs,
+      'maxQueue': maxQueue,
+      'overflow': overflow,
+      'merge': merge,
+    }).map((event) => ScanBatch.fromMap(event as Map<Object?, Object?>));
+  }
+
+  @override
+  Future<ApduScriptResult> runApduScript(List<ApduStep> steps,
+      {String channel = 'picc',
+      int slot = 0,
+      Map<String, typed_data.Uint8List>? variables}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'steps': steps.map((step) => step.toMap()).toList(),
+      'channel': channel,
+      'slot': slot,
+      'variables': variables,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'runApduScript', args);
+    return ApduScriptResult.fromMap(result!);
   }
 
   @override
@@ -102,6 +190,118 @@ class MethodChannelCs50sdkupdate extends Cs50sdkupdatePlatform {
     return await methodChannel.invokeMethod<String>('piccSamAv2Init', args);
   }
 
+  @override
+  Future<SamSessionInfo> openSamSession(int samSlotNo, typed_data.Uint8List samHostKey,
+      {int idleTimeoutMs = 300000}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'samSlotNo': samSlotNo,
+      'samHostKey': samHostKey,
+      'idleTimeoutMs': idleTimeoutMs,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'openSamSession', args);
+    return SamSessionInfo.fromMap(result!);
+  }
+
+  @override
+  Future<void> samMfcAuth(int blockNo, int keyNumber,
+      {String keyType = 'A', int keyVersion = 0}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'blockNo': blockNo,
+      'keyNumber': keyNumber,
+      'keyType': keyType,
+      'keyVersion': keyVersion,
+    };
+    await methodChannel.invokeMethod<bool>('samMfcAuth', args);
+  }
+
+  @override
+  Future<void> closeSamSession() async {
+    await methodChannel.invokeMethod<void>('closeSamSession');
+  }
+
+  @override
+  Future<void> fiscalOpen(
+      {int baudrate = 115200,
+      int dataBits = 8,
+      int stopBits = 1,
+      String parity = 'N',
+      bool flowControl = false,
+      int responseTimeoutMs = 2000,
+      int window = 4,
+      int maxRetries = 2}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'baudrate': baudrate,
+      'dataBits': dataBits,
+      'stopBits': stopBits,
+      'parity': parity,
+      'flowControl': flowControl,
+      'responseTimeoutMs': responseTimeoutMs,
+      'window': window,
+      'maxRetries': maxRetries,
+    };
+    await methodChannel.invokeMethod<void>('fiscalOpen', args);
+  }
+
+  @override
+  Future<typed_data.Uint8List> fiscalSend(typed_data.Uint8List payload) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'payload': payload,
+    };
+    final result = await methodChannel.invokeMethod<typed_data.Uint8List>(
+        'fiscalSend', args);
+    return result!;
+  }
+
+  @override
+  Future<void> fiscalClose() async {
+    await methodChannel.invokeMethod<int>('fiscalClose');
+  }
+
+  @override
+  Future<KeyLoadReport> loadKeys(List<KeyManifestEntry> manifest) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'manifest': manifest.map((entry) => entry.toMap()).toList(),
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'loadKeys', args);
+    return KeyLoadReport.fromMap(result!);
+  }
+
+  @override
+  Future<typed_data.Uint8List> pciMacFile(String path, int keyNo,
+      {int algorithm = 0, int chunkSize = 1024}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'path': path,
+      'keyNo': keyNo,
+      'algorithm': algorithm,
+      'chunkSize': chunkSize,
+    };
+    final result = await methodChannel.invokeMethod<typed_data.Uint8List>(
+        'pciMacFile', args);
+    return result!;
+  }
+
+  @override
+  Future<typed_data.Uint8List?> pciCryptFile(
+      String path, String outPath, int keyNo,
+      {bool encrypt = true,
+      bool dukpt = false,
+      typed_data.Uint8List? iv,
+      int chunkSize = 1024}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'path': path,
+      'outPath': outPath,
+      'keyNo': keyNo,
+      'encrypt': encrypt,
+      'dukpt': dukpt,
+      'iv': iv,
+      'chunkSize': chunkSize,
+    };
+    return await methodChannel.invokeMethod<typed_data.Uint8List>(
+        'pciCryptFile', args);
+  }
+
   @override
   Future<String?> piccHwModeSet(int mode) async {
     return await methodChannel.invokeMethod<String>('piccHwModeSet', mode);
@@ -120,15 +320,139 @@ class MethodChannelCs50sdkupdate extends Cs50sdkupdatePlatform {
   }
 
   @override
-  Future<String?> piccNfc(List<int> nfcDataLen, List<int> technology,
-      List<int> nfcUid, List<int> ndefMessage) async {
+  Future<M1ReadResult> readM1Card(List<typed_data.Uint8List> keys,
+      {int firstSector = 0, int lastSector = 15}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'keys': keys,
+      'firstSector': firstSector,
+      'lastSector': lastSector,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'readM1Card', args);
+    return M1ReadResult.fromMap(result!);
+  }
+
+  @override
+  Future<M1WriteResult> writeM1Card(
+      List<typed_data.Uint8List> keys, Map<int, typed_data.Uint8List> blocks,
+      {bool allowTrailers = false}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'keys': keys,
+      'blocks': blocks,
+      'allowTrailers': allowTrailers,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'writeM1Card', args);
+    return M1WriteResult.fromMap(result!);
+  }
+
+  @override
+  Future<typed_data.Uint8List> readMfpCard(int firstBlock, int blockCount,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'firstBlock': firstBlock,
+      'blockCount': blockCount,
+      'keyNumber': keyNumber,
+      'keyVersion': keyVersion,
+      'keyType': keyType,
+      'sectorKeys': sectorKeys,
+      'encrypted': encrypted,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'readMfpCard', args);
+    return result!['data'] as typed_data.Uint8List;
+  }
+
+  @override
+  Future<int> writeMfpCard(int firstBlock, typed_data.Uint8List data,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false,
+      bool allowTrailers = false}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'firstBlock': firstBlock,
+      'data': data,
+      'keyNumber': keyNumber,
+      'keyVersion': keyVersion,
+      'keyType': keyType,
+      'sectorKeys': sectorKeys,
+      'encrypted': encrypted,
+      'allowTrailers': allowTrailers,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'writeMfpCard', args);
+    return result!['written'] as int;
+  }
+
+  @override
+  Future<UltralightDump> readUltralight(
+      {int pageCount = 0,
+      typed_data.Uint8List? password,
+      int counter = 2,
+      bool signature = true}) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'pageCount': pageCount,
+      'password': password,
+      'counter': counter,
+      'signature': signature,
+    };
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'readUltralight', args);
+    return UltralightDump.fromMap(result!);
+  }
+
+  @override
+  Future<NfcReadResult?> piccNfc(List<int> nfcDataLen, List<int> technology,
+      List<int> nfcUid, List<int> ndefMessage,
+      {bool beep = true}) async {
     final Map<String, dynamic> args = <String, dynamic>{
       'nfcDataLen': nfcDataLen,
       'technology': technology,
       'nfcUid': nfcUid,
       'ndefMessage': ndefMessage,
+      'beep': beep,
     };
-    return await methodChannel.invokeMethod<String>('PiccNfc', args);
+    final result = await methodChannel
+        .invokeMethod<Map<Object?, Object?>>('PiccNfc', args);
+    return result != null ? NfcReadResult.fromMap(result) : null;
+  }
+
+  //setFeedback: success beeps are queued natively and bursts within coalesceMs
+  //play once
+  @override
+  Future<void> setFeedback({bool enabled = true, int coalesceMs = 300}) async {
+    await methodChannel.invokeMethod<void>(
+        'setFeedback', {'enabled': enabled, 'coalesceMs': coalesceMs});
+  }
+
+  //setScanDedup: in continuous mode a code seen again within windowMs of its
+  //last sighting is dropped natively
+  @override
+  Future<void> setScanDedup({bool enabled = true, int windowMs = 1000}) async {
+    await methodChannel.invokeMethod<void>(
+        'setScanDedup', {'enabled': enabled, 'windowMs': windowMs});
+  }
+
+  //getScanDedupStats: passed and suppressed scans since the plugin attached
+  @override
+  Future<Map<String, int>> getScanDedupStats() async {
+    final stats =
+        await methodChannel.invokeMapMethod<String, int>('getScanDedupStats');
+    return stats ?? <String, int>{};
+  }
+
+  //playFeedback: 'success', 'warning' or 'error'; false if coalesced
+  @override
+  Future<bool> playFeedback(String pattern) async {
+    return await methodChannel
+            .invokeMethod<bool>('playFeedback', {'pattern': pattern}) ??
+        false;
   }
 
   @override
@@ -148,6 +472,40 @@ class MethodChannelCs50sdkupdate extends Cs50sdkupdatePlatform {
     return methodChannel.invokeMethod<String>('getDeviceId');
   }
 
+  //getFlightRecords: newest device operations from the native flight recorder,
+  //oldest first
+  @override
+  Future<List<FlightRecord>> getFlightRecords({int? limit}) async {
+    final result = await methodChannel.invokeMethod<List<Object?>>(
+        'getFlightRecords', {'limit': limit});
+    return result!
+        .map((r) => FlightRecord.fromMap(r as Map<Object?, Object?>))
+        .toList();
+  }
+
+  //exportFlightRecorder: copies the raw ring file to path, e.g. for upload
+  @override
+  Future<String?> exportFlightRecorder(String path) {
+    return methodChannel
+        .invokeMethod<String>('exportFlightRecorder', {'path': path});
+  }
+
+  //getDeviceInfo: cached natively, refresh reads the device again
+  @override
+  Future<PosDeviceInfo> getDeviceInfo({bool refresh = false}) async {
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'getDeviceInfo', {'refresh': refresh});
+    return PosDeviceInfo.fromMap(result!);
+  }
+
+  //getPosMetrics
+  @override
+  Future<Map<String, dynamic>> getPosMetrics({bool reset = false}) async {
+    final result = await methodChannel.invokeMethod<Map<Object?, Object?>>(
+        'getPosMetrics', {'reset': reset});
+    return _convertToStringDynamicMap(result);
+  }
+
   //SysGetRand
   @override
   Future<int?> sysGetRand(List<int> rnd) {
@@ -157,6 +515,26 @@ class MethodChannelCs50sdkupdate extends Cs50sdkupdatePlatform {
     return methodChannel.invokeMethod<int>('SysGetRand', args);
   }
 
+  //randomBytes: served by the native DRBG seeded from SysGetRand, at most 65536 bytes per call
+  @override
+  Future<typed_data.Uint8List> randomBytes(int length) async {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'length': length,
+    };
+    final result = await methodChannel.invokeMethod<typed_data.Uint8List>(
+        'randomBytes', args);
+    return result!;
+  }
+
+  //installRomPackage
+  @override
+  Future<String?> installRomPackage(String path) {
+    final Map<String, dynamic> args = <String, dynamic>{
+      'path': path,
+    };
+    return methodChannel.invokeMethod<String>('installRomPackage', args);
+  }
+
   //SysUpdate
   @override
   Future<int?> sysUpdate() {
@@ -585,14 +963,784 @@ class ScanResult {
   final String result;
   final int length;
   final int encodeType;
+  // times the scan was read within its batch, and when it was last read
+  final int count;
+  final int? time;
 
   ScanResult({
     required this.result,
     required this.length,
     required this.encodeType,
+    this.count = 1,
+    this.time,
+  });
+
+  factory ScanResult.fromMap(Map<Object?, Object?> map) {
+    return ScanResult(
+      result: map['result'] as String,
+      length: map['length'] as int,
+      encodeType: map['encodeType'] as int,
+      count: map['count'] as int? ?? 1,
+      time: map['time'] as int?,
+    );
+  }
+
+  @override
+  String toString() =>
+      'ScanResult(result: $result, length: $length, encodeType: $encodeType, count: $count)';
+}
+
+// Scans delivered together by scanBatches. dropped counts scans lost because the
+// batch was full, merged those folded into an equal scan's count, suppressed
+// continuous-mode repeats filtered out by setScanDedup since the previous batch.
+class ScanBatch {
+  final List<ScanResult> scans;
+  final int dropped;
+  final int merged;
+  final int suppressed;
+
+  ScanBatch({
+    required this.scans,
+    required this.dropped,
+    required this.merged,
+    this.suppressed = 0,
+  });
+
+  factory ScanBatch.fromMap(Map<Object?, Object?> map) {
+    return ScanBatch(
+      scans: (map['scans'] as List<Object?>)
+          .map((s) => ScanResult.fromMap(s as Map<Object?, Object?>))
+          .toList(),
+      dropped: map['dropped'] as int,
+      merged: map['merged'] as int,
+      suppressed: map['suppressed'] as int? ?? 0,
+    );
+  }
+
+  @override
+  String toString() =>
+      'ScanBatch(scans: ${scans.length}, dropped: $dropped, merged: $merged, suppressed: $suppressed)';
+}
+
+String _toHex(typed_data.Uint8List bytes) => bytes
+    .map((b) => b.toRadixString(16).padLeft(2, '0'))
+    .join()
+    .toUpperCase();
+
+// Result of piccCheck
+class PiccCheckResult {
+  final typed_data.Uint8List cardType;
+  final typed_data.Uint8List uid;
+
+  PiccCheckResult({
+    required this.cardType,
+    required this.uid,
+  });
+
+  factory PiccCheckResult.fromMap(Map<Object?, Object?> map) {
+    return PiccCheckResult(
+      cardType: map['cardType'] as typed_data.Uint8List,
+      uid: map['uid'] as typed_data.Uint8List,
+    );
+  }
+
+  String get uidHex => _toHex(uid);
+
+  @override
+  String toString() =>
+      'PiccCheckResult(cardType: ${String.fromCharCodes(cardType)}, uid: $uidHex)';
+}
+
+// Result of piccPolling
+class PiccPollingResult {
+  final typed_data.Uint8List cardType;
+  final typed_data.Uint8List uid;
+  final typed_data.Uint8List ats;
+  final int sak;
+
+  PiccPollingResult({
+    required this.cardType,
+    required this.uid,
+    required this.ats,
+    required this.sak,
+  });
+
+  factory PiccPollingResult.fromMap(Map<Object?, Object?> map) {
+    return PiccPollingResult(
+      cardType: map['cardType'] as typed_data.Uint8List,
+      uid: map['uid'] as typed_data.Uint8List,
+      ats: map['ats'] as typed_data.Uint8List,
+      sak: map['sak'] as int,
+    );
+  }
+
+  String get uidHex => _toHex(uid);
+
+  @override
+  String toString() =>
+      'PiccPollingResult(cardType: ${String.fromCharCodes(cardType)}, uid: $uidHex, ats: ${_toHex(ats)}, sak: $sak)';
+}
+
+// Response of piccCommand / piccApduCmd
+class ApduResponse {
+  final typed_data.Uint8List data;
+  final int sw1;
+  final int sw2;
+
+  ApduResponse({
+    required this.data,
+    required this.sw1,
+    required this.sw2,
+  });
+
+  factory ApduResponse.fromMap(Map<Object?, Object?> map) {
+    return ApduResponse(
+      data: map['data'] as typed_data.Uint8List,
+      sw1: map['sw1'] as int,
+      sw2: map['sw2'] as int,
+    );
+  }
+
+  int get sw => (sw1 << 8) | sw2;
+
+  bool get isSuccess => sw == 0x9000;
+
+  @override
+  String toString() =>
+      'ApduResponse(data: ${_toHex(data)}, sw: ${sw.toRadixString(16).padLeft(4, '0')})';
+}
+
+// Result of piccNfc
+class NfcReadResult {
+  final String technology;
+  final typed_data.Uint8List uid;
+  final typed_data.Uint8List ndef;
+  final List<NdefRecord> records;
+
+  NfcReadResult({
+    required this.technology,
+    required this.uid,
+    required this.ndef,
+    this.records = const [],
+  });
+
+  factory NfcReadResult.fromMap(Map<Object?, Object?> map) {
+    return NfcReadResult(
+      technology: map['technology'] as String,
+      uid: map['uid'] as typed_data.Uint8List,
+      ndef: map['ndef'] as typed_data.Uint8List,
+      records: NdefRecord.listFrom(map['records']),
+    );
+  }
+
+  String get uidHex => _toHex(uid);
+
+  @override
+  String toString() =>
+      'NfcReadResult(technology: $technology, uid: $uidHex, ndef: ${ndef.length} bytes, records: $records)';
+}
+
+// One NDEF record; uri, text and records are set for URI, text and smart poster records
+class NdefRecord {
+  static const int tnfEmpty = 0x00;
+  static const int tnfWellKnown = 0x01;
+  static const int tnfMimeMedia = 0x02;
+  static const int tnfAbsoluteUri = 0x03;
+  static const int tnfExternal = 0x04;
+  static const int tnfUnknown = 0x05;
+
+  final int tnf;
+  final typed_data.Uint8List type;
+  final typed_data.Uint8List? id;
+  final typed_data.Uint8List payload;
+  final String? uri;
+  final String? language;
+  final String? text;
+  final List<NdefRecord> records;
+
+  NdefRecord({
+    required this.tnf,
+    required this.type,
+    this.id,
+    required this.payload,
+    this.uri,
+    this.language,
+    this.text,
+    this.records = const [],
   });
 
+  factory NdefRecord.fromMap(Map<Object?, Object?> map) {
+    return NdefRecord(
+      tnf: map['tnf'] as int,
+      type: map['type'] as typed_data.Uint8List,
+      id: map['id'] as typed_data.Uint8List?,
+      payload: map['payload'] as typed_data.Uint8List,
+      uri: map['uri'] as String?,
+      language: map['language'] as String?,
+      text: map['text'] as String?,
+      records: listFrom(map['records']),
+    );
+  }
+
+  static List<NdefRecord> listFrom(Object? records) {
+    if (records == null) {
+      return const [];
+    }
+    return (records as List<Object?>)
+        .map((r) => NdefRecord.fromMap(r as Map<Object?, Object?>))
+        .toList();
+  }
+
+  String get typeString => String.fromCharCodes(type);
+
+  @override
+  String toString() => uri != null
+      ? 'NdefRecord(uri: $uri)'
+      : text != null
+          ? 'NdefRecord(text: $text, language: $language)'
+          : 'NdefRecord(tnf: $tnf, type: $typeString, payload: ${payload.length} bytes)';
+}
+
+// One sector read by readM1Card; error is the device code when no key opened it
+class M1Sector {
+  final int sector;
+  final String? keyType;
+  final int? keyIndex;
+  final List<typed_data.Uint8List> blocks;
+  final int? error;
+
+  M1Sector({
+    required this.sector,
+    this.keyType,
+    this.keyIndex,
+    required this.blocks,
+    this.error,
+  });
+
+  factory M1Sector.fromMap(Map<Object?, Object?> map) {
+    return M1Sector(
+      sector: map['sector'] as int,
+      keyType: map['keyType'] as String?,
+      keyIndex: map['keyIndex'] as int?,
+      blocks: ((map['blocks'] as List<Object?>?) ?? const [])
+          .cast<typed_data.Uint8List>(),
+      error: map['error'] as int?,
+    );
+  }
+
+  @override
+  String toString() => error != null
+      ? 'M1Sector($sector, error: $error)'
+      : 'M1Sector($sector, key: $keyType#$keyIndex, blocks: ${blocks.length})';
+}
+
+// SAM identity reported by openSamSession
+class SamSessionInfo {
+  final typed_data.Uint8List atr;
+  final typed_data.Uint8List version;
+  final int hostMode;
+
+  SamSessionInfo({
+    required this.atr,
+    required this.version,
+    required this.hostMode,
+  });
+
+  factory SamSessionInfo.fromMap(Map<Object?, Object?> map) {
+    return SamSessionInfo(
+      atr: map['atr'] as typed_data.Uint8List,
+      version: map['version'] as typed_data.Uint8List,
+      hostMode: map['hostMode'] as int,
+    );
+  }
+
+  @override
+  String toString() =>
+      'SamSessionInfo(atr: ${_toHex(atr)}, version: ${_toHex(version)}, hostMode: $hostMode)';
+}
+
+// Result of readM1Card
+class M1ReadResult {
+  final typed_data.Uint8List uid;
+  final typed_data.Uint8List cardType;
+  final List<M1Sector> sectors;
+
+  M1ReadResult({
+    required this.uid,
+    required this.cardType,
+    required this.sectors,
+  });
+
+  factory M1ReadResult.fromMap(Map<Object?, Object?> map) {
+    return M1ReadResult(
+      uid: map['uid'] as typed_data.Uint8List,
+      cardType: map['cardType'] as typed_data.Uint8List,
+      sectors: (map['sectors'] as List<Object?>)
+          .map((s) => M1Sector.fromMap(s as Map<Object?, Object?>))
+          .toList(),
+    );
+  }
+
+  String get uidHex => _toHex(uid);
+
+  @override
+  String toString() => 'M1ReadResult(uid: $uidHex, sectors: ${sectors.length})';
+}
+
+// Result of writeM1Card; failed maps block number to device code (-1: refused)
+class M1WriteResult {
+  final typed_data.Uint8List uid;
+  final List<int> written;
+  final List<int> unchanged;
+  final Map<int, int> failed;
+
+  M1WriteResult({
+    required this.uid,
+    required this.written,
+    required this.unchanged,
+    required this.failed,
+  });
+
+  factory M1WriteResult.fromMap(Map<Object?, Object?> map) {
+    return M1WriteResult(
+      uid: map['uid'] as typed_data.Uint8List,
+      written: (map['written'] as List<Object?>).cast<int>(),
+      unchanged: (map['unchanged'] as List<Object?>).cast<int>(),
+      failed: (map['failed'] as Map<Object?, Object?>)
+          .map((k, v) => MapEntry(k as int, v as int)),
+    );
+  }
+
+  @override
+  String toString() =>
+      'M1WriteResult(written: $written, unchanged: $unchanged, failed: $failed)';
+}
+
+// Result of readUltralight; counter and signature are null when the tag lacks them
+class UltralightDump {
+  final typed_data.Uint8List memory;
+  final int pages;
+  final typed_data.Uint8List? pack;
+  final int? counter;
+  final typed_data.Uint8List? signature;
+
+  UltralightDump({
+    required this.memory,
+    required this.pages,
+    this.pack,
+    this.counter,
+    this.signature,
+  });
+
+  factory UltralightDump.fromMap(Map<Object?, Object?> map) {
+    return UltralightDump(
+      memory: map['memory'] as typed_data.Uint8List,
+      pages: map['pages'] as int,
+      pack: map['pack'] as typed_data.Uint8List?,
+      counter: map['counter'] as int?,
+      signature: map['signature'] as typed_data.Uint8List?,
+    );
+  }
+
+  typed_data.Uint8List page(int index) =>
+      typed_data.Uint8List.sublistView(memory, index * 4, index * 4 + 4);
+
+  @override
+  String toString() =>
+      'UltralightDump(pages: $pages, counter: $counter, signature: ${signature == null ? null : _toHex(signature!)})';
+}
+
+// One magnetic stripe swipe reported by mcrSwipes; status holds the McrRead
+// track bits, and fields are null when the track was not read or is encrypted
+class MagSwipe {
+  final int status;
+  final typed_data.Uint8List? track1;
+  final typed_data.Uint8List? track2;
+  final typed_data.Uint8List? track3;
+  final String? pan;
+  final String? maskedPan;
+  final String? name;
+  final String? expiry;
+  final String? serviceCode;
+  final int timestamp;
+
+  MagSwipe({
+    required this.status,
+    this.track1,
+    this.track2,
+    this.track3,
+    this.pan,
+    this.maskedPan,
+    this.name,
+    this.expiry,
+    this.serviceCode,
+    required this.timestamp,
+  });
+
+  factory MagSwipe.fromMap(Map<Object?, Object?> map) {
+    return MagSwipe(
+      status: map['status'] as int,
+      track1: map['track1'] as typed_data.Uint8List?,
+      track2: map['track2'] as typed_data.Uint8List?,
+      track3: map['track3'] as typed_data.Uint8List?,
+      pan: map['pan'] as String?,
+      maskedPan: map['maskedPan'] as String?,
+      name: map['name'] as String?,
+      expiry: map['expiry'] as String?,
+      serviceCode: map['serviceCode'] as String?,
+      timestamp: map['timestamp'] as int,
+    );
+  }
+
+  bool get isValid => status > 0 && (status & 0x07) != 0;
+
+  @override
+  String toString() =>
+      'MagSwipe(status: $status, pan: $maskedPan, expiry: $expiry, serviceCode: $serviceCode)';
+}
+
+// Card arrival or removal reported by piccPresenceEvents
+class PiccPresenceEvent {
+  final bool arrived;
+  final typed_data.Uint8List uid;
+  final typed_data.Uint8List? cardType;
+  final int? presentMillis;
+  final int timestamp;
+
+  PiccPresenceEvent({
+    required this.arrived,
+    required this.uid,
+    this.cardType,
+    this.presentMillis,
+    required this.timestamp,
+  });
+
+  factory PiccPresenceEvent.fromMap(Map<Object?, Object?> map) {
+    return PiccPresenceEvent(
+      arrived: map['event'] == 'arrived',
+      uid: map['uid'] as typed_data.Uint8List,
+      cardType: map['cardType'] as typed_data.Uint8List?,
+      presentMillis: map['presentMillis'] as int?,
+      timestamp: map['timestamp'] as int,
+    );
+  }
+
+  String get uidHex => _toHex(uid);
+
+  @override
+  String toString() => arrived
+      ? 'PiccPresenceEvent(arrived, uid: $uidHex)'
+      : 'PiccPresenceEvent(removed, uid: $uidHex, presentMillis: $presentMillis)';
+}
+
+// One command of an APDU script run by runApduScript.
+// apdu is hex and may contain {name} (bytes of a saved variable) and {#name}
+// (its length as one byte). expect lists accepted status words, X matching any
+// nibble. onMatch / onMismatch are 'next', 'stop' or the label of another step.
+class ApduStep {
+  final String apdu;
+  final String? label;
+  final List<String> expect;
+  final String? save;
+  final String? saveTag;
+  final String onMatch;
+  final String onMismatch;
+
+  ApduStep(
+    this.apdu, {
+    this.label,
+    this.expect = const ['9000'],
+    this.save,
+    this.saveTag,
+    this.onMatch = 'next',
+    this.onMismatch = 'stop',
+  });
+
+  Map<String, Object?> toMap() => <String, Object?>{
+        'apdu': apdu,
+        'label': label,
+        'expect': expect,
+        'save': save,
+        'saveTag': saveTag,
+        'onMatch': onMatch,
+        'onMismatch': onMismatch,
+      };
+}
+
+// Response to one executed step of an APDU script
+class ApduStepResponse {
+  final int step;
+  final String? label;
+  final ApduResponse response;
+  final bool matched;
+
+  ApduStepResponse({
+    required this.step,
+    required this.label,
+    required this.response,
+    required this.matched,
+  });
+
+  factory ApduStepResponse.fromMap(Map<Object?, Object?> map) {
+    return ApduStepResponse(
+      step: map['step'] as int,
+      label: map['label'] as String?,
+      response: ApduResponse.fromMap(map),
+      matched: map['matched'] as bool,
+    );
+  }
+
+  @override
+  String toString() =>
+      'ApduStepResponse(step: $step, label: $label, matched: $matched, $response)';
+}
+
+// Result of runApduScript
+class ApduScriptResult {
+  final bool completed;
+  final int failedStep;
+  final String? error;
+  final List<ApduStepResponse> responses;
+  final Map<String, typed_data.Uint8List> variables;
+
+  ApduScriptResult({
+    required this.completed,
+    required this.failedStep,
+    required this.error,
+    required this.responses,
+    required this.variables,
+  });
+
+  factory ApduScriptResult.fromMap(Map<Object?, Object?> map) {
+    return ApduScriptResult(
+      completed: map['completed'] as bool,
+      failedStep: map['failedStep'] as int,
+      error: map['error'] as String?,
+      responses: (map['responses'] as List<Object?>)
+          .map((r) => ApduStepResponse.fromMap(r as Map<Object?, Object?>))
+          .toList(),
+      variables: (map['variables'] as Map<Object?, Object?>).map(
+          (k, v) => MapEntry(k as String, v as typed_data.Uint8List)),
+    );
+  }
+
+  @override
+  String toString() =>
+      'ApduScriptResult(completed: $completed, failedStep: $failedStep, error: $error, responses: ${responses.length})';
+}
+
+// One key for loadKeys. type is 'pin', 'mac', 'des' or 'dukpt'; a working key
+// names its master in masterIndex. A key whose kcv already matches is left alone;
+// a DUKPT IPEK (with its ksn) is only written when force is set.
+class KeyManifestEntry {
+  final String? name;
+  final String type;
+  final bool master;
+  final int index;
+  final int masterIndex;
+  final typed_data.Uint8List key;
+  final int mode;
+  final typed_data.Uint8List? kcv;
+  final typed_data.Uint8List? ksn;
+  final bool force;
+
+  KeyManifestEntry({
+    this.name,
+    required this.type,
+    this.master = false,
+    required this.index,
+    this.masterIndex = 0,
+    required this.key,
+    this.mode = 0,
+    this.kcv,
+    this.ksn,
+    this.force = false,
+  });
+
+  Map<String, Object?> toMap() => <String, Object?>{
+        'name': name,
+        'type': type,
+        'master': master,
+        'index': index,
+        'masterIndex': masterIndex,
+        'key': key,
+        'mode': mode,
+        'kcv': kcv,
+        'ksn': ksn,
+        'force': force,
+      };
+}
+
+// Outcome of one key; status is 'written', 'unchanged', 'failed' or 'skipped'
+class KeyLoadResult {
+  final String name;
+  final String type;
+  final int index;
+  final String status;
+  final int? code;
+  final typed_data.Uint8List? kcv;
+  final String? reason;
+
+  KeyLoadResult({
+    required this.name,
+    required this.type,
+    required this.index,
+    required this.status,
+    this.code,
+    this.kcv,
+    this.reason,
+  });
+
+  factory KeyLoadResult.fromMap(Map<Object?, Object?> map) {
+    return KeyLoadResult(
+      name: map['name'] as String,
+      type: map['type'] as String,
+      index: map['index'] as int,
+      status: map['status'] as String,
+      code: map['code'] as int?,
+      kcv: map['kcv'] as typed_data.Uint8List?,
+      reason: map['reason'] as String?,
+    );
+  }
+
+  @override
+  String toString() =>
+      'KeyLoadResult(name: $name, status: $status, code: $code, kcv: ${kcv == null ? null : _toHex(kcv!)}, reason: $reason)';
+}
+
+// Result of loadKeys, keys in the order they were processed
+class KeyLoadReport {
+  final List<KeyLoadResult> keys;
+  final int written;
+  final int unchanged;
+  final int failed;
+  final int skipped;
+  final int elapsedMs;
+
+  KeyLoadReport({
+    required this.keys,
+    required this.written,
+    required this.unchanged,
+    required this.failed,
+    required this.skipped,
+    required this.elapsedMs,
+  });
+
+  bool get ok => failed == 0;
+
+  factory KeyLoadReport.fromMap(Map<Object?, Object?> map) {
+    return KeyLoadReport(
+      keys: (map['keys'] as List<Object?>)
+          .map((k) => KeyLoadResult.fromMap(k as Map<Object?, Object?>))
+          .toList(),
+      written: map['written'] as int,
+      unchanged: map['unchanged'] as int,
+      failed: map['failed'] as int,
+      skipped: map['skipped'] as int,
+      elapsedMs: map['elapsedMs'] as int,
+    );
+  }
+
+  @override
+  String toString() =>
+      'KeyLoadReport(written: $written, unchanged: $unchanged, failed: $failed, skipped: $skipped, elapsedMs: $elapsedMs)';
+}
+
+// Terminal identity from getDeviceInfo. Fields the device failed to return are
+// null; firmwareVersion and serialNumber are the raw SysGetVersion / SysReadSN bytes.
+class PosDeviceInfo {
+  final String? osVersion;
+  final String? deviceId;
+  final String? apiVersion;
+  final typed_data.Uint8List? firmwareVersion;
+  final typed_data.Uint8List? serialNumber;
+  final typed_data.Uint8List? chipId;
+  final String? buildFingerprint;
+  final int collectedAt;
+
+  PosDeviceInfo({
+    this.osVersion,
+    this.deviceId,
+    this.apiVersion,
+    this.firmwareVersion,
+    this.serialNumber,
+    this.chipId,
+    this.buildFingerprint,
+    required this.collectedAt,
+  });
+
+  factory PosDeviceInfo.fromMap(Map<Object?, Object?> map) {
+    return PosDeviceInfo(
+      osVersion: map['osVersion'] as String?,
+      deviceId: map['deviceId'] as String?,
+      apiVersion: map['apiVersion'] as String?,
+      firmwareVersion: map['firmwareVersion'] as typed_data.Uint8List?,
+      serialNumber: map['serialNumber'] as typed_data.Uint8List?,
+      chipId: map['chipId'] as typed_data.Uint8List?,
+      buildFingerprint: map['buildFingerprint'] as String?,
+      collectedAt: map['collectedAt'] as int,
+    );
+  }
+
+  // Printable part of the raw bytes, up to the first NUL
+  static String? _text(typed_data.Uint8List? bytes) {
+    if (bytes == null) return null;
+    final end = bytes.indexOf(0);
+    return String.fromCharCodes(end < 0 ? bytes : bytes.sublist(0, end)).trim();
+  }
+
+  String? get firmwareVersionText => _text(firmwareVersion);
+
+  String? get serialNumberText => _text(serialNumber);
+
+  @override
+  String toString() =>
+      'PosDeviceInfo(osVersion: $osVersion, deviceId: $deviceId, apiVersion: $apiVersion, firmwareVersion: $firmwareVersionText, serialNumber: $serialNumberText, chipId: ${chipId == null ? null : _toHex(chipId!)})';
+}
+
+// One device operation from getFlightRecords. flags: 1 the call threw a
+// RemoteException, 2 it returned something other than an int (code is then 0),
+// 4 a run of idle polls folded into one record, argsDigest then being the number
+// of polls. Otherwise argsDigest hashes primitive arguments and array lengths only.
+class FlightRecord {
+  final int seq;
+  final DateTime time;
+  final String api;
+  final int flags;
+  final int code;
+  final int durationUs;
+  final int argsDigest;
+
+  FlightRecord({
+    required this.seq,
+    required this.time,
+    required this.api,
+    required this.flags,
+    required this.code,
+    required this.durationUs,
+    required this.argsDigest,
+  });
+
+  bool get remoteError => flags & 1 != 0;
+
+  bool get folded => flags & 4 != 0;
+
+  // Calls this record stands for.
+  int get count => folded ? argsDigest : 1;
+
+  factory FlightRecord.fromMap(Map<Object?, Object?> map) {
+    return FlightRecord(
+      seq: map['seq'] as int,
+      time: DateTime.fromMillisecondsSinceEpoch(map['time'] as int),
+      api: map['api'] as String,
+      flags: map['flags'] as int,
+      code: map['code'] as int,
+      durationUs: map['durationUs'] as int,
+      argsDigest: map['argsDigest'] as int,
+    );
+  }
+
   @override
   String toString() =>
-      'ScanResult(result: $result, length: $length, encodeType: $encodeType)';
+      'FlightRecord(seq: $seq, time: $time, api: $api, code: $code, durationUs: $durationUs, flags: $flags)';
 }
@@ -34,22 +34,55 @@ abstract class Cs50sdkupdatePlatform extends PlatformInterface {
     throw UnimplementedError('openPicc() has not been implemented.');
   }
 
-  Future<String?> piccCheck() {
+  Future<PiccCheckResult?> piccCheck() {
     throw UnimplementedError('piccCheck() has not been implemented.');
   }
 
-  Future<String?> piccPolling() {
+  Future<PiccPollingResult?> piccPolling({bool beep = true}) {
     throw UnimplementedError('piccPolling() has not been implemented.');
   }
 
-  Future<String?> piccCommand(List<int> apduSend) {
+  Future<ApduResponse?> piccCommand(List<int> apduSend, {bool beep = true}) {
     throw UnimplementedError('piccCommand() has not been implemented.');
   }
 
-  Future<String?> piccApduCmd(List<int> pucInput) {
+  Future<ApduResponse?> piccApduCmd(List<int> pucInput, {bool beep = true}) {
     throw UnimplementedError('piccApduCmd() has not been implemented.');
   }
 
+  Stream<PiccPresenceEvent> piccPresenceEvents(
+      {String mode = 'A',
+      int fastIntervalMs = 10,
+      int idleIntervalMs = 40,
+      int fastWindowMs = 5000,
+      int presentIntervalMs = 50}) {
+    throw UnimplementedError('piccPresenceEvents() has not been implemented.');
+  }
+
+  Stream<MagSwipe> mcrSwipes(
+      {int fastIntervalMs = 20,
+      int idleIntervalMs = 100,
+      int fastWindowMs = 10000,
+      bool encrypted = false,
+      int keyNo = 0}) {
+    throw UnimplementedError('mcrSwipes() has not been implemented.');
+  }
+
+  Stream<ScanBatch> scanBatches(
+      {int windowMs = 50,
+      int maxQueue = 32,
+      String overflow = 'dropOldest',
+      bool merge = true}) {
+    throw UnimplementedError('scanBatches() has not been implemented.');
+  }
+
+  Future<ApduScriptResult> runApduScript(List<ApduStep> steps,
+      {String channel = 'picc',
+      int slot = 0,
+      Map<String, Uint8List>? variables}) {
+    throw UnimplementedError('runApduScript() has not been implemented.');
+  }
+
   Future<void> piccClose() {
     throw UnimplementedError('piccClose() has not been implemented.');
   }
@@ -62,6 +95,57 @@ abstract class Cs50sdkupdatePlatform extends PlatformInterface {
     throw UnimplementedError('piccSamAv2Init() has not been implemented.');
   }
 
+  Future<SamSessionInfo> openSamSession(int samSlotNo, Uint8List samHostKey,
+      {int idleTimeoutMs = 300000}) {
+    throw UnimplementedError('openSamSession() has not been implemented.');
+  }
+
+  Future<void> samMfcAuth(int blockNo, int keyNumber,
+      {String keyType = 'A', int keyVersion = 0}) {
+    throw UnimplementedError('samMfcAuth() has not been implemented.');
+  }
+
+  Future<void> closeSamSession() {
+    throw UnimplementedError('closeSamSession() has not been implemented.');
+  }
+
+  Future<void> fiscalOpen(
+      {int baudrate = 115200,
+      int dataBits = 8,
+      int stopBits = 1,
+      String parity = 'N',
+      bool flowControl = false,
+      int responseTimeoutMs = 2000,
+      int window = 4,
+      int maxRetries = 2}) {
+    throw UnimplementedError('fiscalOpen() has not been implemented.');
+  }
+
+  Future<Uint8List> fiscalSend(Uint8List payload) {
+    throw UnimplementedError('fiscalSend() has not been implemented.');
+  }
+
+  Future<void> fiscalClose() {
+    throw UnimplementedError('fiscalClose() has not been implemented.');
+  }
+
+  Future<KeyLoadReport> loadKeys(List<KeyManifestEntry> manifest) {
+    throw UnimplementedError('loadKeys() has not been implemented.');
+  }
+
+  Future<Uint8List> pciMacFile(String path, int keyNo,
+      {int algorithm = 0, int chunkSize = 1024}) {
+    throw UnimplementedError('pciMacFile() has not been implemented.');
+  }
+
+  Future<Uint8List?> pciCryptFile(String path, String outPath, int keyNo,
+      {bool encrypt = true,
+      bool dukpt = false,
+      Uint8List? iv,
+      int chunkSize = 1024}) {
+    throw UnimplementedError('pciCryptFile() has not been implemented.');
+  }
+
   Future<String?> piccHwModeSet(int mode) {
     throw UnimplementedError('piccHwModeSet() has not been implemented.');
   }
@@ -71,11 +155,66 @@ abstract class Cs50sdkupdatePlatform extends PlatformInterface {
     throw UnimplementedError('piccM1Authority() has not been implemented.');
   }
 
-  Future<String?> piccNfc(List<int> nfcDataLen, List<int> technology,
-      List<int> nfcUid, List<int> ndefMessage) {
+  Future<M1ReadResult> readM1Card(List<Uint8List> keys,
+      {int firstSector = 0, int lastSector = 15}) {
+    throw UnimplementedError('readM1Card() has not been implemented.');
+  }
+
+  Future<M1WriteResult> writeM1Card(
+      List<Uint8List> keys, Map<int, Uint8List> blocks,
+      {bool allowTrailers = false}) {
+    throw UnimplementedError('writeM1Card() has not been implemented.');
+  }
+
+  Future<Uint8List> readMfpCard(int firstBlock, int blockCount,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false}) {
+    throw UnimplementedError('readMfpCard() has not been implemented.');
+  }
+
+  Future<int> writeMfpCard(int firstBlock, Uint8List data,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false,
+      bool allowTrailers = false}) {
+    throw UnimplementedError('writeMfpCard() has not been implemented.');
+  }
+
+  Future<UltralightDump> readUltralight(
+      {int pageCount = 0,
+      Uint8List? password,
+      int counter = 2,
+      bool signature = true}) {
+    throw UnimplementedError('readUltralight() has not been implemented.');
+  }
+
+  Future<NfcReadResult?> piccNfc(List<int> nfcDataLen, List<int> technology,
+      List<int> nfcUid, List<int> ndefMessage,
+      {bool beep = true}) {
     throw UnimplementedError('piccNfc() has not been implemented.');
   }
 
+  Future<void> setFeedback({bool enabled = true, int coalesceMs = 300}) {
+    throw UnimplementedError('setFeedback() has not been implemented.');
+  }
+
+  Future<void> setScanDedup({bool enabled = true, int windowMs = 1000}) {
+    throw UnimplementedError('setScanDedup() has not been implemented.');
+  }
+
+  Future<Map<String, int>> getScanDedupStats() {
+    throw UnimplementedError('getScanDedupStats() has not been implemented.');
+  }
+
+  Future<bool> playFeedback(String pattern) {
+    throw UnimplementedError('playFeedback() has not been implemented.');
+  }
+
   Future<int?> sysLogSwitch(int level) {
     throw UnimplementedError('SysLogSwitch() has not been implemented.');
   }
@@ -84,6 +223,14 @@ abstract class Cs50sdkupdatePlatform extends PlatformInterface {
     throw UnimplementedError('SysGetRand() has not been implemented.');
   }
 
+  Future<Uint8List> randomBytes(int length) {
+    throw UnimplementedError('randomBytes() has not been implemented.');
+  }
+
+  Future<String?> installRomPackage(String path) {
+    throw UnimplementedError('installRomPackage() has not been implemented.');
+  }
+
   Future<int?> sysUpdate() {
     throw UnimplementedError('SysUpdate() has not been implemented.');
   }
@@ -108,6 +255,22 @@ abstract class Cs50sdkupdatePlatform extends PlatformInterface {
     throw UnimplementedError('getDeviceId() has not been implemented.');
   }
 
+  Future<List<FlightRecord>> getFlightRecords({int? limit}) {
+    throw UnimplementedError('getFlightRecords() has not been implemented.');
+  }
+
+  Future<String?> exportFlightRecorder(String path) {
+    throw UnimplementedError('exportFlightRecorder() has not been implemented.');
+  }
+
+  Future<PosDeviceInfo> getDeviceInfo({bool refresh = false}) {
+    throw UnimplementedError('getDeviceInfo() has not been implemented.');
+  }
+
+  Future<Map<String, dynamic>> getPosMetrics({bool reset = false}) {
+    throw UnimplementedError('getPosMetrics() has not been implemented.');
+  }
+
   Future<String?> printInit() {
     throw UnimplementedError('printInit() has not been implemented.');
   }
@@ -1,3 +1,5 @@
+import 'dart:typed_data';
+
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:cs50sdkupdate/cs50sdkupdate_method_channel.dart';
@@ -12,6 +14,88 @@ void main() {
     TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger.setMockMethodCallHandler(
       channel,
       (MethodCall methodCall) async {
+        switch (methodCall.method) {
+          case 'piccPolling':
+            return <String, Object>{
+              'cardType': Uint8List.fromList([0x41, 0x43]),
+              'uid': Uint8List.fromList([0x04, 0xA1, 0xB2, 0xC3]),
+              'ats': Uint8List(0),
+              'sak': 0x20,
+            };
+          case 'piccApduCmd':
+            return <String, Object>{
+              'data': Uint8List.fromList([0x6F, 0x00]),
+              'sw1': 0x90,
+              'sw2': 0x00,
+            };
+          case 'runApduScript':
+            final steps = methodCall.arguments['steps'] as List<Object?>;
+            return <String, Object?>{
+              'completed': true,
+              'failedStep': -1,
+              'error': null,
+              'responses': [
+                for (var i = 0; i < steps.length; i++)
+                  <String, Object?>{
+                    'step': i,
+                    'label': (steps[i] as Map)['label'],
+                    'data': Uint8List.fromList([0x77, 0x00]),
+                    'sw1': 0x90,
+                    'sw2': 0x00,
+                    'matched': true,
+                  },
+              ],
+              'variables': <String, Object>{
+                'aip': Uint8List.fromList([0x19, 0x80]),
+              },
+            };
+          case 'readM1Card':
+            return <String, Object?>{
+              'uid': Uint8List.fromList([0x1A, 0x2B, 0x3C, 0x4D]),
+              'cardType': Uint8List.fromList([0x04, 0x00, 0x08]),
+              'sectors': [
+                <String, Object?>{
+                  'sector': methodCall.arguments['firstSector'],
+                  'keyType': 'B',
+                  'keyIndex': 1,
+                  'blocks': [Uint8List(16), Uint8List(16), Uint8List(16)],
+                },
+                <String, Object?>{
+                  'sector': methodCall.arguments['lastSector'],
+                  'error': -2,
+                },
+              ],
+            };
+          case 'loadKeys':
+            final manifest = methodCall.arguments['manifest'] as List;
+            final first = manifest[0] as Map;
+            return <String, Object?>{
+              'keys': [
+                <String, Object?>{
+                  'name': 'pin master ${first['index']}',
+                  'type': first['type'],
+                  'index': first['index'],
+                  'status': 'unchanged',
+                  'kcv': first['kcv'],
+                },
+              ],
+              'written': 0,
+              'unchanged': 1,
+              'failed': 0,
+              'skipped': 0,
+              'elapsedMs': 12,
+            };
+          case 'getDeviceInfo':
+            return <String, Object?>{
+              'osVersion': 'CS50_V2.1',
+              'deviceId': '50000123',
+              'firmwareVersion':
+                  Uint8List.fromList([0x31, 0x2E, 0x30, 0x2E, 0x37, 0, 0, 0, 0, 0]),
+              'collectedAt': 1700000000000,
+            };
+          case 'getScanDedupStats':
+            return <String, Object?>{'passed': 12, 'suppressed': 40};
+        }
         return '42';
       },
     );
@@ -24,4 +108,67 @@ void main() {
   test('getPlatformVersion', () async {
     expect(await platform.getPlatformVersion(), '42');
   });
+
+  test('piccPolling', () async {
+    final result = await platform.piccPolling();
+    expect(result!.uidHex, '04A1B2C3');
+    expect(result.sak, 0x20);
+  });
+
+  test('piccApduCmd', () async {
+    final response = await platform.piccApduCmd([0x00, 0xA4, 0x04, 0x00]);
+    expect(response!.data, [0x6F, 0x00]);
+    expect(response.isSuccess, isTrue);
+  });
+
+  test('runApduScript', () async {
+    final result = await platform.runApduScript([
+      ApduStep('00A404000E325041592E5359532E444446303100', save: 'fci'),
+      ApduStep('80A80000{#pdol}{pdol}00', label: 'gpo', save: 'aip', saveTag: '82'),
+    ]);
+    expect(result.completed, isTrue);
+    expect(result.responses, hasLength(2));
+    expect(result.responses[1].label, 'gpo');
+    expect(result.responses[1].response.isSuccess, isTrue);
+    expect(result.variables['aip'], [0x19, 0x80]);
+  });
+
+  test('readM1Card', () async {
+    final result = await platform.readM1Card(
+        [Uint8List.fromList(List.filled(6, 0xFF))],
+        firstSector: 1, lastSector: 2);
+    expect(result.uidHex, '1A2B3C4D');
+    expect(result.sectors[0].sector, 1);
+    expect(result.sectors[0].keyType, 'B');
+    expect(result.sectors[0].blocks, hasLength(3));
+    expect(result.sectors[1].error, -2);
+  });
+
+  test('loadKeys', () async {
+    final report = await platform.loadKeys([
+      KeyManifestEntry(
+          type: 'pin',
+          master: true,
+          index: 2,
+          key: Uint8List(16),
+          kcv: Uint8List.fromList([0x8C, 0xA6, 0x4D])),
+    ]);
+    expect(report.ok, isTrue);
+    expect(report.unchanged, 1);
+    expect(report.keys[0].name, 'pin master 2');
+    expect(report.keys[0].kcv, [0x8C, 0xA6, 0x4D]);
+  });
+
+  test('getDeviceInfo', () async {
+    final info = await platform.getDeviceInfo();
+    expect(info.deviceId, '50000123');
+    expect(info.firmwareVersionText, '1.0.7');
+    expect(info.serialNumber, isNull);
+  });
+
+  test('getScanDedupStats', () async {
+    final stats = await platform.getScanDedupStats();
+    expect(stats['passed'], 12);
+    expect(stats['suppressed'], 40);
+  });
 }
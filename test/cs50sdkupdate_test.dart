@@ -25,6 +25,30 @@ class MockCs50sdkupdatePlatform
     throw UnimplementedError();
   }
 
+  @override
+  Future<List<FlightRecord>> getFlightRecords({int? limit}) {
+    // TODO: implement getFlightRecords
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<String?> exportFlightRecorder(String path) {
+    // TODO: implement exportFlightRecorder
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<PosDeviceInfo> getDeviceInfo({bool refresh = false}) {
+    // TODO: implement getDeviceInfo
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<Map<String, dynamic>> getPosMetrics({bool reset = false}) {
+    // TODO: implement getPosMetrics
+    throw UnimplementedError();
+  }
+
   @override
   Future<String?> getOSVersion() {
     // TODO: implement getOSVersion
@@ -32,13 +56,54 @@ class MockCs50sdkupdatePlatform
   }
 
   @override
-  Future<String?> piccApduCmd(List<int> pucInput) {
+  Future<ApduResponse?> piccApduCmd(List<int> pucInput, {bool beep = true}) {
     // TODO: implement piccApduCmd
     throw UnimplementedError();
   }
 
   @override
-  Future<String?> piccCheck() {
+  Stream<PiccPresenceEvent> piccPresenceEvents(
+      {String mode = 'A',
+      int fastIntervalMs = 10,
+      int idleIntervalMs = 40,
+      int fastWindowMs = 5000,
+      int presentIntervalMs = 50}) {
+    // TODO: implement piccPresenceEvents
+    throw UnimplementedError();
+  }
+
+  @override
+  Stream<MagSwipe> mcrSwipes(
+      {int fastIntervalMs = 20,
+      int idleIntervalMs = 100,
+      int fastWindowMs = 10000,
+      bool encrypted = false,
+      int keyNo = 0}) {
+    // TODO: implement mcrSwipes
+    throw UnimplementedError();
+  }
+
+  @override
+  Stream<ScanBatch> scanBatches(
+      {int windowMs = 50,
+      int maxQueue = 32,
+      String overflow = 'dropOldest',
+      bool merge = true}) {
+    // TODO: implement scanBatches
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<ApduScriptResult> runApduScript(List<ApduStep> steps,
+      {String channel = 'picc',
+      int slot = 0,
+      Map<String, Uint8List>? variables}) {
+    // TODO: implement runApduScript
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<PiccCheckResult?> piccCheck() {
     // TODO: implement piccCheck
     throw UnimplementedError();
   }
@@ -50,7 +115,7 @@ class MockCs50sdkupdatePlatform
   }
 
   @override
-  Future<String?> piccCommand(List<int> apduSend) {
+  Future<ApduResponse?> piccCommand(List<int> apduSend, {bool beep = true}) {
     // TODO: implement piccCommand
     throw UnimplementedError();
   }
@@ -68,13 +133,154 @@ class MockCs50sdkupdatePlatform
   }
 
   @override
-  Future<String?> piccNfc(List<int> nfcDataLen, List<int> technology, List<int> nfcUid, List<int> ndefMessage) {
+  Future<M1ReadResult> readM1Card(List<Uint8List> keys,
+      {int firstSector = 0, int lastSector = 15}) {
+    // TODO: implement readM1Card
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<M1WriteResult> writeM1Card(
+      List<Uint8List> keys, Map<int, Uint8List> blocks,
+      {bool allowTrailers = false}) {
+    // TODO: implement writeM1Card
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<Uint8List> readMfpCard(int firstBlock, int blockCount,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false}) {
+    // TODO: implement readMfpCard
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<int> writeMfpCard(int firstBlock, Uint8List data,
+      {int keyNumber = 0,
+      int keyVersion = 0,
+      String keyType = 'A',
+      Map<int, List<int>>? sectorKeys,
+      bool encrypted = false,
+      bool allowTrailers = false}) {
+    // TODO: implement writeMfpCard
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<UltralightDump> readUltralight(
+      {int pageCount = 0,
+      Uint8List? password,
+      int counter = 2,
+      bool signature = true}) {
+    // TODO: implement readUltralight
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<SamSessionInfo> openSamSession(int samSlotNo, Uint8List samHostKey,
+      {int idleTimeoutMs = 300000}) {
+    // TODO: implement openSamSession
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<void> samMfcAuth(int blockNo, int keyNumber,
+      {String keyType = 'A', int keyVersion = 0}) {
+    // TODO: implement samMfcAuth
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<void> closeSamSession() {
+    // TODO: implement closeSamSession
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<void> fiscalOpen(
+      {int baudrate = 115200,
+      int dataBits = 8,
+      int stopBits = 1,
+      String parity = 'N',
+      bool flowControl = false,
+      int responseTimeoutMs = 2000,
+      int window = 4,
+      int maxRetries = 2}) {
+    // TODO: implement fiscalOpen
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<Uint8List> fiscalSend(Uint8List payload) {
+    // TODO: implement fiscalSend
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<void> fiscalClose() {
+    // TODO: implement fiscalClose
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<KeyLoadReport> loadKeys(List<KeyManifestEntry> manifest) {
+    // TODO: implement loadKeys
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<Uint8List> pciMacFile(String path, int keyNo,
+      {int algorithm = 0, int chunkSize = 1024}) {
+    // TODO: implement pciMacFile
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<Uint8List?> pciCryptFile(String path, String outPath, int keyNo,
+      {bool encrypt = true,
+      bool dukpt = false,
+      Uint8List? iv,
+      int chunkSize = 1024}) {
+    // TODO: implement pciCryptFile
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<NfcReadResult?> piccNfc(List<int> nfcDataLen, List<int> technology, List<int> nfcUid, List<int> ndefMessage, {bool beep = true}) {
     // TODO: implement piccNfc
     throw UnimplementedError();
   }
 
   @override
-  Future<String?> piccPolling() {
+  Future<void> setFeedback({bool enabled = true, int coalesceMs = 300}) {
+    // TODO: implement setFeedback
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<void> setScanDedup({bool enabled = true, int windowMs = 1000}) {
+    // TODO: implement setScanDedup
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<Map<String, int>> getScanDedupStats() {
+    // TODO: implement getScanDedupStats
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<bool> playFeedback(String pattern) {
+    // TODO: implement playFeedback
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<PiccPollingResult?> piccPolling({bool beep = true}) {
     // TODO: implement piccPolling
     throw UnimplementedError();
   }
@@ -103,6 +309,18 @@ class MockCs50sdkupdatePlatform
     throw UnimplementedError();
   }
 
+  @override
+  Future<String?> installRomPackage(String path) {
+    // TODO: implement installRomPackage
+    throw UnimplementedError();
+  }
+
+  @override
+  Future<Uint8List> randomBytes(int length) {
+    // TODO: implement randomBytes
+    throw UnimplementedError();
+  }
+
   @override
   Future<int?> sysGetVersion(List<int> buf) {
     // TODO: implement sysGetVersion